@@ -0,0 +1,66 @@
+package io.bootify.my_app.component;
+
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.html.Anchor;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.server.StreamResource;
+import io.bootify.my_app.service.BulkDownloadService;
+import io.bootify.my_app.service.FileDownloadService;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pulsante "Scarica ZIP" per la selezione di una griglia. L'archivio viene
+ * trasmesso in streaming da una {@link StreamResource} della sessione: gli id
+ * restano sul server e l'URL del link è corto anche con
+ * {@link BulkDownloadService#MAX_ENTRIES} righe selezionate.
+ * Va aggiornato con {@link #setIds} a ogni cambio di selezione.
+ */
+public class BulkDownloadLink extends Anchor {
+
+    private final BulkDownloadService bulkDownloadService;
+    private final FileDownloadService.Kind kind;
+    private final String archiveName;
+    private final Button button = new Button("Scarica ZIP", new Icon(VaadinIcon.DOWNLOAD));
+
+    /**
+     * @param archiveName nome dello ZIP, senza estensione
+     */
+    public BulkDownloadLink(BulkDownloadService bulkDownloadService, FileDownloadService.Kind kind,
+                            String archiveName) {
+        this.bulkDownloadService = bulkDownloadService;
+        this.kind = kind;
+        this.archiveName = archiveName;
+        button.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        getElement().setAttribute("download", true);
+        getElement().setAttribute("router-ignore", true);
+        getStyle().set("text-decoration", "none");
+        add(button);
+        setIds(List.of());
+    }
+
+    public void setIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            removeHref();
+            button.setEnabled(false);
+            return;
+        }
+        // copia: la selezione della griglia può cambiare prima che il download parta
+        Set<Long> selected = new LinkedHashSet<>(ids);
+        if (selected.size() > BulkDownloadService.MAX_ENTRIES) {
+            removeHref();
+            button.setEnabled(false);
+            return;
+        }
+        StreamResource resource = new StreamResource(archiveName + ".zip",
+                (out, session) -> bulkDownloadService.writeZip(kind, selected, out));
+        resource.setContentType("application/zip");
+        setHref(resource);
+        button.setEnabled(true);
+    }
+}
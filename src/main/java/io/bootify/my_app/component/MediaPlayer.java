@@ -0,0 +1,44 @@
+package io.bootify.my_app.component;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.HasSize;
+import com.vaadin.flow.component.HasStyle;
+import com.vaadin.flow.dom.Element;
+
+import java.util.Locale;
+
+/**
+ * Player audio/video nativo del browser su {@code /api/media/<kind>/<id>}: il
+ * browser chiede solo gli intervalli (Range) che servono, quindi anche le
+ * registrazioni lunghe partono subito e il seek non scarica il file intero.
+ */
+public class MediaPlayer extends Component implements HasSize, HasStyle {
+
+    /**
+     * @param kind        {@code uploads}, {@code contents} o {@code products}
+     * @param id          id del file
+     * @param contentType MIME type, decide tra {@code <video>} e {@code <audio>}
+     */
+    public MediaPlayer(String kind, Long id, String contentType) {
+        super(new Element(isVideo(contentType) ? "video" : "audio"));
+        getElement().setAttribute("controls", true);
+        // solo durata e primo fotogramma finché l'utente non preme play
+        getElement().setAttribute("preload", "metadata");
+        getElement().setAttribute("src", "/api/media/" + kind + "/" + id);
+        getElement().setAttribute("controlslist", "nodownload");
+        if (isVideo(contentType)) {
+            getStyle().set("max-height", "60vh").set("background-color", "black");
+        }
+        setWidthFull();
+    }
+
+    public static boolean isPlayable(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("video/") || type.startsWith("audio/");
+    }
+
+    private static boolean isVideo(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("video/");
+    }
+}
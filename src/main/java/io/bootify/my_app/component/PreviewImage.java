@@ -0,0 +1,40 @@
+package io.bootify.my_app.component;
+
+import com.vaadin.flow.component.html.Image;
+import io.bootify.my_app.service.PreviewService;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immagine di anteprima di un contenuto con {@code srcset}/{@code sizes}: il browser
+ * sceglie la miniatura adatta alla larghezza mostrata e alla densità dello schermo,
+ * invece di scaricare sempre l'anteprima a piena risoluzione.
+ */
+public class PreviewImage extends Image {
+
+    /** Larghezze generate lato server: la stessa lista, così {@code srcset} non chiede varianti inesistenti. */
+    private static final List<Integer> WIDTHS = PreviewService.VARIANT_WIDTHS;
+
+    /**
+     * @param contentId    id del contenuto
+     * @param displayWidth larghezza CSS massima a cui l'immagine viene mostrata, in px
+     */
+    public PreviewImage(Long contentId, int displayWidth) {
+        super(url(contentId, fallbackWidth(displayWidth)), "Anteprima");
+        getElement().setAttribute("srcset", WIDTHS.stream()
+                .map(w -> url(contentId, w) + " " + w + "w")
+                .collect(Collectors.joining(", ")));
+        getElement().setAttribute("sizes", displayWidth + "px");
+        getElement().setAttribute("loading", "lazy");
+        getElement().setAttribute("decoding", "async");
+    }
+
+    private static String url(Long contentId, int width) {
+        return "/api/preview/" + contentId + "?w=" + width;
+    }
+
+    private static int fallbackWidth(int displayWidth) {
+        return WIDTHS.stream().filter(w -> w >= displayWidth).findFirst().orElse(WIDTHS.get(WIDTHS.size() - 1));
+    }
+}
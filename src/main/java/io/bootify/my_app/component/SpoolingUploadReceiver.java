@@ -0,0 +1,74 @@
+package io.bootify.my_app.component;
+
+import com.vaadin.flow.component.upload.Receiver;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinSession;
+import io.bootify.my_app.service.SpooledUpload;
+import io.bootify.my_app.service.UploadSpool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * {@link Receiver} per il componente Upload che scrive il file su disco tramite
+ * {@link UploadSpool} invece di tenerlo in memoria come {@code MemoryBuffer}.
+ * <p>
+ * Uso tipico: nel SucceededListener {@link #takeUpload()} restituisce il file
+ * ricevuto (da passare al service, che lo sposta nel blob store), nel
+ * FailedListener {@link #discard()} ripulisce l'upload interrotto.
+ */
+public class SpoolingUploadReceiver implements Receiver {
+
+    private final UploadSpool spool;
+    private final String owner;
+    private UploadSpool.SpoolOutputStream current;
+
+    public SpoolingUploadReceiver(UploadSpool spool) {
+        this.spool = spool;
+        this.owner = currentOwner();
+    }
+
+    @Override
+    public OutputStream receiveUpload(String fileName, String mimeType) {
+        discard();
+        try {
+            current = spool.begin(owner, fileName, mimeType);
+            return current;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * File dell'ultimo upload completato; da qui in poi appartiene al chiamante,
+     * che deve chiuderlo (o passarlo a un service che lo fa).
+     */
+    public SpooledUpload takeUpload() throws IOException {
+        if (current == null) throw new IllegalStateException("No upload received");
+        UploadSpool.SpoolOutputStream stream = current;
+        current = null;
+        return stream.complete();
+    }
+
+    /** Scarta l'upload in corso o non ancora consumato. */
+    public void discard() {
+        if (current != null) {
+            current.abort();
+            current = null;
+        }
+    }
+
+    /** Utente autenticato se presente, altrimenti la sessione HTTP. */
+    private static String currentOwner() {
+        VaadinRequest request = VaadinRequest.getCurrent();
+        if (request != null && request.getUserPrincipal() != null) {
+            return request.getUserPrincipal().getName();
+        }
+        VaadinSession session = VaadinSession.getCurrent();
+        if (session != null && session.getSession() != null) {
+            return "session:" + session.getSession().getId();
+        }
+        return "anonymous";
+    }
+}
@@ -0,0 +1,177 @@
+package io.bootify.my_app.config;
+
+import io.bootify.my_app.service.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Migrazione una tantum dei file salvati come BLOB nella colonna {@code file_data}
+ * (contents, file_uploads, products) verso il {@link BlobStore}. Ogni riga viene
+ * letta in streaming, scritta nello store e aggiornata con riferimento, hash e
+ * dimensione. I byte originali restano in {@code file_data}: la colonna viene
+ * eliminata solo da un passo separato, attivo con
+ * {@code blob.migration.drop-legacy-column}, dopo aver verificato che ogni blob
+ * migrato esista e abbia hash e dimensione dei dati di partenza.
+ */
+@Configuration
+public class BlobMigrationInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobMigrationInitializer.class);
+
+    private static final List<String> TABLES = List.of("contents", "file_uploads", "products");
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    CommandLineRunner migrateBlobs(JdbcTemplate jdbcTemplate, BlobStore blobStore) {
+        return args -> {
+            for (String table : TABLES) {
+                if (!hasLegacyColumn(jdbcTemplate, table)) continue;
+
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM " + table + " WHERE file_data IS NOT NULL AND blob_key IS NULL", Long.class);
+                long bytes = 0;
+                int failed = 0;
+                for (Long id : ids) {
+                    try {
+                        BlobStore.StoredBlob blob = jdbcTemplate.query(
+                                "SELECT file_data FROM " + table + " WHERE id = ?",
+                                rs -> rs.next() ? store(blobStore, rs.getBinaryStream(1)) : null,
+                                id);
+                        if (blob == null) continue;
+                        jdbcTemplate.update("UPDATE " + table
+                                        + " SET blob_key = ?, file_hash = ?, file_size = ? WHERE id = ?",
+                                blob.key(), blob.sha256(), blob.size(), id);
+                        bytes += blob.size();
+                    } catch (RuntimeException e) {
+                        failed++;
+                        log.warn("Blob migration failed for {} id {}: {}", table, id, e.getMessage());
+                    }
+                }
+                if (!ids.isEmpty()) {
+                    log.info("Migrated {} blobs ({} bytes) from {}", ids.size() - failed, bytes, table);
+                }
+            }
+        };
+    }
+
+    /**
+     * Elimina {@code file_data} dalle tabelle in cui ogni riga con dati legacy ha
+     * un blob leggibile con lo stesso SHA-256 e la stessa dimensione dei byte nel
+     * database. Se anche una sola riga non torna la colonna resta (e la si ritenta
+     * al riavvio successivo).
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    CommandLineRunner dropLegacyBlobColumns(JdbcTemplate jdbcTemplate, BlobStore blobStore,
+            @Value("${blob.migration.drop-legacy-column:false}") boolean dropLegacyColumn) {
+        return args -> {
+            if (!dropLegacyColumn) return;
+            for (String table : TABLES) {
+                if (!hasLegacyColumn(jdbcTemplate, table)) continue;
+
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM " + table + " WHERE file_data IS NOT NULL", Long.class);
+                int unverified = 0;
+                for (Long id : ids) {
+                    String problem;
+                    try {
+                        problem = jdbcTemplate.query(
+                                "SELECT blob_key, file_hash, file_size, file_data FROM " + table + " WHERE id = ?",
+                                rs -> rs.next() ? verify(blobStore, rs.getString(1), rs.getString(2),
+                                        rs.getObject(3, Long.class), rs.getBinaryStream(4)) : null,
+                                id);
+                    } catch (RuntimeException e) {
+                        problem = e.getMessage();
+                    }
+                    if (problem != null) {
+                        unverified++;
+                        log.warn("Legacy blob of {} id {} not verified: {}", table, id, problem);
+                    }
+                }
+                if (unverified > 0) {
+                    log.warn("Keeping {}.file_data: {} of {} rows not verified", table, unverified, ids.size());
+                    continue;
+                }
+                jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN file_data");
+                log.info("Dropped {}.file_data after verifying {} migrated blobs", table, ids.size());
+            }
+        };
+    }
+
+    /** {@code null} se il blob corrisponde ai dati legacy, altrimenti il motivo. */
+    private static String verify(BlobStore blobStore, String blobKey, String fileHash, Long fileSize,
+            InputStream legacy) {
+        if (blobKey == null) return "not migrated";
+        if (!blobStore.exists(blobKey)) return "blob " + blobKey + " missing";
+        try (InputStream blob = blobStore.openStreamUntracked(blobKey)) {
+            Digest stored = digest(blob);
+            Digest original = digest(legacy);
+            if (!stored.equals(original)) {
+                return "blob " + stored + " differs from legacy data " + original;
+            }
+            if (!stored.sha256().equals(fileHash) || fileSize == null || stored.size() != fileSize) {
+                return "row has hash " + fileHash + " and size " + fileSize + ", blob " + stored;
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Digest(String sha256, long size) {}
+
+    private static Digest digest(InputStream in) throws IOException {
+        if (in == null) return new Digest("", 0);
+        MessageDigest digest = sha256();
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        try (in) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+                size += n;
+            }
+        }
+        return new Digest(HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean hasLegacyColumn(JdbcTemplate jdbcTemplate, String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS"
+                        + " WHERE UPPER(TABLE_NAME) = ? AND UPPER(COLUMN_NAME) = 'FILE_DATA'",
+                Integer.class, table.toUpperCase());
+        return count != null && count > 0;
+    }
+
+    private static BlobStore.StoredBlob store(BlobStore blobStore, InputStream data) {
+        if (data == null) return null;
+        try {
+            return blobStore.put(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.bootify.my_app.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.bootify.my_app.domain.Content;
 import io.bootify.my_app.repos.ContentRepository;
+import io.bootify.my_app.service.ContentService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,7 +20,7 @@ public class ContentDataInitializer {
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Bean
-    public CommandLineRunner initContentDatabase(ContentRepository contentRepository) {
+    public CommandLineRunner initContentDatabase(ContentRepository contentRepository, ContentService contentService) {
         return args -> {
             // Check if data already exists
             if (contentRepository.count() > 0) {
@@ -172,7 +173,8 @@ public class ContentDataInitializer {
                     createMetadata("Versione", "3.1", "Approvazione", "CDA 20/11/2024", "Obbligatoria", "Si"))
             );
 
-            contentRepository.saveAll(contents);
+            // saveAll accoda anche il pre-rendering delle anteprime a priorità BULK
+            contentService.saveAll(contents);
             System.out.println("✅ Inizializzati " + contents.size() + " contenuti nel database");
         };
     }
@@ -0,0 +1,21 @@
+package io.bootify.my_app.config;
+
+import io.bootify.my_app.rest.MediaStreamLimiter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final MediaStreamLimiter mediaStreamLimiter;
+
+    public WebMvcConfig(MediaStreamLimiter mediaStreamLimiter) {
+        this.mediaStreamLimiter = mediaStreamLimiter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(mediaStreamLimiter).addPathPatterns("/api/media/**");
+    }
+}
@@ -0,0 +1,82 @@
+package io.bootify.my_app.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * Conteggio dei riferimenti a un blob da parte di Content, FileUpload e Product.
+ * Un blob con {@code refCount} a zero viene eliminato dal GC dopo un periodo di
+ * tolleranza.
+ */
+@Entity
+@Table(name = "blob_refs")
+public class BlobReference {
+
+    @Id
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column
+    private Long size;
+
+    @Column(name = "last_changed", nullable = false)
+    private OffsetDateTime lastChanged;
+
+    // Letture registrate da TieredBlobStore (decidono promozione e demozione)
+    @Column(name = "read_count")
+    private Long readCount;
+
+    @Column(name = "last_read_at")
+    private OffsetDateTime lastReadAt;
+
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public OffsetDateTime getLastChanged() {
+        return lastChanged;
+    }
+
+    public void setLastChanged(OffsetDateTime lastChanged) {
+        this.lastChanged = lastChanged;
+    }
+
+    public Long getReadCount() {
+        return readCount;
+    }
+
+    public void setReadCount(Long readCount) {
+        this.readCount = readCount;
+    }
+
+    public OffsetDateTime getLastReadAt() {
+        return lastReadAt;
+    }
+
+    public void setLastReadAt(OffsetDateTime lastReadAt) {
+        this.lastReadAt = lastReadAt;
+    }
+}
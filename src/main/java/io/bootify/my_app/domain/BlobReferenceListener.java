@@ -0,0 +1,60 @@
+package io.bootify.my_app.domain;
+
+import io.bootify.my_app.service.BlobReferenceService;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import java.util.Objects;
+
+/**
+ * Aggiorna {@code blob_refs} nella stessa transazione che salva o elimina
+ * l'entità. Le operazioni bulk (JPQL o {@code deleteAllByIdInBatch}) non passano
+ * di qui: il riallineamento periodico di {@code BlobGarbageCollector} corregge
+ * i conteggi.
+ */
+public class BlobReferenceListener {
+
+    private final BlobReferenceService blobReferenceService;
+
+    public BlobReferenceListener(BlobReferenceService blobReferenceService) {
+        this.blobReferenceService = blobReferenceService;
+    }
+
+    @PostLoad
+    public void onLoad(Object entity) {
+        if (entity instanceof BlobReferencing referencing) {
+            referencing.setLoadedBlobKey(referencing.getBlobKey());
+        }
+    }
+
+    @PostPersist
+    public void onPersist(Object entity) {
+        if (entity instanceof BlobReferencing referencing) {
+            blobReferenceService.acquire(referencing.getBlobKey());
+            referencing.setLoadedBlobKey(referencing.getBlobKey());
+        }
+    }
+
+    @PostUpdate
+    public void onUpdate(Object entity) {
+        if (entity instanceof BlobReferencing referencing) {
+            String current = referencing.getBlobKey();
+            String previous = referencing.getLoadedBlobKey();
+            if (!Objects.equals(current, previous)) {
+                blobReferenceService.acquire(current);
+                blobReferenceService.release(previous);
+            }
+            referencing.setLoadedBlobKey(current);
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof BlobReferencing referencing) {
+            blobReferenceService.release(referencing.getLoadedBlobKey() != null
+                    ? referencing.getLoadedBlobKey() : referencing.getBlobKey());
+        }
+    }
+}
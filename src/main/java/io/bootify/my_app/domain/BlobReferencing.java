@@ -0,0 +1,16 @@
+package io.bootify.my_app.domain;
+
+/**
+ * Entità che referenziano un blob del {@code BlobStore} tramite {@code blobKey}.
+ * {@link BlobReferenceListener} tiene allineato il conteggio dei riferimenti
+ * confrontando la chiave corrente con quella letta dal database.
+ */
+public interface BlobReferencing {
+
+    String getBlobKey();
+
+    /** Chiave presente nel database all'ultimo caricamento/salvataggio (non persistita). */
+    String getLoadedBlobKey();
+
+    void setLoadedBlobKey(String loadedBlobKey);
+}
@@ -0,0 +1,165 @@
+package io.bootify.my_app.domain;
+
+import io.bootify.my_app.service.CompressionStats;
+import jakarta.persistence.AttributeConverter;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressione trasparente delle colonne TEXT grandi (trascrizioni, traduzioni,
+ * metadata JSON). Il valore compresso resta una stringa: prefisso
+ * {@value #PREFIX} seguito dallo stream zlib in Base64, così le colonne non
+ * cambiano tipo e i valori già salvati in chiaro continuano a essere letti.
+ * <p>
+ * Si comprime solo sopra {@code storage.compression.min-bytes} e solo se il
+ * risultato è più corto; ogni colonna ha il suo interruttore
+ * {@code storage.compression.columns.<colonna>}. I risparmi finiscono in
+ * {@link CompressionStats}.
+ */
+public abstract class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    static final String PREFIX = "{z1}";
+
+    private final String column;
+    private final boolean enabled;
+    private final int minBytes;
+    private final CompressionStats compressionStats;
+
+    protected CompressedTextConverter(String column, boolean enabled, int minBytes,
+                                      CompressionStats compressionStats) {
+        this.column = column;
+        this.enabled = enabled;
+        this.minBytes = minBytes;
+        this.compressionStats = compressionStats;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String value) {
+        if (value == null) return null;
+        long start = System.nanoTime();
+        // un testo che inizia per caso con il prefisso va comunque codificato
+        boolean mustEncode = value.startsWith(PREFIX);
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        if (!mustEncode && (!enabled || raw.length < minBytes)) {
+            compressionStats.skipped(column, System.nanoTime() - start);
+            return value;
+        }
+        String encoded = PREFIX + Base64.getEncoder().encodeToString(deflate(raw));
+        if (!mustEncode && encoded.length() >= value.length()) {
+            compressionStats.skipped(column, System.nanoTime() - start);
+            return value;
+        }
+        compressionStats.compressed(column, raw.length, encoded.length(), System.nanoTime() - start);
+        return encoded;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) return stored;
+        long start = System.nanoTime();
+        String value = decode(stored);
+        compressionStats.decompressed(column, System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Decodifica un valore letto senza passare da JPA (es. con JdbcTemplate);
+     * i valori in chiaro vengono restituiti così come sono.
+     */
+    public static String decode(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) return stored;
+        return new String(inflate(Base64.getDecoder().decode(stored.substring(PREFIX.length()))),
+                StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] packed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(packed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed column value");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed column value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public static class Trascrizione extends CompressedTextConverter {
+        public Trascrizione(@Value("${storage.compression.columns.trascrizione:true}") boolean enabled,
+                            @Value("${storage.compression.min-bytes:1024}") int minBytes,
+                            CompressionStats compressionStats) {
+            super("file_uploads.trascrizione", enabled, minBytes, compressionStats);
+        }
+    }
+
+    public static class Traduzione extends CompressedTextConverter {
+        public Traduzione(@Value("${storage.compression.columns.traduzione:true}") boolean enabled,
+                          @Value("${storage.compression.min-bytes:1024}") int minBytes,
+                          CompressionStats compressionStats) {
+            super("file_uploads.traduzione", enabled, minBytes, compressionStats);
+        }
+    }
+
+    public static class FileUploadMetadata extends CompressedTextConverter {
+        public FileUploadMetadata(@Value("${storage.compression.columns.file-upload-metadata:true}") boolean enabled,
+                                  @Value("${storage.compression.min-bytes:1024}") int minBytes,
+                                  CompressionStats compressionStats) {
+            super("file_uploads.metadata", enabled, minBytes, compressionStats);
+        }
+    }
+
+    public static class ContentMetadata extends CompressedTextConverter {
+        public ContentMetadata(@Value("${storage.compression.columns.content-metadata:true}") boolean enabled,
+                               @Value("${storage.compression.min-bytes:1024}") int minBytes,
+                               CompressionStats compressionStats) {
+            super("contents.custom_metadata", enabled, minBytes, compressionStats);
+        }
+    }
+
+    public static class ExtractedText extends CompressedTextConverter {
+        public ExtractedText(@Value("${storage.compression.columns.extracted-text:true}") boolean enabled,
+                             @Value("${storage.compression.min-bytes:1024}") int minBytes,
+                             CompressionStats compressionStats) {
+            super("extracted_texts.text", enabled, minBytes, compressionStats);
+        }
+    }
+
+    public static class ProductMetadata extends CompressedTextConverter {
+        public ProductMetadata(@Value("${storage.compression.columns.product-metadata:true}") boolean enabled,
+                               @Value("${storage.compression.min-bytes:1024}") int minBytes,
+                               CompressionStats compressionStats) {
+            super("products.metadata", enabled, minBytes, compressionStats);
+        }
+    }
+}
@@ -6,8 +6,14 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Entity
-@Table(name = "contents")
-public class Content {
+@Table(name = "contents", indexes = {
+        // ricerca documenti: accesso per intervallo di date, dimensione e autore
+        @Index(name = "idx_contents_creation_date", columnList = "creation_date"),
+        @Index(name = "idx_contents_file_size", columnList = "file_size"),
+        @Index(name = "idx_contents_upload_user", columnList = "upload_user")
+})
+@EntityListeners({BlobReferenceListener.class, SearchIndexListener.class})
+public class Content implements BlobReferencing {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -43,6 +49,7 @@ public class Content {
 
     // Metadati modificabili (chiave-valore) - stored as JSON
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.ContentMetadata.class)
     private String customMetadata;
 
     @Column(length = 2000)
@@ -54,9 +61,18 @@ public class Content {
     @Column
     private String tags;
 
-    @Lob
-    @Column(name = "file_data", columnDefinition = "BLOB")
-    private byte[] fileData;
+    // Riferimento al contenuto nel BlobStore (il binario non sta nella tabella)
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    // Chiave letta dal database, per aggiornare i riferimenti quando cambia
+    @Transient
+    private String loadedBlobKey;
+
+    // Riga di griglia (vedi ContentRepository.SUMMARY): solo le colonne mostrate,
+    // va ricaricato per id prima di mostrarne il dettaglio o salvarlo
+    @Transient
+    private boolean summary;
 
     // Constructors
     public Content() {
@@ -64,6 +80,18 @@ public class Content {
         this.lastModified = LocalDateTime.now();
     }
 
+    public Content(Long id, String fileName, Long fileSize, String fileType,
+                   LocalDateTime creationDate, LocalDateTime lastModified, String category) {
+        this.id = id;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.fileType = fileType;
+        this.creationDate = creationDate;
+        this.lastModified = lastModified;
+        this.category = category;
+        this.summary = true;
+    }
+
     @PreUpdate
     public void preUpdate() {
         this.lastModified = LocalDateTime.now();
@@ -182,12 +210,27 @@ public class Content {
         this.tags = tags;
     }
 
-    public byte[] getFileData() {
-        return fileData;
+    @Override
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
+    @Override
+    public String getLoadedBlobKey() {
+        return loadedBlobKey;
+    }
+
+    @Override
+    public void setLoadedBlobKey(String loadedBlobKey) {
+        this.loadedBlobKey = loadedBlobKey;
     }
 
-    public void setFileData(byte[] fileData) {
-        this.fileData = fileData;
+    public boolean isSummary() {
+        return summary;
     }
 
     // Helper method to format file size
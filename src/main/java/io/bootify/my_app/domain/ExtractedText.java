@@ -0,0 +1,155 @@
+package io.bootify.my_app.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * Testo estratto da un file, una volta per contenuto ({@code file_hash}): più
+ * contenuti o file caricati con gli stessi byte lo condividono. Alimenta l'indice
+ * full-text.
+ */
+@Entity
+@Table(name = "extracted_texts")
+public class ExtractedText {
+
+    public enum Status {
+        OK,
+        /** Documento letto ma senza testo (es. PDF solo immagini). */
+        EMPTY,
+        /** Formato senza testo leggibile (immagini, audio, video, archivi). */
+        UNSUPPORTED,
+        /** Errore del parser: non viene ritentato finché non cambia la versione dell'estrattore. */
+        FAILED,
+        /** Non ancora estratto (blob assente, bulkhead saturo): lo sweep ci riprova dopo {@code retryAt}. */
+        DEFERRED
+    }
+
+    @Id
+    @Column(name = "file_hash", length = 64)
+    private String fileHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 12)
+    private Status status;
+
+    @Column(length = 10)
+    private String format;
+
+    @Column(name = "text", columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.ExtractedText.class)
+    private String text;
+
+    @Column(nullable = false)
+    private int chars;
+
+    @Column(name = "extractor_version", nullable = false)
+    private int extractorVersion;
+
+    @Column(nullable = false)
+    private long durationMs;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private OffsetDateTime extractedAt;
+
+    @Column(name = "retry_at")
+    private OffsetDateTime retryAt;
+
+    public ExtractedText() {
+    }
+
+    public ExtractedText(String fileHash, String format, int extractorVersion) {
+        this.fileHash = fileHash;
+        this.format = format;
+        this.extractorVersion = extractorVersion;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        extractedAt = OffsetDateTime.now();
+        chars = text != null ? text.length() : 0;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public int getChars() {
+        return chars;
+    }
+
+    public void setChars(int chars) {
+        this.chars = chars;
+    }
+
+    public int getExtractorVersion() {
+        return extractorVersion;
+    }
+
+    public void setExtractorVersion(int extractorVersion) {
+        this.extractorVersion = extractorVersion;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public OffsetDateTime getExtractedAt() {
+        return extractedAt;
+    }
+
+    public void setExtractedAt(OffsetDateTime extractedAt) {
+        this.extractedAt = extractedAt;
+    }
+
+    public OffsetDateTime getRetryAt() {
+        return retryAt;
+    }
+
+    public void setRetryAt(OffsetDateTime retryAt) {
+        this.retryAt = retryAt;
+    }
+}
@@ -5,7 +5,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "file_uploads")
-public class FileUpload {
+@EntityListeners({BlobReferenceListener.class, SearchIndexListener.class})
+public class FileUpload implements BlobReferencing {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,11 +27,19 @@ public class FileUpload {
     @Column(nullable = false)
     private LocalDateTime uploadDate;
 
-    @Lob
-    @Column(name = "file_data", columnDefinition = "BLOB")
-    private byte[] fileData;
+    // Riferimento al contenuto nel BlobStore (il binario non sta nella tabella)
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    // Chiave letta dal database, per aggiornare i riferimenti quando cambia
+    @Transient
+    private String loadedBlobKey;
+
+    @Column(name = "file_hash", length = 64)
+    private String fileHash;
 
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.FileUploadMetadata.class)
     private String metadata;
 
     @Column
@@ -44,10 +53,12 @@ public class FileUpload {
 
     @Lob
     @Column(name = "trascrizione", columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.Trascrizione.class)
     private String trascrizione;
 
     @Lob
     @Column(name = "traduzione", columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.Traduzione.class)
     private String traduzione;
 
     @Column(name = "etag")
@@ -56,21 +67,47 @@ public class FileUpload {
     @Column(name = "unique_file_name")
     private String uniqueFileName;
 
+    // Riga di griglia (vedi FileUploadRepository.SUMMARY): metadata, trascrizione
+    // e traduzione non sono caricati, va ricaricata per id prima di mostrarli o salvarla
+    @Transient
+    private boolean summary;
+
+    @Transient
+    private Boolean metadataPresent;
+
     // Constructors
     public FileUpload() {
         this.uploadDate = LocalDateTime.now();
         this.status = "PENDING";
     }
 
-    public FileUpload(String fileName, String fileType, Long fileSize, String uploadedBy, byte[] fileData) {
+    public FileUpload(String fileName, String fileType, Long fileSize, String uploadedBy, String blobKey) {
         this.fileName = fileName;
         this.fileType = fileType;
         this.fileSize = fileSize;
         this.uploadedBy = uploadedBy;
-        this.fileData = fileData;
+        this.blobKey = blobKey;
         this.uploadDate = LocalDateTime.now();
     }
 
+    public FileUpload(Long id, String fileName, String fileType, Long fileSize, String uploadedBy,
+                      LocalDateTime uploadDate, String description, String category, String status,
+                      String blobKey, String fileHash, Boolean metadataPresent) {
+        this.id = id;
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.fileSize = fileSize;
+        this.uploadedBy = uploadedBy;
+        this.uploadDate = uploadDate;
+        this.description = description;
+        this.category = category;
+        this.status = status;
+        this.blobKey = blobKey;
+        this.fileHash = fileHash;
+        this.metadataPresent = metadataPresent;
+        this.summary = true;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -120,12 +157,31 @@ public class FileUpload {
         this.uploadDate = uploadDate;
     }
 
-    public byte[] getFileData() {
-        return fileData;
+    @Override
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
+    @Override
+    public String getLoadedBlobKey() {
+        return loadedBlobKey;
+    }
+
+    @Override
+    public void setLoadedBlobKey(String loadedBlobKey) {
+        this.loadedBlobKey = loadedBlobKey;
+    }
+
+    public String getFileHash() {
+        return fileHash;
     }
 
-    public void setFileData(byte[] fileData) {
-        this.fileData = fileData;
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
     }
 
     public String getMetadata() {
@@ -160,6 +216,15 @@ public class FileUpload {
         this.status = status;
     }
 
+    public boolean isSummary() {
+        return summary;
+    }
+
+    public boolean hasMetadata() {
+        if (metadataPresent != null) return metadataPresent;
+        return metadata != null && !metadata.isEmpty();
+    }
+
     public String getFormattedFileSize() {
         if (fileSize < 1024) {
             return fileSize + " B";
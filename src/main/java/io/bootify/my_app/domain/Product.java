@@ -6,7 +6,8 @@ import java.time.OffsetDateTime;
 
 @Entity
 @Table(name = "products")
-public class Product {
+@EntityListeners({BlobReferenceListener.class, SearchIndexListener.class})
+public class Product implements BlobReferencing {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -43,16 +44,56 @@ public class Product {
     @Column
     private Long fileSize;
 
-    @Lob
-    @Column(name = "file_data", columnDefinition = "BLOB")
-    private byte[] fileData;
+    // Riferimento al contenuto nel BlobStore (il binario non sta nella tabella)
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    // Chiave letta dal database, per aggiornare i riferimenti quando cambia
+    @Transient
+    private String loadedBlobKey;
+
+    @Column(name = "file_hash", length = 64)
+    private String fileHash;
 
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.ProductMetadata.class)
     private String metadata;
 
     @Column
     private String uploadedBy;
 
+    // Riga di griglia (vedi ProductRepository.SUMMARY): metadata non è caricato,
+    // va ricaricato per id prima di mostrarlo o salvarlo
+    @Transient
+    private boolean summary;
+
+    @Transient
+    private Boolean metadataPresent;
+
+    public Product() {
+    }
+
+    public Product(Long id, String name, String description, BigDecimal price, String category,
+                   Integer quantity, OffsetDateTime dateCreated, OffsetDateTime lastUpdated,
+                   String fileName, String fileType, Long fileSize, String blobKey, String uploadedBy,
+                   Boolean metadataPresent) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.category = category;
+        this.quantity = quantity;
+        this.dateCreated = dateCreated;
+        this.lastUpdated = lastUpdated;
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.fileSize = fileSize;
+        this.blobKey = blobKey;
+        this.uploadedBy = uploadedBy;
+        this.metadataPresent = metadataPresent;
+        this.summary = true;
+    }
+
     @PrePersist
     public void prePersist() {
         dateCreated = OffsetDateTime.now();
@@ -153,12 +194,31 @@ public class Product {
         this.fileSize = fileSize;
     }
 
-    public byte[] getFileData() {
-        return fileData;
+    @Override
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
     }
 
-    public void setFileData(byte[] fileData) {
-        this.fileData = fileData;
+    @Override
+    public String getLoadedBlobKey() {
+        return loadedBlobKey;
+    }
+
+    @Override
+    public void setLoadedBlobKey(String loadedBlobKey) {
+        this.loadedBlobKey = loadedBlobKey;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
     }
 
     public String getMetadata() {
@@ -190,8 +250,17 @@ public class Product {
         }
     }
 
+    public boolean isSummary() {
+        return summary;
+    }
+
+    public boolean hasMetadata() {
+        if (metadataPresent != null) return metadataPresent;
+        return metadata != null && !metadata.isEmpty();
+    }
+
     public boolean hasFile() {
-        return fileData != null && fileData.length > 0;
+        return blobKey != null;
     }
 
     @Override
@@ -0,0 +1,94 @@
+package io.bootify.my_app.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * Punto di ripresa dello scrubber di integrità per una tabella: ultimo id
+ * verificato e numero di passate complete. Sopravvive ai riavvii.
+ */
+@Entity
+@Table(name = "scrub_cursors")
+public class ScrubCursor {
+
+    @Id
+    @Column(length = 40)
+    private String target;
+
+    @Column(name = "last_id", nullable = false)
+    private long lastId;
+
+    @Column(nullable = false)
+    private int passes;
+
+    @Column
+    private OffsetDateTime passStartedAt;
+
+    @Column
+    private OffsetDateTime lastPassCompletedAt;
+
+    @Column(nullable = false)
+    private OffsetDateTime lastUpdated;
+
+    public ScrubCursor() {
+    }
+
+    public ScrubCursor(String target) {
+        this.target = target;
+        this.passStartedAt = OffsetDateTime.now();
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        lastUpdated = OffsetDateTime.now();
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(long lastId) {
+        this.lastId = lastId;
+    }
+
+    public int getPasses() {
+        return passes;
+    }
+
+    public void setPasses(int passes) {
+        this.passes = passes;
+    }
+
+    public OffsetDateTime getPassStartedAt() {
+        return passStartedAt;
+    }
+
+    public void setPassStartedAt(OffsetDateTime passStartedAt) {
+        this.passStartedAt = passStartedAt;
+    }
+
+    public OffsetDateTime getLastPassCompletedAt() {
+        return lastPassCompletedAt;
+    }
+
+    public void setLastPassCompletedAt(OffsetDateTime lastPassCompletedAt) {
+        this.lastPassCompletedAt = lastPassCompletedAt;
+    }
+
+    public OffsetDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(OffsetDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
@@ -0,0 +1,130 @@
+package io.bootify.my_app.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/**
+ * Discrepanza trovata dallo scrubber tra i metadati di una riga e il blob
+ * memorizzato. Resta finché la riga non viene corretta: alla verifica
+ * successiva senza problemi viene eliminata.
+ */
+@Entity
+@Table(name = "scrub_mismatches", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_scrub_mismatch_row", columnNames = {"target", "row_id", "problem"})
+})
+public class ScrubMismatch {
+
+    public enum Problem {
+        /** Il blob referenziato non esiste più nello store. */
+        MISSING_BLOB,
+        /** Il contenuto del blob non corrisponde alla sua chiave (SHA-256): dati corrotti. */
+        CORRUPTED_BLOB,
+        /** {@code file_hash} della riga diverso dall'hash reale. */
+        HASH_MISMATCH,
+        /** {@code file_size} della riga diverso dalla dimensione reale. */
+        SIZE_MISMATCH
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 40)
+    private String target;
+
+    @Column(name = "row_id", nullable = false)
+    private Long rowId;
+
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Problem problem;
+
+    @Column(length = 100)
+    private String expected;
+
+    @Column(length = 100)
+    private String actual;
+
+    @Column(nullable = false)
+    private OffsetDateTime detectedAt;
+
+    public ScrubMismatch() {
+    }
+
+    public ScrubMismatch(String target, Long rowId, String blobKey, Problem problem, String expected, String actual) {
+        this.target = target;
+        this.rowId = rowId;
+        this.blobKey = blobKey;
+        this.problem = problem;
+        this.expected = expected;
+        this.actual = actual;
+        this.detectedAt = OffsetDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public Long getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(Long rowId) {
+        this.rowId = rowId;
+    }
+
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
+    public Problem getProblem() {
+        return problem;
+    }
+
+    public void setProblem(Problem problem) {
+        this.problem = problem;
+    }
+
+    public String getExpected() {
+        return expected;
+    }
+
+    public void setExpected(String expected) {
+        this.expected = expected;
+    }
+
+    public String getActual() {
+        return actual;
+    }
+
+    public void setActual(String actual) {
+        this.actual = actual;
+    }
+
+    public OffsetDateTime getDetectedAt() {
+        return detectedAt;
+    }
+
+    public void setDetectedAt(OffsetDateTime detectedAt) {
+        this.detectedAt = detectedAt;
+    }
+}
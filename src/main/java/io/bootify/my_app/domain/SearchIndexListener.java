@@ -0,0 +1,48 @@
+package io.bootify.my_app.domain;
+
+import io.bootify.my_app.service.FacetSearchService;
+import io.bootify.my_app.service.FileNameIndexService;
+import io.bootify.my_app.service.SearchIndexService;
+import io.bootify.my_app.service.TextExtractionService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Tiene allineati l'indice full-text, quello delle faccette e quello dei nomi
+ * file con i salvataggi e le eliminazioni delle entità (e accoda l'estrazione
+ * del testo del file); le modifiche diventano visibili nella ricerca al commit. Le eliminazioni bulk vanno segnalate a mano
+ * ({@link SearchIndexService#removeAfterCommit}).
+ */
+public class SearchIndexListener {
+
+    private final SearchIndexService searchIndexService;
+    private final TextExtractionService textExtractionService;
+    private final FacetSearchService facetSearchService;
+    private final FileNameIndexService fileNameIndexService;
+
+    public SearchIndexListener(SearchIndexService searchIndexService, TextExtractionService textExtractionService,
+                               FacetSearchService facetSearchService, FileNameIndexService fileNameIndexService) {
+        this.searchIndexService = searchIndexService;
+        this.textExtractionService = textExtractionService;
+        this.facetSearchService = facetSearchService;
+        this.fileNameIndexService = fileNameIndexService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        searchIndexService.indexAfterCommit(entity);
+        facetSearchService.indexAfterCommit(entity);
+        fileNameIndexService.indexAfterCommit(entity);
+        // il testo del file arriva più tardi e fa reindicizzare di nuovo la riga
+        textExtractionService.enqueueAfterCommit(entity);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        searchIndexService.removeAfterCommit(entity);
+        facetSearchService.removeAfterCommit(entity);
+        fileNameIndexService.removeAfterCommit(entity);
+    }
+}
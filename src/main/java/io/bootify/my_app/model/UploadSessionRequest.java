@@ -0,0 +1,90 @@
+package io.bootify.my_app.model;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+
+public class UploadSessionRequest {
+
+    @NotNull
+    private Long productId;
+
+    @NotBlank
+    @Size(max = 255)
+    private String fileName;
+
+    @Size(max = 255)
+    private String contentType;
+
+    @NotNull
+    @Positive
+    private Long size;
+
+    @Positive
+    private Integer chunkSize;
+
+    @Pattern(regexp = "[0-9a-fA-F]{64}")
+    private String sha256;
+
+    private String uploadedBy;
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(final Long productId) {
+        this.productId = productId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(final String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(final String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(final Long size) {
+        this.size = size;
+    }
+
+    public Integer getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(final Integer chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(final String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getUploadedBy() {
+        return uploadedBy;
+    }
+
+    public void setUploadedBy(final String uploadedBy) {
+        this.uploadedBy = uploadedBy;
+    }
+
+}
@@ -0,0 +1,19 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.Content;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Ricerche "il nome file contiene" sui contenuti, servite dall'indice a trigrammi
+ * ({@link ContentFileNameSearchImpl}) con la LIKE come ripiego.
+ */
+public interface ContentFileNameSearch {
+
+    /** Righe per le griglie ({@link ContentRepository#SUMMARY}) di un tipo con il nome che contiene il frammento. */
+    Page<Content> findSummariesByFileTypeAndFileName(String fileType, String fileName, Pageable pageable);
+
+    Page<Content> findByFileTypeAndFileNameContainingIgnoreCase(String fileType, String fileName, Pageable pageable);
+
+    Page<Content> findByCategoryAndFileNameContainingIgnoreCase(String category, String fileName, Pageable pageable);
+}
@@ -0,0 +1,74 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.service.FileNameIndexService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Implementazione di {@link ContentFileNameSearch}: se l'indice a trigrammi
+ * risponde con pochi id la query filtra per {@code c.id IN (...)} (chiave
+ * primaria), altrimenti resta la {@code LOWER(c.fileName) LIKE}.
+ */
+class ContentFileNameSearchImpl implements ContentFileNameSearch {
+
+    private final EntityManager entityManager;
+    private final FileNameIndexService fileNameIndexService;
+
+    ContentFileNameSearchImpl(EntityManager entityManager, FileNameIndexService fileNameIndexService) {
+        this.entityManager = entityManager;
+        this.fileNameIndexService = fileNameIndexService;
+    }
+
+    @Override
+    public Page<Content> findSummariesByFileTypeAndFileName(String fileType, String fileName, Pageable pageable) {
+        return page(ContentRepository.SUMMARY, "fileType", fileType, fileName, pageable);
+    }
+
+    @Override
+    public Page<Content> findByFileTypeAndFileNameContainingIgnoreCase(String fileType, String fileName,
+                                                                       Pageable pageable) {
+        return page("SELECT c FROM Content c", "fileType", fileType, fileName, pageable);
+    }
+
+    @Override
+    public Page<Content> findByCategoryAndFileNameContainingIgnoreCase(String category, String fileName,
+                                                                       Pageable pageable) {
+        return page("SELECT c FROM Content c", "category", category, fileName, pageable);
+    }
+
+    private Page<Content> page(String select, String attribute, String value, String fileName, Pageable pageable) {
+        Optional<long[]> ids = fileNameIndexService.containing(FileNameIndexService.Kind.CONTENT, fileName)
+                .filter(matches -> matches.length <= FileNameIndexService.MAX_IN_IDS);
+        if (ids.isPresent() && ids.get().length == 0) {
+            return Page.empty(pageable);
+        }
+        String where = " WHERE c." + attribute + " = :value AND "
+                + (ids.isPresent() ? "c.id IN :ids" : "LOWER(c.fileName) LIKE :fileName ESCAPE '\\'");
+
+        TypedQuery<Content> query = entityManager.createQuery(
+                QueryUtils.applySorting(select + where, pageable.getSort(), "c"), Content.class);
+        TypedQuery<Long> count = entityManager.createQuery("SELECT COUNT(c) FROM Content c" + where, Long.class);
+        for (TypedQuery<?> q : List.of(query, count)) {
+            q.setParameter("value", value);
+            if (ids.isPresent()) {
+                q.setParameter("ids", Arrays.stream(ids.get()).boxed().toList());
+            } else {
+                q.setParameter("fileName", FileNameIndexService.likePattern(fileName));
+            }
+        }
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return new PageImpl<>(query.getResultList(), pageable, count.getSingleResult());
+    }
+}
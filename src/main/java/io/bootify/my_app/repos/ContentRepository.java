@@ -3,13 +3,45 @@ package io.bootify.my_app.repos;
 import io.bootify.my_app.domain.Content;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface ContentRepository extends JpaRepository<Content, Long> {
+public interface ContentRepository extends JpaRepository<Content, Long>, ContentFileNameSearch {
+
+    /** Righe per le griglie: solo le colonne mostrate in elenco. */
+    String SUMMARY = "SELECT new io.bootify.my_app.domain.Content(c.id, c.fileName, c.fileSize, c.fileType, " +
+            "c.creationDate, c.lastModified, c.category) FROM Content c";
+
+    String SEARCH_CONDITION = " WHERE " +
+            "LOWER(c.fileName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(c.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(c.fileType) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(c.category) LIKE LOWER(CONCAT('%', :searchTerm, '%'))";
+
+    @Query(value = SUMMARY, countQuery = "SELECT COUNT(c) FROM Content c")
+    Page<Content> findSummaries(Pageable pageable);
+
+    @Query(value = SUMMARY + SEARCH_CONDITION, countQuery = "SELECT COUNT(c) FROM Content c" + SEARCH_CONDITION)
+    Page<Content> searchSummaries(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    @Query(SUMMARY + " WHERE c.id IN :ids")
+    List<Content> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /** Id dei risultati dell'indice full-text nell'ordine richiesto dalla griglia. */
+    @Query("SELECT c.id FROM Content c WHERE c.id IN :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids, Sort sort);
+
+    @Query("SELECT c.id FROM Content c")
+    List<Long> findAllIds(Sort sort);
+
+    @Query(value = SUMMARY + " WHERE c.fileType = :fileType",
+           countQuery = "SELECT COUNT(c) FROM Content c WHERE c.fileType = :fileType")
+    Page<Content> findSummariesByFileType(@Param("fileType") String fileType, Pageable pageable);
 
     @Query("SELECT c FROM Content c WHERE " +
            "LOWER(c.fileName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
@@ -23,8 +55,4 @@ public interface ContentRepository extends JpaRepository<Content, Long> {
     List<Content> findByFileType(String fileType);
 
     Page<Content> findByCategory(String category, Pageable pageable);
-
-    Page<Content> findByFileTypeAndFileNameContainingIgnoreCase(String fileType, String fileName, Pageable pageable);
-
-    Page<Content> findByCategoryAndFileNameContainingIgnoreCase(String category, String fileName, Pageable pageable);
 }
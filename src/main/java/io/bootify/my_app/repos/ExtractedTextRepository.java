@@ -0,0 +1,11 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.ExtractedText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ExtractedTextRepository extends JpaRepository<ExtractedText, String> {
+
+    long countByStatus(ExtractedText.Status status);
+}
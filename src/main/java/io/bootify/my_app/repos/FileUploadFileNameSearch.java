@@ -0,0 +1,17 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.FileUpload;
+
+import java.util.List;
+
+/**
+ * Ricerche "il nome file contiene" sui file caricati, servite dall'indice a
+ * trigrammi ({@link FileUploadFileNameSearchImpl}) con la LIKE come ripiego.
+ */
+public interface FileUploadFileNameSearch {
+
+    /** Righe per le griglie ({@link FileUploadRepository#SUMMARY}), dalla più recente. */
+    List<FileUpload> findSummariesByFileNameOrderByUploadDateDesc(String fileName);
+
+    List<FileUpload> findByFileNameContainingIgnoreCaseOrderByUploadDateDesc(String fileName);
+}
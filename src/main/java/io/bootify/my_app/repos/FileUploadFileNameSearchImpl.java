@@ -0,0 +1,52 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.FileUpload;
+import io.bootify.my_app.service.FileNameIndexService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Implementazione di {@link FileUploadFileNameSearch}: id dall'indice a trigrammi
+ * quando sono pochi, altrimenti {@code LOWER(f.fileName) LIKE}.
+ */
+class FileUploadFileNameSearchImpl implements FileUploadFileNameSearch {
+
+    private final EntityManager entityManager;
+    private final FileNameIndexService fileNameIndexService;
+
+    FileUploadFileNameSearchImpl(EntityManager entityManager, FileNameIndexService fileNameIndexService) {
+        this.entityManager = entityManager;
+        this.fileNameIndexService = fileNameIndexService;
+    }
+
+    @Override
+    public List<FileUpload> findSummariesByFileNameOrderByUploadDateDesc(String fileName) {
+        return list(FileUploadRepository.SUMMARY, fileName);
+    }
+
+    @Override
+    public List<FileUpload> findByFileNameContainingIgnoreCaseOrderByUploadDateDesc(String fileName) {
+        return list("SELECT f FROM FileUpload f ", fileName);
+    }
+
+    private List<FileUpload> list(String select, String fileName) {
+        Optional<long[]> ids = fileNameIndexService.containing(FileNameIndexService.Kind.FILE_UPLOAD, fileName)
+                .filter(matches -> matches.length <= FileNameIndexService.MAX_IN_IDS);
+        if (ids.isPresent() && ids.get().length == 0) {
+            return List.of();
+        }
+        String where = ids.isPresent() ? "WHERE f.id IN :ids" : "WHERE LOWER(f.fileName) LIKE :fileName ESCAPE '\\'";
+        TypedQuery<FileUpload> query = entityManager.createQuery(
+                select + where + " ORDER BY f.uploadDate DESC", FileUpload.class);
+        if (ids.isPresent()) {
+            query.setParameter("ids", Arrays.stream(ids.get()).boxed().toList());
+        } else {
+            query.setParameter("fileName", FileNameIndexService.likePattern(fileName));
+        }
+        return query.getResultList();
+    }
+}
@@ -2,19 +2,27 @@ package io.bootify.my_app.repos;
 
 import io.bootify.my_app.domain.FileUpload;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface FileUploadRepository extends JpaRepository<FileUpload, Long> {
+public interface FileUploadRepository extends JpaRepository<FileUpload, Long>, FileUploadFileNameSearch {
+
+    /** Righe per le griglie: senza metadata, trascrizione e traduzione (solo un flag di presenza). */
+    String SUMMARY = "SELECT new io.bootify.my_app.domain.FileUpload(f.id, f.fileName, f.fileType, f.fileSize, " +
+            "f.uploadedBy, f.uploadDate, f.description, f.category, f.status, f.blobKey, f.fileHash, " +
+            "CASE WHEN f.metadata IS NOT NULL AND LENGTH(f.metadata) > 0 THEN true ELSE false END) " +
+            "FROM FileUpload f ";
+
+    @Query(SUMMARY + "ORDER BY f.uploadDate DESC")
+    List<FileUpload> findSummariesOrderByUploadDateDesc();
     
     List<FileUpload> findByUploadedByOrderByUploadDateDesc(String uploadedBy);
     
     List<FileUpload> findAllByOrderByUploadDateDesc();
     
-    List<FileUpload> findByFileNameContainingIgnoreCaseOrderByUploadDateDesc(String fileName);
-    
     List<FileUpload> findByCategoryOrderByUploadDateDesc(String category);
     
     List<FileUpload> findByStatusOrderByUploadDateDesc(String status);
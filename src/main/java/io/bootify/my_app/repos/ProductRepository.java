@@ -1,22 +1,52 @@
 package io.bootify.my_app.repos;
 
 import io.bootify.my_app.domain.Product;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
+    /** Righe per le griglie: senza metadata (solo un flag di presenza). */
+    String SUMMARY = "SELECT new io.bootify.my_app.domain.Product(p.id, p.name, p.description, p.price, " +
+            "p.category, p.quantity, p.dateCreated, p.lastUpdated, p.fileName, p.fileType, p.fileSize, " +
+            "p.blobKey, p.uploadedBy, " +
+            "CASE WHEN p.metadata IS NOT NULL AND LENGTH(p.metadata) > 0 THEN true ELSE false END) " +
+            "FROM Product p ";
+
+    @Query(SUMMARY + "ORDER BY p.id")
+    List<Product> findAllSummaries();
+
     @Query("SELECT p FROM Product p WHERE " +
            "LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "LOWER(p.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "LOWER(p.category) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     Page<Product> searchProducts(@Param("searchTerm") String searchTerm, Pageable pageable);
 
+    /** Id dei risultati dell'indice full-text nell'ordine richiesto dalla griglia. */
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids, Sort sort);
+
+    @Query("SELECT p.id FROM Product p")
+    List<Long> findAllIds(Sort sort);
+
+    /**
+     * blob_key come è nel database: senza flush automatico, così le modifiche
+     * ancora pendenti sull'entità gestita non vengono lette come già salvate.
+     */
+    @Query("SELECT p.blobKey FROM Product p WHERE p.id = :id")
+    @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+    Optional<String> findPersistedBlobKey(@Param("id") Long id);
+
     Page<Product> findByCategory(String category, Pageable pageable);
 
     List<Product> findByCategory(String category);
@@ -0,0 +1,59 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.ReplicationOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReplicationOutboxRepository extends JpaRepository<ReplicationOutbox, Long> {
+
+    @Query("SELECT o.id FROM ReplicationOutbox o WHERE o.status = io.bootify.my_app.domain.ReplicationOutbox.Status.PENDING " +
+            "AND o.nextAttemptAt <= :now ORDER BY o.nextAttemptAt")
+    List<Long> findDueIds(@Param("now") OffsetDateTime now, Pageable pageable);
+
+    /**
+     * Prende in carico una voce: solo un dispatcher (anche su più istanze) vede
+     * aggiornata una riga, gli altri ricevono 0.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReplicationOutbox o SET o.status = io.bootify.my_app.domain.ReplicationOutbox.Status.IN_PROGRESS, " +
+            "o.lastUpdated = :now WHERE o.id = :id AND o.status = io.bootify.my_app.domain.ReplicationOutbox.Status.PENDING")
+    int claim(@Param("id") Long id, @Param("now") OffsetDateTime now);
+
+    /**
+     * Rinnova il lease delle voci che questa istanza sta ancora inviando: un upload
+     * lungo non viene rimesso in coda finché il dispatcher è vivo.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReplicationOutbox o SET o.lastUpdated = :now " +
+            "WHERE o.id IN :ids AND o.status = io.bootify.my_app.domain.ReplicationOutbox.Status.IN_PROGRESS")
+    int heartbeat(@Param("ids") Collection<Long> ids, @Param("now") OffsetDateTime now);
+
+    /**
+     * Rimette in coda le voci IN_PROGRESS il cui lease è scaduto senza heartbeat
+     * (es. istanza terminata durante l'invio).
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReplicationOutbox o SET o.status = io.bootify.my_app.domain.ReplicationOutbox.Status.PENDING, " +
+            "o.lastUpdated = :now WHERE o.status = io.bootify.my_app.domain.ReplicationOutbox.Status.IN_PROGRESS " +
+            "AND o.lastUpdated < :stuckBefore")
+    int requeueStuck(@Param("stuckBefore") OffsetDateTime stuckBefore, @Param("now") OffsetDateTime now);
+
+    long countByStatus(ReplicationOutbox.Status status);
+
+    List<ReplicationOutbox> findAllByOrderByLastUpdatedDesc(Pageable pageable);
+
+    List<ReplicationOutbox> findByStatusOrderByLastUpdatedDesc(ReplicationOutbox.Status status, Pageable pageable);
+}
@@ -0,0 +1,9 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.ScrubCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ScrubCursorRepository extends JpaRepository<ScrubCursor, String> {
+}
@@ -0,0 +1,28 @@
+package io.bootify.my_app.repos;
+
+import io.bootify.my_app.domain.ScrubMismatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ScrubMismatchRepository extends JpaRepository<ScrubMismatch, Long> {
+
+    boolean existsByTargetAndRowIdAndProblem(String target, Long rowId, ScrubMismatch.Problem problem);
+
+    /** Elimina le segnalazioni di una riga risultata corretta. */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ScrubMismatch m WHERE m.target = :target AND m.rowId = :rowId")
+    int deleteByRow(@Param("target") String target, @Param("rowId") Long rowId);
+
+    List<ScrubMismatch> findAllByOrderByDetectedAtDesc(Pageable pageable);
+
+    long countByProblem(ScrubMismatch.Problem problem);
+}
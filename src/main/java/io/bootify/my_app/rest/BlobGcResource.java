@@ -0,0 +1,36 @@
+package io.bootify.my_app.rest;
+
+import io.bootify.my_app.service.BlobGarbageCollector;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Report del GC dei blob: spazio risparmiato dalla deduplicazione e spazio
+ * recuperato. {@code POST} esegue subito il job.
+ */
+@RestController
+@RequestMapping("/api/blobs/gc")
+public class BlobGcResource {
+
+    private final BlobGarbageCollector blobGarbageCollector;
+
+    public BlobGcResource(BlobGarbageCollector blobGarbageCollector) {
+        this.blobGarbageCollector = blobGarbageCollector;
+    }
+
+    @GetMapping
+    public ResponseEntity<BlobGarbageCollector.BlobGcReport> lastReport() {
+        BlobGarbageCollector.BlobGcReport report = blobGarbageCollector.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    @PostMapping
+    public BlobGarbageCollector.BlobGcReport run() throws IOException {
+        return blobGarbageCollector.run();
+    }
+}
@@ -0,0 +1,192 @@
+package io.bootify.my_app.rest;
+
+import io.bootify.my_app.service.BulkDownloadService;
+import io.bootify.my_app.service.FileDownloadService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+@RestController
+public class FileDownloadController {
+
+    private static final CacheControl MEDIA_CACHE = CacheControl.maxAge(Duration.ofHours(1)).cachePrivate();
+
+    private final FileDownloadService fileDownloadService;
+    private final BulkDownloadService bulkDownloadService;
+
+    public FileDownloadController(FileDownloadService fileDownloadService,
+                                  BulkDownloadService bulkDownloadService) {
+        this.fileDownloadService = fileDownloadService;
+        this.bulkDownloadService = bulkDownloadService;
+    }
+
+    /**
+     * Download unificato: {@code kind} è {@code products}, {@code uploads} o {@code contents}.
+     * Il file viene trasmesso direttamente dallo storage. Spring MVC gestisce le
+     * richieste Range (singole e multiple, 206 / multipart/byteranges) e i GET
+     * condizionali su ETag e Last-Modified (304); If-Range viene verificato qui.
+     * Con {@code inline=true} il file viene mostrato dal browser invece che scaricato.
+     */
+    @GetMapping("/api/files/{kind}/{id}")
+    public ResponseEntity<Resource> download(@PathVariable String kind, @PathVariable Long id,
+                                             @RequestParam(value = "inline", defaultValue = "false") boolean inline,
+                                             @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        FileDownloadService.Kind parsed = parseKind(kind);
+        if (parsed == null) return ResponseEntity.notFound().build();
+        return fileDownloadService.find(parsed, id)
+                .map(download -> respond(download, inline, ifRange, null))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Download multiplo: ZIP dei file {@code ids} di tipo {@code kind}, scritto in
+     * streaming mentre i file vengono letti. La risposta è sincrona (nessun timeout
+     * async) e senza Content-Length. Per selezioni grandi gli id vanno inviati in
+     * POST come form ({@code ids=1,2,3}): in GET la query string supera i limiti di
+     * lunghezza degli header.
+     */
+    @RequestMapping(value = "/api/files/zip/{kind}", method = {RequestMethod.GET, RequestMethod.POST})
+    public void downloadZip(@PathVariable String kind, @RequestParam("ids") List<Long> ids,
+                            @RequestParam(value = "name", defaultValue = "files") String name,
+                            HttpServletResponse response) throws IOException {
+        FileDownloadService.Kind parsed = parseKind(kind);
+        if (parsed == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (ids.isEmpty() || ids.size() > BulkDownloadService.MAX_ENTRIES) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Between 1 and " + BulkDownloadService.MAX_ENTRIES + " ids are required");
+            return;
+        }
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(name + ".zip", false));
+        bulkDownloadService.writeZip(parsed, new LinkedHashSet<>(ids), response.getOutputStream());
+    }
+
+    /**
+     * Streaming per il player audio/video: stesso supporto Range del download,
+     * sempre inline e cacheabile dal browser (l'ETag è l'hash del contenuto, la
+     * rivalidazione costa una 304). Solo per file audio e video; gli stream
+     * contemporanei per sessione sono limitati da {@link MediaStreamLimiter}.
+     */
+    @GetMapping("/api/media/{kind}/{id}")
+    public ResponseEntity<Resource> stream(@PathVariable String kind, @PathVariable Long id,
+                                           @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        FileDownloadService.Kind parsed = parseKind(kind);
+        if (parsed == null) return ResponseEntity.notFound().build();
+        return fileDownloadService.find(parsed, id)
+                .filter(download -> isMedia(download.contentType()))
+                .map(download -> respond(download, true, ifRange, MEDIA_CACHE))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /** URL storico dei file caricati, usato da FileManagementView. */
+    @GetMapping("/api/files/download/{id}")
+    public ResponseEntity<Resource> downloadUpload(@PathVariable Long id,
+                                                   @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        return download("uploads", id, false, ifRange);
+    }
+
+    /** URL storico dei file dei prodotti. */
+    @GetMapping("/api/prodotti/download/{id}")
+    public ResponseEntity<Resource> downloadProduct(@PathVariable Long id,
+                                                    @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        return download("products", id, false, ifRange);
+    }
+
+    private ResponseEntity<Resource> respond(FileDownloadService.Download download, boolean inline, String ifRange,
+                                             CacheControl cacheControl) {
+        Resource body = download.resource();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(download.fileName(), inline))
+                .contentType(mediaType(download.contentType()));
+        if (download.etag() != null) response.eTag(download.etag());
+        if (download.lastModified() != null) response.lastModified(download.lastModified());
+        if (cacheControl != null) response.cacheControl(cacheControl);
+
+        if (ifRange != null && !ifRangeMatches(ifRange, download)) {
+            // If-Range non corrisponde: il client ha una versione diversa, serve il file intero.
+            // Un InputStreamResource fa saltare a Spring la gestione del Range.
+            try {
+                long length = body.contentLength();
+                body = new InputStreamResource(body.getInputStream());
+                response.contentLength(length);
+            } catch (IOException e) {
+                return ResponseEntity.notFound().build();
+            }
+        }
+        return response.body(body);
+    }
+
+    private static boolean isMedia(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("video/") || type.startsWith("audio/");
+    }
+
+    private static FileDownloadService.Kind parseKind(String kind) {
+        try {
+            return FileDownloadService.Kind.valueOf(kind.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean ifRangeMatches(String ifRange, FileDownloadService.Download download) {
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // solo confronto forte (RFC 9110, 13.1.5)
+            return download.etag() != null && value.equals(download.etag());
+        }
+        if (download.lastModified() == null) return false;
+        try {
+            Instant date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return date.equals(download.lastModified().truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String contentDisposition(String fileName, boolean inline) {
+        ContentDisposition.Builder builder = inline ? ContentDisposition.inline() : ContentDisposition.attachment();
+        if (fileName != null) builder.filename(fileName, StandardCharsets.UTF_8);
+        return builder.build().toString();
+    }
+
+    private static MediaType mediaType(String contentType) {
+        if (contentType != null) {
+            try {
+                return MediaType.parseMediaType(contentType);
+            } catch (Exception e) {
+                // tipo non valido (es. solo l'estensione): si usa il default
+            }
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+}
@@ -0,0 +1,65 @@
+package io.bootify.my_app.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limita gli stream multimediali contemporanei per sessione (o per indirizzo,
+ * senza sessione) a {@code media.stream.max-per-session}. Oltre il limite la
+ * richiesta riceve 429: il player la ripete, tipicamente dopo che il seek
+ * precedente è stato interrotto.
+ */
+@Component
+public class MediaStreamLimiter implements HandlerInterceptor {
+
+    private static final String SLOT_ATTRIBUTE = MediaStreamLimiter.class.getName() + ".slot";
+
+    private final int maxPerSession;
+    private final Map<String, Integer> active = new ConcurrentHashMap<>();
+
+    public MediaStreamLimiter(@Value("${media.stream.max-per-session:4}") int maxPerSession) {
+        this.maxPerSession = maxPerSession;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        String owner = owner(request);
+        boolean[] acquired = new boolean[1];
+        active.compute(owner, (key, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= maxPerSession) return count;
+            acquired[0] = true;
+            return current + 1;
+        });
+        if (!acquired[0]) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many concurrent media streams");
+            return false;
+        }
+        request.setAttribute(SLOT_ATTRIBUTE, owner);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object owner = request.getAttribute(SLOT_ATTRIBUTE);
+        if (owner == null) return;
+        request.removeAttribute(SLOT_ATTRIBUTE);
+        active.computeIfPresent((String) owner, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static String owner(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        return session != null ? "session:" + session.getId() : "addr:" + request.getRemoteAddr();
+    }
+}
@@ -1,39 +1,198 @@
 package io.bootify.my_app.rest;
 
+import io.bootify.my_app.service.PreviewRenderPipeline;
 import io.bootify.my_app.service.PreviewService;
+import io.bootify.my_app.service.RenderBulkhead;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/preview")
 public class PreviewController {
 
     private final PreviewService previewService;
+    private final PreviewRenderPipeline renderPipeline;
 
-    public PreviewController(PreviewService previewService) {
+    @Value("${preview.pipeline.inline-wait-ms:1500}")
+    private long inlineWaitMs;
+
+    @Value("${preview.pipeline.retry-after-seconds:2}")
+    private int retryAfterSeconds;
+
+    public PreviewController(PreviewService previewService, PreviewRenderPipeline renderPipeline) {
         this.previewService = previewService;
+        this.renderPipeline = renderPipeline;
     }
 
     /**
      * Restituisce l'anteprima (PNG) della prima pagina del documento.
      * Supporta: PDF, PPTX, PPT, DOCX, DOC, XLSX, XLS, immagini.
      * Il server scarica il file da originalPath (URL) o usa i dati salvati nel DB.
+     * Le anteprime renderizzate hanno un ETag forte: una richiesta con
+     * If-None-Match corrispondente riceve 304 senza passare dal renderer.
+     * Se l'anteprima non è in cache il render viene accodato alla pipeline in
+     * background: se non termina entro {@code preview.pipeline.inline-wait-ms}
+     * si risponde 202 con un'immagine segnaposto e l'header Retry-After; con
+     * coda piena o bulkhead saturo 503 e Retry-After, se il render fallisce 500.
+     * <p>
+     * {@code w} chiede una miniatura (arrotondata a 160/320/800 px), {@code format}
+     * il formato ({@code png} o {@code jpeg}); senza {@code format} una miniatura
+     * viene servita in JPEG se l'header Accept lo consente.
      */
-    @GetMapping(value = "/{id}", produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<byte[]> getPreview(@PathVariable Long id) {
-        byte[] png = previewService.generatePreview(id);
-        if (png == null || png.length == 0) {
+    @GetMapping(value = "/{id}", produces = {MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE})
+    public ResponseEntity<byte[]> getPreview(@PathVariable Long id,
+                                             @RequestParam(value = "w", required = false) Integer width,
+                                             @RequestParam(value = "format", required = false) String format,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        PreviewService.ImageFormat imageFormat = PreviewService.ImageFormat.parse(format);
+        boolean negotiated = imageFormat == null && width != null;
+        if (negotiated) {
+            imageFormat = acceptsJpeg(accept) ? PreviewService.ImageFormat.JPEG : PreviewService.ImageFormat.PNG;
+        }
+        PreviewService.Variant variant = PreviewService.Variant.of(width, imageFormat);
+
+        if (ifNoneMatch != null) {
+            String etag = previewService.previewETag(id, variant);
+            if (etag != null && matches(ifNoneMatch, etag)) {
+                ResponseEntity.HeadersBuilder<?> notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic());
+                if (negotiated) notModified.varyBy(HttpHeaders.ACCEPT);
+                return notModified.build();
+            }
+        }
+
+        PreviewService.Preview preview = previewService.findCachedPreview(id, variant);
+        if (preview == null) {
+            try {
+                preview = renderPipeline.enqueue(id, PreviewRenderPipeline.Priority.INTERACTIVE)
+                        .get(inlineWaitMs, TimeUnit.MILLISECONDS);
+                if (preview != null && preview.etag() != null && !variant.isOriginal()) {
+                    // il render produce l'originale: la variante ne deriva
+                    PreviewService.Preview derived = previewService.findCachedPreview(id, variant);
+                    if (derived != null) preview = derived;
+                }
+            } catch (TimeoutException e) {
+                return renderingResponse();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return unavailableResponse();
+            } catch (ExecutionException e) {
+                // coda piena o bulkhead saturo: 503 con Retry-After; render fallito: 500, niente in cache
+                if (e.getCause() instanceof RejectedExecutionException
+                        || e.getCause() instanceof RenderBulkhead.RejectedException) {
+                    return unavailableResponse();
+                }
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+        }
+        if (preview == null || preview.data() == null || preview.data().length == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(preview.contentType()));
+        if (preview.etag() != null) {
+            response.eTag(preview.etag())
+                    .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic());
+        } else {
+            // placeholder o ripiego (bulkhead saturo, file mancante): al prossimo accesso può esserci il render vero
+            response.cacheControl(CacheControl.noStore());
+        }
+        if (negotiated) {
+            response.varyBy(HttpHeaders.ACCEPT);
+        }
+        return response.body(preview.data());
+    }
+
+    /**
+     * Anteprima PNG di una singola pagina di un PDF ({@code n} parte da 1) alla
+     * risoluzione richiesta (36–300 DPI). Il documento viene aperto da file con
+     * heap limitato e resta aperto per le pagine successive.
+     */
+    @GetMapping(value = "/{id}/pages/{n}", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getPagePreview(@PathVariable Long id,
+                                                 @PathVariable("n") int pageNumber,
+                                                 @RequestParam(value = "dpi", defaultValue = "150") int dpi,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            String etag = previewService.pagePreviewETag(id, pageNumber, dpi);
+            if (etag != null && matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                        .build();
+            }
+        }
+
+        PreviewService.Preview preview;
+        try {
+            preview = previewService.findPagePreview(id, pageNumber, dpi);
+        } catch (RenderBulkhead.RejectedException e) {
+            return unavailableResponse();
+        }
+        if (preview == null) {
             return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok()
                 .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
-                .body(png);
+                .eTag(preview.etag())
+                .body(preview.data());
+    }
+
+    /** Stato della pipeline di pre-rendering, utile per dimensionare il pool. */
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Object>> getPipelineStats() {
+        return ResponseEntity.ok(renderPipeline.stats());
+    }
+
+    private ResponseEntity<byte[]> renderingResponse() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .cacheControl(CacheControl.noStore())
+                .contentType(MediaType.IMAGE_PNG)
+                .body(previewService.renderingPlaceholder());
+    }
+
+    private ResponseEntity<byte[]> unavailableResponse() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .cacheControl(CacheControl.noStore())
+                .build();
+    }
+
+    private boolean acceptsJpeg(String accept) {
+        if (accept == null || accept.isBlank()) return true;
+        try {
+            return MediaType.parseMediaTypes(accept).stream()
+                    .anyMatch(type -> type.includes(MediaType.IMAGE_JPEG));
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private boolean matches(String ifNoneMatch, String etag) {
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(candidate -> candidate.equals("*") || candidate.equals(etag));
     }
 }
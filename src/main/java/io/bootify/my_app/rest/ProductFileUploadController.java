@@ -1,5 +1,10 @@
 package io.bootify.my_app.rest;
 
+import io.bootify.my_app.domain.Product;
+import io.bootify.my_app.model.UploadSessionRequest;
+import io.bootify.my_app.service.ChunkedUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -23,6 +28,12 @@ public class ProductFileUploadController {
     @Value("${product.upload.directory:uploads/products}")
     private String uploadDirectory;
 
+    private final ChunkedUploadService chunkedUploadService;
+
+    public ProductFileUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
     @PostMapping
     public ResponseEntity<Map<String, Object>> uploadProductFile(
             @RequestParam("file") MultipartFile file,
@@ -71,6 +82,73 @@ public class ProductFileUploadController {
         }
     }
 
+    /**
+     * Upload riprendibile, passo 1: apre una sessione per un file di {@code size}
+     * byte. La risposta indica dimensione e numero dei blocchi; se il contenuto
+     * (SHA-256 dichiarato) è già presente contiene anche {@code proofChallenge}:
+     * invece dei blocchi si può rispondere alla sfida ({@code /proof}).
+     */
+    @PostMapping("/sessions")
+    public ResponseEntity<ChunkedUploadService.SessionStatus> createSession(
+            @RequestBody @Valid UploadSessionRequest request) throws IOException {
+        return new ResponseEntity<>(chunkedUploadService.create(request), HttpStatus.CREATED);
+    }
+
+    /**
+     * Passo 2: invia il blocco {@code index} come corpo grezzo della richiesta,
+     * con il suo SHA-256 (esadecimale) nell'header {@code X-Chunk-SHA256}. I blocchi
+     * possono arrivare in qualsiasi ordine e in parallelo; un blocco fallito si rinvia.
+     */
+    @PutMapping("/sessions/{sessionId}/chunks/{index}")
+    public ResponseEntity<ChunkedUploadService.SessionStatus> uploadChunk(
+            @PathVariable String sessionId, @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256,
+            HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.writeChunk(sessionId, index, sha256, request.getInputStream()));
+    }
+
+    /** Intervalli di byte già ricevuti: dopo un'interruzione si rinviano solo quelli mancanti. */
+    @GetMapping("/sessions/{sessionId}")
+    public ResponseEntity<ChunkedUploadService.SessionStatus> getSession(@PathVariable String sessionId) {
+        return ResponseEntity.ok(chunkedUploadService.status(sessionId));
+    }
+
+    /** Passo 3: verifica il file completo e lo associa al prodotto. */
+    @PostMapping("/sessions/{sessionId}/complete")
+    public ResponseEntity<Map<String, Object>> completeSession(@PathVariable String sessionId) throws IOException {
+        return ResponseEntity.ok(completed(chunkedUploadService.complete(sessionId), false));
+    }
+
+    /**
+     * In alternativa ai passi 2 e 3, per un contenuto già presente: la risposta
+     * alla {@code proofChallenge} nell'header {@code X-Proof-SHA256}. Se è giusta
+     * il file viene associato al prodotto senza inviare i blocchi (403 altrimenti;
+     * la sfida vale un solo tentativo).
+     */
+    @PostMapping("/sessions/{sessionId}/proof")
+    public ResponseEntity<Map<String, Object>> proveSession(
+            @PathVariable String sessionId,
+            @RequestHeader(value = "X-Proof-SHA256", required = false) String proof) throws IOException {
+        return ResponseEntity.ok(completed(chunkedUploadService.prove(sessionId, proof), true));
+    }
+
+    private static Map<String, Object> completed(Product product, boolean deduplicated) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("productId", product.getId());
+        response.put("filename", product.getFileName());
+        response.put("size", product.getFileSize());
+        response.put("sha256", product.getFileHash());
+        response.put("deduplicated", deduplicated);
+        return response;
+    }
+
+    @DeleteMapping("/sessions/{sessionId}")
+    public ResponseEntity<Void> cancelSession(@PathVariable String sessionId) {
+        chunkedUploadService.cancel(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/info")
     public ResponseEntity<Map<String, String>> getUploadInfo() {
         Map<String, String> info = new HashMap<>();
@@ -0,0 +1,25 @@
+package io.bootify.my_app.rest;
+
+import io.bootify.my_app.service.CompressionStats;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/** Risparmi della compressione trasparente (colonne TEXT e blob store) dall'avvio. */
+@RestController
+@RequestMapping("/api/storage/compression")
+public class StorageCompressionResource {
+
+    private final CompressionStats compressionStats;
+
+    public StorageCompressionResource(CompressionStats compressionStats) {
+        this.compressionStats = compressionStats;
+    }
+
+    @GetMapping
+    public List<CompressionStats.TargetReport> report() {
+        return compressionStats.report();
+    }
+}
@@ -0,0 +1,194 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Job notturno sul {@link BlobStore} content-addressed:
+ * <ol>
+ *   <li>ricalcola i riferimenti da contents, file_uploads e products e corregge
+ *       {@code blob_refs} (le cancellazioni bulk non passano dal listener);</li>
+ *   <li>elimina i blob senza riferimenti più vecchi di {@code blob.gc.grace-ms},
+ *       esclusi quelli ancora in attesa di replica;</li>
+ *   <li>produce un {@link BlobGcReport} con lo spazio risparmiato dalla
+ *       deduplicazione e quello recuperato.</li>
+ * </ol>
+ * Il job legge la dimensione di ogni blob e può durare a lungo: gira su un thread
+ * suo, non su quello condiviso dei job {@code @Scheduled}.
+ */
+@Component
+public class BlobGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobGarbageCollector.class);
+
+    private static final String REFERENCES_SQL =
+            "SELECT blob_key, COUNT(*) FROM ("
+                    + " SELECT blob_key FROM contents WHERE blob_key IS NOT NULL"
+                    + " UNION ALL SELECT blob_key FROM file_uploads WHERE blob_key IS NOT NULL"
+                    + " UNION ALL SELECT blob_key FROM products WHERE blob_key IS NOT NULL"
+                    + ") r GROUP BY blob_key";
+
+    public record BlobGcReport(long blobs, long physicalBytes, long logicalBytes, long dedupSavedBytes,
+                               int deleted, long reclaimedBytes, int refCountsCorrected, OffsetDateTime finishedAt) {}
+
+    private final BlobStore blobStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final long graceMs;
+    private final Counter reclaimed;
+
+    private volatile BlobGcReport lastReport;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blob-gc");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BlobGarbageCollector(BlobStore blobStore, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                @Value("${blob.gc.grace-ms:86400000}") long graceMs) {
+        this.blobStore = blobStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.graceMs = graceMs;
+        this.reclaimed = Counter.builder("blob.gc.reclaimed.bytes")
+                .description("Byte liberati dal GC dei blob")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${blob.gc.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        worker.execute(() -> {
+            try {
+                run();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Blob GC failed: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public synchronized BlobGcReport run() throws IOException {
+        Map<String, Integer> references = new HashMap<>();
+        jdbcTemplate.query(REFERENCES_SQL, rs -> {
+            references.put(rs.getString(1), rs.getInt(2));
+        });
+        int corrected = reconcile(references);
+
+        Set<String> pendingReplication = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT blob_key FROM replication_outbox WHERE status <> 'SENT'", String.class));
+        Instant cutoff = Instant.now().minusMillis(graceMs);
+
+        long blobs = 0, physical = 0, logical = 0, reclaimedBytes = 0;
+        int deleted = 0;
+        List<String> keys;
+        try (Stream<String> stream = blobStore.keys()) {
+            keys = stream.toList();
+        }
+        for (String key : keys) {
+            long size;
+            try {
+                size = blobStore.size(key);
+            } catch (IOException e) {
+                continue; // eliminato nel frattempo
+            }
+            int refs = references.getOrDefault(key, 0);
+            if (refs == 0 && !pendingReplication.contains(key)
+                    && blobStore.lastModified(key).isBefore(cutoff)
+                    && stillUnreferenced(key)
+                    // ricontrollo atomico: un upload deduplicato può averlo appena rinfrescato
+                    && blobStore.deleteIfOlderThan(key, cutoff)) {
+                jdbcTemplate.update("DELETE FROM blob_refs WHERE blob_key = ? AND ref_count = 0", key);
+                deleted++;
+                reclaimedBytes += size;
+                continue;
+            }
+            blobs++;
+            physical += size;
+            logical += size * Math.max(refs, 1);
+        }
+
+        reclaimed.increment(reclaimedBytes);
+        BlobGcReport report = new BlobGcReport(blobs, physical, logical, logical - physical,
+                deleted, reclaimedBytes, corrected, OffsetDateTime.now());
+        lastReport = report;
+        log.info("Blob GC: {} blobs, {} bytes stored for {} bytes referenced (dedup saved {}), "
+                        + "deleted {} ({} bytes), {} ref counts corrected",
+                blobs, physical, logical, report.dedupSavedBytes(), deleted, reclaimedBytes, corrected);
+        return report;
+    }
+
+    public BlobGcReport getLastReport() {
+        return lastReport;
+    }
+
+    /** Allinea blob_refs ai riferimenti effettivi; restituisce quante righe sono cambiate. */
+    private int reconcile(Map<String, Integer> references) {
+        Map<String, Integer> stored = new HashMap<>();
+        jdbcTemplate.query("SELECT blob_key, ref_count FROM blob_refs", rs -> {
+            stored.put(rs.getString(1), rs.getInt(2));
+        });
+        OffsetDateTime now = OffsetDateTime.now();
+        int corrected = 0;
+        for (Map.Entry<String, Integer> entry : references.entrySet()) {
+            Integer current = stored.get(entry.getKey());
+            if (current == null) {
+                Long size = blobStore.exists(entry.getKey()) ? sizeOrNull(entry.getKey()) : null;
+                jdbcTemplate.update("INSERT INTO blob_refs (blob_key, ref_count, size, last_changed) VALUES (?, ?, ?, ?)",
+                        entry.getKey(), entry.getValue(), size, now);
+                corrected++;
+            } else if (current.intValue() != entry.getValue()) {
+                jdbcTemplate.update("UPDATE blob_refs SET ref_count = ?, last_changed = ? WHERE blob_key = ?",
+                        entry.getValue(), now, entry.getKey());
+                corrected++;
+            }
+        }
+        for (Map.Entry<String, Integer> entry : stored.entrySet()) {
+            if (entry.getValue() != 0 && !references.containsKey(entry.getKey())) {
+                jdbcTemplate.update("UPDATE blob_refs SET ref_count = 0, last_changed = ? WHERE blob_key = ?",
+                        now, entry.getKey());
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    /** Ricontrolla subito prima di eliminare: un upload può aver referenziato il blob durante il job. */
+    private boolean stillUnreferenced(String key) {
+        Integer refs = jdbcTemplate.queryForObject(
+                "SELECT (SELECT COUNT(*) FROM contents WHERE blob_key = ?)"
+                        + " + (SELECT COUNT(*) FROM file_uploads WHERE blob_key = ?)"
+                        + " + (SELECT COUNT(*) FROM products WHERE blob_key = ?)",
+                Integer.class, key, key, key);
+        return refs != null && refs == 0;
+    }
+
+    private Long sizeOrNull(String key) {
+        try {
+            return blobStore.size(key);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.bootify.my_app.service;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+
+/**
+ * Conteggio dei riferimenti ai blob ({@code blob_refs}). Viene chiamato da
+ * {@code BlobReferenceListener} durante il flush, quindi usa la stessa
+ * connessione e la stessa transazione dell'entità che cambia.
+ */
+@Service
+public class BlobReferenceService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+
+    public BlobReferenceService(JdbcTemplate jdbcTemplate, BlobStore blobStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+    }
+
+    public void acquire(String blobKey) {
+        if (blobKey == null) return;
+        OffsetDateTime now = OffsetDateTime.now();
+        int updated = jdbcTemplate.update(
+                "UPDATE blob_refs SET ref_count = ref_count + 1, last_changed = ? WHERE blob_key = ?",
+                now, blobKey);
+        if (updated > 0) return;
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO blob_refs (blob_key, ref_count, size, last_changed) VALUES (?, 1, ?, ?)",
+                    blobKey, sizeOf(blobKey), now);
+        } catch (DuplicateKeyException e) {
+            // inserita nel frattempo da un'altra transazione
+            jdbcTemplate.update(
+                    "UPDATE blob_refs SET ref_count = ref_count + 1, last_changed = ? WHERE blob_key = ?",
+                    now, blobKey);
+        }
+    }
+
+    public void release(String blobKey) {
+        if (blobKey == null) return;
+        jdbcTemplate.update(
+                "UPDATE blob_refs SET ref_count = CASE WHEN ref_count > 0 THEN ref_count - 1 ELSE 0 END, "
+                        + "last_changed = ? WHERE blob_key = ?",
+                OffsetDateTime.now(), blobKey);
+    }
+
+    public int refCount(String blobKey) {
+        Integer count = jdbcTemplate.query("SELECT ref_count FROM blob_refs WHERE blob_key = ?",
+                rs -> rs.next() ? rs.getInt(1) : 0, blobKey);
+        return count != null ? count : 0;
+    }
+
+    private Long sizeOf(String blobKey) {
+        try {
+            return blobStore.size(blobKey);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
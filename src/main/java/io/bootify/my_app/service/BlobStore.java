@@ -0,0 +1,70 @@
+package io.bootify.my_app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Archivio dei contenuti binari dei file, separato dalle entità JPA: le entità
+ * conservano solo il riferimento ({@code blobKey}), la dimensione e l'hash.
+ * Letture e scritture sono sempre in streaming.
+ */
+public interface BlobStore {
+
+    /** Blob memorizzato: {@code key} è il riferimento da salvare sull'entità. */
+    record StoredBlob(String key, long size, String sha256) {}
+
+    /** Memorizza il contenuto dello stream (che viene consumato e chiuso). */
+    StoredBlob put(InputStream in) throws IOException;
+
+    /**
+     * Memorizza un file già presente su disco di cui è noto lo SHA-256 (es. uno
+     * {@link SpooledUpload}). Il file può essere spostato nello store: dopo la
+     * chiamata il chiamante non deve più usarlo.
+     */
+    default StoredBlob putFile(Path file, String sha256) throws IOException {
+        return put(Files.newInputStream(file));
+    }
+
+    InputStream openStream(String key) throws IOException;
+
+    /**
+     * Come {@link #openStream}, per letture di manutenzione (verifiche, copie) che
+     * non devono contare come accessi al blob.
+     */
+    default InputStream openStreamUntracked(String key) throws IOException {
+        return openStream(key);
+    }
+
+    ReadableByteChannel openChannel(String key) throws IOException;
+
+    boolean exists(String key);
+
+    long size(String key) throws IOException;
+
+    /**
+     * File locale del blob, se l'implementazione ne ha uno: permette a chi lavora
+     * su file (es. PDF memory-mapped) di evitare una copia.
+     */
+    Optional<Path> localPath(String key);
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Elimina il blob solo se non è stato scritto (né ricaricato con la deduplica)
+     * da {@code cutoff}: controllo ed eliminazione sono atomici rispetto agli upload
+     * dello stesso contenuto. Restituisce {@code true} se il blob è stato eliminato.
+     */
+    boolean deleteIfOlderThan(String key, Instant cutoff) throws IOException;
+
+    /** Chiavi di tutti i blob memorizzati (per GC e verifiche); lo stream va chiuso. */
+    Stream<String> keys() throws IOException;
+
+    /** Ultima scrittura del blob: protegge dal GC i blob appena caricati e non ancora referenziati. */
+    Instant lastModified(String key) throws IOException;
+}
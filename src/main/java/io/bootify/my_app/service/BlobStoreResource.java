@@ -0,0 +1,48 @@
+package io.bootify.my_app.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link org.springframework.core.io.Resource} su un blob che non ha un file
+ * locale leggibile così com'è (es. memorizzato compresso): ogni
+ * {@link #getInputStream()} riapre il blob, quindi Spring può servirne anche
+ * intervalli (Range) saltando i byte iniziali.
+ */
+public class BlobStoreResource extends AbstractResource {
+
+    private final BlobStore blobStore;
+    private final String key;
+
+    public BlobStoreResource(BlobStore blobStore, String key) {
+        this.blobStore = blobStore;
+        this.key = key;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return blobStore.openStream(key);
+    }
+
+    @Override
+    public boolean exists() {
+        return blobStore.exists(key);
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return blobStore.size(key);
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return blobStore.lastModified(key).toEpochMilli();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Blob [" + key + "]";
+    }
+}
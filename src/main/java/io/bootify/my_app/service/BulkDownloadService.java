@@ -0,0 +1,133 @@
+package io.bootify.my_app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archivio ZIP di più file (selezione di una griglia) scritto direttamente
+ * sullo stream della risposta: ogni file viene letto dallo storage e copiato
+ * nell'entry, senza archivi temporanei né file interi in memoria.
+ * <p>
+ * Il livello di compressione dipende dal tipo: i formati già compressi
+ * (immagini, audio/video, archivi, documenti Office) passano senza
+ * ricompressione, i testi con il livello di default, il resto con il più veloce.
+ */
+@Service
+public class BulkDownloadService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkDownloadService.class);
+
+    public static final int MAX_ENTRIES = 1000;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "avif", "heic",
+            "mp4", "m4v", "mov", "mkv", "webm", "avi", "mp3", "m4a", "aac", "ogg", "opus", "flac",
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub");
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+            "txt", "csv", "tsv", "json", "xml", "html", "htm", "md", "log", "svg", "yml", "yaml", "srt", "vtt");
+
+    private final FileDownloadService fileDownloadService;
+
+    public BulkDownloadService(FileDownloadService fileDownloadService) {
+        this.fileDownloadService = fileDownloadService;
+    }
+
+    /**
+     * Scrive lo ZIP dei file {@code ids} su {@code out} (che non viene chiuso).
+     * Gli id senza file vengono saltati. Restituisce il numero di entry scritte.
+     */
+    public int writeZip(FileDownloadService.Kind kind, Collection<Long> ids, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Set<String> names = new HashSet<>();
+        int written = 0;
+        for (Long id : ids) {
+            Optional<FileDownloadService.Download> found = fileDownloadService.find(kind, id);
+            if (found.isEmpty()) {
+                log.debug("Bulk download: no file for {} {}", kind, id);
+                continue;
+            }
+            FileDownloadService.Download download = found.get();
+            InputStream in;
+            try {
+                in = download.resource().getInputStream();
+            } catch (IOException e) {
+                log.warn("Bulk download: skipping {} {}: {}", kind, id, e.getMessage());
+                continue;
+            }
+            try (in) {
+                String name = uniqueName(names, download.fileName() != null
+                        ? download.fileName() : kind.name().toLowerCase(Locale.ROOT) + "-" + id);
+                ZipEntry entry = new ZipEntry(name);
+                if (download.lastModified() != null) {
+                    entry.setLastModifiedTime(FileTime.from(download.lastModified()));
+                }
+                zip.setLevel(compressionLevel(download.contentType(), name));
+                zip.putNextEntry(entry);
+                in.transferTo(zip);
+                zip.closeEntry();
+            }
+            zip.flush();
+            written++;
+        }
+        zip.finish();
+        return written;
+    }
+
+    /**
+     * Livello di deflate per l'entry. Per i formati già compressi si usa
+     * {@link Deflater#NO_COMPRESSION}: i byte vengono copiati così come sono,
+     * senza la doppia lettura che un'entry STORED (CRC e dimensione in testa)
+     * richiederebbe.
+     */
+    static int compressionLevel(String contentType, String fileName) {
+        String type = contentType != null ? contentType.toLowerCase(Locale.ROOT) : "";
+        String extension = extension(fileName);
+        if (type.startsWith("video/") || (type.startsWith("audio/") && !type.contains("wav"))
+                || type.equals("image/jpeg") || type.equals("image/png") || type.equals("image/gif")
+                || type.equals("image/webp") || type.contains("zip") || type.contains("compressed")
+                || type.startsWith("application/vnd.openxmlformats") || type.startsWith("application/vnd.oasis")
+                || COMPRESSED_EXTENSIONS.contains(extension)) {
+            return Deflater.NO_COMPRESSION;
+        }
+        if (type.startsWith("text/") || type.contains("json") || type.contains("xml")
+                || TEXT_EXTENSIONS.contains(extension)) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        return Deflater.BEST_SPEED;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /** Nomi duplicati diventano {@code nome (2).ext}, {@code nome (3).ext}, ... */
+    private static String uniqueName(Set<String> names, String fileName) {
+        String name = fileName.replace('\\', '_').replace('/', '_');
+        if (names.add(name.toLowerCase(Locale.ROOT))) return name;
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            String candidate = base + " (" + i + ")" + ext;
+            if (names.add(candidate.toLowerCase(Locale.ROOT))) return candidate;
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Product;
+import io.bootify.my_app.model.UploadSessionRequest;
+import io.bootify.my_app.util.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Upload riprendibili a blocchi dei file dei prodotti.
+ * <p>
+ * Una sessione dichiara dimensione e dimensione dei blocchi; ogni blocco arriva
+ * con il suo SHA-256, in qualsiasi ordine e anche in parallelo, e una volta
+ * verificato viene copiato alla sua posizione nel file finale ({@code data.part}):
+ * alla chiusura non c'è alcuna concatenazione, il file viene spostato nel
+ * {@link BlobStore}. Lo SHA-256 del file intero si calcola rileggendo da
+ * {@code data.part} (dalla page cache) i blocchi ricevuti man mano che il prefisso
+ * contiguo cresce: la chiave del blob corrisponde sempre ai byte sul disco.
+ * <p>
+ * Se lo SHA-256 dichiarato corrisponde a un blob già presente (con la stessa
+ * dimensione), la sessione contiene una sfida ({@link ProofChallenge}): chi
+ * risponde con l'hash giusto di un intervallo casuale del file dimostra di averlo
+ * e il file viene associato al prodotto senza inviare i blocchi. Conoscere lo
+ * SHA-256 di un file non basta quindi per ottenerlo.
+ * <p>
+ * Lo stato (metadati e blocchi ricevuti) sta su disco, quindi una sessione
+ * sopravvive ai riavvii; le sessioni inattive da {@code product.upload.session-ttl-ms}
+ * vengono eliminate.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int PROOF_BYTES = 64 * 1024;
+    private static final int NONCE_BYTES = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final String META_FILE = "session.properties";
+    private static final String RECEIVED_FILE = "received.bits";
+    private static final String DATA_FILE = "data.part";
+
+    /** Intervallo di byte ricevuto, estremi inclusi come nell'header Range. */
+    public record ByteRange(long first, long last) {}
+
+    /**
+     * Sfida per la deduplica: la prova è lo SHA-256 (esadecimale) dei byte del
+     * {@code nonce} (esadecimale) seguiti dai byte {@code [offset, offset + length)}
+     * del file.
+     */
+    public record ProofChallenge(long offset, int length, String nonce) {}
+
+    /** {@code proofChallenge} è presente solo se il contenuto dichiarato è già nello store. */
+    public record SessionStatus(String sessionId, Long productId, String fileName, long size,
+                                int chunkSize, int chunkCount, long receivedBytes,
+                                List<ByteRange> receivedRanges, boolean complete, ProofChallenge proofChallenge) {}
+
+    private final ProductService productService;
+    private final BlobStore blobStore;
+    private final Path directory;
+    private final long maxFileBytes;
+    private final long sessionTtlMs;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(ProductService productService, BlobStore blobStore,
+                                @Value("${product.upload.session-directory:data/upload-sessions}") String directory,
+                                @Value("${product.upload.max-file-bytes:10737418240}") long maxFileBytes,
+                                @Value("${product.upload.session-ttl-ms:86400000}") long sessionTtlMs) {
+        this.productService = productService;
+        this.blobStore = blobStore;
+        this.directory = Paths.get(directory);
+        this.maxFileBytes = maxFileBytes;
+        this.sessionTtlMs = sessionTtlMs;
+    }
+
+    public SessionStatus create(UploadSessionRequest request) throws IOException {
+        if (productService.findById(request.getProductId()) == null) {
+            throw new NotFoundException("Product not found with ID: " + request.getProductId());
+        }
+        if (request.getSize() > maxFileBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "File exceeds " + maxFileBytes + " bytes");
+        }
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : DEFAULT_CHUNK_SIZE;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "chunkSize must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE);
+        }
+
+        Session session = new Session(UUID.randomUUID().toString().replace("-", ""));
+        session.productId = request.getProductId();
+        session.fileName = request.getFileName();
+        session.contentType = request.getContentType();
+        session.uploadedBy = request.getUploadedBy();
+        session.expectedSha256 = request.getSha256() != null ? request.getSha256().toLowerCase() : null;
+        session.size = request.getSize();
+        session.chunkSize = chunkSize;
+        session.chunkCount = (int) ((session.size + chunkSize - 1) / chunkSize);
+        session.received = new BitSet(session.chunkCount);
+        session.fileDigest = sha256();
+        if (session.expectedSha256 != null && blobStore.exists(session.expectedSha256)) {
+            if (blobStore.size(session.expectedSha256) != session.size) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Declared size does not match the stored content with this SHA-256");
+            }
+            // contenuto già nel BlobStore: basta dimostrare di averlo
+            session.challenge = newChallenge(session.size);
+        }
+
+        Files.createDirectories(session.dir);
+        writeMeta(session);
+        writeReceived(session);
+        sessions.put(session.id, session);
+        return status(session);
+    }
+
+    public SessionStatus status(String sessionId) {
+        Session session = get(sessionId);
+        synchronized (session) {
+            return status(session);
+        }
+    }
+
+    /**
+     * Scrive il blocco {@code index} alla sua posizione nel file. Il blocco arriva
+     * in un file temporaneo suo e viene copiato in {@code data.part} solo dopo aver
+     * verificato lunghezza e SHA-256: un invio corrotto o concorrente dello stesso
+     * blocco non tocca mai i dati già ricevuti. Rinviare un blocco già ricevuto non
+     * ha effetto.
+     */
+    public SessionStatus writeChunk(String sessionId, int index, String sha256, InputStream body) throws IOException {
+        Session session = get(sessionId);
+        if (index < 0 || index >= session.chunkCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk index out of range: " + index);
+        }
+        if (sha256 == null || sha256.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing chunk checksum");
+        }
+        synchronized (session) {
+            if (session.received.get(index)) return status(session);
+        }
+        long offset = (long) index * session.chunkSize;
+        long expected = Math.min(session.chunkSize, session.size - offset);
+
+        Path chunk = Files.createTempFile(session.dir, "chunk-" + index + "-", ".tmp");
+        try {
+            receiveChunk(body, chunk, index, expected, sha256);
+
+            synchronized (session) {
+                if (session.received.get(index)) return status(session);
+                if (session.writing.get(index)) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                            "Chunk " + index + " is being written by another request");
+                }
+                session.writing.set(index);
+            }
+            try {
+                copyInto(chunk, session.channel(), offset, expected);
+            } finally {
+                synchronized (session) {
+                    session.writing.clear(index);
+                }
+            }
+
+            synchronized (session) {
+                session.received.set(index);
+                advanceDigest(session);
+                session.lastActivity = System.currentTimeMillis();
+                writeReceived(session);
+                return status(session);
+            }
+        } finally {
+            Files.deleteIfExists(chunk);
+        }
+    }
+
+    /** Scrive il corpo della richiesta in {@code target} verificandone lunghezza e SHA-256. */
+    private static void receiveChunk(InputStream body, Path target, int index, long expected, String sha256)
+            throws IOException {
+        MessageDigest chunkDigest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+        int read;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            while ((read = body.read(buffer)) != -1) {
+                if (written + read > expected) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Chunk " + index + " longer than " + expected + " bytes");
+                }
+                chunkDigest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                written += read;
+            }
+        }
+        if (written != expected) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Chunk " + index + " has " + written + " bytes, expected " + expected);
+        }
+        if (!HexFormat.of().formatHex(chunkDigest.digest()).equalsIgnoreCase(sha256.trim())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Checksum mismatch for chunk " + index);
+        }
+    }
+
+    private static void copyInto(Path chunk, FileChannel target, long offset, long length) throws IOException {
+        try (FileChannel source = FileChannel.open(chunk, StandardOpenOption.READ)) {
+            long copied = 0;
+            while (copied < length) {
+                long n = target.transferFrom(source, offset + copied, length - copied);
+                if (n <= 0) throw new IOException("Short copy of upload chunk at " + (offset + copied));
+                copied += n;
+            }
+        }
+    }
+
+    /**
+     * Deduplica: se {@code proof} risponde alla sfida della sessione, associa al
+     * prodotto il blob già presente senza ricevere i blocchi. La sfida vale un solo
+     * tentativo; se fallisce l'upload prosegue inviando i blocchi.
+     */
+    public Product prove(String sessionId, String proof) throws IOException {
+        Session session = get(sessionId);
+        synchronized (session) {
+            ProofChallenge challenge = session.challenge;
+            if (challenge == null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "No proof challenge for this session");
+            }
+            session.challenge = null;
+            writeMeta(session);
+            if (!MessageDigest.isEqual(proofDigest(session.expectedSha256, challenge), parseHex(proof))) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Proof of possession failed");
+            }
+            Product product = productService.attachStoredFile(session.productId, session.expectedSha256,
+                    session.size, session.fileName, session.contentType, session.uploadedBy);
+            if (product == null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Stored content no longer available, upload the chunks");
+            }
+            discard(session);
+            return product;
+        }
+    }
+
+    /**
+     * Chiude la sessione: verifica che tutti i blocchi siano arrivati e lo SHA-256
+     * dichiarato, sposta il file nel BlobStore e lo associa al prodotto.
+     */
+    public Product complete(String sessionId) throws IOException {
+        Session session = get(sessionId);
+        synchronized (session) {
+            int missing = session.chunkCount - session.received.cardinality();
+            if (missing > 0) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, missing + " chunks still missing");
+            }
+            if (session.fileDigest == null) {
+                // sessione ripresa dopo un riavvio: l'hash parziale era solo in memoria
+                session.fileDigest = sha256();
+                session.hashedChunks = 0;
+            }
+            // l'hash è sempre quello dei byte in data.part, che diventano il blob con questa chiave
+            advanceDigest(session);
+            String sha256 = HexFormat.of().formatHex(session.fileDigest.digest());
+            session.fileDigest = null;
+            if (session.expectedSha256 != null && !session.expectedSha256.equals(sha256)) {
+                discard(session);
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "File checksum mismatch, upload discarded");
+            }
+
+            Product product = productService.findById(session.productId);
+            if (product == null) {
+                discard(session);
+                throw new NotFoundException("Product not found with ID: " + session.productId);
+            }
+            session.channel().force(false);
+            session.closeChannel();
+
+            productService.attachFile(product, new SpooledUpload(session.dir.resolve(DATA_FILE),
+                    session.fileName, session.contentType, session.size, sha256, () -> { }));
+            product.setFileName(session.fileName);
+            product.setFileType(session.contentType);
+            product.setUploadedBy(session.uploadedBy);
+            Product saved = productService.save(product);
+            discard(session);
+            return saved;
+        }
+    }
+
+    public void cancel(String sessionId) {
+        Session session = get(sessionId);
+        synchronized (session) {
+            discard(session);
+        }
+    }
+
+    @Scheduled(fixedDelay = 600_000, initialDelay = 120_000)
+    public void purgeAbandoned() {
+        if (!Files.isDirectory(directory)) return;
+        long threshold = System.currentTimeMillis() - sessionTtlMs;
+        try (Stream<Path> dirs = Files.list(directory)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                String id = dir.getFileName().toString();
+                Session open = sessions.get(id);
+                long lastActivity = open != null ? open.lastActivity : lastModified(dir);
+                if (lastActivity >= threshold) continue;
+                if (open != null) {
+                    synchronized (open) {
+                        discard(open);
+                    }
+                } else {
+                    deleteDirectory(dir);
+                }
+                log.info("Discarded abandoned upload session {}", id);
+            }
+        } catch (IOException e) {
+            log.warn("Upload session cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+
+    private Session get(String sessionId) {
+        if (sessionId == null || !sessionId.matches("[0-9a-f]{32}")) {
+            throw new NotFoundException("Upload session not found");
+        }
+        Session session = sessions.computeIfAbsent(sessionId, this::load);
+        if (session == null || session.discarded) {
+            throw new NotFoundException("Upload session not found");
+        }
+        return session;
+    }
+
+    private Session load(String sessionId) {
+        Session session = new Session(sessionId);
+        Path meta = session.dir.resolve(META_FILE);
+        if (!Files.isReadable(meta)) return null;
+        try (InputStream in = Files.newInputStream(meta)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            session.productId = Long.valueOf(properties.getProperty("productId"));
+            session.fileName = properties.getProperty("fileName");
+            session.contentType = properties.getProperty("contentType");
+            session.uploadedBy = properties.getProperty("uploadedBy");
+            session.expectedSha256 = properties.getProperty("sha256");
+            if (properties.getProperty("proofNonce") != null) {
+                session.challenge = new ProofChallenge(Long.parseLong(properties.getProperty("proofOffset")),
+                        Integer.parseInt(properties.getProperty("proofLength")), properties.getProperty("proofNonce"));
+            }
+            session.size = Long.parseLong(properties.getProperty("size"));
+            session.chunkSize = Integer.parseInt(properties.getProperty("chunkSize"));
+            session.chunkCount = (int) ((session.size + session.chunkSize - 1) / session.chunkSize);
+            Path received = session.dir.resolve(RECEIVED_FILE);
+            session.received = Files.exists(received)
+                    ? BitSet.valueOf(Files.readAllBytes(received))
+                    : new BitSet(session.chunkCount);
+            session.lastActivity = lastModified(session.dir);
+            return session;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Upload session {} unreadable: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Aggiorna l'hash del file con i blocchi già ricevuti che seguono il prefisso. */
+    private void advanceDigest(Session session) throws IOException {
+        if (session.fileDigest == null) return;
+        if (session.hashedChunks >= session.chunkCount || !session.received.get(session.hashedChunks)) return;
+        FileChannel channel = session.channel();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (session.hashedChunks < session.chunkCount && session.received.get(session.hashedChunks)) {
+            long position = (long) session.hashedChunks * session.chunkSize;
+            long end = Math.min(position + session.chunkSize, session.size);
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) throw new IOException("Upload data truncated at " + position);
+                buffer.flip();
+                session.fileDigest.update(buffer);
+                position += read;
+            }
+            session.hashedChunks++;
+        }
+    }
+
+    private SessionStatus status(Session session) {
+        List<ByteRange> ranges = new ArrayList<>();
+        int start = session.received.nextSetBit(0);
+        long receivedBytes = 0;
+        while (start >= 0) {
+            int end = session.received.nextClearBit(start);
+            long first = (long) start * session.chunkSize;
+            long last = Math.min((long) end * session.chunkSize, session.size) - 1;
+            ranges.add(new ByteRange(first, last));
+            receivedBytes += last - first + 1;
+            start = session.received.nextSetBit(end);
+        }
+        return new SessionStatus(session.id, session.productId, session.fileName, session.size,
+                session.chunkSize, session.chunkCount, receivedBytes, ranges,
+                session.received.cardinality() == session.chunkCount, session.challenge);
+    }
+
+    private static ProofChallenge newChallenge(long size) {
+        int length = (int) Math.min(size, PROOF_BYTES);
+        long offset = size > length ? RANDOM.nextLong(size - length + 1) : 0;
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        return new ProofChallenge(offset, length, HexFormat.of().formatHex(nonce));
+    }
+
+    /** La risposta attesa alla sfida, calcolata sul blob già presente. */
+    private byte[] proofDigest(String key, ProofChallenge challenge) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(HexFormat.of().parseHex(challenge.nonce()));
+        try (InputStream in = blobStore.openStreamUntracked(key)) {
+            in.skipNBytes(challenge.offset());
+            digest.update(in.readNBytes(challenge.length()));
+        }
+        return digest.digest();
+    }
+
+    private static byte[] parseHex(String hex) {
+        try {
+            return hex != null ? HexFormat.of().parseHex(hex.trim().toLowerCase()) : new byte[0];
+        } catch (IllegalArgumentException e) {
+            return new byte[0];
+        }
+    }
+
+    private void writeMeta(Session session) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("productId", String.valueOf(session.productId));
+        properties.setProperty("fileName", session.fileName);
+        if (session.contentType != null) properties.setProperty("contentType", session.contentType);
+        if (session.uploadedBy != null) properties.setProperty("uploadedBy", session.uploadedBy);
+        if (session.expectedSha256 != null) properties.setProperty("sha256", session.expectedSha256);
+        if (session.challenge != null) {
+            properties.setProperty("proofOffset", String.valueOf(session.challenge.offset()));
+            properties.setProperty("proofLength", String.valueOf(session.challenge.length()));
+            properties.setProperty("proofNonce", session.challenge.nonce());
+        }
+        properties.setProperty("size", String.valueOf(session.size));
+        properties.setProperty("chunkSize", String.valueOf(session.chunkSize));
+        try (OutputStream out = Files.newOutputStream(session.dir.resolve(META_FILE))) {
+            properties.store(out, null);
+        }
+    }
+
+    private void writeReceived(Session session) throws IOException {
+        Path target = session.dir.resolve(RECEIVED_FILE);
+        Path tmp = session.dir.resolve(RECEIVED_FILE + ".tmp");
+        Files.write(tmp, session.received.toByteArray());
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void discard(Session session) {
+        session.discarded = true;
+        session.closeChannel();
+        sessions.remove(session.id, session);
+        deleteDirectory(session.dir);
+    }
+
+    private static void deleteDirectory(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete upload session {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static long lastModified(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(f -> {
+                try {
+                    return Files.getLastModifiedTime(f).toMillis();
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).max().orElse(0);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class Session {
+
+        private final String id;
+        private final Path dir;
+        private Long productId;
+        private String fileName;
+        private String contentType;
+        private String uploadedBy;
+        private String expectedSha256;
+        /** Sfida di deduplica ancora valida, se il contenuto è già nello store. */
+        private ProofChallenge challenge;
+        private long size;
+        private int chunkSize;
+        private int chunkCount;
+        private BitSet received;
+        /** Hash dei primi {@code hashedChunks} blocchi, riletti da {@code data.part}; {@code null} dopo un riavvio. */
+        private MessageDigest fileDigest;
+        private int hashedChunks;
+        /** Blocchi in corso di copia in {@code data.part}; solo in memoria. */
+        private final BitSet writing = new BitSet();
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean discarded;
+        private FileChannel channel;
+
+        private Session(String id) {
+            this.id = id;
+            this.dir = directory.resolve(id);
+        }
+
+        private synchronized FileChannel channel() throws IOException {
+            if (discarded) throw new IOException("Upload session discarded");
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(dir.resolve(DATA_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        private synchronized void closeChannel() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nulla da fare
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package io.bootify.my_app.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Insieme di id compresso, sullo schema delle roaring bitmap: gli id sono divisi in
+ * blocchi da 65536 (i 48 bit alti fanno da chiave) e ogni blocco è un array
+ * ordinato di {@code char} se contiene al più {@value #ARRAY_MAX} valori, altrimenti
+ * una bitmap da 8 KB. I blocchi radi costano 2 byte per id, quelli densi 1 bit.
+ * <p>
+ * Intersezioni e unioni lavorano blocco per blocco; {@link #andCardinality} conta
+ * l'intersezione senza costruirla ed è quello che serve per i conteggi delle
+ * faccette. Le istanze restituite da {@link #and} e {@link #or} non condividono
+ * blocchi con gli operandi. Non è thread-safe: la sincronizzazione è del chiamante.
+ */
+final class CompressedBitmap {
+
+    /** Oltre questa cardinalità un blocco conviene come bitmap (4096 × 2 byte = 8 KB). */
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private long[] keys = new long[0];
+    private Container[] containers = new Container[0];
+    private int size;
+
+    static CompressedBitmap of(long[] sortedIds) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (long id : sortedIds) bitmap.add(id);
+        return bitmap;
+    }
+
+    void add(long id) {
+        long key = id >>> 16;
+        int pos = Arrays.binarySearch(keys, 0, size, key);
+        if (pos >= 0) {
+            containers[pos] = containers[pos].add((char) id);
+            return;
+        }
+        pos = -pos - 1;
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        System.arraycopy(containers, pos, containers, pos + 1, size - pos);
+        keys[pos] = key;
+        containers[pos] = new ArrayContainer().add((char) id);
+        size++;
+    }
+
+    void remove(long id) {
+        int pos = Arrays.binarySearch(keys, 0, size, id >>> 16);
+        if (pos < 0) return;
+        Container container = containers[pos].remove((char) id);
+        if (container.cardinality() > 0) {
+            containers[pos] = container;
+            return;
+        }
+        System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+        System.arraycopy(containers, pos + 1, containers, pos, size - pos - 1);
+        containers[--size] = null;
+    }
+
+    boolean contains(long id) {
+        int pos = Arrays.binarySearch(keys, 0, size, id >>> 16);
+        return pos >= 0 && containers[pos].contains((char) id);
+    }
+
+    long cardinality() {
+        long total = 0;
+        for (int i = 0; i < size; i++) total += containers[i].cardinality();
+        return total;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) result.append(keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    long andCardinality(CompressedBitmap other) {
+        long total = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /** Unione di molti insiemi in un passaggio solo: ogni blocco viene copiato al più una volta. */
+    static CompressedBitmap union(Collection<CompressedBitmap> bitmaps) {
+        TreeMap<Long, Container> merged = new TreeMap<>();
+        for (CompressedBitmap bitmap : bitmaps) {
+            for (int i = 0; i < bitmap.size; i++) {
+                Container container = bitmap.containers[i];
+                merged.merge(bitmap.keys[i], container.copy(), Container::or);
+            }
+        }
+        CompressedBitmap result = new CompressedBitmap();
+        for (Map.Entry<Long, Container> entry : merged.entrySet()) result.append(entry.getKey(), entry.getValue());
+        return result;
+    }
+
+    /**
+     * Fino a {@code limit} id in ordine decrescente, saltando i primi {@code skip}:
+     * i blocchi interamente saltati non vengono nemmeno letti.
+     */
+    long[] descending(long skip, int limit) {
+        long[] out = new long[limit];
+        int n = 0;
+        for (int i = size - 1; i >= 0 && n < limit; i--) {
+            int cardinality = containers[i].cardinality();
+            if (skip >= cardinality) {
+                skip -= cardinality;
+                continue;
+            }
+            n = containers[i].descending(keys[i] << 16, (int) skip, out, n);
+            skip = 0;
+        }
+        return n == limit ? out : Arrays.copyOf(out, n);
+    }
+
+    /** Memoria occupata dai blocchi, per le metriche. */
+    long sizeInBytes() {
+        long bytes = size * 16L;
+        for (int i = 0; i < size; i++) bytes += containers[i].sizeInBytes();
+        return bytes;
+    }
+
+    private void append(long key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        keys[size] = key;
+        containers[size++] = container;
+    }
+
+    /** Blocco di 65536 id; le operazioni che cambiano rappresentazione restituiscono il nuovo blocco. */
+    private abstract static sealed class Container permits ArrayContainer, BitmapContainer {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        /** Scrive in {@code out} da {@code n} i valori decrescenti dopo i primi {@code skip}; restituisce il nuovo {@code n}. */
+        abstract int descending(long base, int skip, long[] out, int n);
+
+        abstract long sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos >= 0) return this;
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            pos = -pos - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, Math.min(ARRAY_MAX, cardinality * 2)));
+            }
+            System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+            values[pos] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos < 0) return this;
+            System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[Math.min(cardinality, other.cardinality())];
+            int n = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0, j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        out[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) out[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int n = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0, j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        n++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) n++;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer bitmap) return bitmap.or(this);
+            ArrayContainer array = (ArrayContainer) other;
+            char[] out = new char[cardinality + array.cardinality];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    out[n++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    out[n++] = array.values[j++];
+                } else {
+                    out[n++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer union = new ArrayContainer(out, n);
+            return n > ARRAY_MAX ? union.toBitmap() : union;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+        }
+
+        @Override
+        int descending(long base, int skip, long[] out, int n) {
+            for (int i = cardinality - 1 - skip; i >= 0 && n < out.length; i--) {
+                out[n++] = base | values[i];
+            }
+            return n;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16L + values.length * 2L;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[WORDS], 0);
+            for (int i = 0; i < cardinality; i++) bitmap.add(values[i]);
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before | (1L << value);
+            if (before != words[value >>> 6]) cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before & ~(1L << value);
+            if (before != words[value >>> 6]) cardinality--;
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer array) return array.and(this);
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] out = new long[WORDS];
+            int n = 0;
+            for (int i = 0; i < WORDS; i++) {
+                out[i] = words[i] & otherWords[i];
+                n += Long.bitCount(out[i]);
+            }
+            BitmapContainer result = new BitmapContainer(out, n);
+            return n <= ARRAY_MAX ? result.toArray() : result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer array) return array.andCardinality(this);
+            long[] otherWords = ((BitmapContainer) other).words;
+            int n = 0;
+            for (int i = 0; i < WORDS; i++) n += Long.bitCount(words[i] & otherWords[i]);
+            return n;
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] out = words.clone();
+            int n = cardinality;
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    if ((out[value >>> 6] & (1L << value)) == 0) {
+                        out[value >>> 6] |= 1L << value;
+                        n++;
+                    }
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                n = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    out[i] |= otherWords[i];
+                    n += Long.bitCount(out[i]);
+                }
+            }
+            return new BitmapContainer(out, n);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int descending(long base, int skip, long[] out, int n) {
+            for (int w = WORDS - 1; w >= 0 && n < out.length; w--) {
+                long word = words[w];
+                while (word != 0 && n < out.length) {
+                    int bit = 63 - Long.numberOfLeadingZeros(word);
+                    word &= ~(1L << bit);
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        out[n++] = base | ((long) w << 6) | bit;
+                    }
+                }
+            }
+            return n;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16L + WORDS * 8L;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(1, cardinality)];
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contatori della compressione trasparente, per destinazione (colonna o blob
+ * store): byte originali e memorizzati, tempo speso a comprimere e
+ * decomprimere. Esposti come metriche {@code storage.compression.*} con il tag
+ * {@code target} e tramite {@link #report()}.
+ */
+@Component
+public class CompressionStats {
+
+    public record TargetReport(String target, long compressed, long skipped, long rawBytes, long storedBytes,
+                               long savedBytes, double ratio, double compressMs, double decompressMs) {}
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    public CompressionStats(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Valore compresso: {@code rawBytes} diventati {@code storedBytes} in {@code nanos}. */
+    public void compressed(String target, long rawBytes, long storedBytes, long nanos) {
+        Target t = target(target);
+        t.compressed.increment();
+        t.rawBytes.add(rawBytes);
+        t.storedBytes.add(storedBytes);
+        t.compressNanos.add(nanos);
+    }
+
+    /** Valore lasciato in chiaro (sotto soglia, colonna disattivata o non comprimibile). */
+    public void skipped(String target, long nanos) {
+        Target t = target(target);
+        t.skipped.increment();
+        t.compressNanos.add(nanos);
+    }
+
+    public void decompressed(String target, long nanos) {
+        target(target).decompressNanos.add(nanos);
+    }
+
+    public List<TargetReport> report() {
+        return targets.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> entry.getValue().report(entry.getKey()))
+                .toList();
+    }
+
+    private Target target(String name) {
+        return targets.computeIfAbsent(name, this::register);
+    }
+
+    private Target register(String name) {
+        Target t = new Target();
+        FunctionCounter.builder("storage.compression.raw.bytes", t.rawBytes, LongAdder::doubleValue)
+                .tag("target", name).register(meterRegistry);
+        FunctionCounter.builder("storage.compression.stored.bytes", t.storedBytes, LongAdder::doubleValue)
+                .tag("target", name).register(meterRegistry);
+        FunctionCounter.builder("storage.compression.compress.seconds", t.compressNanos,
+                        nanos -> nanos.doubleValue() / TimeUnit.SECONDS.toNanos(1))
+                .tag("target", name).register(meterRegistry);
+        FunctionCounter.builder("storage.compression.decompress.seconds", t.decompressNanos,
+                        nanos -> nanos.doubleValue() / TimeUnit.SECONDS.toNanos(1))
+                .tag("target", name).register(meterRegistry);
+        return t;
+    }
+
+    private static final class Target {
+        private final LongAdder compressed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder storedBytes = new LongAdder();
+        private final LongAdder compressNanos = new LongAdder();
+        private final LongAdder decompressNanos = new LongAdder();
+
+        private TargetReport report(String name) {
+            long raw = rawBytes.sum();
+            long stored = storedBytes.sum();
+            return new TargetReport(name, compressed.sum(), skipped.sum(), raw, stored, raw - stored,
+                    raw > 0 ? (double) stored / raw : 1.0,
+                    compressNanos.sum() / 1_000_000.0, decompressNanos.sum() / 1_000_000.0);
+        }
+    }
+}
@@ -4,9 +4,11 @@ import io.bootify.my_app.domain.Content;
 import io.bootify.my_app.repos.ContentRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,9 +17,15 @@ import java.util.Optional;
 public class ContentService {
 
     private final ContentRepository contentRepository;
+    private final PreviewRenderPipeline previewRenderPipeline;
+    private final SearchIndexService searchIndexService;
 
-    public ContentService(final ContentRepository contentRepository) {
+    public ContentService(final ContentRepository contentRepository,
+                          final PreviewRenderPipeline previewRenderPipeline,
+                          final SearchIndexService searchIndexService) {
         this.contentRepository = contentRepository;
+        this.previewRenderPipeline = previewRenderPipeline;
+        this.searchIndexService = searchIndexService;
     }
 
     public Page<Content> findAll(Pageable pageable) {
@@ -36,7 +44,36 @@ public class ContentService {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return findAll(pageable);
         }
-        return contentRepository.searchContents(searchTerm.trim(), pageable);
+        String term = searchTerm.trim();
+        return searchIndexService.search(SearchIndexService.Kind.CONTENT, term)
+                .map(ids -> searchIndexService.page(ids, pageable, this::sortedIds,
+                        contentRepository::findAllById, Content::getId))
+                .orElseGet(() -> contentRepository.searchContents(term, pageable));
+    }
+
+    /**
+     * Pagina per le griglie: contenuti parziali ({@link Content#isSummary()}) con
+     * le sole colonne dell'elenco. Per dettaglio e modifica usare {@link #findById}.
+     */
+    public Page<Content> findSummaries(String searchTerm, String fileType, Pageable pageable) {
+        boolean hasTerm = searchTerm != null && !searchTerm.trim().isEmpty();
+        boolean hasType = fileType != null && !fileType.isEmpty();
+        if (hasTerm && hasType) {
+            return contentRepository.findSummariesByFileTypeAndFileName(fileType, searchTerm.trim(), pageable);
+        } else if (hasTerm) {
+            String term = searchTerm.trim();
+            return searchIndexService.search(SearchIndexService.Kind.CONTENT, term)
+                    .map(ids -> searchIndexService.page(ids, pageable, this::sortedIds,
+                            contentRepository::findSummariesByIdIn, Content::getId))
+                    .orElseGet(() -> contentRepository.searchSummaries(term, pageable));
+        } else if (hasType) {
+            return contentRepository.findSummariesByFileType(fileType, pageable);
+        }
+        return contentRepository.findSummaries(pageable);
+    }
+
+    private List<Long> sortedIds(Collection<Long> ids, Sort sort) {
+        return ids != null ? contentRepository.findIdsByIdIn(ids, sort) : contentRepository.findAllIds(sort);
     }
 
     public Page<Content> findByFileType(String fileType, Pageable pageable) {
@@ -63,7 +100,24 @@ public class ContentService {
 
     @Transactional
     public Content save(Content content) {
-        return contentRepository.save(content);
+        if (content.isSummary()) {
+            throw new IllegalStateException("Partial content " + content.getId() + " must be reloaded before saving");
+        }
+        Content saved = contentRepository.save(content);
+        previewRenderPipeline.enqueueAfterCommit(saved.getId(), PreviewRenderPipeline.Priority.SAVE);
+        return saved;
+    }
+
+    /**
+     * Import massivo: salva tutti i contenuti e accoda il pre-rendering delle
+     * anteprime a bassa priorità, così non rallenta le richieste interattive.
+     */
+    @Transactional
+    public List<Content> saveAll(List<Content> contents) {
+        List<Content> saved = contentRepository.saveAll(contents);
+        saved.forEach(content ->
+                previewRenderPipeline.enqueueAfterCommit(content.getId(), PreviewRenderPipeline.Priority.BULK));
+        return saved;
     }
 
     @Transactional
@@ -0,0 +1,491 @@
+package io.bootify.my_app.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.bootify.my_app.domain.CompressedTextConverter;
+import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.dto.DocumentSearchFilterDTO;
+import io.bootify.my_app.repos.ContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Ricerca documenti della {@code SearchView}: traduce {@link DocumentSearchFilterDTO}
+ * in un piano di esecuzione sui {@link Content}.
+ * <ul>
+ *   <li>ogni filtro diventa una condizione SQL con una selettività stimata dalle
+ *       statistiche della tabella (conteggi per autore e tipo, intervalli di date e
+ *       dimensioni), oppure un insieme di id dagli indici in memoria (titolo
+ *       sull'indice full-text, nome file sull'indice a trigrammi);</li>
+ *   <li>il filtro più selettivo guida l'accesso: gli id degli indici a blocchi
+ *       ({@code id IN (...)}) oppure l'indice SQL della condizione migliore;</li>
+ *   <li>i filtri sui metadati JSON (anche compressi) si applicano per ultimi, in memoria;</li>
+ *   <li>paginazione keyset su id decrescente: la pagina successiva riparte
+ *       dall'ultimo id visto, senza OFFSET né COUNT.</li>
+ * </ul>
+ * Corrispondenze del DTO: tipologia e codice struttura sono le chiavi
+ * {@value #TIPOLOGIA_KEY} e {@value #STRUTTURA_KEY} dei metadati del contenuto
+ * (senza tipologia il documento è {@value #DEFAULT_TIPOLOGIA}); il formato è il
+ * tipo del contenuto o l'estensione del file; il titolo usa l'indice full-text,
+ * il nome file quello a trigrammi.
+ */
+@Service
+public class DocumentSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentSearchService.class);
+
+    public static final String TIPOLOGIA_KEY = "Tipologia";
+    public static final String STRUTTURA_KEY = "Struttura";
+    public static final String DEFAULT_TIPOLOGIA = "NON CLASSIFICATO";
+
+    /** Id degli indici in memoria verificati per ogni query {@code IN}. */
+    private static final int IN_CHUNK = 500;
+    /** Oltre questa selettività l'indice SQL non conviene: meglio scorrere la chiave primaria. */
+    private static final double INDEX_HINT_MAX_SELECTIVITY = 0.3;
+    /** Selettività presunta per i LIKE che non si possono stimare. */
+    private static final double LIKE_SELECTIVITY = 0.1;
+    private static final int MAX_HISTOGRAM_VALUES = 1000;
+
+    public record DocumentSearchPage(List<Content> items, Long nextCursor, String plan, long examinedRows) {}
+
+    private record Condition(String label, String sql, List<Object> args, double selectivity, String index) {}
+
+    private record Row(long id, String metadata) {}
+
+    private record Stats(long total, Map<String, Long> uploadUsers, boolean uploadUsersComplete,
+                         Map<String, Long> fileTypes, LocalDateTime minDate, LocalDateTime maxDate,
+                         long minSize, long maxSize, long loadedAt) {}
+
+    private final ContentRepository contentRepository;
+    private final SearchIndexService searchIndexService;
+    private final FileNameIndexService fileNameIndexService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long maxScanRows;
+    private final long statsRefreshMs;
+
+    private volatile Stats stats;
+
+    public DocumentSearchService(ContentRepository contentRepository, SearchIndexService searchIndexService,
+                                 FileNameIndexService fileNameIndexService, JdbcTemplate jdbcTemplate,
+                                 @Value("${search.documents.max-scan-rows:200000}") long maxScanRows,
+                                 @Value("${search.documents.stats-refresh-ms:300000}") long statsRefreshMs) {
+        this.contentRepository = contentRepository;
+        this.searchIndexService = searchIndexService;
+        this.fileNameIndexService = fileNameIndexService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxScanRows = maxScanRows;
+        this.statsRefreshMs = statsRefreshMs;
+    }
+
+    /**
+     * Una pagina di risultati (id decrescenti) dopo {@code afterId}; {@code null}
+     * per la prima. {@code nextCursor} è {@code null} quando non c'è altro; se la
+     * scansione si ferma a {@code search.documents.max-scan-rows} la pagina può
+     * essere più corta e il cursore permette di continuare.
+     */
+    public DocumentSearchPage searchDocuments(DocumentSearchFilterDTO filter, Long afterId, int pageSize) {
+        Stats stats = stats();
+        List<Condition> conditions = new ArrayList<>();
+        List<Predicate<Map<String, String>>> residuals = new ArrayList<>();
+        List<String> residualLabels = new ArrayList<>();
+        long[] indexIds = null;
+
+        if (hasText(filter.getTitolo())) {
+            Optional<long[]> hits = searchIndexService.search(SearchIndexService.Kind.CONTENT, filter.getTitolo());
+            if (hits.isPresent()) {
+                indexIds = hits.get();
+            } else {
+                // indice disattivato o non ancora pronto: stesse colonne dell'indice (SearchIndexService.Kind.CONTENT)
+                String like = contains(filter.getTitolo());
+                conditions.add(new Condition("title-like",
+                        "(LOWER(c.file_name) LIKE ? ESCAPE '\\' OR LOWER(c.description) LIKE ? ESCAPE '\\'"
+                                + " OR LOWER(c.file_type) LIKE ? ESCAPE '\\' OR LOWER(c.category) LIKE ? ESCAPE '\\'"
+                                + " OR LOWER(c.tags) LIKE ? ESCAPE '\\')",
+                        List.of(like, like, like, like, like), LIKE_SELECTIVITY, null));
+            }
+        }
+        if (hasText(filter.getNomeFile())) {
+            Optional<long[]> hits = fileNameIndexService.containing(FileNameIndexService.Kind.CONTENT, filter.getNomeFile());
+            if (hits.isPresent()) {
+                indexIds = indexIds == null ? hits.get() : InvertedIndex.intersect(indexIds, hits.get());
+            } else {
+                conditions.add(new Condition("file_name", "LOWER(c.file_name) LIKE ? ESCAPE '\\'",
+                        List.of(contains(filter.getNomeFile())), LIKE_SELECTIVITY, null));
+            }
+        }
+        if (hasText(filter.getAutore())) {
+            Condition author = authorCondition(filter.getAutore().trim(), stats);
+            if (author == null) return empty("upload_user: no match");
+            conditions.add(author);
+        }
+        if (hasText(filter.getFormato())) {
+            String type = filter.getFormato().trim().toUpperCase(Locale.ROOT);
+            long typeRows = stats.fileTypes().getOrDefault(type, 0L);
+            double selectivity = Math.min(1.0, (double) typeRows / Math.max(1, stats.total()) + LIKE_SELECTIVITY);
+            conditions.add(new Condition("format", "(UPPER(c.file_type) = ? OR LOWER(c.file_name) LIKE ? ESCAPE '\\')",
+                    List.of(type, "%." + FileNameIndexService.escapeLike(type.toLowerCase(Locale.ROOT))),
+                    selectivity, null));
+        }
+        if (filter.getDataDa() != null || filter.getDataA() != null) {
+            conditions.add(dateCondition(filter, stats));
+        }
+        if (filter.getDimensioneMinKB() != null || filter.getDimensioneMaxKB() != null) {
+            conditions.add(sizeCondition(filter, stats));
+        }
+        if (hasText(filter.getTags())) {
+            for (String tag : filter.getTags().split(",")) {
+                if (tag.isBlank()) continue;
+                conditions.add(new Condition("tag", "LOWER(c.tags) LIKE ? ESCAPE '\\'",
+                        List.of(contains(tag)), LIKE_SELECTIVITY, null));
+            }
+        }
+
+        if (hasText(filter.getTipologia())) {
+            String tipologia = filter.getTipologia().trim();
+            residuals.add(meta -> tipologia.equalsIgnoreCase(
+                    meta.getOrDefault(TIPOLOGIA_KEY.toLowerCase(Locale.ROOT), DEFAULT_TIPOLOGIA)));
+            residualLabels.add("tipologia");
+        }
+        if (hasText(filter.getMetadataChiave()) || hasText(filter.getMetadataValore())) {
+            residuals.add(metadataPredicate(filter.getMetadataChiave(), filter.getMetadataValore()));
+            residualLabels.add("metadata");
+        }
+        if (hasText(filter.getStrutturaCode())) {
+            String code = filter.getStrutturaCode().trim();
+            residuals.add(meta -> code.equals(meta.get(STRUTTURA_KEY.toLowerCase(Locale.ROOT))));
+            residualLabels.add("struttura");
+        }
+
+        if (indexIds != null && indexIds.length == 0) return empty("index: no match");
+
+        conditions.sort(Comparator.comparingDouble(Condition::selectivity));
+        double bestSql = conditions.isEmpty() ? 1.0 : conditions.get(0).selectivity();
+        double indexSelectivity = indexIds == null ? 1.0 : (double) indexIds.length / Math.max(1, stats.total());
+        boolean driveByIndex = indexIds != null && indexSelectivity <= bestSql;
+
+        StringBuilder plan = new StringBuilder();
+        if (driveByIndex) plan.append("index(").append(indexIds.length).append(" ids)");
+        for (Condition condition : conditions) {
+            if (!plan.isEmpty()) plan.append(" > ");
+            plan.append(condition.label()).append(String.format(Locale.ROOT, "(%.3f)", condition.selectivity()));
+        }
+        if (!driveByIndex && indexIds != null) plan.append(" > index-filter(").append(indexIds.length).append(')');
+        if (!residualLabels.isEmpty()) plan.append(" > memory").append(residualLabels);
+
+        Predicate<Row> residual = residualFilter(residuals);
+        if (!driveByIndex && indexIds != null) {
+            // gli id degli indici diventano un filtro sugli id letti in SQL
+            long[] allowed = indexIds;
+            residual = residual.and(row -> Arrays.binarySearch(allowed, row.id()) >= 0);
+        }
+        Scan scan = new Scan(afterId != null ? afterId : Long.MAX_VALUE, pageSize, residual, !residuals.isEmpty());
+        if (driveByIndex) {
+            scanIndexIds(scan, indexIds, conditions);
+        } else {
+            scanSql(scan, conditions, bestSql);
+        }
+
+        List<Long> ids = scan.matches;
+        Long nextCursor = null;
+        if (ids.size() > pageSize) {
+            ids = ids.subList(0, pageSize);
+            nextCursor = ids.get(pageSize - 1);
+        } else if (!scan.exhausted) {
+            // scansione interrotta al limite: si riprende dall'ultimo id esaminato
+            nextCursor = scan.cursor;
+        }
+        log.debug("Document search {} -> {} rows, {} examined, plan {}", filter, ids.size(), scan.examined, plan);
+        return new DocumentSearchPage(load(ids), nextCursor, plan.toString(), scan.examined);
+    }
+
+    /** Tipologia del contenuto dai metadati, {@value #DEFAULT_TIPOLOGIA} se assente. */
+    public String tipologiaOf(Content content) {
+        String tipologia = parseMetadata(content.getCustomMetadata()).get(TIPOLOGIA_KEY.toLowerCase(Locale.ROOT));
+        return hasText(tipologia) ? tipologia : DEFAULT_TIPOLOGIA;
+    }
+
+    /** Stato di una scansione: cursore keyset, risultati raccolti e righe esaminate. */
+    private final class Scan {
+
+        private long cursor;
+        private final int wanted;
+        private final Predicate<Row> residual;
+        private final boolean needsMetadata;
+        private final List<Long> matches = new ArrayList<>();
+        private long examined;
+        private boolean exhausted;
+
+        private Scan(long cursor, int pageSize, Predicate<Row> residual, boolean needsMetadata) {
+            this.cursor = cursor;
+            this.wanted = pageSize + 1;
+            this.residual = residual;
+            this.needsMetadata = needsMetadata;
+        }
+
+        private boolean full() {
+            return matches.size() >= wanted;
+        }
+
+        private boolean overBudget() {
+            return examined >= maxScanRows;
+        }
+
+        private void accept(List<Row> rows) {
+            for (Row row : rows) {
+                if (full()) return;
+                examined++;
+                cursor = row.id();
+                if (residual.test(row)) matches.add(row.id());
+            }
+        }
+    }
+
+    /** Accesso guidato dagli indici in memoria: id decrescenti a blocchi, verificati in SQL. */
+    private void scanIndexIds(Scan scan, long[] indexIds, List<Condition> conditions) {
+        int pos = Arrays.binarySearch(indexIds, scan.cursor);
+        pos = pos >= 0 ? pos - 1 : -pos - 2;
+        while (pos >= 0 && !scan.full() && !scan.overBudget()) {
+            int from = Math.max(0, pos - IN_CHUNK + 1);
+            List<Object> args = new ArrayList<>();
+            StringBuilder in = new StringBuilder();
+            for (int i = pos; i >= from; i--) {
+                in.append(in.isEmpty() ? "?" : ", ?");
+                args.add(indexIds[i]);
+            }
+            StringBuilder sql = new StringBuilder(select(scan)).append(" WHERE c.id IN (").append(in).append(')');
+            appendConditions(sql, args, conditions);
+            sql.append(" ORDER BY c.id DESC");
+            scan.accept(query(sql.toString(), args));
+            if (scan.full()) return;
+            // gli id del blocco scartati dalle condizioni SQL sono comunque esaminati
+            scan.cursor = indexIds[from];
+            pos = from - 1;
+        }
+        scan.exhausted = pos < 0;
+    }
+
+    /** Accesso SQL in keyset sull'id; l'indice della condizione più selettiva viene imposto a H2. */
+    private void scanSql(Scan scan, List<Condition> conditions, double bestSelectivity) {
+        Condition driving = conditions.isEmpty() ? null : conditions.get(0);
+        String hint = driving != null && driving.index() != null && bestSelectivity <= INDEX_HINT_MAX_SELECTIVITY
+                ? " USE INDEX (" + driving.index() + ")" : "";
+        int batch = Math.max(200, Math.min(5000, scan.wanted * 4));
+        while (!scan.full() && !scan.overBudget()) {
+            List<Object> args = new ArrayList<>();
+            args.add(scan.cursor);
+            StringBuilder sql = new StringBuilder(select(scan)).append(hint).append(" WHERE c.id < ?");
+            appendConditions(sql, args, conditions);
+            sql.append(" ORDER BY c.id DESC LIMIT ").append(batch);
+            List<Row> rows = query(sql.toString(), args);
+            scan.accept(rows);
+            if (rows.size() < batch && !scan.full()) {
+                scan.exhausted = true;
+                return;
+            }
+        }
+    }
+
+    private String select(Scan scan) {
+        return scan.needsMetadata
+                ? "SELECT c.id, c.custom_metadata FROM contents c"
+                : "SELECT c.id, NULL FROM contents c";
+    }
+
+    private static void appendConditions(StringBuilder sql, List<Object> args, List<Condition> conditions) {
+        for (Condition condition : conditions) {
+            sql.append(" AND ").append(condition.sql());
+            args.addAll(condition.args());
+        }
+    }
+
+    private List<Row> query(String sql, List<Object> args) {
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Row(rs.getLong(1), rs.getString(2)), args.toArray());
+    }
+
+    private Predicate<Row> residualFilter(List<Predicate<Map<String, String>>> residuals) {
+        if (residuals.isEmpty()) return row -> true;
+        return row -> {
+            Map<String, String> metadata = parseMetadata(row.metadata());
+            for (Predicate<Map<String, String>> residual : residuals) {
+                if (!residual.test(metadata)) return false;
+            }
+            return true;
+        };
+    }
+
+    /** Metadati del contenuto con chiavi minuscole; JSON non valido vale come nessun metadato. */
+    private Map<String, String> parseMetadata(String stored) {
+        String json = CompressedTextConverter.decode(stored);
+        if (json == null || json.isBlank()) return Map.of();
+        try {
+            Map<String, Object> raw = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+            Map<String, String> metadata = new HashMap<>();
+            raw.forEach((key, value) -> metadata.put(key.toLowerCase(Locale.ROOT), value != null ? value.toString() : ""));
+            return metadata;
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    private static Predicate<Map<String, String>> metadataPredicate(String key, String value) {
+        String wantedKey = hasText(key) ? key.trim().toLowerCase(Locale.ROOT) : null;
+        String wantedValue = hasText(value) ? value.trim().toLowerCase(Locale.ROOT) : null;
+        return metadata -> {
+            if (wantedKey != null) {
+                String actual = metadata.get(wantedKey);
+                return actual != null && (wantedValue == null || actual.toLowerCase(Locale.ROOT).contains(wantedValue));
+            }
+            return metadata.values().stream().anyMatch(v -> v.toLowerCase(Locale.ROOT).contains(wantedValue));
+        };
+    }
+
+    /**
+     * Autore: se le statistiche conoscono tutti gli autori il LIKE diventa un
+     * {@code IN} sui valori che lo soddisfano (usa l'indice ed è stimabile con
+     * esattezza). {@code null} se nessun autore corrisponde.
+     */
+    private Condition authorCondition(String author, Stats stats) {
+        String needle = author.toLowerCase(Locale.ROOT);
+        if (!stats.uploadUsersComplete()) {
+            return new Condition("upload_user-like", "LOWER(c.upload_user) LIKE ? ESCAPE '\\'",
+                    List.of(contains(author)), LIKE_SELECTIVITY, null);
+        }
+        Map<String, Long> matching = stats.uploadUsers().entrySet().stream()
+                .filter(entry -> entry.getKey().toLowerCase(Locale.ROOT).contains(needle))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (matching.isEmpty()) return null;
+        long rows = matching.values().stream().mapToLong(Long::longValue).sum();
+        String placeholders = String.join(", ", Collections.nCopies(matching.size(), "?"));
+        return new Condition("upload_user", "c.upload_user IN (" + placeholders + ")",
+                List.copyOf(matching.keySet()), (double) rows / Math.max(1, stats.total()),
+                "idx_contents_upload_user");
+    }
+
+    private static Condition dateCondition(DocumentSearchFilterDTO filter, Stats stats) {
+        LocalDateTime from = filter.getDataDa() != null ? filter.getDataDa().atStartOfDay() : null;
+        LocalDateTime to = filter.getDataA() != null ? filter.getDataA().plusDays(1).atStartOfDay() : null;
+        List<Object> args = new ArrayList<>();
+        List<String> sql = new ArrayList<>();
+        if (from != null) {
+            sql.add("c.creation_date >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.add("c.creation_date < ?");
+            args.add(to);
+        }
+        double selectivity = 1.0;
+        if (stats.minDate() != null && stats.maxDate() != null) {
+            long min = 0;
+            long max = Duration.between(stats.minDate(), stats.maxDate()).toSeconds();
+            long lo = from != null ? Duration.between(stats.minDate(), from).toSeconds() : min;
+            long hi = to != null ? Duration.between(stats.minDate(), to).toSeconds() : max;
+            selectivity = rangeSelectivity(lo, hi, min, max);
+        }
+        return new Condition("creation_date", "(" + String.join(" AND ", sql) + ")", args, selectivity,
+                "idx_contents_creation_date");
+    }
+
+    private static Condition sizeCondition(DocumentSearchFilterDTO filter, Stats stats) {
+        Long min = filter.getDimensioneMinKB() != null ? (long) (filter.getDimensioneMinKB() * 1024) : null;
+        Long max = filter.getDimensioneMaxKB() != null ? (long) Math.ceil(filter.getDimensioneMaxKB() * 1024) : null;
+        List<Object> args = new ArrayList<>();
+        List<String> sql = new ArrayList<>();
+        if (min != null) {
+            sql.add("c.file_size >= ?");
+            args.add(min);
+        }
+        if (max != null) {
+            sql.add("c.file_size <= ?");
+            args.add(max);
+        }
+        double selectivity = rangeSelectivity(min != null ? min : stats.minSize(), max != null ? max : stats.maxSize(),
+                stats.minSize(), stats.maxSize());
+        return new Condition("file_size", "(" + String.join(" AND ", sql) + ")", args, selectivity,
+                "idx_contents_file_size");
+    }
+
+    /** Frazione dell'intervallo [min, max] coperta da [lo, hi], assumendo valori uniformi. */
+    private static double rangeSelectivity(long lo, long hi, long min, long max) {
+        if (max <= min) return lo <= min && hi >= max ? 1.0 : 0.0;
+        long from = Math.max(lo, min);
+        long to = Math.min(hi, max);
+        if (to < from) return 0.0;
+        return Math.max(1.0 / (max - min + 1), (double) (to - from) / (max - min));
+    }
+
+    private List<Content> load(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, Content> byId = new HashMap<>();
+        contentRepository.findAllById(ids).forEach(content -> byId.put(content.getId(), content));
+        List<Content> contents = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Content content = byId.get(id);
+            if (content != null) contents.add(content);
+        }
+        return contents;
+    }
+
+    /** Statistiche della tabella per stimare la selettività, ricalcolate ogni {@code stats-refresh-ms}. */
+    private Stats stats() {
+        Stats current = stats;
+        if (current != null && System.currentTimeMillis() - current.loadedAt() < statsRefreshMs) return current;
+        synchronized (this) {
+            if (stats != null && System.currentTimeMillis() - stats.loadedAt() < statsRefreshMs) return stats;
+            Map<String, Long> uploadUsers = histogram("upload_user");
+            Map<String, Long> fileTypes = histogram("UPPER(file_type)");
+            Stats loaded = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*), MIN(creation_date), MAX(creation_date), MIN(file_size), MAX(file_size)"
+                            + " FROM contents",
+                    (rs, rowNum) -> new Stats(rs.getLong(1),
+                            uploadUsers, uploadUsers.size() <= MAX_HISTOGRAM_VALUES, fileTypes,
+                            rs.getObject(2, LocalDateTime.class), rs.getObject(3, LocalDateTime.class),
+                            rs.getLong(4), rs.getLong(5), System.currentTimeMillis()));
+            stats = loaded;
+            return loaded;
+        }
+    }
+
+    /** Conteggi per valore; oltre {@value #MAX_HISTOGRAM_VALUES} valori l'elenco è incompleto. */
+    private Map<String, Long> histogram(String expression) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT " + expression + ", COUNT(*) FROM contents WHERE " + expression + " IS NOT NULL"
+                        + " GROUP BY " + expression + " ORDER BY COUNT(*) DESC LIMIT " + (MAX_HISTOGRAM_VALUES + 1),
+                rs -> {
+                    counts.put(rs.getString(1), rs.getLong(2));
+                });
+        return counts;
+    }
+
+    private static DocumentSearchPage empty(String plan) {
+        return new DocumentSearchPage(List.of(), null, plan, 0);
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    /** {@code %valore%} con i caratteri jolly protetti, per {@code LIKE ? ESCAPE '\'}. */
+    private static String contains(String value) {
+        return FileNameIndexService.likePattern(value);
+    }
+}
@@ -0,0 +1,164 @@
+package io.bootify.my_app.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.hslf.usermodel.HSLFSlideShow;
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.apache.poi.sl.extractor.SlideShowExtractor;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Estrazione del testo dei documenti con gli stessi parser usati per le anteprime
+ * (PDFBox, POI, {@link SpreadsheetPreviewReader}). Il testo viene troncato a
+ * {@code maxChars}: serve all'indice di ricerca, non a ricostruire il documento.
+ */
+public final class DocumentTextReader {
+
+    private static final Set<String> TEXT_EXTS = Set.of("txt", "md", "csv", "tsv", "log", "json", "xml",
+            "html", "htm", "yml", "yaml", "properties", "srt", "vtt");
+
+    /** Pagine PDF estratte per volta: ci si ferma appena si raggiunge il limite di caratteri. */
+    private static final int PDF_PAGES_PER_CHUNK = 10;
+
+    /** Righe lette dal primo foglio delle cartelle Excel. */
+    private static final int SHEET_MAX_ROWS = 10_000;
+
+    private DocumentTextReader() {
+    }
+
+    /**
+     * Formato di estrazione da estensione e tipo MIME ({@code pdf}, {@code docx},
+     * {@code doc}, {@code pptx}, {@code ppt}, {@code xlsx}, {@code xls},
+     * {@code text}), oppure {@code null} se il file non contiene testo leggibile.
+     */
+    public static String formatOf(String fileName, String mimeType) {
+        String ext = extension(fileName);
+        String mime = mimeType != null ? mimeType.toLowerCase(Locale.ROOT) : "";
+        return switch (ext) {
+            case "pdf", "docx", "doc", "pptx", "ppt", "xlsx", "xls" -> ext;
+            default -> {
+                if (TEXT_EXTS.contains(ext))                                       yield "text";
+                if (mime.contains("pdf"))                                         yield "pdf";
+                if (mime.contains("wordprocessingml"))                            yield "docx";
+                if (mime.contains("msword"))                                      yield "doc";
+                if (mime.contains("presentationml"))                              yield "pptx";
+                if (mime.contains("powerpoint"))                                  yield "ppt";
+                if (mime.contains("spreadsheetml"))                               yield "xlsx";
+                if (mime.contains("excel"))                                       yield "xls";
+                if (mime.startsWith("text/") || mime.contains("json") || mime.endsWith("xml")) yield "text";
+                yield null;
+            }
+        };
+    }
+
+    /** Quota del {@link RenderBulkhead} da prendere per il formato; {@code null} per il testo semplice. */
+    public static RenderBulkhead.Format bulkheadFormat(String format) {
+        return switch (format) {
+            case "pdf" -> RenderBulkhead.Format.PDF;
+            case "docx", "doc" -> RenderBulkhead.Format.WORD;
+            case "pptx", "ppt" -> RenderBulkhead.Format.SLIDES;
+            case "xlsx", "xls" -> RenderBulkhead.Format.SHEET;
+            default -> null;
+        };
+    }
+
+    public static String read(String format, Path file, int maxChars) throws Exception {
+        return switch (format) {
+            case "pdf" -> readPdf(file, maxChars);
+            case "docx" -> {
+                try (InputStream in = Files.newInputStream(file);
+                     XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(in))) {
+                    yield truncate(extractor.getText(), maxChars);
+                }
+            }
+            case "doc" -> {
+                try (InputStream in = Files.newInputStream(file);
+                     WordExtractor extractor = new WordExtractor(new HWPFDocument(in))) {
+                    yield truncate(extractor.getText(), maxChars);
+                }
+            }
+            case "pptx" -> {
+                try (InputStream in = Files.newInputStream(file);
+                     SlideShowExtractor<?, ?> extractor = new SlideShowExtractor<>(new XMLSlideShow(in))) {
+                    extractor.setNotesByDefault(true);
+                    yield truncate(extractor.getText(), maxChars);
+                }
+            }
+            case "ppt" -> {
+                try (InputStream in = Files.newInputStream(file);
+                     SlideShowExtractor<?, ?> extractor = new SlideShowExtractor<>(new HSLFSlideShow(in))) {
+                    extractor.setNotesByDefault(true);
+                    yield truncate(extractor.getText(), maxChars);
+                }
+            }
+            case "xlsx" -> sheetText(SpreadsheetPreviewReader.readXlsx(file, SHEET_MAX_ROWS), maxChars);
+            case "xls" -> sheetText(SpreadsheetPreviewReader.readXls(file, SHEET_MAX_ROWS), maxChars);
+            case "text" -> readPlain(file, maxChars);
+            default -> throw new IllegalArgumentException("Unsupported text format: " + format);
+        };
+    }
+
+    private static String readPdf(Path file, int maxChars) throws IOException {
+        // nessuna pagina resta in heap: lo stream cache usa solo file temporanei
+        try (PDDocument document = Loader.loadPDF(file.toFile(), IOUtils.createTempFileOnlyStreamCache())) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            StringBuilder text = new StringBuilder();
+            int pages = document.getNumberOfPages();
+            for (int start = 1; start <= pages && text.length() < maxChars; start += PDF_PAGES_PER_CHUNK) {
+                stripper.setStartPage(start);
+                stripper.setEndPage(Math.min(pages, start + PDF_PAGES_PER_CHUNK - 1));
+                text.append(stripper.getText(document));
+            }
+            return truncate(text.toString(), maxChars);
+        }
+    }
+
+    private static String sheetText(SpreadsheetPreviewReader.SheetPreview sheet, int maxChars) {
+        StringBuilder text = new StringBuilder(sheet.sheetName()).append('\n');
+        for (List<String> row : sheet.rows()) {
+            if (text.length() >= maxChars) break;
+            text.append(String.join(" ", row).strip()).append('\n');
+        }
+        return truncate(text.toString(), maxChars);
+    }
+
+    private static String readPlain(Path file, int maxChars) throws IOException {
+        // i byte non UTF-8 diventano caratteri sostitutivi, senza eccezioni
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            StringBuilder text = new StringBuilder();
+            int n;
+            while (text.length() < maxChars && (n = reader.read(buffer)) > 0) {
+                text.append(buffer, 0, n);
+            }
+            return truncate(text.toString(), maxChars);
+        }
+    }
+
+    private static String truncate(String text, int maxChars) {
+        if (text == null) return "";
+        return text.length() > maxChars ? text.substring(0, maxChars) : text;
+    }
+
+    private static String extension(String fileName) {
+        if (fileName == null) return "";
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
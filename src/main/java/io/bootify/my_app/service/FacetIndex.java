@@ -0,0 +1,210 @@
+package io.bootify.my_app.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Faccette dei contenuti in memoria: per ogni valore di tipo, categoria e autore
+ * l'insieme ({@link CompressedBitmap}) dei documenti che lo hanno, più un insieme
+ * per giorno di creazione. Un conteggio è l'intersezione dell'insieme del valore
+ * con quello dei risultati della query, senza leggere i documenti.
+ * <p>
+ * Le unioni dei giorni per gli intervalli relativi ("ultima settimana", ...) sono
+ * tenute in cache fino alla modifica successiva.
+ */
+final class FacetIndex {
+
+    /** Valori di faccetta di un documento; {@code null} se il documento non ha quel valore. */
+    record Doc(String fileType, String category, String author, long epochDay) {
+
+        String value(FacetSearchService.Facet facet) {
+            return switch (facet) {
+                case FILE_TYPE -> fileType;
+                case CATEGORY -> category;
+                case AUTHOR -> author;
+                case DATE -> null;
+            };
+        }
+    }
+
+    /** Filtri della ricerca: valori ammessi per faccetta (in OR) e intervallo di giorni, estremi inclusi. */
+    record Filter(Map<FacetSearchService.Facet, Set<String>> values, Long fromDay, Long toDay) {
+
+        boolean hasDate() {
+            return fromDay != null || toDay != null;
+        }
+    }
+
+    record Result(long[] ids, long total, Map<FacetSearchService.Facet, Map<String, Long>> counts) {}
+
+    private static final List<FacetSearchService.Facet> VALUE_FACETS = List.of(
+            FacetSearchService.Facet.FILE_TYPE, FacetSearchService.Facet.CATEGORY, FacetSearchService.Facet.AUTHOR);
+
+    private final Map<FacetSearchService.Facet, Map<String, CompressedBitmap>> values =
+            new EnumMap<>(FacetSearchService.Facet.class);
+    private final TreeMap<Long, CompressedBitmap> days = new TreeMap<>();
+    private final CompressedBitmap all = new CompressedBitmap();
+    private final Map<Long, Doc> documents = new HashMap<>();
+    private final Map<Long, CompressedBitmap> sinceCache = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    FacetIndex() {
+        for (FacetSearchService.Facet facet : VALUE_FACETS) values.put(facet, new HashMap<>());
+    }
+
+    void put(long id, Doc doc) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            for (FacetSearchService.Facet facet : VALUE_FACETS) {
+                String value = doc.value(facet);
+                if (value != null) values.get(facet).computeIfAbsent(value, v -> new CompressedBitmap()).add(id);
+            }
+            days.computeIfAbsent(doc.epochDay(), d -> new CompressedBitmap()).add(id);
+            all.add(id);
+            documents.put(id, doc);
+            sinceCache.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            sinceCache.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long id) {
+        Doc previous = documents.remove(id);
+        if (previous == null) return;
+        for (FacetSearchService.Facet facet : VALUE_FACETS) {
+            String value = previous.value(facet);
+            if (value != null) removeFrom(values.get(facet), value, id);
+        }
+        removeFrom(days, previous.epochDay(), id);
+        all.remove(id);
+    }
+
+    private static <K> void removeFrom(Map<K, CompressedBitmap> bitmaps, K key, long id) {
+        CompressedBitmap bitmap = bitmaps.get(key);
+        if (bitmap == null) return;
+        bitmap.remove(id);
+        if (bitmap.isEmpty()) bitmaps.remove(key);
+    }
+
+    /**
+     * Risultati e conteggi. Ogni faccetta è contata sui risultati filtrati da tutte
+     * le altre faccette ma non da sé stessa: si vede quanti documenti si
+     * aggiungerebbero selezionando un altro valore. {@code match} è l'insieme della
+     * query di testo, {@code null} per tutti i documenti; {@code dateBuckets} sono i
+     * giorni di inizio degli intervalli relativi da contare.
+     */
+    Result search(CompressedBitmap match, Filter filter, Collection<Long> dateBuckets, long skip, int limit) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap base = match != null ? match.and(all) : all;
+            Map<FacetSearchService.Facet, CompressedBitmap> filters = new EnumMap<>(FacetSearchService.Facet.class);
+            filter.values().forEach((facet, selected) -> {
+                if (!selected.isEmpty()) filters.put(facet, union(values.get(facet), selected));
+            });
+            if (filter.hasDate()) filters.put(FacetSearchService.Facet.DATE, between(filter.fromDay(), filter.toDay()));
+
+            Map<FacetSearchService.Facet, Map<String, Long>> counts = new EnumMap<>(FacetSearchService.Facet.class);
+            for (FacetSearchService.Facet facet : FacetSearchService.Facet.values()) {
+                CompressedBitmap others = base;
+                for (Map.Entry<FacetSearchService.Facet, CompressedBitmap> entry : filters.entrySet()) {
+                    if (entry.getKey() != facet) others = others.and(entry.getValue());
+                }
+                counts.put(facet, facet == FacetSearchService.Facet.DATE
+                        ? countDates(others, dateBuckets)
+                        : countValues(others, values.get(facet)));
+            }
+
+            CompressedBitmap result = base;
+            for (CompressedBitmap bitmap : filters.values()) result = result.and(bitmap);
+            return new Result(result.descending(skip, limit), result.cardinality(), counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = all.sizeInBytes();
+            for (CompressedBitmap bitmap : days.values()) bytes += bitmap.sizeInBytes();
+            for (Map<String, CompressedBitmap> bitmaps : values.values()) {
+                for (CompressedBitmap bitmap : bitmaps.values()) bytes += bitmap.sizeInBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<String, Long> countValues(CompressedBitmap base, Map<String, CompressedBitmap> bitmaps) {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        for (Map.Entry<String, CompressedBitmap> entry : bitmaps.entrySet()) {
+            long count = base.andCardinality(entry.getValue());
+            if (count > 0) counts.add(Map.entry(entry.getKey(), count));
+        }
+        counts.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        counts.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private Map<String, Long> countDates(CompressedBitmap base, Collection<Long> dateBuckets) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        dateBuckets.stream().sorted(Comparator.reverseOrder()).forEach(fromDay ->
+                counts.put(String.valueOf(fromDay), base.andCardinality(since(fromDay))));
+        return counts;
+    }
+
+    private static CompressedBitmap union(Map<String, CompressedBitmap> bitmaps, Set<String> selected) {
+        List<CompressedBitmap> selectedBitmaps = new ArrayList<>();
+        for (String value : selected) {
+            CompressedBitmap bitmap = bitmaps.get(value);
+            if (bitmap != null) selectedBitmaps.add(bitmap);
+        }
+        return CompressedBitmap.union(selectedBitmaps);
+    }
+
+    /** Documenti creati da {@code fromDay} in poi: calcolato una volta per modifica dell'indice. */
+    private CompressedBitmap since(long fromDay) {
+        return sinceCache.computeIfAbsent(fromDay, day -> between(day, null));
+    }
+
+    private CompressedBitmap between(Long fromDay, Long toDay) {
+        Map<Long, CompressedBitmap> range = fromDay == null ? days.headMap(toDay, true)
+                : toDay == null ? days.tailMap(fromDay, true)
+                : fromDay > toDay ? Map.of()
+                : days.subMap(fromDay, true, toDay, true);
+        return CompressedBitmap.union(range.values());
+    }
+}
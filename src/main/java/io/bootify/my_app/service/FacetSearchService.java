@@ -0,0 +1,371 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.repos.ContentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Ricerca a faccette sui contenuti per la {@code GoogleSearchView}: risultati più
+ * i conteggi per tipo di file, periodo, categoria e autore.
+ * <ul>
+ *   <li>la query di testo usa l'indice full-text ({@link SearchIndexService}),
+ *       con la LIKE come ripiego finché l'indice non è pronto;</li>
+ *   <li>le faccette stanno in un {@link FacetIndex} in memoria: un insieme
+ *       compresso per valore, intersecato con i risultati della query per
+ *       contarli, così i conteggi costano poco anche per query molto ampie;</li>
+ *   <li>l'indice viene costruito all'avvio e aggiornato al commit dei salvataggi
+ *       tramite {@code SearchIndexListener}, come quello full-text.</li>
+ * </ul>
+ */
+@Service
+public class FacetSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(FacetSearchService.class);
+
+    public enum Facet {
+        FILE_TYPE, DATE, CATEGORY, AUTHOR
+    }
+
+    /** Intervalli relativi della faccetta data, come nel filtro della vista. */
+    public enum DateBucket {
+        LAST_DAY("Ultimo giorno"),
+        LAST_WEEK("Ultima settimana"),
+        LAST_MONTH("Ultimo mese"),
+        LAST_YEAR("Ultimo anno");
+
+        private final String label;
+
+        DateBucket(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        public LocalDate since(LocalDate today) {
+            return switch (this) {
+                case LAST_DAY -> today.minusDays(1);
+                case LAST_WEEK -> today.minusWeeks(1);
+                case LAST_MONTH -> today.minusMonths(1);
+                case LAST_YEAR -> today.minusYears(1);
+            };
+        }
+
+        public static Optional<DateBucket> fromLabel(String label) {
+            for (DateBucket bucket : values()) {
+                if (bucket.label.equals(label)) return Optional.of(bucket);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /** Gruppi di tipo di file mostrati dalla faccetta (vedi {@link #typeGroup}). */
+    public static final String TYPE_PDF = "PDF";
+    public static final String TYPE_WORD = "DOC/DOCX";
+    public static final String TYPE_VIDEO = "Video";
+    public static final String TYPE_AUDIO = "Audio";
+    public static final String TYPE_ARCHIVE = "Archivio (ZIP/RAR)";
+    public static final String TYPE_IMAGE = "Immagine";
+    public static final String TYPE_OTHER = "Altro";
+
+    private static final Set<String> VIDEO_EXTENSIONS = Set.of("mp4", "avi", "mov", "mkv", "webm");
+    private static final Set<String> AUDIO_EXTENSIONS = Set.of("mp3", "wav", "ogg", "flac", "m4a");
+    private static final Set<String> ARCHIVE_EXTENSIONS = Set.of("zip", "rar", "7z");
+    private static final Set<String> IMAGE_EXTENSIONS =
+            Set.of("jpg", "jpeg", "png", "gif", "bmp", "webp", "svg", "tif", "tiff");
+
+    /**
+     * Filtri della ricerca: testo, tipi (in OR), periodo relativo oppure intervallo
+     * ({@code from}/{@code to} inclusi), categoria e autore. Vuoti o {@code null} = nessun filtro.
+     */
+    public record FacetQuery(String text, Set<String> fileTypes, DateBucket dateBucket,
+                             LocalDate from, LocalDate to, Set<String> categories, Set<String> authors) {}
+
+    public record FacetValue(String value, long count) {}
+
+    /**
+     * Pagina dei risultati (id decrescenti), totale e conteggi per faccetta; per
+     * {@link Facet#DATE} i valori sono le etichette di {@link DateBucket}.
+     * {@code ready} è falso finché l'indice delle faccette non è stato costruito.
+     */
+    public record FacetedResult(List<Content> items, long total, Map<Facet, List<FacetValue>> facets,
+                                boolean ready, long tookMs) {}
+
+    private static final String SELECT = "SELECT id, file_name, file_type, category, upload_user, creation_date,"
+            + " mime_type FROM contents";
+
+    private final ContentRepository contentRepository;
+    private final SearchIndexService searchIndexService;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxValues;
+    private final Timer queryTimer;
+
+    private volatile FacetIndex index = new FacetIndex();
+    private volatile boolean ready;
+    private List<Map.Entry<Long, FacetIndex.Doc>> journal;
+
+    public FacetSearchService(ContentRepository contentRepository, SearchIndexService searchIndexService,
+                              JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                              @Value("${search.facets.enabled:true}") boolean enabled,
+                              @Value("${search.index.rebuild-batch-size:1000}") int batchSize,
+                              @Value("${search.facets.max-values:10}") int maxValues) {
+        this.contentRepository = contentRepository;
+        this.searchIndexService = searchIndexService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxValues = maxValues;
+
+        Gauge.builder("search.facets.documents", this, s -> s.index.documentCount())
+                .description("Contenuti nell'indice delle faccette")
+                .register(meterRegistry);
+        Gauge.builder("search.facets.bytes", this, s -> s.index.sizeInBytes())
+                .description("Memoria occupata dagli insiemi compressi delle faccette")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.queryTimer = Timer.builder("search.facets.query")
+                .description("Tempo delle ricerche a faccette (risultati e conteggi)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Una pagina (da 1) di risultati con i conteggi delle faccette. Per categoria e
+     * autore restano i {@code search.facets.max-values} valori più frequenti, più
+     * quelli selezionati.
+     */
+    public FacetedResult search(FacetQuery query, int page, int pageSize) {
+        long start = System.nanoTime();
+        if (!ready) {
+            return new FacetedResult(List.of(), 0, new EnumMap<>(Facet.class), false, 0);
+        }
+        CompressedBitmap match = query.text() != null && !query.text().isBlank()
+                ? CompressedBitmap.of(textMatches(query.text())) : null;
+
+        Map<Facet, Set<String>> values = new EnumMap<>(Facet.class);
+        values.put(Facet.FILE_TYPE, orEmpty(query.fileTypes()));
+        values.put(Facet.CATEGORY, orEmpty(query.categories()));
+        values.put(Facet.AUTHOR, orEmpty(query.authors()));
+        LocalDate today = LocalDate.now();
+        LocalDate from = query.dateBucket() != null ? query.dateBucket().since(today) : query.from();
+        LocalDate to = query.dateBucket() != null ? null : query.to();
+        FacetIndex.Filter filter = new FacetIndex.Filter(values,
+                from != null ? from.toEpochDay() : null, to != null ? to.toEpochDay() : null);
+
+        Map<Long, DateBucket> buckets = new LinkedHashMap<>();
+        for (DateBucket bucket : DateBucket.values()) buckets.put(bucket.since(today).toEpochDay(), bucket);
+
+        long skip = (long) Math.max(0, page - 1) * pageSize;
+        FacetIndex.Result result = queryTimer.record(() -> index.search(match, filter, buckets.keySet(), skip, pageSize));
+
+        Map<Facet, List<FacetValue>> facets = new EnumMap<>(Facet.class);
+        result.counts().forEach((facet, counts) -> {
+            List<FacetValue> facetValues = new ArrayList<>();
+            Set<String> selected = values.getOrDefault(facet, Set.of());
+            counts.forEach((value, count) -> {
+                if (facet == Facet.DATE) {
+                    facetValues.add(new FacetValue(buckets.get(Long.parseLong(value)).label(), count));
+                } else if (facet == Facet.FILE_TYPE || facetValues.size() < maxValues || selected.contains(value)) {
+                    facetValues.add(new FacetValue(value, count));
+                }
+            });
+            facets.put(facet, facetValues);
+        });
+        return new FacetedResult(load(result.ids()), result.total(), facets, true,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Id dei contenuti che corrispondono al testo: indice full-text, oppure LIKE
+     * sulle stesse colonne se l'indice è disattivato o non ancora pronto.
+     */
+    private long[] textMatches(String text) {
+        Optional<long[]> ids = searchIndexService.search(SearchIndexService.Kind.CONTENT, text);
+        if (ids.isPresent()) return ids.get();
+        String like = "%" + text.trim().toLowerCase(Locale.ROOT) + "%";
+        return jdbcTemplate.queryForList("SELECT id FROM contents WHERE LOWER(file_name) LIKE ?"
+                        + " OR LOWER(description) LIKE ? OR LOWER(file_type) LIKE ? OR LOWER(category) LIKE ?"
+                        + " OR LOWER(tags) LIKE ? ORDER BY id",
+                Long.class, like, like, like, like, like).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private List<Content> load(long[] ids) {
+        if (ids.length == 0) return List.of();
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) idList.add(id);
+        Map<Long, Content> byId = new HashMap<>();
+        contentRepository.findAllById(idList).forEach(content -> byId.put(content.getId(), content));
+        List<Content> contents = new ArrayList<>(ids.length);
+        for (Long id : idList) {
+            Content content = byId.get(id);
+            if (content != null) contents.add(content);
+        }
+        return contents;
+    }
+
+    /** Riallinea le faccette del contenuto al commit, rileggendo la riga. */
+    public void indexAfterCommit(Object entity) {
+        if (!enabled || !(entity instanceof Content content) || content.getId() == null) return;
+        long id = content.getId();
+        afterCommit(() -> reindex(id));
+    }
+
+    public void removeAfterCommit(Object entity) {
+        if (!enabled || !(entity instanceof Content content) || content.getId() == null) return;
+        long id = content.getId();
+        afterCommit(() -> apply(id, null));
+    }
+
+    public void reindex(long id) {
+        List<FacetIndex.Doc> docs = jdbcTemplate.query(SELECT + " WHERE id = ?", (rs, rowNum) -> doc(rs), id);
+        apply(id, docs.isEmpty() ? null : docs.get(0));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** {@code doc == null} elimina il contenuto. */
+    private synchronized void apply(long id, FacetIndex.Doc doc) {
+        if (doc == null) {
+            index.remove(id);
+        } else {
+            index.put(id, doc);
+        }
+        if (journal != null) journal.add(new AbstractMap.SimpleImmutableEntry<>(id, doc));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!enabled) {
+            log.info("Facet index disabled");
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Facet index rebuild failed: {}", e.getMessage());
+            }
+        }, "facet-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Ricostruisce l'indice in un'istanza nuova; le modifiche intanto arrivate vengono riapplicate. */
+    public void rebuild() {
+        synchronized (this) {
+            journal = new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        FacetIndex rebuilt = new FacetIndex();
+        String sql = SELECT + " WHERE id > ? ORDER BY id LIMIT ?";
+        long lastId = 0;
+        int rows;
+        do {
+            long[] last = {lastId};
+            int[] count = {0};
+            jdbcTemplate.query(sql, rs -> {
+                last[0] = rs.getLong(1);
+                count[0]++;
+                rebuilt.put(last[0], doc(rs));
+            }, lastId, batchSize);
+            lastId = last[0];
+            rows = count[0];
+        } while (rows == batchSize);
+
+        synchronized (this) {
+            for (Map.Entry<Long, FacetIndex.Doc> change : journal) {
+                if (change.getValue() == null) {
+                    rebuilt.remove(change.getKey());
+                } else {
+                    rebuilt.put(change.getKey(), change.getValue());
+                }
+            }
+            journal = null;
+            index = rebuilt;
+            ready = true;
+        }
+        log.info("Facet index rebuilt: {} contents, {} KB in {} ms", rebuilt.documentCount(),
+                rebuilt.sizeInBytes() / 1024, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static FacetIndex.Doc doc(ResultSet rs) throws SQLException {
+        Timestamp created = rs.getTimestamp(6);
+        return new FacetIndex.Doc(
+                typeGroup(rs.getString(2), rs.getString(3), rs.getString(7)),
+                blankToNull(rs.getString(4)),
+                blankToNull(rs.getString(5)),
+                created != null ? created.toLocalDateTime().toLocalDate().toEpochDay() : 0);
+    }
+
+    /**
+     * Gruppo della faccetta tipo, dalla MIME del contenuto, dall'estensione del file
+     * o dal tipo memorizzato in {@code contents.file_type} (PDF, DOCUMENT, IMAGE,
+     * VIDEO, AUDIO, ARCHIVE). DOCUMENT comprende anche fogli di calcolo e
+     * presentazioni, quindi da solo non basta per DOC/DOCX.
+     */
+    public static String typeGroup(String fileName, String fileType, String mimeType) {
+        String mime = mimeType != null ? mimeType.toLowerCase(Locale.ROOT) : "";
+        String type = fileType != null ? fileType.toUpperCase(Locale.ROOT) : "";
+        int dot = fileName != null ? fileName.lastIndexOf('.') : -1;
+        String ext = dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        if (type.equals("PDF") || ext.equals("pdf") || mime.contains("pdf")) return TYPE_PDF;
+        if (ext.equals("doc") || ext.equals("docx") || mime.contains("msword") || mime.contains("wordprocessingml")) {
+            return TYPE_WORD;
+        }
+        if (type.equals("VIDEO") || mime.startsWith("video/") || VIDEO_EXTENSIONS.contains(ext)) return TYPE_VIDEO;
+        if (type.equals("AUDIO") || mime.startsWith("audio/") || AUDIO_EXTENSIONS.contains(ext)) return TYPE_AUDIO;
+        if (type.equals("ARCHIVE") || ARCHIVE_EXTENSIONS.contains(ext)
+                || mime.contains("zip") || mime.contains("rar")) {
+            return TYPE_ARCHIVE;
+        }
+        if (type.equals("IMAGE") || mime.startsWith("image/") || IMAGE_EXTENSIONS.contains(ext)) return TYPE_IMAGE;
+        return TYPE_OTHER;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static Set<String> orEmpty(Set<String> values) {
+        return values != null ? values : Set.of();
+    }
+}
@@ -0,0 +1,126 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.domain.FileUpload;
+import io.bootify.my_app.domain.Product;
+import io.bootify.my_app.repos.ContentRepository;
+import io.bootify.my_app.repos.FileUploadRepository;
+import io.bootify.my_app.repos.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+
+/**
+ * Risolve i file scaricabili (prodotti, file caricati, contenuti) in una
+ * {@link Resource} su file (o sul blob, se memorizzato compresso), senza mai
+ * caricarne il contenuto in heap: il controller la trasmette in streaming,
+ * anche per intervalli (Range).
+ */
+@Service
+@Transactional(readOnly = true)
+public class FileDownloadService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDownloadService.class);
+
+    public enum Kind { PRODUCTS, UPLOADS, CONTENTS }
+
+    /**
+     * File pronto per il download. {@code etag} è forte (hash del contenuto) o
+     * {@code null} se l'hash non è noto.
+     */
+    public record Download(Resource resource, String fileName, String contentType,
+                           String etag, Instant lastModified) {}
+
+    private final ProductRepository productRepository;
+    private final FileUploadRepository fileUploadRepository;
+    private final ContentRepository contentRepository;
+    private final BlobStore blobStore;
+    private final RemoteOriginCache remoteOriginCache;
+    private final LocalOriginFiles localOriginFiles;
+
+    public FileDownloadService(ProductRepository productRepository, FileUploadRepository fileUploadRepository,
+                               ContentRepository contentRepository, BlobStore blobStore,
+                               RemoteOriginCache remoteOriginCache, LocalOriginFiles localOriginFiles) {
+        this.productRepository = productRepository;
+        this.fileUploadRepository = fileUploadRepository;
+        this.contentRepository = contentRepository;
+        this.blobStore = blobStore;
+        this.remoteOriginCache = remoteOriginCache;
+        this.localOriginFiles = localOriginFiles;
+    }
+
+    public Optional<Download> find(Kind kind, Long id) {
+        return switch (kind) {
+            case PRODUCTS -> productRepository.findById(id).flatMap(this::forProduct);
+            case UPLOADS -> fileUploadRepository.findById(id).flatMap(this::forUpload);
+            case CONTENTS -> contentRepository.findById(id).flatMap(this::forContent);
+        };
+    }
+
+    private Optional<Download> forProduct(Product product) {
+        if (!product.hasFile()) return Optional.empty();
+        return blobResource(product.getBlobKey()).map(resource -> new Download(resource,
+                product.getFileName(), product.getFileType(), etag(product.getFileHash()),
+                product.getLastUpdated() != null ? product.getLastUpdated().toInstant() : null));
+    }
+
+    private Optional<Download> forUpload(FileUpload file) {
+        return blobResource(file.getBlobKey()).map(resource -> new Download(resource,
+                file.getFileName(), file.getFileType(), etag(file.getFileHash()), instant(file.getUploadDate())));
+    }
+
+    private Optional<Download> forContent(Content content) {
+        Optional<Resource> resource = blobResource(content.getBlobKey());
+        if (resource.isEmpty()) resource = originalResource(content);
+        // l'hash è affidabile solo se calcolato sul blob memorizzato
+        String etag = content.getBlobKey() != null ? etag(content.getFileHash()) : null;
+        String contentType = content.getMimeType() != null ? content.getMimeType() : content.getFileType();
+        return resource.map(r -> new Download(r, content.getFileName(), contentType, etag,
+                instant(content.getLastModified())));
+    }
+
+    private Optional<Resource> blobResource(String blobKey) {
+        if (blobKey == null || !blobStore.exists(blobKey)) return Optional.empty();
+        return Optional.of(blobStore.localPath(blobKey).<Resource>map(FileSystemResource::new)
+                .orElseGet(() -> new BlobStoreResource(blobStore, blobKey)));
+    }
+
+    private Optional<Resource> originalResource(Content content) {
+        String path = content.getOriginalPath();
+        if (path == null) return Optional.empty();
+        if (path.startsWith("classpath:")) {
+            ClassPathResource resource = new ClassPathResource(path.substring("classpath:".length()));
+            return resource.exists() ? Optional.of(resource) : Optional.empty();
+        }
+        if (path.startsWith("http://") || path.startsWith("https://")) {
+            // scaricato subito (404 se non disponibile); ogni lettura riapre la copia in cache
+            try (RemoteOriginCache.Lease ignored = remoteOriginCache.open(path)) {
+                return Optional.of(new RemoteOriginResource(remoteOriginCache, path));
+            } catch (IOException e) {
+                log.warn("Download failed from {}: {}", path, e.getMessage());
+                return Optional.empty();
+            }
+        }
+        Path local = localOriginFiles.resolve(content);
+        return local != null ? Optional.of(new FileSystemResource(local)) : Optional.empty();
+    }
+
+    private static String etag(String hash) {
+        return hash != null && !hash.isBlank() ? "\"" + hash + "\"" : null;
+    }
+
+    private static Instant instant(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+}
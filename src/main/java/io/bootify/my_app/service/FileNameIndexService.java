@@ -0,0 +1,295 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.domain.FileUpload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice a trigrammi dei nomi file di contenuti e file caricati, per le ricerche
+ * "il nome contiene" che con {@code LIKE '%frammento%'} non possono usare indici.
+ * <ul>
+ *   <li>ogni nome (minuscolo) è indicizzato per tutte le sue sottostringhe di tre
+ *       caratteri, con un {@link InvertedIndex} in cui i trigrammi fanno da termini;</li>
+ *   <li>un frammento diventa l'intersezione delle posting list dei suoi trigrammi:
+ *       i candidati vengono poi verificati sul nome, quindi il risultato è esatto;</li>
+ *   <li>frammenti di meno di tre caratteri, o indice non ancora pronto: vuoto, e il
+ *       repository usa la LIKE.</li>
+ * </ul>
+ * Aggiornamenti al commit tramite {@code SearchIndexListener}, ricostruzione
+ * all'avvio come per {@link SearchIndexService}.
+ */
+@Service
+public class FileNameIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileNameIndexService.class);
+
+    private static final int GRAM = 3;
+
+    /** Oltre questo numero di corrispondenze il frammento non è selettivo: i repository usano la LIKE. */
+    public static final int MAX_IN_IDS = 1000;
+
+    public enum Kind {
+        CONTENT("contents"),
+        FILE_UPLOAD("file_uploads");
+
+        private final String table;
+
+        Kind(String table) {
+            this.table = table;
+        }
+    }
+
+    /** Indice di un tipo più i nomi per la verifica; durante la ricostruzione le modifiche vanno nel journal. */
+    private static final class Slot {
+        private volatile InvertedIndex index = new InvertedIndex();
+        private volatile Map<Long, String> names = new ConcurrentHashMap<>();
+        private volatile boolean ready;
+        private List<Map.Entry<Long, String>> journal;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Map<Kind, Slot> slots = new EnumMap<>(Kind.class);
+
+    private final Timer queryTimer;
+    private final Counter fallbacks;
+
+    public FileNameIndexService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                @Value("${search.file-names.enabled:true}") boolean enabled,
+                                @Value("${search.index.rebuild-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+
+        for (Kind kind : Kind.values()) {
+            Slot slot = new Slot();
+            slots.put(kind, slot);
+            Gauge.builder("search.file-names.documents", slot, s -> s.names.size())
+                    .description("Nomi file nell'indice a trigrammi")
+                    .tag("kind", kind.table)
+                    .register(meterRegistry);
+            Gauge.builder("search.file-names.trigrams", slot, s -> s.index.termCount())
+                    .description("Trigrammi distinti nell'indice dei nomi file")
+                    .tag("kind", kind.table)
+                    .register(meterRegistry);
+        }
+        this.queryTimer = Timer.builder("search.file-names.query")
+                .description("Tempo delle ricerche sull'indice dei nomi file")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("search.file-names.fallback")
+                .description("Ricerche sui nomi file passate alla LIKE (frammento corto o indice non pronto)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Id crescenti dei record il cui nome contiene {@code fragment} (senza
+     * distinzione fra maiuscole e minuscole). Vuoto se l'indice non può rispondere:
+     * il chiamante usa allora la LIKE.
+     */
+    public Optional<long[]> containing(Kind kind, String fragment) {
+        Slot slot = slots.get(kind);
+        String needle = needle(fragment);
+        if (!slot.ready || needle.length() < GRAM) {
+            fallbacks.increment();
+            return Optional.empty();
+        }
+        return Optional.of(queryTimer.record(() -> {
+            long[] candidates = slot.index.search(List.copyOf(trigrams(needle)), null);
+            Map<Long, String> names = slot.names;
+            long[] matches = new long[candidates.length];
+            int n = 0;
+            for (long id : candidates) {
+                // i trigrammi possono esserci in ordine diverso: conta solo la sottostringa intera
+                String name = names.get(id);
+                if (name != null && name.contains(needle)) matches[n++] = id;
+            }
+            return n == matches.length ? matches : Arrays.copyOf(matches, n);
+        }));
+    }
+
+    public void indexAfterCommit(Object entity) {
+        if (!enabled) return;
+        if (entity instanceof Content content && content.getId() != null) {
+            long id = content.getId();
+            String fileName = content.getFileName();
+            afterCommit(() -> apply(Kind.CONTENT, id, fileName));
+        } else if (entity instanceof FileUpload upload && upload.getId() != null) {
+            long id = upload.getId();
+            String fileName = upload.getFileName();
+            afterCommit(() -> apply(Kind.FILE_UPLOAD, id, fileName));
+        }
+    }
+
+    public void removeAfterCommit(Object entity) {
+        if (!enabled) return;
+        if (entity instanceof Content content && content.getId() != null) {
+            long id = content.getId();
+            afterCommit(() -> apply(Kind.CONTENT, id, null));
+        } else if (entity instanceof FileUpload upload && upload.getId() != null) {
+            long id = upload.getId();
+            afterCommit(() -> apply(Kind.FILE_UPLOAD, id, null));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** {@code fileName == null} elimina il record. */
+    private void apply(Kind kind, long id, String fileName) {
+        Slot slot = slots.get(kind);
+        synchronized (slot) {
+            put(slot.index, slot.names, id, fileName);
+            if (slot.journal != null) {
+                slot.journal.add(new AbstractMap.SimpleImmutableEntry<>(id, fileName));
+            }
+        }
+    }
+
+    private static void put(InvertedIndex index, Map<Long, String> names, long id, String fileName) {
+        if (fileName == null) {
+            index.remove(id);
+            names.remove(id);
+        } else {
+            String name = normalize(fileName);
+            index.put(id, trigrams(name));
+            names.put(id, name);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!enabled) {
+            log.info("File name trigram index disabled, file name searches use LIKE queries");
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            for (Kind kind : Kind.values()) {
+                try {
+                    rebuild(kind);
+                } catch (RuntimeException e) {
+                    log.warn("File name index rebuild failed for {}: {}", kind.table, e.getMessage());
+                }
+            }
+        }, "file-name-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Ricostruisce l'indice di un tipo e lo sostituisce a quello in uso, riapplicando il journal. */
+    public void rebuild(Kind kind) {
+        Slot slot = slots.get(kind);
+        synchronized (slot) {
+            slot.journal = new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        InvertedIndex.Builder builder = new InvertedIndex.Builder();
+        Map<Long, String> names = new HashMap<>();
+        String sql = "SELECT id, file_name FROM " + kind.table + " WHERE id > ? ORDER BY id LIMIT ?";
+        long lastId = 0;
+        int rows;
+        do {
+            long[] last = {lastId};
+            int[] count = {0};
+            jdbcTemplate.query(sql, rs -> {
+                last[0] = rs.getLong(1);
+                count[0]++;
+                String fileName = rs.getString(2);
+                if (fileName != null) {
+                    String name = normalize(fileName);
+                    builder.add(last[0], trigrams(name));
+                    names.put(last[0], name);
+                }
+            }, lastId, batchSize);
+            lastId = last[0];
+            rows = count[0];
+        } while (rows == batchSize);
+
+        InvertedIndex rebuilt = builder.build();
+        Map<Long, String> rebuiltNames = new ConcurrentHashMap<>(names);
+        synchronized (slot) {
+            for (Map.Entry<Long, String> change : slot.journal) {
+                put(rebuilt, rebuiltNames, change.getKey(), change.getValue());
+            }
+            slot.journal = null;
+            slot.index = rebuilt;
+            slot.names = rebuiltNames;
+            slot.ready = true;
+        }
+        log.info("File name index for {} rebuilt: {} names, {} trigrams in {} ms", kind.table,
+                rebuiltNames.size(), rebuilt.termCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Pattern {@code %frammento%} per la LIKE di ripiego, con {@code %}, {@code _} e
+     * {@code \} protetti: va usato con {@code ESCAPE '\'}. Frammento nullo: tutti i nomi.
+     */
+    public static String likePattern(String fragment) {
+        if (fragment == null) return "%";
+        return "%" + escapeLike(needle(fragment)) + "%";
+    }
+
+    /** Protegge {@code %}, {@code _} e {@code \} di un valore da usare in una LIKE con {@code ESCAPE '\'}. */
+    public static String escapeLike(String value) {
+        return value
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    /**
+     * Frammento cercato, uguale per indice e LIKE di ripiego: senza spazi ai bordi
+     * e normalizzato come i nomi; vuoto se nullo.
+     */
+    static String needle(String fragment) {
+        return fragment != null ? normalize(fragment.trim()) : "";
+    }
+
+    /** Stessa normalizzazione della {@code LOWER} delle query di ripiego. */
+    static String normalize(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT);
+    }
+
+    static Set<String> trigrams(String name) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            grams.add(name.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
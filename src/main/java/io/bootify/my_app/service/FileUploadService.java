@@ -3,8 +3,11 @@ package io.bootify.my_app.service;
 import io.bootify.my_app.domain.FileUpload;
 import io.bootify.my_app.repos.FileUploadRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,15 +16,29 @@ import java.util.Optional;
 public class FileUploadService {
 
     private final FileUploadRepository fileUploadRepository;
+    private final BlobStore blobStore;
 
-    public FileUploadService(FileUploadRepository fileUploadRepository) {
+    public FileUploadService(FileUploadRepository fileUploadRepository, BlobStore blobStore) {
         this.fileUploadRepository = fileUploadRepository;
+        this.blobStore = blobStore;
     }
 
     public List<FileUpload> findAll() {
         return fileUploadRepository.findAllByOrderByUploadDateDesc();
     }
 
+    /**
+     * Elenco per le griglie: file parziali ({@link FileUpload#isSummary()}) senza
+     * metadata, trascrizione e traduzione. Per dettaglio e modifica usare {@link #findById}.
+     */
+    public List<FileUpload> findAllSummaries() {
+        return fileUploadRepository.findSummariesOrderByUploadDateDesc();
+    }
+
+    public List<FileUpload> searchSummariesByFileName(String fileName) {
+        return fileUploadRepository.findSummariesByFileNameOrderByUploadDateDesc(fileName);
+    }
+
     public Optional<FileUpload> findById(Long id) {
         return fileUploadRepository.findById(id);
     }
@@ -42,7 +59,43 @@ public class FileUploadService {
         return fileUploadRepository.findByStatusOrderByUploadDateDesc(status);
     }
 
+    /**
+     * Scrive il contenuto nel BlobStore e aggiorna riferimento, dimensione e hash
+     * del file (non salva l'entità).
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void attachData(FileUpload fileUpload, InputStream data) throws IOException {
+        BlobStore.StoredBlob blob = blobStore.put(data);
+        fileUpload.setBlobKey(blob.key());
+        fileUpload.setFileHash(blob.sha256());
+        fileUpload.setFileSize(blob.size());
+    }
+
+    /**
+     * Come {@link #attachData(FileUpload, InputStream)} per un file già ricevuto su
+     * disco: viene spostato nel BlobStore senza rileggerlo. L'upload viene chiuso.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void attachData(FileUpload fileUpload, SpooledUpload upload) throws IOException {
+        try (upload) {
+            BlobStore.StoredBlob blob = blobStore.putFile(upload.getFile(), upload.getSha256());
+            fileUpload.setBlobKey(blob.key());
+            fileUpload.setFileHash(blob.sha256());
+            fileUpload.setFileSize(blob.size());
+        }
+    }
+
+    /** Stream del contenuto del file, oppure {@code null} se non ha dati. */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public InputStream openData(FileUpload fileUpload) throws IOException {
+        if (!blobStore.exists(fileUpload.getBlobKey())) return null;
+        return blobStore.openStream(fileUpload.getBlobKey());
+    }
+
     public FileUpload save(FileUpload fileUpload) {
+        if (fileUpload.isSummary()) {
+            throw new IllegalStateException("Partial file " + fileUpload.getId() + " must be reloaded before saving");
+        }
         return fileUploadRepository.save(fileUpload);
     }
 
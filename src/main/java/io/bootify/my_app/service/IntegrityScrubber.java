@@ -0,0 +1,320 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.ScrubCursor;
+import io.bootify.my_app.domain.ScrubMismatch;
+import io.bootify.my_app.repos.ScrubCursorRepository;
+import io.bootify.my_app.repos.ScrubMismatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Verifica in background dei file memorizzati di contents, file_uploads e
+ * products: rilegge ogni blob (al più {@code scrub.bandwidth-bytes-per-sec}),
+ * ne calcola SHA-256 e dimensione e li confronta con la riga.
+ * <ul>
+ *   <li>hash, dimensione (ed ETag dei file caricati) mancanti vengono compilati;</li>
+ *   <li>le discrepanze e i blob mancanti o corrotti finiscono in
+ *       {@link ScrubMismatch}, senza toccare la riga;</li>
+ *   <li>l'ultimo id verificato è salvato in {@link ScrubCursor}: dopo un riavvio
+ *       si riprende da lì.</li>
+ * </ul>
+ * Metriche: {@code scrub.bytes.read}, {@code scrub.rows}, {@code scrub.filled},
+ * {@code scrub.mismatches}, {@code scrub.progress} (frazione della passata) e
+ * {@code scrub.throughput} (byte/s dell'ultimo lotto).
+ * <p>
+ * Un lotto può durare minuti (la lettura è limitata apposta): gira su un thread
+ * suo, così non blocca gli altri job {@code @Scheduled}.
+ */
+@Component
+public class IntegrityScrubber {
+
+    private static final Logger log = LoggerFactory.getLogger(IntegrityScrubber.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int VERIFIED_CACHE_SIZE = 1024;
+
+    private enum Target {
+        CONTENTS("contents", false),
+        UPLOADS("file_uploads", true),
+        PRODUCTS("products", false);
+
+        private final String table;
+        private final boolean hasEtag;
+
+        Target(String table, boolean hasEtag) {
+            this.table = table;
+            this.hasEtag = hasEtag;
+        }
+    }
+
+    private record Row(long id, String blobKey, String fileHash, Long fileSize, String etag) {}
+
+    private record Verified(String sha256, long size) {}
+
+    private final BlobStore blobStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final ScrubCursorRepository cursorRepository;
+    private final ScrubMismatchRepository mismatchRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long bandwidthBytesPerSec;
+    private final int batchSize;
+
+    private final Counter bytesRead;
+    private final Map<String, Double> progress = new ConcurrentHashMap<>();
+    private volatile double throughput;
+    private long nextFreeNanos;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "integrity-scrubber");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean batchPending = new AtomicBoolean();
+
+    /** Blob già verificati (immutabili, content-addressed): più righe possono condividerli. */
+    private final Map<String, Verified> verified = new LinkedHashMap<>(VERIFIED_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+            return size() > VERIFIED_CACHE_SIZE;
+        }
+    };
+
+    public IntegrityScrubber(BlobStore blobStore, JdbcTemplate jdbcTemplate,
+                             ScrubCursorRepository cursorRepository, ScrubMismatchRepository mismatchRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${scrub.enabled:true}") boolean enabled,
+                             @Value("${scrub.bandwidth-bytes-per-sec:8388608}") long bandwidthBytesPerSec,
+                             @Value("${scrub.batch-size:100}") int batchSize) {
+        this.blobStore = blobStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cursorRepository = cursorRepository;
+        this.mismatchRepository = mismatchRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.bandwidthBytesPerSec = bandwidthBytesPerSec;
+        this.batchSize = batchSize;
+
+        this.bytesRead = Counter.builder("scrub.bytes.read")
+                .description("Byte riletti dallo scrubber di integrità")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        for (Target target : Target.values()) {
+            progress.put(target.table, 0.0);
+            Gauge.builder("scrub.progress", progress, p -> p.getOrDefault(target.table, 0.0))
+                    .description("Frazione della passata corrente già verificata")
+                    .tag("target", target.table)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("scrub.throughput", this, scrubber -> scrubber.throughput)
+                .description("Byte/s letti nell'ultimo lotto")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${scrub.interval-ms:30000}", initialDelayString = "${scrub.initial-delay-ms:60000}")
+    public void scheduledRun() {
+        // un lotto alla volta: se il precedente non è finito si salta il giro
+        if (!enabled || !batchPending.compareAndSet(false, true)) return;
+        worker.execute(() -> {
+            try {
+                runBatch();
+            } catch (InterruptedIOException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Integrity scrub failed: {}", e.getMessage(), e);
+            } finally {
+                batchPending.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** Verifica fino a {@code scrub.batch-size} righe per tabella, riprendendo dal cursore. */
+    public synchronized void runBatch() throws IOException {
+        long start = System.nanoTime();
+        double before = bytesRead.count();
+        for (Target target : Target.values()) {
+            scrubBatch(target);
+        }
+        long elapsed = System.nanoTime() - start;
+        throughput = elapsed > 0 ? (bytesRead.count() - before) * TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+    }
+
+    private void scrubBatch(Target target) throws IOException {
+        ScrubCursor cursor = cursorRepository.findById(target.table).orElseGet(() -> new ScrubCursor(target.table));
+        List<Row> rows = jdbcTemplate.query(
+                "SELECT id, blob_key, file_hash, file_size" + (target.hasEtag ? ", etag" : ", NULL")
+                        + " FROM " + target.table + " WHERE id > ? AND blob_key IS NOT NULL ORDER BY id LIMIT ?",
+                (rs, i) -> new Row(rs.getLong(1), rs.getString(2), rs.getString(3),
+                        rs.getObject(4, Long.class), rs.getString(5)),
+                cursor.getLastId(), batchSize);
+
+        if (rows.isEmpty()) {
+            if (cursor.getLastId() > 0) {
+                OffsetDateTime now = OffsetDateTime.now();
+                log.info("Integrity scrub of {} completed (pass {}, started {})",
+                        target.table, cursor.getPasses() + 1, cursor.getPassStartedAt());
+                cursor.setPasses(cursor.getPasses() + 1);
+                cursor.setLastPassCompletedAt(now);
+                cursor.setPassStartedAt(now);
+                cursor.setLastId(0);
+                cursorRepository.save(cursor);
+                verified.clear();
+            }
+            progress.put(target.table, 1.0);
+            return;
+        }
+
+        for (Row row : rows) {
+            scrubRow(target, row);
+            cursor.setLastId(row.id());
+            cursor = cursorRepository.save(cursor);
+            Counter.builder("scrub.rows").tag("target", target.table).register(meterRegistry).increment();
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + target.table, Long.class);
+        progress.put(target.table, maxId != null && maxId > 0 ? Math.min(1.0, (double) cursor.getLastId() / maxId) : 1.0);
+    }
+
+    private void scrubRow(Target target, Row row) throws IOException {
+        Verified actual;
+        try {
+            actual = verify(row.blobKey());
+        } catch (NoSuchFileException e) {
+            flag(target, row, ScrubMismatch.Problem.MISSING_BLOB, row.blobKey(), null);
+            return;
+        }
+
+        boolean clean = true;
+        boolean corrupted = !actual.sha256().equals(row.blobKey());
+        if (corrupted) {
+            flag(target, row, ScrubMismatch.Problem.CORRUPTED_BLOB, row.blobKey(), actual.sha256());
+            clean = false;
+        }
+
+        if (row.fileHash() == null) {
+            if (!corrupted) fill(target, row, "file_hash", actual.sha256());
+        } else if (!row.fileHash().equalsIgnoreCase(actual.sha256())) {
+            flag(target, row, ScrubMismatch.Problem.HASH_MISMATCH, row.fileHash(), actual.sha256());
+            clean = false;
+        }
+
+        if (row.fileSize() == null) {
+            fill(target, row, "file_size", actual.size());
+        } else if (row.fileSize() != actual.size()) {
+            flag(target, row, ScrubMismatch.Problem.SIZE_MISMATCH,
+                    String.valueOf(row.fileSize()), String.valueOf(actual.size()));
+            clean = false;
+        }
+
+        // l'ETag dei file caricati è derivato dal contenuto: se manca o è vecchio si riallinea
+        if (target.hasEtag && !corrupted && !Objects.equals(row.etag(), actual.sha256())) {
+            fill(target, row, "etag", actual.sha256());
+        }
+
+        if (clean) {
+            mismatchRepository.deleteByRow(target.table, row.id());
+        }
+    }
+
+    private Verified verify(String blobKey) throws IOException {
+        Verified cached = verified.get(blobKey);
+        if (cached != null) return cached;
+
+        MessageDigest digest = sha256();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = blobStore.openStreamUntracked(blobKey)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+                size += n;
+                bytesRead.increment(n);
+                throttle(n);
+            }
+        }
+        Verified result = new Verified(HexFormat.of().formatHex(digest.digest()), size);
+        verified.put(blobKey, result);
+        return result;
+    }
+
+    /** Limita la lettura a {@code bandwidthBytesPerSec}: ogni byte "costa" tempo su un orologio virtuale. */
+    private void throttle(int bytes) throws InterruptedIOException {
+        if (bandwidthBytesPerSec <= 0) return;
+        long now = System.nanoTime();
+        nextFreeNanos = Math.max(nextFreeNanos, now) + bytes * TimeUnit.SECONDS.toNanos(1) / bandwidthBytesPerSec;
+        long wait = nextFreeNanos - now;
+        if (wait <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Integrity scrub interrupted");
+        }
+    }
+
+    /** Compila un campo solo se nel frattempo nessuno l'ha cambiato. */
+    private void fill(Target target, Row row, String column, Object value) {
+        Object previous = switch (column) {
+            case "file_hash" -> row.fileHash();
+            case "file_size" -> row.fileSize();
+            default -> row.etag();
+        };
+        int updated = previous == null
+                ? jdbcTemplate.update("UPDATE " + target.table + " SET " + column + " = ? WHERE id = ? AND "
+                        + column + " IS NULL AND blob_key = ?", value, row.id(), row.blobKey())
+                : jdbcTemplate.update("UPDATE " + target.table + " SET " + column + " = ? WHERE id = ? AND "
+                        + column + " = ? AND blob_key = ?", value, row.id(), previous, row.blobKey());
+        if (updated > 0) {
+            Counter.builder("scrub.filled").tag("target", target.table).tag("field", column)
+                    .register(meterRegistry).increment();
+        }
+    }
+
+    private void flag(Target target, Row row, ScrubMismatch.Problem problem, String expected, String actual) {
+        Counter.builder("scrub.mismatches").tag("target", target.table).tag("problem", problem.name())
+                .register(meterRegistry).increment();
+        if (mismatchRepository.existsByTargetAndRowIdAndProblem(target.table, row.id(), problem)) return;
+        log.warn("Integrity scrub: {} id {} {} (expected {}, actual {})",
+                target.table, row.id(), problem, expected, actual);
+        mismatchRepository.save(new ScrubMismatch(target.table, row.id(), row.blobKey(), problem, expected, actual));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package io.bootify.my_app.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice invertito in memoria: per ogni termine l'elenco ordinato degli id dei
+ * documenti che lo contengono, più l'elenco inverso (id → termini) che serve per
+ * aggiornare o togliere un documento senza scorrere tutto il dizionario.
+ * <p>
+ * Le posting list sono array ordinati di {@code long} con spazio libero in coda,
+ * compatti e intersecabili con un semplice merge. Un nuovo documento ha di norma
+ * l'id più alto, quindi l'inserimento è un'aggiunta in coda (costo ammortizzato
+ * costante); solo gli id fuori ordine spostano gli elementi successivi. Il
+ * caricamento iniziale passa da {@link Builder}, che li ordina una volta sola.
+ */
+final class InvertedIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final TreeMap<String, Postings> postings;
+    private final Map<Long, String[]> documents;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    InvertedIndex() {
+        this(new TreeMap<>(), new HashMap<>());
+    }
+
+    private InvertedIndex(TreeMap<String, Postings> postings, Map<Long, String[]> documents) {
+        this.postings = postings;
+        this.documents = documents;
+    }
+
+    /** Inserisce o sostituisce i termini di un documento. */
+    void put(long id, Collection<String> terms) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (terms.isEmpty()) return;
+            String[] termArray = terms.toArray(new String[0]);
+            for (String term : termArray) {
+                postings.computeIfAbsent(term, t -> new Postings()).add(id);
+            }
+            documents.put(id, termArray);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long id) {
+        String[] previous = documents.remove(id);
+        if (previous == null) return;
+        for (String term : previous) {
+            Postings ids = postings.get(term);
+            if (ids == null) continue;
+            ids.remove(id);
+            if (ids.size == 0) postings.remove(term);
+        }
+    }
+
+    /**
+     * Id (crescenti) dei documenti che contengono tutti i termini e, se presente,
+     * almeno un termine che inizia con il prefisso.
+     */
+    long[] search(List<String> terms, String prefix) {
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>(terms.size() + 1);
+            for (String term : terms) {
+                Postings ids = postings.get(term);
+                if (ids == null) return EMPTY;
+                lists.add(ids);
+            }
+            if (prefix != null) {
+                long[] ids = prefixUnion(prefix);
+                if (ids.length == 0) return EMPTY;
+                lists.add(new Postings(ids));
+            }
+            if (lists.isEmpty()) return EMPTY;
+            // dalla lista più corta: ogni intersezione può solo restringere
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            Postings shortest = lists.get(0);
+            long[] result = Arrays.copyOf(shortest.ids, shortest.size);
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                Postings other = lists.get(i);
+                result = intersect(result, result.length, other.ids, other.size);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] prefixUnion(String prefix) {
+        NavigableMap<String, Postings> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (range.isEmpty()) return EMPTY;
+        if (range.size() == 1) {
+            Postings only = range.firstEntry().getValue();
+            return Arrays.copyOf(only.ids, only.size);
+        }
+        int total = 0;
+        for (Postings ids : range.values()) total += ids.size;
+        long[] all = new long[total];
+        int offset = 0;
+        for (Postings ids : range.values()) {
+            System.arraycopy(ids.ids, 0, all, offset, ids.size);
+            offset += ids.size;
+        }
+        return distinctSorted(all, total);
+    }
+
+    int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static long[] intersect(long[] a, long[] b) {
+        return intersect(a, a.length, b, b.length);
+    }
+
+    private static long[] intersect(long[] a, int aLength, long[] b, int bLength) {
+        long[] out = new long[Math.min(aLength, bLength)];
+        int i = 0, j = 0, n = 0;
+        while (i < aLength && j < bLength) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /** Posting list di un termine: i primi {@code size} elementi di {@code ids}, crescenti. */
+    private static final class Postings {
+
+        private static final int MIN_CAPACITY = 4;
+
+        private long[] ids;
+        private int size;
+
+        Postings() {
+            this.ids = new long[MIN_CAPACITY];
+        }
+
+        Postings(long[] ids) {
+            this.ids = ids;
+            this.size = ids.length;
+        }
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) return;
+                pos = -pos - 1;
+                ensureCapacity();
+                System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+                ids[pos] = id;
+            } else {
+                ensureCapacity();
+                ids[size] = id;
+            }
+            size++;
+        }
+
+        void remove(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) return;
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            // restituisce la memoria quando la lista si è svuotata quasi del tutto
+            if (ids.length > MIN_CAPACITY * 4 && size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, Math.max(MIN_CAPACITY, size * 2));
+            }
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) ids = Arrays.copyOf(ids, Math.max(MIN_CAPACITY, size * 2));
+        }
+    }
+
+    private static long[] distinctSorted(long[] ids, int length) {
+        Arrays.sort(ids, 0, length);
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || ids[n - 1] != ids[i]) ids[n++] = ids[i];
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    /** Caricamento in blocco per la ricostruzione: le liste vengono ordinate alla fine. */
+    static final class Builder {
+
+        private final Map<String, long[]> buffers = new HashMap<>();
+        private final Map<String, Integer> sizes = new HashMap<>();
+        private final Map<Long, String[]> documents = new HashMap<>();
+
+        void add(long id, Collection<String> terms) {
+            if (terms.isEmpty()) return;
+            String[] termArray = terms.toArray(new String[0]);
+            for (String term : termArray) {
+                int size = sizes.getOrDefault(term, 0);
+                long[] buffer = buffers.get(term);
+                if (buffer == null) {
+                    buffer = new long[4];
+                } else if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size] = id;
+                buffers.put(term, buffer);
+                sizes.put(term, size + 1);
+            }
+            documents.put(id, termArray);
+        }
+
+        InvertedIndex build() {
+            TreeMap<String, Postings> postings = new TreeMap<>();
+            buffers.forEach((term, buffer) -> postings.put(term, new Postings(distinctSorted(buffer, sizes.get(term)))));
+            return new InvertedIndex(postings, documents);
+        }
+    }
+}
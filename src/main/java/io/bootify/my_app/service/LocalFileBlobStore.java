@@ -0,0 +1,344 @@
+package io.bootify.my_app.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link BlobStore} su filesystem locale, content-addressed: la chiave è lo
+ * SHA-256 del contenuto e il file sta in {@code <directory>/ab/cd/<sha256>}.
+ * Due upload identici occupano quindi un solo file (il secondo ne aggiorna solo
+ * la data di modifica). La scrittura passa da un file temporaneo nella stessa
+ * directory e termina con un rename atomico.
+ * <p>
+ * I blob testuali (nessun byte di controllo nei primi 8 KB) di almeno
+ * {@code blob.store.compression.min-bytes} vengono memorizzati compressi in
+ * {@code <sha256>.z} (lunghezza originale su 8 byte + stream zlib), se il
+ * risparmio supera il 10%. Per questi {@link #localPath} è vuoto e la lettura
+ * decomprime in streaming; chiave, hash e dimensione restano quelli originali.
+ */
+@Component
+public class LocalFileBlobStore implements BlobStore {
+
+    private static final String COMPRESSED_SUFFIX = ".z";
+    private static final String STATS_TARGET = "blob-store";
+    private static final int SNIFF_BYTES = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path directory;
+    private final boolean compressionEnabled;
+    private final long compressionMinBytes;
+    private final CompressionStats compressionStats;
+    /** Lock per chiave (a strisce) tra deduplica ed eliminazione del GC. */
+    private final Object[] keyLocks = new Object[LOCK_STRIPES];
+
+    public LocalFileBlobStore(@Value("${blob.store.directory:data/blobs}") String directory,
+                              @Value("${blob.store.compression.enabled:true}") boolean compressionEnabled,
+                              @Value("${blob.store.compression.min-bytes:4096}") long compressionMinBytes,
+                              CompressionStats compressionStats) {
+        this.directory = Paths.get(directory);
+        this.compressionEnabled = compressionEnabled;
+        this.compressionMinBytes = compressionMinBytes;
+        this.compressionStats = compressionStats;
+        for (int i = 0; i < keyLocks.length; i++) keyLocks[i] = new Object();
+    }
+
+    /** Esito di una scrittura: {@code written} è falso se il contenuto c'era già (deduplica). */
+    record Write(StoredBlob blob, boolean written) {}
+
+    @Override
+    public StoredBlob put(InputStream in) throws IOException {
+        return write(in).blob();
+    }
+
+    @Override
+    public StoredBlob putFile(Path file, String sha256) throws IOException {
+        return writeFile(file, sha256).blob();
+    }
+
+    /** Come {@link #put}, dicendo anche se il file del blob è stato scritto. */
+    Write write(InputStream in) throws IOException {
+        Path tmp = Files.createTempFile(incoming(), "blob-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (in; OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), digest)) {
+                size = in.transferTo(out);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            boolean written = !touch(key);
+            if (written) {
+                store(tmp, key, size);
+            }
+            return new Write(new StoredBlob(key, size, key), written);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Come {@link #putFile}, dicendo anche se il file del blob è stato scritto. */
+    Write writeFile(Path file, String sha256) throws IOException {
+        long size = Files.size(file);
+        if (touch(sha256)) {
+            Files.deleteIfExists(file);
+            return new Write(new StoredBlob(sha256, size, sha256), false);
+        }
+        try {
+            store(file, sha256, size);
+        } catch (AtomicMoveNotSupportedException e) {
+            // spool su un altro filesystem: si copia passando dal file temporaneo
+            return write(Files.newInputStream(file));
+        }
+        return new Write(new StoredBlob(sha256, size, sha256), true);
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        Path file = fileFor(key);
+        if (Files.exists(file)) return Files.newInputStream(file);
+        Path packed = compressedFileFor(key);
+        if (!Files.exists(packed)) throw new NoSuchFileException("Blob not found: " + key);
+        InputStream in = new BufferedInputStream(Files.newInputStream(packed), BUFFER_SIZE);
+        try {
+            in.skipNBytes(Long.BYTES);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new InflaterInputStream(in);
+    }
+
+    @Override
+    public ReadableByteChannel openChannel(String key) throws IOException {
+        Path file = fileFor(key);
+        if (Files.exists(file)) return FileChannel.open(file, StandardOpenOption.READ);
+        return Channels.newChannel(openStream(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return key != null && (Files.exists(fileFor(key)) || Files.exists(compressedFileFor(key)));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        Path file = existing(key);
+        if (!file.getFileName().toString().endsWith(COMPRESSED_SUFFIX)) return Files.size(file);
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readLong();
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path file = fileFor(key);
+        return Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(fileFor(key));
+        Files.deleteIfExists(compressedFileFor(key));
+    }
+
+    @Override
+    public boolean deleteIfOlderThan(String key, Instant cutoff) throws IOException {
+        synchronized (lockFor(key)) {
+            try {
+                if (!lastModified(key).isBefore(cutoff)) return false;
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            delete(key);
+            return true;
+        }
+    }
+
+    @Override
+    public Stream<String> keys() throws IOException {
+        if (!Files.isDirectory(directory)) return Stream.empty();
+        return Files.find(directory, 3, (path, attributes) -> attributes.isRegularFile()
+                        && path.getNameCount() - directory.getNameCount() == 3)
+                .map(path -> path.getFileName().toString())
+                .map(name -> name.endsWith(COMPRESSED_SUFFIX)
+                        ? name.substring(0, name.length() - COMPRESSED_SUFFIX.length()) : name)
+                .filter(LocalFileBlobStore::isKey)
+                .distinct();
+    }
+
+    @Override
+    public Instant lastModified(String key) throws IOException {
+        return Files.getLastModifiedTime(existing(key)).toInstant();
+    }
+
+    /**
+     * Deduplica: se il blob c'è già ne aggiorna la data di modifica e restituisce
+     * {@code true}. Il periodo di grazia del GC riparte, così un blob orfano appena
+     * ricaricato (e associato a un'entità non ancora salvata) non viene eliminato.
+     * Avviene sotto lo stesso lock di {@link #deleteIfOlderThan}: il GC vede la
+     * nuova data oppure l'upload trova il blob già eliminato e lo riscrive.
+     */
+    private boolean touch(String key) throws IOException {
+        FileTime now = FileTime.from(Instant.now());
+        synchronized (lockFor(key)) {
+            for (Path file : List.of(fileFor(key), compressedFileFor(key))) {
+                try {
+                    Files.setLastModifiedTime(file, now);
+                    return true;
+                } catch (NoSuchFileException e) {
+                    // non c'è in questa forma (o è stato appena eliminato)
+                }
+            }
+        }
+        return false;
+    }
+
+    private Object lockFor(String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), keyLocks.length)];
+    }
+
+    /**
+     * Sposta {@code source} nello store come blob {@code key}, compresso se ne
+     * vale la pena. {@code source} non va più usato dopo la chiamata.
+     */
+    private void store(Path source, String key, long size) throws IOException {
+        Path target = fileFor(key);
+        Files.createDirectories(target.getParent());
+        Path packed = compressionEnabled ? compress(source, size) : null;
+        if (packed == null) {
+            moveInto(source, target);
+            return;
+        }
+        try {
+            moveInto(packed, compressedFileFor(key));
+        } finally {
+            Files.deleteIfExists(packed);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    /** File temporaneo con il contenuto compresso, o {@code null} se non conviene. */
+    private Path compress(Path source, long size) throws IOException {
+        long start = System.nanoTime();
+        if (size < compressionMinBytes || !looksLikeText(source)) {
+            compressionStats.skipped(STATS_TARGET, System.nanoTime() - start);
+            return null;
+        }
+        Path packed = Files.createTempFile(incoming(), "blob-", ".z.tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(packed);
+                 DataOutputStream header = new DataOutputStream(file)) {
+                header.writeLong(size);
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (DeflaterOutputStream out = new DeflaterOutputStream(header, deflater, BUFFER_SIZE)) {
+                    Files.copy(source, out);
+                } finally {
+                    deflater.end();
+                }
+            }
+            long packedSize = Files.size(packed);
+            if (packedSize > size * 9 / 10) {
+                Files.deleteIfExists(packed);
+                compressionStats.skipped(STATS_TARGET, System.nanoTime() - start);
+                return null;
+            }
+            compressionStats.compressed(STATS_TARGET, size, packedSize, System.nanoTime() - start);
+            return packed;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(packed);
+            throw e;
+        }
+    }
+
+    /** Testo (anche UTF-8): nessun NUL e quasi nessun carattere di controllo all'inizio del file. */
+    private static boolean looksLikeText(Path file) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(head, 0, head.length);
+        }
+        int control = 0;
+        for (int i = 0; i < read; i++) {
+            int b = head[i] & 0xff;
+            if (b == 0) return false;
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0x1b) control++;
+        }
+        return read > 0 && control * 100 < read;
+    }
+
+    private static void moveInto(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException raced) {
+            // stesso contenuto scritto in parallelo: va bene così
+            Files.deleteIfExists(source);
+        }
+    }
+
+    private Path incoming() throws IOException {
+        Path incoming = directory.resolve("incoming");
+        Files.createDirectories(incoming);
+        return incoming;
+    }
+
+    private Path existing(String key) throws IOException {
+        Path file = fileFor(key);
+        if (Files.exists(file)) return file;
+        Path packed = compressedFileFor(key);
+        if (Files.exists(packed)) return packed;
+        throw new NoSuchFileException("Blob not found: " + key);
+    }
+
+    private Path compressedFileFor(String key) {
+        return fileFor(key).resolveSibling(key + COMPRESSED_SUFFIX);
+    }
+
+    private Path fileFor(String key) {
+        if (!isKey(key)) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static boolean isKey(String key) {
+        return key != null && key.length() >= 4 && key.matches("[0-9a-f]+");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Content;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * File originali su filesystem (Content con originalPath locale). Il percorso è
+ * risolto rispetto a {@code preview.local.root} e normalizzato: tutto ciò che
+ * finisce fuori dalla radice ({@code ..}, percorsi assoluti altrove) viene
+ * ignorato, perché originalPath è modificabile dalle viste.
+ */
+@Component
+public class LocalOriginFiles {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalOriginFiles.class);
+
+    private final Path root;
+
+    public LocalOriginFiles(@Value("${preview.local.root:data/originals}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    /**
+     * File leggibile per il contenuto: originalPath stesso, oppure il file con lo
+     * stesso nome (anche a meno di maiuscole) se originalPath è una cartella.
+     * {@code null} se non esiste o è fuori dalla radice.
+     */
+    public Path resolve(Content content) {
+        String path = content.getOriginalPath();
+        if (path == null) return null;
+        try {
+            Path base = within(root.resolve(path));
+            if (base == null) {
+                log.warn("Local original path outside {} ignored: {}", root, path);
+                return null;
+            }
+            if (Files.isDirectory(base)) {
+                if (content.getFileName() == null) return null;
+                Path candidate = within(base.resolve(content.getFileName()));
+                if (candidate != null && Files.isReadable(candidate)) return candidate;
+                try (var stream = Files.list(base)) {
+                    return stream
+                            .filter(p -> p.getFileName().toString()
+                                    .equalsIgnoreCase(content.getFileName()))
+                            .findFirst()
+                            .orElse(null);
+                }
+            } else if (Files.isReadable(base)) {
+                return base;
+            }
+        } catch (Exception e) {
+            log.debug("Local file lookup failed for '{}': {}", path, e.getMessage());
+        }
+        return null;
+    }
+
+    private Path within(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        return normalized.startsWith(root) ? normalized : null;
+    }
+}
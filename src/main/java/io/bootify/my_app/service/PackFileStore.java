@@ -0,0 +1,363 @@
+package io.bootify.my_app.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Archivio "freddo" di {@link TieredBlobStore}: file {@code pack-NNNNN.pack}
+ * append-only, ciascuno con il suo indice {@code pack-NNNNN.idx} (una riga
+ * {@code A <chiave> <offset> <lunghezza> <ms>} per blob aggiunto, {@code D <chiave>}
+ * per blob rimosso). L'indice viene ricaricato in memoria all'avvio.
+ * <p>
+ * Le letture sono slice di un {@link MappedByteBuffer} del pack: nessuna copia
+ * in heap. I pack restano sotto i 2 GB, il limite di un singolo mapping.
+ * <p>
+ * Lo spazio nel pack corrente viene riservato sotto lock e scritto fuori: copie
+ * lunghe (compattazione) non bloccano le altre scritture. Un pack compattato viene
+ * tolto dall'indice subito ed eliminato dal disco quando l'ultimo canale aperto
+ * con {@link #open} su di esso è stato chiuso.
+ */
+final class PackFileStore {
+
+    record Entry(int pack, long offset, long length, long storedAt) {}
+
+    private static final int COPY_BUFFER_BYTES = 1024 * 1024;
+
+    private final Path directory;
+    private final long maxPackBytes;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> liveBytes = new ConcurrentHashMap<>();
+    private final Map<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private int currentPack = 1;
+    /** Byte già riservati nel pack corrente (scritti o in scrittura). Protetto da {@code this}. */
+    private long currentSize;
+
+    /** Pack → canali di lettura aperti. Protetti da {@code readers}, come {@code retired}. */
+    private final Map<Integer, Integer> readers = new HashMap<>();
+    /** Pack compattati, ancora su disco finché qualcuno li legge. */
+    private final Set<Integer> retired = new HashSet<>();
+    private final Object compactLock = new Object();
+
+    PackFileStore(Path directory, long maxPackBytes) throws IOException {
+        this.directory = directory;
+        this.maxPackBytes = Math.min(maxPackBytes, Integer.MAX_VALUE);
+        Files.createDirectories(directory);
+        load();
+    }
+
+    boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    Entry entry(String key) {
+        return index.get(key);
+    }
+
+    Set<String> keys() {
+        return Set.copyOf(index.keySet());
+    }
+
+    long liveBytes() {
+        return liveBytes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    /**
+     * Canale in sola lettura sul blob, direttamente sul mapping del pack. Finché
+     * non viene chiuso il pack resta su disco anche se la compattazione lo ritira.
+     */
+    ReadableByteChannel open(String key) throws IOException {
+        while (true) {
+            Entry entry = index.get(key);
+            if (entry == null) throw new NoSuchFileException("Blob not found in packs: " + key);
+            synchronized (readers) {
+                readers.merge(entry.pack(), 1, Integer::sum);
+            }
+            if (!entry.equals(index.get(key))) {
+                // spostato o rimosso nel frattempo (il pack può essere già ritirato): si rilegge l'indice
+                release(entry.pack());
+                continue;
+            }
+            try {
+                return new ByteBufferChannel(slice(entry), () -> release(entry.pack()));
+            } catch (IOException | RuntimeException e) {
+                release(entry.pack());
+                throw e;
+            }
+        }
+    }
+
+    /** Accoda {@code length} byte letti da {@code source} al pack corrente. */
+    Entry append(String key, ReadableByteChannel source, long length) throws IOException {
+        Entry entry = write(key, source, length);
+        synchronized (this) {
+            appendIndex(entry.pack(), indexLine(key, entry));
+            Entry previous = index.put(key, entry);
+            if (previous != null) liveBytes.merge(previous.pack(), -previous.length(), Long::sum);
+            liveBytes.merge(entry.pack(), length, Long::sum);
+        }
+        return entry;
+    }
+
+    synchronized void remove(String key) throws IOException {
+        Entry entry = index.remove(key);
+        if (entry == null) return;
+        appendIndex(entry.pack(), "D " + key);
+        liveBytes.merge(entry.pack(), -entry.length(), Long::sum);
+    }
+
+    /**
+     * Riscrive nel pack corrente i blob ancora vivi dei pack chiusi con meno di
+     * {@code minLiveRatio} di dati vivi, poi li ritira. Le copie avvengono senza
+     * lock; ogni voce passa al nuovo pack solo se nel frattempo non è cambiata.
+     * Restituisce i byte liberati.
+     */
+    long compact(double minLiveRatio) throws IOException {
+        synchronized (compactLock) {
+            List<Integer> candidates = new ArrayList<>();
+            synchronized (this) {
+                for (int pack : packIds()) {
+                    if (pack == currentPack || !Files.exists(indexFile(pack))) continue;
+                    long size = Files.size(packFile(pack));
+                    long live = liveBytes.getOrDefault(pack, 0L);
+                    if (size > 0 && (double) live / size < minLiveRatio) candidates.add(pack);
+                }
+            }
+            long reclaimed = 0;
+            for (int pack : candidates) {
+                long size = Files.size(packFile(pack));
+                long moved = 0;
+                for (Map.Entry<String, Entry> live : List.copyOf(index.entrySet())) {
+                    Entry old = live.getValue();
+                    if (old.pack() != pack) continue;
+                    // i pack chiusi vengono eliminati solo qui: lo slice resta valido durante la copia
+                    Entry copy = write(live.getKey(), new ByteBufferChannel(slice(old)), old.length());
+                    synchronized (this) {
+                        // rimosso o riscritto durante la copia: la copia resta spazio morto
+                        if (!index.replace(live.getKey(), old, copy)) continue;
+                        appendIndex(copy.pack(), indexLine(live.getKey(), copy));
+                        liveBytes.merge(pack, -old.length(), Long::sum);
+                        liveBytes.merge(copy.pack(), copy.length(), Long::sum);
+                    }
+                    moved += copy.length();
+                }
+                reclaimed += size - moved;
+                synchronized (this) {
+                    liveBytes.remove(pack);
+                    // senza indice il pack non viene più caricato, anche se resta su disco
+                    Files.deleteIfExists(indexFile(pack));
+                }
+                retire(pack);
+            }
+            return reclaimed;
+        }
+    }
+
+    /**
+     * Scrive {@code length} byte in uno spazio riservato del pack corrente; la voce
+     * non è ancora nell'indice. Se la scrittura fallisce lo spazio resta inutilizzato.
+     */
+    private Entry write(String key, ReadableByteChannel source, long length) throws IOException {
+        if (length > maxPackBytes) throw new IOException("Blob too large for a pack: " + length + " bytes");
+        int pack;
+        long offset;
+        synchronized (this) {
+            if (currentSize > 0 && currentSize + length > maxPackBytes) {
+                currentPack++;
+                currentSize = 0;
+            }
+            pack = currentPack;
+            offset = currentSize;
+            currentSize += length;
+        }
+        try (FileChannel out = FileChannel.open(packFile(pack), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // scritture posizionali: altre riserve dello stesso pack possono finire prima di questa
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_BYTES, Math.max(1, length)));
+            long written = 0;
+            while (written < length) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), length - written));
+                int n = source.read(buffer);
+                if (n < 0) break;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += out.write(buffer, offset + written);
+                }
+            }
+            if (written != length) {
+                throw new IOException("Short read while packing " + key + ": " + written + "/" + length);
+            }
+            out.force(true);
+        }
+        return new Entry(pack, offset, length, System.currentTimeMillis());
+    }
+
+    private ByteBuffer slice(Entry entry) throws IOException {
+        MappedByteBuffer mapping = mapping(entry.pack(), entry.offset() + entry.length());
+        return mapping.slice((int) entry.offset(), (int) entry.length()).asReadOnlyBuffer();
+    }
+
+    private void retire(int pack) throws IOException {
+        synchronized (readers) {
+            retired.add(pack);
+            if (readers.containsKey(pack)) return;
+        }
+        deletePack(pack);
+    }
+
+    private void release(int pack) {
+        synchronized (readers) {
+            Integer count = readers.computeIfPresent(pack, (p, n) -> n > 1 ? n - 1 : null);
+            if (count != null || !retired.contains(pack)) return;
+        }
+        try {
+            deletePack(pack);
+        } catch (IOException e) {
+            // resta su disco senza indice: viene eliminato al prossimo avvio
+        }
+    }
+
+    private void deletePack(int pack) throws IOException {
+        mappings.remove(pack);
+        Files.deleteIfExists(packFile(pack));
+        synchronized (readers) {
+            retired.remove(pack);
+        }
+    }
+
+    private MappedByteBuffer mapping(int pack, long required) throws IOException {
+        MappedByteBuffer mapping = mappings.get(pack);
+        if (mapping != null && mapping.capacity() >= required) return mapping;
+        synchronized (mappings) {
+            mapping = mappings.get(pack);
+            if (mapping != null && mapping.capacity() >= required) return mapping;
+            // il pack corrente cresce: si rimappa per intero (i vecchi slice restano validi)
+            try (FileChannel channel = FileChannel.open(packFile(pack), StandardOpenOption.READ)) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            mappings.put(pack, mapping);
+            return mapping;
+        }
+    }
+
+    private void load() throws IOException {
+        for (int pack : packIds()) {
+            Path indexFile = indexFile(pack);
+            if (!Files.exists(indexFile)) {
+                // ritirato dalla compattazione (o primo blob mai indicizzato): nessuno lo legge più
+                Files.deleteIfExists(packFile(pack));
+                continue;
+            }
+            currentPack = Math.max(currentPack, pack);
+            long packSize = Files.exists(packFile(pack)) ? Files.size(packFile(pack)) : 0;
+            try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.US_ASCII)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    if (parts.length == 5 && "A".equals(parts[0])) {
+                        long offset = Long.parseLong(parts[2]);
+                        long length = Long.parseLong(parts[3]);
+                        if (offset + length > packSize) continue; // scrittura interrotta
+                        Entry previous = index.put(parts[1], new Entry(pack, offset, length, Long.parseLong(parts[4])));
+                        if (previous != null) liveBytes.merge(previous.pack(), -previous.length(), Long::sum);
+                        liveBytes.merge(pack, length, Long::sum);
+                    } else if (parts.length == 2 && "D".equals(parts[0])) {
+                        Entry entry = index.get(parts[1]);
+                        if (entry != null && entry.pack() == pack) {
+                            index.remove(parts[1]);
+                            liveBytes.merge(pack, -entry.length(), Long::sum);
+                        }
+                    }
+                }
+            }
+        }
+        currentSize = Files.exists(packFile(currentPack)) ? Files.size(packFile(currentPack)) : 0;
+    }
+
+    private List<Integer> packIds() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("pack-\\d+\\.pack"))
+                    .forEach(name -> ids.add(Integer.parseInt(name.substring(5, name.length() - 5))));
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private static String indexLine(String key, Entry entry) {
+        return "A " + key + " " + entry.offset() + " " + entry.length() + " " + entry.storedAt();
+    }
+
+    private void appendIndex(int pack, String line) throws IOException {
+        Files.writeString(indexFile(pack), line + "\n", StandardCharsets.US_ASCII,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    }
+
+    private Path packFile(int pack) {
+        return directory.resolve(String.format("pack-%05d.pack", pack));
+    }
+
+    private Path indexFile(int pack) {
+        return directory.resolve(String.format("pack-%05d.idx", pack));
+    }
+
+    /** Canale di lettura su un {@link ByteBuffer} (tipicamente uno slice mappato). */
+    static final class ByteBufferChannel implements ReadableByteChannel {
+
+        private final ByteBuffer buffer;
+        private final Runnable onClose;
+        private boolean open = true;
+
+        ByteBufferChannel(ByteBuffer buffer) {
+            this(buffer, null);
+        }
+
+        ByteBufferChannel(ByteBuffer buffer, Runnable onClose) {
+            this.buffer = buffer;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(dst.remaining(), buffer.remaining());
+            dst.put(dst.position(), buffer, buffer.position(), n);
+            dst.position(dst.position() + n);
+            buffer.position(buffer.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            if (!open) return;
+            open = false;
+            if (onClose != null) onClose.run();
+        }
+    }
+}
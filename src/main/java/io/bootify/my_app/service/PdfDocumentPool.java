@@ -0,0 +1,228 @@
+package io.bootify.my_app.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Documenti PDF aperti da file (buffered o memory-mapped) anziché da {@code byte[]},
+ * con i dati interni di PDFBox limitati in heap da {@code preview.pdf.max-main-memory-bytes}
+ * e il resto su scratch file. I documenti restano aperti per un breve periodo così
+ * il rendering di più pagine dello stesso file non lo riparsa ogni volta.
+ */
+@Component
+public class PdfDocumentPool {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfDocumentPool.class);
+
+    /**
+     * File sorgente del documento; {@code temporary} = copia di spool da cancellare
+     * alla chiusura, {@code lease} = eventuale blocco da rilasciare insieme al file
+     * (copie della cache remota, che altrimenti l'eviction potrebbe eliminare).
+     */
+    public record SourceFile(Path file, boolean temporary, Closeable lease) {
+
+        public SourceFile(Path file, boolean temporary) {
+            this(file, temporary, null);
+        }
+
+        /** Da chiamare quando il file non serve più. */
+        public void release() throws IOException {
+            try {
+                if (temporary) Files.deleteIfExists(file);
+            } finally {
+                if (lease != null) lease.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface SourceResolver {
+        SourceFile resolve() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface DocumentWork<T> {
+        T apply(PDDocument document, PDFRenderer renderer) throws IOException;
+    }
+
+    private final long maxMainMemoryBytes;
+    private final boolean memoryMapped;
+    private final int maxOpenDocuments;
+    private final long idleTimeoutMs;
+    private final Path scratchDirectory;
+
+    private final LinkedHashMap<String, OpenDocument> open = new LinkedHashMap<>(16, 0.75f, true);
+
+    public PdfDocumentPool(@Value("${preview.pdf.max-main-memory-bytes:16777216}") long maxMainMemoryBytes,
+                           @Value("${preview.pdf.memory-mapped:true}") boolean memoryMapped,
+                           @Value("${preview.pdf.max-open-documents:8}") int maxOpenDocuments,
+                           @Value("${preview.pdf.idle-timeout-ms:120000}") long idleTimeoutMs,
+                           @Value("${preview.pdf.scratch-directory:}") String scratchDirectory) {
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+        this.memoryMapped = memoryMapped;
+        this.maxOpenDocuments = maxOpenDocuments;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.scratchDirectory = scratchDirectory == null || scratchDirectory.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "preview-pdf")
+                : Paths.get(scratchDirectory);
+    }
+
+    public long getMaxMainMemoryBytes() {
+        return maxMainMemoryBytes;
+    }
+
+    /**
+     * Esegue {@code work} sul documento identificato da {@code key}, aprendolo da
+     * {@code resolver} se non è già aperto. Restituisce {@code null} se il resolver
+     * non trova il file. L'accesso a un singolo documento è serializzato
+     * (PDDocument e PDFRenderer non sono thread-safe).
+     */
+    public <T> T withDocument(String key, SourceResolver resolver, DocumentWork<T> work) throws IOException {
+        while (true) {
+            OpenDocument document;
+            synchronized (open) {
+                document = open.get(key);
+            }
+            if (document == null) {
+                SourceFile source = resolver.resolve();
+                if (source == null) return null;
+                document = load(source);
+                List<OpenDocument> evicted = new ArrayList<>();
+                synchronized (open) {
+                    OpenDocument raced = open.putIfAbsent(key, document);
+                    if (raced != null) {
+                        evicted.add(document);
+                        document = raced;
+                    }
+                    Iterator<OpenDocument> it = open.values().iterator();
+                    while (open.size() > maxOpenDocuments && it.hasNext()) {
+                        OpenDocument eldest = it.next();
+                        if (eldest == document) continue;
+                        evicted.add(eldest);
+                        it.remove();
+                    }
+                }
+                evicted.forEach(OpenDocument::close);
+            }
+            synchronized (document) {
+                if (document.closed) continue; // chiuso da un'eviction concorrente: riapri
+                document.lastUsed = System.currentTimeMillis();
+                return work.apply(document.document, document.renderer);
+            }
+        }
+    }
+
+    /** Copia uno stream in un file di scratch, senza materializzarlo in heap. */
+    public SourceFile spool(InputStream in) throws IOException {
+        Files.createDirectories(scratchDirectory);
+        Path tmp = Files.createTempFile(scratchDirectory, "src-", ".pdf");
+        try (in) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return new SourceFile(tmp, true);
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleTimeoutMs;
+        List<OpenDocument> evicted = new ArrayList<>();
+        synchronized (open) {
+            Iterator<Map.Entry<String, OpenDocument>> it = open.entrySet().iterator();
+            while (it.hasNext()) {
+                OpenDocument document = it.next().getValue();
+                if (document.lastUsed < threshold) {
+                    evicted.add(document);
+                    it.remove();
+                }
+            }
+        }
+        evicted.forEach(OpenDocument::close);
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        List<OpenDocument> all;
+        synchronized (open) {
+            all = new ArrayList<>(open.values());
+            open.clear();
+        }
+        all.forEach(OpenDocument::close);
+    }
+
+    private OpenDocument load(SourceFile source) throws IOException {
+        Files.createDirectories(scratchDirectory);
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(maxMainMemoryBytes)
+                .setTempDir(scratchDirectory.toFile());
+        RandomAccessRead input = null;
+        try {
+            // Il mapping è limitato a 2 GB per file: oltre si usa la lettura bufferizzata
+            input = memoryMapped && Files.size(source.file()) < Integer.MAX_VALUE
+                    ? new RandomAccessReadMemoryMappedFile(source.file())
+                    : new RandomAccessReadBufferedFile(source.file().toFile());
+            PDDocument document = Loader.loadPDF(input, "", null, null, memory.streamCache);
+            return new OpenDocument(document, source);
+        } catch (IOException | RuntimeException e) {
+            if (input != null) {
+                try { input.close(); } catch (IOException ignored) { }
+            }
+            source.release();
+            throw e;
+        }
+    }
+
+    private static final class OpenDocument {
+
+        private final PDDocument document;
+        private final PDFRenderer renderer;
+        private final SourceFile source;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private boolean closed;
+
+        private OpenDocument(PDDocument document, SourceFile source) {
+            this.document = document;
+            this.renderer = new PDFRenderer(document);
+            this.source = source;
+        }
+
+        private synchronized void close() {
+            if (closed) return;
+            closed = true;
+            try {
+                try {
+                    document.close();
+                } finally {
+                    source.release();
+                }
+            } catch (IOException e) {
+                log.debug("PDF close failed for {}: {}", source.file(), e.getMessage());
+            }
+        }
+    }
+}
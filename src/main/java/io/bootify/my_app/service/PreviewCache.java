@@ -0,0 +1,223 @@
+package io.bootify.my_app.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cache a due livelli per le anteprime renderizzate.
+ * <ul>
+ *   <li>livello 1: LRU in heap, limitato in byte ({@code preview.cache.memory-max-bytes});</li>
+ *   <li>livello 2: file su disco ({@code preview.cache.directory}), sopravvive ai riavvii,
+ *       limitato a {@code preview.cache.disk-max-bytes}: oltre il limite vengono
+ *       eliminati i file usati meno di recente (data di modifica, aggiornata a ogni
+ *       lettura da disco) fino a scendere al 90%.</li>
+ * </ul>
+ * Le chiavi sono content-addressed (hash del file + versione del renderer), quindi
+ * una voce non va mai invalidata: cambia la chiave.
+ */
+@Component
+public class PreviewCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PreviewCache.class);
+
+    /** Dopo una pulizia il disco scende a questa frazione del limite, per non ripulire a ogni scrittura. */
+    private static final double DISK_LOW_WATERMARK = 0.9;
+
+    private final Path directory;
+    private final long memoryMaxBytes;
+    private final long diskMaxBytes;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+
+    /** Byte su disco; stimato fra una pulizia e l'altra, ricalcolato da ogni pulizia. */
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicBoolean evictionPending = new AtomicBoolean();
+    private final AtomicBoolean evictionRequested = new AtomicBoolean();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "preview-cache-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PreviewCache(@Value("${preview.cache.directory:data/preview-cache}") String directory,
+                        @Value("${preview.cache.memory-max-bytes:67108864}") long memoryMaxBytes,
+                        @Value("${preview.cache.disk-max-bytes:2147483648}") long diskMaxBytes) {
+        this.directory = Paths.get(directory);
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.diskMaxBytes = diskMaxBytes;
+        // la cache sopravvive ai riavvii: conteggio iniziale (ed eventuale pulizia) in background
+        scheduleEviction();
+    }
+
+    public byte[] get(String key) {
+        byte[] data = getFromMemory(key);
+        if (data != null) return data;
+
+        Path file = fileFor(key);
+        if (!Files.isReadable(file)) return null;
+        try {
+            data = Files.readAllBytes(file);
+            putInMemory(key, data);
+            touch(file);
+            return data;
+        } catch (IOException e) {
+            log.debug("Preview cache read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean contains(String key) {
+        synchronized (memory) {
+            if (memory.containsKey(key)) return true;
+        }
+        return Files.exists(fileFor(key));
+    }
+
+    public void put(String key, byte[] data) {
+        if (data == null || data.length == 0) return;
+        putInMemory(key, data);
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            boolean replaced = Files.exists(file);
+            // Scrittura atomica: mai un file parziale visibile a un lettore concorrente
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (!replaced && diskBytes.addAndGet(data.length) > diskMaxBytes) scheduleEviction();
+        } catch (IOException e) {
+            log.warn("Preview cache write failed for {}: {}", key, e.getMessage());
+        }
+    }
+
+    long diskBytes() {
+        return diskBytes.get();
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // solo l'ordine di pulizia ne risente
+        }
+    }
+
+    private void scheduleEviction() {
+        evictionRequested.set(true);
+        if (!evictionPending.compareAndSet(false, true)) return;
+        worker.execute(() -> {
+            evictionRequested.set(false);
+            try {
+                evict();
+            } catch (RuntimeException e) {
+                log.warn("Preview cache eviction failed: {}", e.getMessage());
+            } finally {
+                evictionPending.set(false);
+            }
+            // richiesta arrivata durante la scansione, quando una pulizia era già in corso
+            if (evictionRequested.get()) scheduleEviction();
+        });
+    }
+
+    private record CachedFile(Path path, long size, FileTime lastModified) {}
+
+    /** Ricalcola lo spazio occupato e, sopra il limite, elimina i file meno recenti. */
+    void evict() {
+        // le put concorrenti continuano a sommare: alla fine si applica solo la differenza
+        long counted = diskBytes.get();
+        if (!Files.isDirectory(directory)) {
+            diskBytes.addAndGet(-counted);
+            return;
+        }
+        List<CachedFile> files = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                if (!path.getFileName().toString().endsWith(".img")) continue;
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (!attributes.isRegularFile()) continue;
+                    files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime()));
+                    total += attributes.size();
+                } catch (IOException e) {
+                    // eliminato nel frattempo
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Preview cache scan failed: {}", e.getMessage());
+            return;
+        }
+        if (total > diskMaxBytes) {
+            long target = (long) (diskMaxBytes * DISK_LOW_WATERMARK);
+            long before = total;
+            int removed = 0;
+            files.sort(Comparator.comparing(CachedFile::lastModified));
+            for (CachedFile file : files) {
+                if (total <= target) break;
+                try {
+                    if (Files.deleteIfExists(file.path())) {
+                        total -= file.size();
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    log.debug("Preview cache eviction failed for {}: {}", file.path(), e.getMessage());
+                }
+            }
+            log.info("Preview cache evicted {} files, {} -> {} bytes", removed, before, total);
+        }
+        diskBytes.addAndGet(total - counted);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private byte[] getFromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void putInMemory(String key, byte[] data) {
+        if (data.length > memoryMaxBytes) return;
+        synchronized (memory) {
+            byte[] previous = memory.put(key, data);
+            if (previous != null) memoryBytes -= previous.length;
+            memoryBytes += data.length;
+            Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+            while (memoryBytes > memoryMaxBytes && it.hasNext()) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                memoryBytes -= eldest.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".img");
+    }
+}
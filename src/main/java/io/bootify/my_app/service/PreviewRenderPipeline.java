@@ -0,0 +1,178 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline di pre-rendering delle anteprime in background.
+ * I job entrano in una coda a priorità limitata ({@code preview.pipeline.queue-capacity})
+ * servita da un pool fisso di worker; un job già in coda per lo stesso contenuto
+ * viene riusato (ed eventualmente promosso a priorità più alta) invece di duplicarlo.
+ */
+@Component
+public class PreviewRenderPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(PreviewRenderPipeline.class);
+
+    /** Ordine di servizio: prima le richieste di un utente in attesa, poi i salvataggi, poi gli import massivi. */
+    public enum Priority { INTERACTIVE, SAVE, BULK }
+
+    private final PreviewService previewService;
+    private final int workers;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<Long, RenderJob> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public PreviewRenderPipeline(PreviewService previewService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${preview.pipeline.workers:2}") int workers,
+                                 @Value("${preview.pipeline.queue-capacity:500}") int queueCapacity) {
+        this.previewService = previewService;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "preview-render-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("preview.pipeline.queue.depth", executor, e -> e.getQueue().size())
+                .description("Job di anteprima in attesa")
+                .register(meterRegistry);
+        Gauge.builder("preview.pipeline.in.flight", inFlight, AtomicInteger::get)
+                .description("Render di anteprima in esecuzione")
+                .register(meterRegistry);
+        this.completed = Counter.builder("preview.pipeline.completed").register(meterRegistry);
+        this.failed = Counter.builder("preview.pipeline.failed").register(meterRegistry);
+        this.rejected = Counter.builder("preview.pipeline.rejected").register(meterRegistry);
+    }
+
+    /**
+     * Accoda il render dell'anteprima. Il future si completa con l'anteprima
+     * (o {@code null} se il contenuto non esiste), oppure fallisce con
+     * {@link RejectedExecutionException} se la coda è piena.
+     */
+    public CompletableFuture<PreviewService.Preview> enqueue(Long contentId, Priority priority) {
+        RenderJob job = new RenderJob(contentId, priority, sequence.incrementAndGet(), new CompletableFuture<>());
+        RenderJob existing = pending.putIfAbsent(contentId, job);
+        if (existing != null) {
+            if (priority.ordinal() < existing.priority.ordinal() && executor.remove(existing)) {
+                RenderJob promoted = new RenderJob(contentId, priority, sequence.incrementAndGet(), existing.result);
+                pending.put(contentId, promoted);
+                executor.execute(promoted);
+                return promoted.result;
+            }
+            return existing.result;
+        }
+        if (executor.getQueue().size() >= queueCapacity) {
+            pending.remove(contentId, job);
+            rejected.increment();
+            job.result.completeExceptionally(new RejectedExecutionException("Preview queue full"));
+            return job.result;
+        }
+        executor.execute(job);
+        return job.result;
+    }
+
+    /**
+     * Come {@link #enqueue}, ma se è attiva una transazione il job parte solo
+     * dopo il commit: il worker deve vedere i dati appena salvati.
+     */
+    public void enqueueAfterCommit(Long contentId, Priority priority) {
+        if (contentId == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(contentId, priority);
+                }
+            });
+        } else {
+            enqueue(contentId, priority);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("inFlight", inFlight.get());
+        stats.put("completed", (long) completed.count());
+        stats.put("failed", (long) failed.count());
+        stats.put("rejected", (long) rejected.count());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class RenderJob implements Runnable, Comparable<RenderJob> {
+
+        private final Long contentId;
+        private final Priority priority;
+        private final long sequence;
+        private final CompletableFuture<PreviewService.Preview> result;
+
+        private RenderJob(Long contentId, Priority priority, long sequence,
+                          CompletableFuture<PreviewService.Preview> result) {
+            this.contentId = contentId;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            pending.remove(contentId, this);
+            inFlight.incrementAndGet();
+            try {
+                result.complete(previewService.findPreview(contentId));
+                completed.increment();
+            } catch (Exception e) {
+                failed.increment();
+                log.warn("Background preview failed for content {}: {}", contentId, e.getMessage());
+                result.completeExceptionally(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(RenderJob other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
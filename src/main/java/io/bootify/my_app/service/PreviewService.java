@@ -2,39 +2,39 @@ package io.bootify.my_app.service;
 
 import io.bootify.my_app.domain.Content;
 import io.bootify.my_app.repos.ContentRepository;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import io.bootify.my_app.util.SingleFlight;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.poi.hslf.usermodel.HSLFSlideShow;
 import org.apache.poi.hwpf.HWPFDocument;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.poi.xslf.usermodel.XSLFSlide;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 @Service
@@ -44,52 +44,337 @@ public class PreviewService {
 
     private static final Set<String> IMAGE_EXTS = Set.of("png", "jpg", "jpeg", "gif", "bmp", "webp", "svg");
     private static final int PREVIEW_WIDTH = 800;
+    private static final int PREVIEW_DPI = 150;
+    private static final int MIN_PAGE_DPI = 36;
+    private static final int MAX_PAGE_DPI = 300;
+    /** Pagina di riferimento per il budget dei pixel: oltre l'A3 il DPI effettivo scende. */
+    private static final double MAX_PAGE_AREA_PT = PDRectangle.A3.getWidth() * PDRectangle.A3.getHeight();
+    /** Byte per pixel dell'immagine renderizzata (RGB in un int). */
+    private static final int RASTER_BYTES_PER_PIXEL = 4;
+    private static final int SHEET_PREVIEW_ROWS = 26;
+    private static final float JPEG_QUALITY = 0.82f;
+
+    /**
+     * Versione dei renderer: va incrementata quando cambia l'output grafico,
+     * così le anteprime già in cache (memoria e disco) non vengono più servite.
+     */
+    static final int RENDERER_VERSION = 2;
 
     private final ContentRepository contentRepository;
-
-    public PreviewService(ContentRepository contentRepository) {
+    private final PreviewCache previewCache;
+    private final RenderBulkhead renderBulkhead;
+    private final PdfDocumentPool pdfDocumentPool;
+    private final RemoteOriginCache remoteOriginCache;
+    private final LocalOriginFiles localOriginFiles;
+    private final BlobStore blobStore;
+    private volatile byte[] renderingPlaceholder;
+
+    // Richieste concorrenti per lo stesso contenuto/impostazioni condividono un solo render
+    private final SingleFlight<String, Preview> renderFlights = new SingleFlight<>();
+
+    public PreviewService(ContentRepository contentRepository, PreviewCache previewCache,
+                          RenderBulkhead renderBulkhead, PdfDocumentPool pdfDocumentPool,
+                          RemoteOriginCache remoteOriginCache, LocalOriginFiles localOriginFiles,
+                          BlobStore blobStore) {
         this.contentRepository = contentRepository;
+        this.previewCache = previewCache;
+        this.renderBulkhead = renderBulkhead;
+        this.pdfDocumentPool = pdfDocumentPool;
+        this.remoteOriginCache = remoteOriginCache;
+        this.localOriginFiles = localOriginFiles;
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Anteprima pronta da servire. {@code etag} è valorizzato solo per i render reali
+     * (deterministici per hash del file + versione renderer); i placeholder e le
+     * risposte degradate non hanno ETag e non vanno messi in cache, né qui né dai client.
+     */
+    public record Preview(byte[] data, String etag, String contentType) {
+
+        public Preview(byte[] data, String etag) {
+            this(data, etag, ImageFormat.PNG.contentType);
+        }
+    }
+
+    /** Formati di output: PNG senza perdita, JPEG compatto per le miniature. */
+    public enum ImageFormat {
+        PNG("image/png"), JPEG("image/jpeg");
+
+        private final String contentType;
+
+        ImageFormat(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static ImageFormat parse(String value) {
+            if (value == null) return null;
+            return switch (value.trim().toLowerCase()) {
+                case "png", "image/png" -> PNG;
+                case "jpg", "jpeg", "image/jpeg" -> JPEG;
+                default -> null;
+            };
+        }
+    }
+
+    /** Larghezze servite: una richiesta viene arrotondata alla prima larghezza non inferiore. */
+    public static final List<Integer> VARIANT_WIDTHS = List.of(160, 320, 800);
+
+    /**
+     * Variante di un'anteprima: larghezza ({@code null} = immagine originale del
+     * renderer) e formato. Le varianti derivano dall'anteprima in cache, senza
+     * ripassare dal renderer.
+     */
+    public record Variant(Integer width, ImageFormat format) {
+
+        public static final Variant ORIGINAL = new Variant(null, ImageFormat.PNG);
+
+        public static Variant of(Integer requestedWidth, ImageFormat format) {
+            ImageFormat f = format != null ? format : ImageFormat.PNG;
+            if (requestedWidth == null || requestedWidth <= 0) return new Variant(null, f);
+            int width = VARIANT_WIDTHS.stream()
+                    .filter(w -> w >= requestedWidth)
+                    .findFirst()
+                    .orElse(VARIANT_WIDTHS.get(VARIANT_WIDTHS.size() - 1));
+            return new Variant(width, f);
+        }
+
+        public boolean isOriginal() {
+            return width == null && format == ImageFormat.PNG;
+        }
     }
 
     @Transactional(readOnly = true)
     public byte[] generatePreview(Long contentId) {
+        Preview preview = findPreview(contentId);
+        return preview != null ? preview.data() : null;
+    }
+
+    @Transactional(readOnly = true)
+    public Preview findPreview(Long contentId) {
         return contentRepository.findById(contentId)
                 .map(this::doGenerate)
                 .orElse(null);
     }
 
+    /**
+     * Solo lookup in cache, senza renderizzare né scaricare il file.
+     * Restituisce {@code null} se il contenuto non esiste o l'anteprima non è pronta.
+     */
+    @Transactional(readOnly = true)
+    public Preview findCachedPreview(Long contentId) {
+        return findCachedPreview(contentId, Variant.ORIGINAL);
+    }
+
+    /**
+     * Come {@link #findCachedPreview(Long)}, per una variante: se in cache c'è solo
+     * l'anteprima originale la variante viene derivata (ridimensionamento e
+     * ricodifica, economici rispetto al render) e messa in cache.
+     */
+    @Transactional(readOnly = true)
+    public Preview findCachedPreview(Long contentId, Variant variant) {
+        return contentRepository.findById(contentId)
+                .map(content -> cachedVariant(content, cacheKey(content), variant))
+                .orElse(null);
+    }
+
+    /**
+     * Immagine leggera "anteprima in preparazione", servita mentre la pipeline
+     * in background renderizza il documento. Generata una sola volta.
+     */
+    public byte[] renderingPlaceholder() {
+        byte[] placeholder = renderingPlaceholder;
+        if (placeholder == null) {
+            try {
+                BufferedImage img = new BufferedImage(320, 180, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = img.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setColor(new Color(245, 245, 245));
+                g.fillRect(0, 0, 320, 180);
+                g.setColor(new Color(120, 120, 120));
+                g.setFont(new Font("SansSerif", Font.ITALIC, 14));
+                String text = "Anteprima in preparazione…";
+                g.drawString(text, (320 - g.getFontMetrics().stringWidth(text)) / 2, 95);
+                g.dispose();
+                placeholder = toPng(img);
+                renderingPlaceholder = placeholder;
+            } catch (Exception e) {
+                return new byte[0];
+            }
+        }
+        return placeholder;
+    }
+
+    /**
+     * ETag forte dell'anteprima, calcolato dai soli metadati senza renderizzare.
+     * Restituisce {@code null} se il contenuto non esiste.
+     */
+    @Transactional(readOnly = true)
+    public String previewETag(Long contentId) {
+        return previewETag(contentId, Variant.ORIGINAL);
+    }
+
+    @Transactional(readOnly = true)
+    public String previewETag(Long contentId, Variant variant) {
+        return contentRepository.findById(contentId)
+                .map(content -> etag(variantKey(cacheKey(content), variant)))
+                .orElse(null);
+    }
+
+    /**
+     * Anteprima di una singola pagina PDF ({@code pageNumber} parte da 1) alla
+     * risoluzione richiesta, limitata tra {@value #MIN_PAGE_DPI} e {@value #MAX_PAGE_DPI} DPI.
+     * Il documento resta aperto nel {@link PdfDocumentPool}: pagine successive non
+     * lo riparsano. Restituisce {@code null} se il contenuto non è un PDF, il file
+     * non è disponibile o la pagina non esiste.
+     *
+     * @throws RenderBulkhead.RejectedException se il bulkhead rifiuta il render
+     */
+    @Transactional(readOnly = true)
+    public Preview findPagePreview(Long contentId, int pageNumber, int dpi) {
+        Content content = contentRepository.findById(contentId).orElse(null);
+        if (content == null || pageNumber < 1 || formatOf(content) != RenderBulkhead.Format.PDF) {
+            return null;
+        }
+        String documentKey = cacheKey(content);
+        String key = pageKey(documentKey, pageNumber, dpi);
+        byte[] cached = previewCache.get(key);
+        if (cached != null) {
+            return new Preview(cached, etag(key));
+        }
+        return renderFlights.execute(contentId + "|" + key, () -> {
+            byte[] ready = previewCache.get(key);
+            if (ready != null) return new Preview(ready, etag(key));
+            try {
+                byte[] png = renderPdfPage(content, documentKey, pageNumber - 1, clampDpi(dpi));
+                if (png == null || png.length == 0) return null;
+                previewCache.put(key, png);
+                return new Preview(png, etag(key));
+            } catch (IOException e) {
+                log.warn("Page {} preview failed for '{}': {}", pageNumber, content.getFileName(), e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public String pagePreviewETag(Long contentId, int pageNumber, int dpi) {
+        return contentRepository.findById(contentId)
+                .map(content -> etag(pageKey(cacheKey(content), pageNumber, dpi)))
+                .orElse(null);
+    }
+
     // -------------------------------------------------------------------------
     // CORE
     // -------------------------------------------------------------------------
 
-    private byte[] doGenerate(Content content) {
-        byte[] data = resolveData(content);
+    private Preview doGenerate(Content content) {
+        String key = cacheKey(content);
+        byte[] cached = previewCache.get(key);
+        if (cached != null) {
+            return new Preview(cached, etag(key));
+        }
+        return renderFlights.execute(content.getId() + "|" + key, () -> {
+            // un altro chiamante potrebbe aver appena completato il render
+            byte[] ready = previewCache.get(key);
+            return ready != null ? new Preview(ready, etag(key)) : renderAndCache(content, key);
+        });
+    }
+
+    private Preview renderAndCache(Content content, String key) {
+        byte[] png;
+        try {
+            if (formatOf(content) == RenderBulkhead.Format.PDF) {
+                // PDF: caricato da file con heap limitato, senza materializzare byte[]
+                png = renderPdfPage(content, key, 0, PREVIEW_DPI);
+                if (png == null) return placeholderPreview(content);
+                if (png.length == 0) return null;
+            } else if (formatOf(content) == RenderBulkhead.Format.SHEET) {
+                // Excel: lettura in streaming delle sole righe di anteprima
+                png = renderSpreadsheet(content);
+                if (png == null) return placeholderPreview(content);
+            } else {
+                // Il bulkhead limita render pesanti concorrenti e heap stimato; le immagini passano diritte.
+                // Il permesso arriva prima della lettura: anche i byte del file occupano heap
+                RenderBulkhead.Format format = formatOf(content);
+                try (RenderBulkhead.Permit permit = format != null
+                        ? renderBulkhead.acquire(format, sourceSize(content)) : null) {
+                    byte[] data = resolveData(content);
+                    // Nessun file disponibile → restituisce un placeholder grafico informativo
+                    if (data == null || data.length == 0) return placeholderPreview(content);
+                    png = render(content, data);
+                }
+            }
+        } catch (RenderBulkhead.RejectedException e) {
+            // Risorse esaurite: placeholder immediato, non messo in cache
+            log.debug("Preview for '{}' degraded to placeholder: {}", content.getFileName(), e.getMessage());
+            return placeholderPreview(content);
+        } catch (Exception e) {
+            log.warn("Preview failed for '{}': {}", content.getFileName(), e.getMessage());
+            return null;
+        }
+        if (png == null) return null;
+        previewCache.put(key, png);
+        return new Preview(png, etag(key));
+    }
+
+    private Preview cachedVariant(Content content, String key, Variant variant) {
+        if (variant.isOriginal()) {
+            byte[] cached = previewCache.get(key);
+            return cached != null ? new Preview(cached, etag(key)) : null;
+        }
+        String vKey = variantKey(key, variant);
+        byte[] cached = previewCache.get(vKey);
+        if (cached != null) {
+            return new Preview(cached, etag(vKey), variant.format().getContentType());
+        }
+        byte[] master = previewCache.get(key);
+        if (master == null) return null;
+        return renderFlights.execute(content.getId() + "|" + vKey, () -> {
+            byte[] ready = previewCache.get(vKey);
+            if (ready != null) return new Preview(ready, etag(vKey), variant.format().getContentType());
+            try {
+                byte[] encoded = encodeVariant(master, variant);
+                // es. SVG, non decodificabile: la variante è l'originale, con l'ETag della variante
+                // come lo calcola previewETag per le richieste condizionali
+                if (encoded == null) return new Preview(master, etag(vKey));
+                previewCache.put(vKey, encoded);
+                return new Preview(encoded, etag(vKey), variant.format().getContentType());
+            } catch (IOException e) {
+                log.warn("Preview variant {} failed for '{}': {}", variant, content.getFileName(), e.getMessage());
+                // ripiego temporaneo sull'originale: senza ETag, l'URL della variante non resta legato a questi byte
+                return new Preview(master, null);
+            }
+        });
+    }
 
-        // Nessun file disponibile → restituisce un placeholder grafico informativo
-        if (data == null || data.length == 0) {
-            try { return renderPlaceholder(content); } catch (Exception e) { return null; }
+    private Preview placeholderPreview(Content content) {
+        try {
+            return new Preview(renderPlaceholder(content), null);
+        } catch (Exception e) {
+            return null;
         }
+    }
 
+    private byte[] render(Content content, byte[] data) {
         String ext = extension(content.getFileName());
         String type = content.getFileType() != null ? content.getFileType().toUpperCase() : "";
         String mime = content.getMimeType() != null ? content.getMimeType().toLowerCase() : "";
-
         try {
             return switch (ext) {
-                case "pdf" -> renderPdf(data);
                 case "pptx" -> renderPptx(data);
                 case "ppt"  -> renderPpt(data);
                 case "docx" -> renderDocx(data);
                 case "doc"  -> renderDoc(data);
-                case "xlsx" -> renderXlsx(data);
-                case "xls"  -> renderXls(data);
                 default -> {
                     // fallback by type/mime
-                    if ("PDF".equals(type) || mime.contains("pdf"))             yield renderPdf(data);
                     if ("IMAGE".equals(type) || mime.startsWith("image/"))      yield IMAGE_EXTS.contains(ext) ? data : null;
                     if (mime.contains("presentationml") || mime.contains("powerpoint")) yield renderPptx(data);
                     if (mime.contains("wordprocessingml") || mime.contains("msword"))   yield renderDocx(data);
-                    if (mime.contains("spreadsheetml") || mime.contains("excel"))       yield renderXlsx(data);
                     yield null;
                 }
             };
@@ -99,14 +384,63 @@ public class PreviewService {
         }
     }
 
+    private RenderBulkhead.Format formatOf(Content content) {
+        String type = content.getFileType() != null ? content.getFileType().toUpperCase() : "";
+        String mime = content.getMimeType() != null ? content.getMimeType().toLowerCase() : "";
+        return bulkheadFormat(extension(content.getFileName()), type, mime);
+    }
+
+    private RenderBulkhead.Format bulkheadFormat(String ext, String type, String mime) {
+        return switch (ext) {
+            case "pdf" -> RenderBulkhead.Format.PDF;
+            case "pptx", "ppt" -> RenderBulkhead.Format.SLIDES;
+            case "docx", "doc" -> RenderBulkhead.Format.WORD;
+            case "xlsx", "xls" -> RenderBulkhead.Format.SHEET;
+            default -> {
+                if ("PDF".equals(type) || mime.contains("pdf"))                     yield RenderBulkhead.Format.PDF;
+                if ("IMAGE".equals(type) || mime.startsWith("image/"))              yield null;
+                if (mime.contains("presentationml") || mime.contains("powerpoint")) yield RenderBulkhead.Format.SLIDES;
+                if (mime.contains("wordprocessingml") || mime.contains("msword"))   yield RenderBulkhead.Format.WORD;
+                if (mime.contains("spreadsheetml") || mime.contains("excel"))       yield RenderBulkhead.Format.SHEET;
+                yield null;
+            }
+        };
+    }
+
     // -------------------------------------------------------------------------
     // DATA SOURCE: DB blob o URL remoto
     // -------------------------------------------------------------------------
 
+    /**
+     * Dimensione del file da leggere, per prenotare il bulkhead prima di
+     * {@link #resolveData}: blob e file locali dallo storage, il resto da fileSize.
+     */
+    private long sourceSize(Content content) {
+        try {
+            if (content.getBlobKey() != null && blobStore.exists(content.getBlobKey())) {
+                return blobStore.size(content.getBlobKey());
+            }
+            String path = content.getOriginalPath();
+            if (path != null && !path.startsWith("classpath:")
+                    && !path.startsWith("http://") && !path.startsWith("https://")) {
+                Path local = localOriginFiles.resolve(content);
+                if (local != null) return Files.size(local);
+            }
+        } catch (IOException e) {
+            log.debug("Size lookup failed for '{}': {}", content.getFileName(), e.getMessage());
+        }
+        return content.getFileSize() != null ? content.getFileSize() : 0L;
+    }
+
     private byte[] resolveData(Content content) {
-        // 1) BLOB in DB
-        if (content.getFileData() != null && content.getFileData().length > 0) {
-            return content.getFileData();
+        // 1) BlobStore
+        if (content.getBlobKey() != null && blobStore.exists(content.getBlobKey())) {
+            try (InputStream in = blobStore.openStream(content.getBlobKey())) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                log.warn("Blob read failed for '{}': {}", content.getFileName(), e.getMessage());
+                return null;
+            }
         }
         String path = content.getOriginalPath();
         if (path == null) return null;
@@ -128,36 +462,59 @@ public class PreviewService {
         }
 
         // 4) Percorso locale su filesystem
+        Path local = localOriginFiles.resolve(content);
+        if (local == null) return null;
         try {
-            Path base = Paths.get(path);
-            if (Files.isDirectory(base)) {
-                Path candidate = base.resolve(content.getFileName());
-                if (Files.isReadable(candidate)) return Files.readAllBytes(candidate);
-                try (var stream = Files.list(base)) {
-                    var found = stream
-                            .filter(p -> p.getFileName().toString()
-                                    .equalsIgnoreCase(content.getFileName()))
-                            .findFirst();
-                    if (found.isPresent()) return Files.readAllBytes(found.get());
+            return Files.readAllBytes(local);
+        } catch (Exception e) {
+            log.debug("Local file read failed for '{}': {}", local, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Come {@link #resolveData}, ma restituisce un file: blob locali, percorsi
+     * locali, risorse classpath su filesystem e copie in cache degli URL remoti
+     * sono usati direttamente, il resto (classpath in jar, blob non su file)
+     * viene copiato in streaming su file di scratch.
+     */
+    private PdfDocumentPool.SourceFile resolveSourceFile(Content content) throws IOException {
+        if (content.getBlobKey() != null && blobStore.exists(content.getBlobKey())) {
+            Optional<Path> local = blobStore.localPath(content.getBlobKey());
+            return local.isPresent()
+                    ? new PdfDocumentPool.SourceFile(local.get(), false)
+                    : pdfDocumentPool.spool(blobStore.openStream(content.getBlobKey()));
+        }
+        String path = content.getOriginalPath();
+        if (path == null) return null;
+
+        if (path.startsWith("classpath:")) {
+            URL url = getClass().getClassLoader().getResource(path.substring("classpath:".length()));
+            if (url == null) return null;
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    return new PdfDocumentPool.SourceFile(Paths.get(url.toURI()), false);
+                } catch (Exception e) {
+                    log.debug("Classpath resource not on filesystem '{}': {}", url, e.getMessage());
                 }
-            } else if (Files.isReadable(base)) {
-                return Files.readAllBytes(base);
             }
-        } catch (Exception e) {
-            log.debug("Local file read failed for '{}': {}", path, e.getMessage());
+            return pdfDocumentPool.spool(url.openStream());
+        }
+
+        if (path.startsWith("http://") || path.startsWith("https://")) {
+            // già su disco nella cache degli originali: nessuna copia di spool, il lease
+            // tiene il file fuori dall'eviction finché il documento resta aperto
+            RemoteOriginCache.Lease lease = remoteOriginCache.open(path);
+            return new PdfDocumentPool.SourceFile(lease.path(), false, lease);
         }
-        return null;
+
+        Path local = localOriginFiles.resolve(content);
+        return local != null ? new PdfDocumentPool.SourceFile(local, false) : null;
     }
 
     private byte[] download(String url) {
         try {
-            HttpURLConnection conn = (HttpURLConnection) URI.create(url).toURL().openConnection();
-            conn.setConnectTimeout(10_000);
-            conn.setReadTimeout(30_000);
-            conn.setRequestProperty("User-Agent", "Mozilla/5.0");
-            try (InputStream in = conn.getInputStream()) {
-                return in.readAllBytes();
-            }
+            return remoteOriginCache.fetchBytes(url);
         } catch (Exception e) {
             log.warn("Download failed from {}: {}", url, e.getMessage());
             return null;
@@ -256,11 +613,28 @@ public class PreviewService {
     // PDF
     // -------------------------------------------------------------------------
 
-    private byte[] renderPdf(byte[] data) throws Exception {
-        try (PDDocument doc = Loader.loadPDF(data)) {
-            PDFRenderer renderer = new PDFRenderer(doc);
-            BufferedImage img = renderer.renderImageWithDPI(0, 150);
-            return toPng(img);
+    /**
+     * Renderizza una pagina (indice da 0) dal documento aperto nel pool.
+     * Restituisce {@code null} se il file non è disponibile e un array vuoto se la
+     * pagina non esiste. L'immagine non supera i pixel di un A3 al DPI richiesto,
+     * prenotati nel bulkhead: pagine più grandi vengono renderizzate a DPI minore.
+     */
+    private byte[] renderPdfPage(Content content, String documentKey, int pageIndex, int dpi) throws IOException {
+        // Con lo scratch file l'heap per documento è limitato: la stima non supera quel tetto
+        long size = content.getFileSize() != null ? content.getFileSize() : 0L;
+        double scale = dpi / 72.0;
+        double maxPixels = MAX_PAGE_AREA_PT * scale * scale;
+        try (RenderBulkhead.Permit permit = renderBulkhead.acquire(RenderBulkhead.Format.PDF,
+                Math.min(size, pdfDocumentPool.getMaxMainMemoryBytes()),
+                (long) maxPixels * RASTER_BYTES_PER_PIXEL)) {
+            return pdfDocumentPool.withDocument(documentKey, () -> resolveSourceFile(content), (document, renderer) -> {
+                if (pageIndex >= document.getNumberOfPages()) return new byte[0];
+                PDRectangle box = document.getPage(pageIndex).getCropBox();
+                double pixels = box.getWidth() * scale * box.getHeight() * scale;
+                float effectiveDpi = pixels > maxPixels ? (float) (dpi * Math.sqrt(maxPixels / pixels)) : dpi;
+                BufferedImage img = renderer.renderImageWithDPI(pageIndex, effectiveDpi);
+                return toPng(img);
+            });
         }
     }
 
@@ -342,54 +716,41 @@ public class PreviewService {
     }
 
     // -------------------------------------------------------------------------
-    // EXCEL — XLSX
-    // -------------------------------------------------------------------------
-
-    private byte[] renderXlsx(byte[] data) throws Exception {
-        try (Workbook wb = new XSSFWorkbook(new ByteArrayInputStream(data))) {
-            return renderWorkbook(wb);
-        }
-    }
-
-    // -------------------------------------------------------------------------
-    // EXCEL — XLS legacy
+    // EXCEL — XLSX (SAX) / XLS legacy (eventi HSSF)
     // -------------------------------------------------------------------------
 
-    private byte[] renderXls(byte[] data) throws Exception {
-        try (Workbook wb = new HSSFWorkbook(new ByteArrayInputStream(data))) {
-            return renderWorkbook(wb);
+    /**
+     * Anteprima delle prime righe del primo foglio, letta in streaming dal file:
+     * il parsing si ferma appena la finestra è piena. Restituisce {@code null} se
+     * il file non è disponibile.
+     */
+    private byte[] renderSpreadsheet(Content content) throws Exception {
+        // Lo streaming non costruisce il workbook in memoria: basta la quota fissa del bulkhead
+        try (RenderBulkhead.Permit permit = renderBulkhead.acquire(RenderBulkhead.Format.SHEET, 0)) {
+            PdfDocumentPool.SourceFile source = resolveSourceFile(content);
+            if (source == null) return null;
+            String ext = extension(content.getFileName());
+            String mime = content.getMimeType() != null ? content.getMimeType().toLowerCase() : "";
+            boolean legacy = "xls".equals(ext) || (!"xlsx".equals(ext) && mime.contains("ms-excel"));
+            try {
+                SpreadsheetPreviewReader.SheetPreview sheet = legacy
+                        ? SpreadsheetPreviewReader.readXls(source.file(), SHEET_PREVIEW_ROWS)
+                        : SpreadsheetPreviewReader.readXlsx(source.file(), SHEET_PREVIEW_ROWS);
+                return renderSheet(sheet);
+            } finally {
+                source.release();
+            }
         }
     }
 
-    private byte[] renderWorkbook(Workbook wb) throws Exception {
-        Sheet sheet = wb.getSheetAt(0);
+    private byte[] renderSheet(SpreadsheetPreviewReader.SheetPreview sheet) throws Exception {
         StringBuilder sb = new StringBuilder();
-        sb.append("Foglio: ").append(sheet.getSheetName()).append("\n\n");
-        int rowCount = 0;
-        for (Row row : sheet) {
-            if (rowCount++ > 25) break;
-            StringBuilder rowSb = new StringBuilder();
-            for (Cell cell : row) {
-                rowSb.append(cellText(cell)).append("  \t");
-            }
-            String rowStr = rowSb.toString().stripTrailing();
+        sb.append("Foglio: ").append(sheet.sheetName()).append("\n\n");
+        for (List<String> row : sheet.rows()) {
+            String rowStr = String.join("  \t", row).stripTrailing();
             if (!rowStr.isBlank()) sb.append(rowStr).append("\n");
         }
-        return renderText(sb.toString().trim(), "Foglio Excel — " + sheet.getSheetName());
-    }
-
-    private String cellText(Cell cell) {
-        if (cell == null) return "";
-        return switch (cell.getCellType()) {
-            case STRING  -> cell.getStringCellValue();
-            case NUMERIC -> {
-                double v = cell.getNumericCellValue();
-                yield v == Math.floor(v) ? String.valueOf((long) v) : String.valueOf(v);
-            }
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCellFormula();
-            default      -> "";
-        };
+        return renderText(sb.toString().trim(), "Foglio Excel — " + sheet.sheetName());
     }
 
     // -------------------------------------------------------------------------
@@ -463,12 +824,125 @@ public class PreviewService {
     // UTILITY
     // -------------------------------------------------------------------------
 
-    private byte[] toPng(BufferedImage img) throws Exception {
+    /**
+     * Ridimensiona l'anteprima originale alla larghezza della variante (mai
+     * ingrandendo) e la codifica nel formato richiesto. Restituisce {@code null}
+     * se l'originale non è decodificabile da ImageIO.
+     */
+    private byte[] encodeVariant(byte[] master, Variant variant) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(master));
+        if (source == null) return null;
+        BufferedImage scaled = variant.width() != null ? scaleToWidth(source, variant.width()) : source;
+        return variant.format() == ImageFormat.JPEG ? toJpeg(scaled) : toPng(scaled);
+    }
+
+    private BufferedImage scaleToWidth(BufferedImage source, int targetWidth) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        if (w <= targetWidth) return source;
+        int targetHeight = Math.max(1, (int) Math.round(h * (targetWidth / (double) w)));
+        // Dimezzamenti successivi + bilineare: qualità vicina al bicubico a costo minore
+        BufferedImage current = source;
+        while (w / 2 >= targetWidth) {
+            w /= 2;
+            h = Math.max(1, h / 2);
+            current = resize(current, w, h);
+        }
+        return resize(current, targetWidth, targetHeight);
+    }
+
+    private BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return out;
+    }
+
+    private byte[] toJpeg(BufferedImage img) throws IOException {
+        // JPEG non ha canale alfa: si appiattisce su sfondo bianco
+        BufferedImage rgb = img.getType() == BufferedImage.TYPE_INT_RGB ? img : resize(img, img.getWidth(), img.getHeight());
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] toPng(BufferedImage img) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         ImageIO.write(img, "PNG", out);
         return out.toByteArray();
     }
 
+    /**
+     * Chiave content-addressed: hash del file quando noto, altrimenti id + ultima
+     * modifica (i contenuti senza hash cambiano chiave a ogni salvataggio).
+     */
+    private String cacheKey(Content content) {
+        String source = content.getFileHash() != null && !content.getFileHash().isBlank()
+                ? "hash:" + content.getFileHash()
+                : "content:" + content.getId() + ":" + content.getLastModified() + ":" + originVersion(content);
+        return sha256Hex("v" + RENDERER_VERSION + "|" + source);
+    }
+
+    /**
+     * Versione del file originale per i contenuti senza hash: validatore del server
+     * per gli URL remoti, data di modifica e dimensione per i file locali. Così un
+     * file cambiato all'origine non viene servito con l'anteprima vecchia.
+     */
+    private String originVersion(Content content) {
+        String path = content.getOriginalPath();
+        if (path == null || path.startsWith("classpath:")) return "";
+        try {
+            if (path.startsWith("http://") || path.startsWith("https://")) {
+                return String.valueOf(remoteOriginCache.validator(path));
+            }
+            Path local = localOriginFiles.resolve(content);
+            return local != null ? Files.getLastModifiedTime(local).toMillis() + "/" + Files.size(local) : "";
+        } catch (IOException e) {
+            log.debug("Origin version unavailable for '{}': {}", content.getFileName(), e.getMessage());
+            return "";
+        }
+    }
+
+    private String variantKey(String key, Variant variant) {
+        if (variant.isOriginal()) return key;
+        return sha256Hex(key + "|w=" + variant.width() + "|fmt=" + variant.format());
+    }
+
+    private String pageKey(String documentKey, int pageNumber, int dpi) {
+        return sha256Hex(documentKey + "|page=" + pageNumber + "|dpi=" + clampDpi(dpi));
+    }
+
+    private int clampDpi(int dpi) {
+        return Math.max(MIN_PAGE_DPI, Math.min(MAX_PAGE_DPI, dpi));
+    }
+
+    private String etag(String key) {
+        return "\"" + key + "\"";
+    }
+
+    private String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     private String extension(String fileName) {
         if (fileName == null) return "";
         int dot = fileName.lastIndexOf('.');
@@ -1,106 +1,78 @@
 package io.bootify.my_app.service;
 
 import io.bootify.my_app.domain.Product;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 @Service
 @Transactional
 public class ProductFileUploadService {
 
     private final ProductService productService;
-    private final RestTemplate restTemplate;
 
-    @Value("${product.upload.remote.url:http://localhost:8081/api/upload}")
-    private String remoteUploadUrl;
-
-    public ProductFileUploadService(ProductService productService, RestTemplate restTemplate) {
+    public ProductFileUploadService(ProductService productService) {
         this.productService = productService;
-        this.restTemplate = restTemplate;
     }
 
     /**
-     * Uploads a file for a specific product and sends it to remote service
+     * Uploads a file for a specific product and queues it for the remote service
      * 
      * @param productId The ID of the product
-     * @param fileData The file bytes
+     * @param fileData The file content, streamed into the blob store
      * @param fileName Original file name
      * @param contentType MIME type
      * @param uploadedBy The username of the person uploading
      * @return The updated Product
      */
-    public Product uploadFileForProduct(Long productId, byte[] fileData, String fileName, 
-                                       String contentType, String uploadedBy) {
+    public Product uploadFileForProduct(Long productId, InputStream fileData, String fileName, 
+                                       String contentType, String uploadedBy) throws IOException {
+        Product product = findProduct(productId);
+
+        // Store file in the blob store, the product keeps only the reference
+        productService.attachFile(product, fileData);
+        return saveAndSend(product, fileName, contentType, uploadedBy);
+    }
+
+    /**
+     * Same as {@link #uploadFileForProduct(Long, InputStream, String, String, String)}
+     * for a file already spooled to disk: it is moved into the blob store without
+     * being read again.
+     *
+     * @param productId The ID of the product
+     * @param upload The received file, closed by this method
+     * @param uploadedBy The username of the person uploading
+     * @return The updated Product
+     */
+    public Product uploadFileForProduct(Long productId, SpooledUpload upload, String uploadedBy) throws IOException {
+        Product product;
+        try {
+            product = findProduct(productId);
+        } catch (IllegalArgumentException e) {
+            upload.close();
+            throw e;
+        }
+        productService.attachFile(product, upload);
+        return saveAndSend(product, upload.getFileName(), upload.getMimeType(), uploadedBy);
+    }
+
+    private Product findProduct(Long productId) {
         Product product = productService.findById(productId);
         if (product == null) {
             throw new IllegalArgumentException("Product not found with ID: " + productId);
         }
+        return product;
+    }
 
-        // Store file data locally in product
-        product.setFileData(fileData);
+    private Product saveAndSend(Product product, String fileName, String contentType, String uploadedBy) {
         product.setFileName(fileName);
         product.setFileType(contentType);
-        product.setFileSize((long) fileData.length);
         product.setUploadedBy(uploadedBy);
 
-        // Save to database first
-        Product savedProduct = productService.save(product);
-
-        // Send to remote service
-        try {
-            sendToRemoteService(productId, fileData, fileName, contentType);
-        } catch (Exception e) {
-            // Log error but don't fail the local upload
-            System.err.println("Failed to send file to remote service: " + e.getMessage());
-        }
-
-        return savedProduct;
-    }
-
-    /**
-     * Sends the file to remote service via multipart form data
-     * 
-     * @param productId The product ID
-     * @param fileData The file bytes
-     * @param fileName The file name
-     * @param contentType The content type
-     */
-    private void sendToRemoteService(Long productId, byte[] fileData, String fileName, 
-                                    String contentType) throws IOException {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-        // Create multipart body
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", new ByteArrayResource(fileData) {
-            @Override
-            public String getFilename() {
-                return fileName;
-            }
-        });
-        body.add("productId", productId.toString());
-
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
-        // Send POST request to remote service
-        ResponseEntity<String> response = restTemplate.exchange(
-            remoteUploadUrl,
-            HttpMethod.POST,
-            requestEntity,
-            String.class
-        );
-
-        if (!response.getStatusCode().is2xxSuccessful()) {
-            throw new RuntimeException("Remote service returned error: " + response.getStatusCode());
-        }
+        // Saving queues the replica in the same transaction: it is sent in background after commit
+        return productService.save(product);
     }
 
     /**
@@ -115,7 +87,8 @@ public class ProductFileUploadService {
             throw new IllegalArgumentException("Product not found with ID: " + productId);
         }
 
-        product.setFileData(null);
+        product.setBlobKey(null);
+        product.setFileHash(null);
         product.setFileName(null);
         product.setFileType(null);
         product.setFileSize(null);
@@ -1,22 +1,41 @@
 package io.bootify.my_app.service;
 
 import io.bootify.my_app.domain.Product;
+import io.bootify.my_app.domain.ReplicationOutbox;
 import io.bootify.my_app.repos.ProductRepository;
+import io.bootify.my_app.repos.ReplicationOutboxRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @Transactional(readOnly = true)
 public class ProductService {
 
     private final ProductRepository productRepository;
-
-    public ProductService(final ProductRepository productRepository) {
+    private final BlobStore blobStore;
+    private final SearchIndexService searchIndexService;
+    private final ReplicationOutboxRepository outboxRepository;
+    private final ReplicationDispatcher replicationDispatcher;
+
+    public ProductService(final ProductRepository productRepository, final BlobStore blobStore,
+                          final SearchIndexService searchIndexService,
+                          final ReplicationOutboxRepository outboxRepository,
+                          final ReplicationDispatcher replicationDispatcher) {
         this.productRepository = productRepository;
+        this.blobStore = blobStore;
+        this.searchIndexService = searchIndexService;
+        this.outboxRepository = outboxRepository;
+        this.replicationDispatcher = replicationDispatcher;
     }
 
     public Page<Product> findAll(Pageable pageable) {
@@ -27,6 +46,14 @@ public class ProductService {
         return productRepository.findAll();
     }
 
+    /**
+     * Elenco per le griglie: prodotti parziali ({@link Product#isSummary()}) senza
+     * metadata. Per dettaglio e modifica usare {@link #findById}.
+     */
+    public List<Product> findAllSummaries() {
+        return productRepository.findAllSummaries();
+    }
+
     public List<Product> findByCategoryName(String category) {
         return productRepository.findByCategory(category);
     }
@@ -35,7 +62,15 @@ public class ProductService {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return findAll(pageable);
         }
-        return productRepository.searchProducts(searchTerm.trim(), pageable);
+        String term = searchTerm.trim();
+        return searchIndexService.search(SearchIndexService.Kind.PRODUCT, term)
+                .map(ids -> searchIndexService.page(ids, pageable, this::sortedIds,
+                        productRepository::findAllById, Product::getId))
+                .orElseGet(() -> productRepository.searchProducts(term, pageable));
+    }
+
+    private List<Long> sortedIds(Collection<Long> ids, Sort sort) {
+        return ids != null ? productRepository.findIdsByIdIn(ids, sort) : productRepository.findAllIds(sort);
     }
 
     public Page<Product> findByCategory(String category, Pageable pageable) {
@@ -49,9 +84,82 @@ public class ProductService {
         return productRepository.findByCategoryAndNameContainingIgnoreCase(category, name.trim(), pageable);
     }
 
+    /**
+     * Scrive il file nel BlobStore e aggiorna riferimento, dimensione e hash del
+     * prodotto (non salva l'entità).
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void attachFile(Product product, InputStream data) throws IOException {
+        BlobStore.StoredBlob blob = blobStore.put(data);
+        product.setBlobKey(blob.key());
+        product.setFileHash(blob.sha256());
+        product.setFileSize(blob.size());
+    }
+
+    /**
+     * Come {@link #attachFile(Product, InputStream)} per un file già ricevuto su
+     * disco: viene spostato nel BlobStore senza rileggerlo. L'upload viene chiuso.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void attachFile(Product product, SpooledUpload upload) throws IOException {
+        try (upload) {
+            BlobStore.StoredBlob blob = blobStore.putFile(upload.getFile(), upload.getSha256());
+            product.setBlobKey(blob.key());
+            product.setFileHash(blob.sha256());
+            product.setFileSize(blob.size());
+        }
+    }
+
+    /**
+     * Associa al prodotto un contenuto già presente nel BlobStore (stesso SHA-256),
+     * senza ricevere di nuovo i byte. Restituisce {@code null} se il blob non c'è o
+     * ha una dimensione diversa da {@code size}. Chi chiama deve aver verificato che
+     * il client possiede il contenuto (vedi {@link ChunkedUploadService}).
+     */
+    @Transactional
+    public Product attachStoredFile(Long productId, String sha256, long size, String fileName, String fileType,
+                                    String uploadedBy) throws IOException {
+        if (!blobStore.exists(sha256) || blobStore.size(sha256) != size) return null;
+        Product product = findById(productId);
+        if (product == null) return null;
+        product.setBlobKey(sha256);
+        product.setFileHash(sha256);
+        product.setFileSize(size);
+        product.setFileName(fileName);
+        product.setFileType(fileType);
+        product.setUploadedBy(uploadedBy);
+        return save(product);
+    }
+
+    /** Stream del file del prodotto, oppure {@code null} se non ne ha uno. */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public InputStream openFile(Product product) throws IOException {
+        if (!product.hasFile() || !blobStore.exists(product.getBlobKey())) return null;
+        return blobStore.openStream(product.getBlobKey());
+    }
+
+    /**
+     * Salva il prodotto. Se il file è cambiato (upload, sostituzione, deduplica) la
+     * replica verso il servizio remoto viene accodata nella stessa transazione: ogni
+     * percorso che associa un file a un prodotto passa di qui.
+     */
     @Transactional
     public Product save(Product product) {
-        return productRepository.save(product);
+        if (product.isSummary()) {
+            throw new IllegalStateException("Partial product " + product.getId() + " must be reloaded before saving");
+        }
+        // loadedBlobKey di un'istanza staccata (viste) resta quello del primo caricamento:
+        // il confronto va fatto con il valore salvato
+        String persistedBlobKey = product.getId() != null
+                ? productRepository.findPersistedBlobKey(product.getId()).orElse(null) : null;
+        boolean fileChanged = product.hasFile() && !Objects.equals(product.getBlobKey(), persistedBlobKey);
+        Product saved = productRepository.save(product);
+        if (fileChanged) {
+            outboxRepository.save(new ReplicationOutbox(saved.getId(), saved.getBlobKey(),
+                    saved.getFileName(), saved.getFileType()));
+            replicationDispatcher.dispatchAfterCommit();
+        }
+        return saved;
     }
 
     @Transactional
@@ -62,6 +170,8 @@ public class ProductService {
     @Transactional
     public void deleteByIds(List<Long> ids) {
         productRepository.deleteAllByIdInBatch(ids);
+        // l'eliminazione bulk non passa dal listener dell'indice
+        searchIndexService.removeAfterCommit(SearchIndexService.Kind.PRODUCT, ids);
     }
 
     public Product findById(Long id) {
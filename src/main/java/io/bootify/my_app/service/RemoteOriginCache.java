@@ -0,0 +1,403 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Cache su disco dei file originali remoti (Content con originalPath http/https).
+ * <ul>
+ *   <li>un solo {@link HttpClient} condiviso: le connessioni keep-alive vengono riusate;</li>
+ *   <li>i file sono indicizzati per URL; entro {@code fresh-ms} dall'ultima verifica
+ *       si usano senza contattare il server, poi si rivalida con
+ *       If-None-Match / If-Modified-Since (304 = nessun nuovo download);</li>
+ *   <li>dimensione totale limitata da {@code max-size-bytes}, eviction LRU;</li>
+ *   <li>un singolo download oltre {@code max-download-bytes} viene interrotto.</li>
+ * </ul>
+ * Download concorrenti dello stesso URL sono coalescenti. I file restituiti da
+ * {@link #open} restano protetti dall'eviction finché il {@link Lease} non viene
+ * chiuso (download in corso, PDF aperti nel pool).
+ */
+@Component
+public class RemoteOriginCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteOriginCache.class);
+
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String META_SUFFIX = ".meta";
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final long maxDownloadBytes;
+    private final long freshMs;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+
+    /** Chiave → dimensione, in ordine di accesso (LRU). Ricostruito dal disco all'avvio. */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes = 0;
+    /** Chiave → lease aperti; queste voci non vengono eliminate. Protetto da {@code entries}. */
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    private final SingleFlight<String, Path> fetchFlights = new SingleFlight<>();
+
+    public RemoteOriginCache(@Value("${preview.remote.cache-directory:data/remote-cache}") String directory,
+                             @Value("${preview.remote.max-size-bytes:1073741824}") long maxSizeBytes,
+                             @Value("${preview.remote.max-download-bytes:209715200}") long maxDownloadBytes,
+                             @Value("${preview.remote.fresh-ms:60000}") long freshMs,
+                             @Value("${preview.remote.connect-timeout-ms:10000}") long connectTimeoutMs,
+                             @Value("${preview.remote.request-timeout-ms:30000}") long requestTimeoutMs) {
+        this.directory = Paths.get(directory);
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxDownloadBytes = maxDownloadBytes;
+        this.freshMs = freshMs;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        loadIndex();
+    }
+
+    /**
+     * File locale con il contenuto di {@code url}, scaricato o rivalidato se
+     * necessario. Se il server non è raggiungibile o risponde con un errore ma
+     * esiste una copia in cache, viene usata quella. Il file non viene eliminato
+     * finché il lease non è chiuso.
+     *
+     * @throws IOException se il download fallisce senza copia locale, o il file
+     *                     supera {@code max-download-bytes}
+     */
+    public Lease open(String url) throws IOException {
+        String key = sha256Hex(url);
+        // il pin precede il download: nessuna eviction tra il ritorno del file e il suo uso
+        pin(key);
+        try {
+            Path data = fetchFlights.execute(key, () -> {
+                try {
+                    return doFetch(url, key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return new Lease(key, data);
+        } catch (UncheckedIOException e) {
+            unpin(key);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            unpin(key);
+            throw e;
+        }
+    }
+
+    /** Come {@link #open}, ma con il contenuto in heap. */
+    public byte[] fetchBytes(String url) throws IOException {
+        try (Lease lease = open(url)) {
+            return Files.readAllBytes(lease.path());
+        }
+    }
+
+    /**
+     * Versione corrente di {@code url}: ETag, altrimenti Last-Modified, altrimenti
+     * l'hash del contenuto scaricato. La copia in cache viene scaricata o rivalidata
+     * come per {@link #open}, quindi un cambiamento sul server cambia il valore.
+     */
+    public String validator(String url) throws IOException {
+        try (Lease lease = open(url)) {
+            Properties meta = readMeta(metaFile(lease.key));
+            if (meta == null) return null;
+            String etag = meta.getProperty("etag");
+            if (etag != null) return "etag:" + etag;
+            String lastModified = meta.getProperty("lastModified");
+            if (lastModified != null) return "last-modified:" + lastModified;
+            String sha256 = meta.getProperty("sha256");
+            return sha256 != null ? "sha256:" + sha256 : null;
+        }
+    }
+
+    /** File in cache in uso: va chiuso quando non serve più. */
+    public final class Lease implements Closeable {
+
+        private final String key;
+        private final Path path;
+        private boolean closed;
+
+        private Lease(String key, Path path) {
+            this.key = key;
+            this.path = path;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            unpin(key);
+        }
+    }
+
+    private Path doFetch(String url, String key) throws IOException {
+        Path data = dataFile(key);
+        Path meta = metaFile(key);
+        Properties cached = Files.isReadable(data) ? readMeta(meta) : null;
+
+        if (cached != null) {
+            long checkedAt = Long.parseLong(cached.getProperty("checkedAt", "0"));
+            if (System.currentTimeMillis() - checkedAt < freshMs) {
+                touch(key, data);
+                return data;
+            }
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("User-Agent", "Mozilla/5.0")
+                .GET();
+        if (cached != null) {
+            String etag = cached.getProperty("etag");
+            String lastModified = cached.getProperty("lastModified");
+            if (etag != null) request.header("If-None-Match", etag);
+            if (lastModified != null) request.header("If-Modified-Since", lastModified);
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted: " + url, e);
+        } catch (IOException e) {
+            if (cached != null) {
+                log.warn("Revalidation failed for {}, serving cached copy: {}", url, e.getMessage());
+                touch(key, data);
+                return data;
+            }
+            throw e;
+        }
+
+        try (InputStream body = response.body()) {
+            int status = response.statusCode();
+            if (status == 304 && cached != null) {
+                cached.setProperty("checkedAt", String.valueOf(System.currentTimeMillis()));
+                writeMeta(meta, cached);
+                touch(key, data);
+                return data;
+            }
+            if (status < 200 || status >= 300) {
+                if (cached != null) {
+                    // come per gli errori di rete: meglio la copia vecchia che nessuna anteprima
+                    log.warn("Revalidation of {} returned HTTP {}, serving cached copy", url, status);
+                    touch(key, data);
+                    return data;
+                }
+                throw new IOException("HTTP " + status + " from " + url);
+            }
+            long declared = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            if (declared > maxDownloadBytes) {
+                throw new IOException("Remote file too large (" + declared + " bytes): " + url);
+            }
+
+            Files.createDirectories(data.getParent());
+            Path tmp = Files.createTempFile(data.getParent(), key, ".tmp");
+            long size;
+            MessageDigest digest = sha256();
+            try {
+                size = copyLimited(body, tmp, url, digest);
+                Files.move(tmp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+
+            Properties fresh = new Properties();
+            fresh.setProperty("url", url);
+            fresh.setProperty("sha256", HexFormat.of().formatHex(digest.digest()));
+            fresh.setProperty("checkedAt", String.valueOf(System.currentTimeMillis()));
+            response.headers().firstValue("ETag").ifPresent(v -> fresh.setProperty("etag", v));
+            response.headers().firstValue("Last-Modified").ifPresent(v -> fresh.setProperty("lastModified", v));
+            writeMeta(meta, fresh);
+            record(key, size);
+            return data;
+        }
+    }
+
+    private long copyLimited(InputStream in, Path target, String url, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxDownloadBytes) {
+                    throw new IOException("Remote file exceeds " + maxDownloadBytes + " bytes: " + url);
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+        return total;
+    }
+
+    // -------------------------------------------------------------------------
+    // Indice LRU
+    // -------------------------------------------------------------------------
+
+    private void loadIndex() {
+        if (!Files.isDirectory(directory)) return;
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory, 2)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(DATA_SUFFIX))
+                    .sorted(Comparator.comparing(RemoteOriginCache::lastModified))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Remote cache index rebuild failed: {}", e.getMessage());
+            return;
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                record(name.substring(0, name.length() - DATA_SUFFIX.length()), Files.size(file));
+            } catch (IOException ignored) {
+                // file rimosso nel frattempo
+            }
+        }
+    }
+
+    private void touch(String key, Path data) {
+        synchronized (entries) {
+            entries.get(key);
+        }
+        try {
+            // l'mtime conserva l'ordine LRU tra un riavvio e l'altro
+            Files.setLastModifiedTime(data, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // solo un'informazione per l'eviction
+        }
+    }
+
+    private void pin(String key) {
+        synchronized (entries) {
+            pins.merge(key, 1, Integer::sum);
+        }
+    }
+
+    private void unpin(String key) {
+        synchronized (entries) {
+            pins.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+        // le voci rimaste oltre il limite perché in uso possono ora essere eliminate
+        trim(null);
+    }
+
+    private void record(String key, long size) {
+        synchronized (entries) {
+            Long previous = entries.put(key, size);
+            if (previous != null) totalBytes -= previous;
+            totalBytes += size;
+        }
+        trim(key);
+    }
+
+    /** Elimina le voci meno usate oltre {@code max-size-bytes}, tranne {@code keep} e quelle in uso. */
+    private void trim(String keep) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+            while (totalBytes > maxSizeBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                if (eldest.getKey().equals(keep) || pins.containsKey(eldest.getKey())) continue;
+                totalBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String old : evicted) {
+            try {
+                Files.deleteIfExists(dataFile(old));
+                Files.deleteIfExists(metaFile(old));
+            } catch (IOException e) {
+                log.debug("Remote cache eviction failed for {}: {}", old, e.getMessage());
+            }
+        }
+    }
+
+    private Properties readMeta(Path meta) {
+        if (!Files.isReadable(meta)) return null;
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(meta)) {
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeMeta(Path meta, Properties properties) throws IOException {
+        Path tmp = Files.createTempFile(meta.getParent(), meta.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        Files.move(tmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path dataFile(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + DATA_SUFFIX);
+    }
+
+    private Path metaFile(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + META_SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String sha256Hex(String value) {
+        return HexFormat.of().formatHex(sha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.bootify.my_app.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * {@link org.springframework.core.io.Resource} su un file remoto servito dalla
+ * {@link RemoteOriginCache}: ogni {@link #getInputStream()} apre un lease sulla
+ * copia locale e lo rilascia alla chiusura dello stream, così l'eviction non
+ * elimina il file mentre viene inviato (anche per più intervalli Range).
+ */
+public class RemoteOriginResource extends AbstractResource {
+
+    private final RemoteOriginCache cache;
+    private final String url;
+
+    public RemoteOriginResource(RemoteOriginCache cache, String url) {
+        this.cache = cache;
+        this.url = url;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        RemoteOriginCache.Lease lease = cache.open(url);
+        try {
+            return new FilterInputStream(Files.newInputStream(lease.path())) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        lease.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        try (RemoteOriginCache.Lease lease = cache.open(url)) {
+            return Files.size(lease.path());
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Remote origin [" + url + "]";
+    }
+}
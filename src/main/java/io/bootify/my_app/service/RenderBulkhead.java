@@ -0,0 +1,170 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead per il rendering dei documenti pesanti (PDFBox/POI).
+ * <ul>
+ *   <li>limite di concorrenza per formato;</li>
+ *   <li>budget di heap condiviso, prenotato in base a una stima dalla dimensione dell'input;</li>
+ *   <li>coda di attesa limitata: oltre {@code max-waiting} richieste o dopo {@code max-wait-ms}
+ *       la richiesta viene rifiutata e il chiamante ripiega sul placeholder.</li>
+ * </ul>
+ */
+@Component
+public class RenderBulkhead {
+
+    public enum Format {
+        PDF(6), SLIDES(10), SHEET(12), WORD(6);
+
+        /** Moltiplicatore euristico: heap occupato dal documento in memoria rispetto ai byte in ingresso. */
+        private final int heapFactor;
+
+        Format(int heapFactor) {
+            this.heapFactor = heapFactor;
+        }
+    }
+
+    /** Quota fissa per documento: renderer, immagine di output, buffer di encoding PNG. */
+    private static final long BASE_ESTIMATE_BYTES = 8L * 1024 * 1024;
+
+    private final Map<Format, Integer> formatLimits = new EnumMap<>(Format.class);
+    private final Map<Format, Semaphore> formatPermits = new EnumMap<>(Format.class);
+    private final Semaphore heapPermitsKb;
+    private final long heapBudgetBytes;
+    private final int maxWaiting;
+    private final long maxWaitMs;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger reservedKb = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+
+    public RenderBulkhead(MeterRegistry meterRegistry,
+                          @Value("${preview.bulkhead.max-concurrent.pdf:2}") int maxPdf,
+                          @Value("${preview.bulkhead.max-concurrent.slides:1}") int maxSlides,
+                          @Value("${preview.bulkhead.max-concurrent.sheet:1}") int maxSheet,
+                          @Value("${preview.bulkhead.max-concurrent.word:2}") int maxWord,
+                          @Value("${preview.bulkhead.heap-budget-bytes:0}") long heapBudgetBytes,
+                          @Value("${preview.bulkhead.max-waiting:16}") int maxWaiting,
+                          @Value("${preview.bulkhead.max-wait-ms:2000}") long maxWaitMs) {
+        this.meterRegistry = meterRegistry;
+        formatLimits.put(Format.PDF, maxPdf);
+        formatLimits.put(Format.SLIDES, maxSlides);
+        formatLimits.put(Format.SHEET, maxSheet);
+        formatLimits.put(Format.WORD, maxWord);
+        formatLimits.forEach((format, limit) -> formatPermits.put(format, new Semaphore(limit, true)));
+
+        // 0 = un quarto dell'heap massimo della JVM
+        this.heapBudgetBytes = heapBudgetBytes > 0 ? heapBudgetBytes : Runtime.getRuntime().maxMemory() / 4;
+        this.heapPermitsKb = new Semaphore((int) Math.min(Integer.MAX_VALUE, this.heapBudgetBytes / 1024), true);
+        this.maxWaiting = maxWaiting;
+        this.maxWaitMs = maxWaitMs;
+
+        Gauge.builder("preview.bulkhead.waiting", waiting, AtomicInteger::get)
+                .description("Render in attesa di un permesso")
+                .register(meterRegistry);
+        Gauge.builder("preview.bulkhead.heap.reserved", reservedKb, kb -> kb.get() * 1024.0)
+                .description("Heap stimato prenotato dai render in corso")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        formatPermits.forEach((format, permits) ->
+                Gauge.builder("preview.bulkhead.active", permits, p -> formatLimits.get(format) - p.availablePermits())
+                        .tag("format", format.name())
+                        .register(meterRegistry));
+    }
+
+    /**
+     * Ottiene i permessi per renderizzare un documento di {@code inputBytes} byte.
+     * Il {@link Permit} va chiuso a render terminato (try-with-resources).
+     *
+     * @throws RejectedException se la coda di attesa è piena, il documento supera
+     *                           l'intero budget o i permessi non arrivano in tempo
+     */
+    public Permit acquire(Format format, long inputBytes) {
+        return acquire(format, inputBytes, 0);
+    }
+
+    /**
+     * Come {@link #acquire(Format, long)}, prenotando anche {@code outputBytes} per
+     * un'immagine di output più grande della quota fissa (es. pagine ad alto DPI).
+     */
+    public Permit acquire(Format format, long inputBytes, long outputBytes) {
+        long estimateBytes = BASE_ESTIMATE_BYTES + inputBytes * format.heapFactor + outputBytes;
+        if (estimateBytes > heapBudgetBytes) {
+            throw reject(format, "too_large");
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            throw reject(format, "queue_full");
+        }
+
+        Semaphore concurrency = formatPermits.get(format);
+        int estimateKb = (int) (estimateBytes / 1024);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        try {
+            if (!concurrency.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                throw reject(format, "concurrency");
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (!heapPermitsKb.tryAcquire(estimateKb, Math.max(0, remainingNanos), TimeUnit.NANOSECONDS)) {
+                concurrency.release();
+                throw reject(format, "heap_budget");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject(format, "interrupted");
+        } finally {
+            waiting.decrementAndGet();
+        }
+        reservedKb.addAndGet(estimateKb);
+        return new Permit(concurrency, estimateKb);
+    }
+
+    private RejectedException reject(Format format, String reason) {
+        Counter.builder("preview.bulkhead.rejected")
+                .tag("format", format.name())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return new RejectedException("Render " + format + " rejected: " + reason);
+    }
+
+    public final class Permit implements AutoCloseable {
+
+        private final Semaphore concurrency;
+        private final int heapKb;
+        private boolean released;
+
+        private Permit(Semaphore concurrency, int heapKb) {
+            this.concurrency = concurrency;
+            this.heapKb = heapKb;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            heapPermitsKb.release(heapKb);
+            reservedKb.addAndGet(-heapKb);
+            concurrency.release();
+        }
+    }
+
+    /** Render rifiutato per mancanza di risorse: il chiamante deve ripiegare sul placeholder. */
+    public static class RejectedException extends RuntimeException {
+
+        public RejectedException(final String message) {
+            super(message);
+        }
+    }
+}
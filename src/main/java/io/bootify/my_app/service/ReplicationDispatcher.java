@@ -0,0 +1,313 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.ReplicationOutbox;
+import io.bootify.my_app.repos.ReplicationOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consuma la outbox di replica ({@link ReplicationOutbox}) e invia i file dei
+ * prodotti a {@code product.upload.remote.url} come multipart, in streaming dal
+ * {@link BlobStore}.
+ * <ul>
+ *   <li>al più {@code product.upload.replication.concurrency} invii contemporanei;</li>
+ *   <li>un invio fallito viene ripianificato con backoff esponenziale (con jitter)
+ *       tra {@code initial-backoff-ms} e {@code max-backoff-ms};</li>
+ *   <li>dopo {@code max-attempts} tentativi, o subito per un 4xx definitivo, la
+ *       voce passa a {@link ReplicationOutbox.Status#DEAD} e resta lì finché non
+ *       viene rimessa in coda con {@link #retry}.</li>
+ * </ul>
+ * Nessuna transazione resta aperta durante l'invio: la voce viene presa in carico
+ * con un UPDATE condizionale e aggiornata a invio concluso. Finché l'invio è in
+ * corso ogni giro di polling rinnova {@code last_updated} (heartbeat): solo le voci
+ * senza heartbeat da {@code stuck-after-ms} (istanza terminata) tornano in coda.
+ */
+@Component
+public class ReplicationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationDispatcher.class);
+
+    private final ReplicationOutboxRepository outboxRepository;
+    private final BlobStore blobStore;
+    private final RestTemplate restTemplate;
+    private final String remoteUrl;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long stuckAfterMs;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** Voci in invio su questa istanza, per l'heartbeat. */
+    private final Set<Long> delivering = ConcurrentHashMap.newKeySet();
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter deadLettered;
+
+    public ReplicationDispatcher(ReplicationOutboxRepository outboxRepository,
+                                 BlobStore blobStore,
+                                 RestTemplate restTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${product.upload.remote.url:http://localhost:8081/api/upload}") String remoteUrl,
+                                 @Value("${product.upload.replication.concurrency:2}") int concurrency,
+                                 @Value("${product.upload.replication.max-attempts:8}") int maxAttempts,
+                                 @Value("${product.upload.replication.initial-backoff-ms:5000}") long initialBackoffMs,
+                                 @Value("${product.upload.replication.max-backoff-ms:3600000}") long maxBackoffMs,
+                                 @Value("${product.upload.replication.stuck-after-ms:120000}") long stuckAfterMs) {
+        this.outboxRepository = outboxRepository;
+        this.blobStore = blobStore;
+        this.restTemplate = restTemplate;
+        this.remoteUrl = remoteUrl;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.stuckAfterMs = stuckAfterMs;
+
+        this.slots = new Semaphore(concurrency);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "replication-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("replication.in.flight", inFlight, AtomicInteger::get)
+                .description("Invii di replica in corso")
+                .register(meterRegistry);
+        this.sent = Counter.builder("replication.sent").register(meterRegistry);
+        this.failed = Counter.builder("replication.failed").register(meterRegistry);
+        this.deadLettered = Counter.builder("replication.dead").register(meterRegistry);
+    }
+
+    /**
+     * Avvia subito gli invii dovuti, dopo il commit della transazione corrente
+     * (che ha scritto la voce in outbox) se ce n'è una.
+     */
+    public void dispatchAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    executor.execute(ReplicationDispatcher.this::dispatchDue);
+                }
+            });
+        } else {
+            executor.execute(this::dispatchDue);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${product.upload.replication.poll-ms:5000}")
+    public void poll() {
+        dispatchDue();
+    }
+
+    /**
+     * Prende in carico le voci scadute fino a riempire gli slot liberi.
+     *
+     * @return numero di invii avviati
+     */
+    public synchronized int dispatchDue() {
+        OffsetDateTime now = OffsetDateTime.now();
+        if (!delivering.isEmpty()) outboxRepository.heartbeat(Set.copyOf(delivering), now);
+        int requeued = outboxRepository.requeueStuck(now.minus(Duration.ofMillis(stuckAfterMs)), now);
+        if (requeued > 0) log.warn("Requeued {} stuck replication entries", requeued);
+
+        int free = slots.availablePermits();
+        if (free == 0) return 0;
+        List<Long> due = outboxRepository.findDueIds(now, PageRequest.of(0, free));
+        int started = 0;
+        for (Long id : due) {
+            if (!slots.tryAcquire()) break;
+            if (outboxRepository.claim(id, now) == 0) {
+                slots.release();
+                continue;
+            }
+            inFlight.incrementAndGet();
+            delivering.add(id);
+            executor.execute(() -> {
+                try {
+                    deliver(id);
+                } finally {
+                    delivering.remove(id);
+                    inFlight.decrementAndGet();
+                    slots.release();
+                }
+            });
+            started++;
+        }
+        return started;
+    }
+
+    /** Rimette in coda una voce DEAD (o la anticipa se è in attesa di un nuovo tentativo). */
+    public boolean retry(Long id) {
+        Optional<ReplicationOutbox> entry = outboxRepository.findById(id);
+        if (entry.isEmpty()) return false;
+        ReplicationOutbox outbox = entry.get();
+        if (outbox.getStatus() != ReplicationOutbox.Status.DEAD
+                && outbox.getStatus() != ReplicationOutbox.Status.PENDING) {
+            return false;
+        }
+        if (outbox.getStatus() == ReplicationOutbox.Status.DEAD) outbox.setAttempts(0);
+        outbox.setStatus(ReplicationOutbox.Status.PENDING);
+        outbox.setNextAttemptAt(OffsetDateTime.now());
+        outboxRepository.save(outbox);
+        dispatchAfterCommit();
+        return true;
+    }
+
+    public Map<ReplicationOutbox.Status, Long> countsByStatus() {
+        Map<ReplicationOutbox.Status, Long> counts = new LinkedHashMap<>();
+        for (ReplicationOutbox.Status status : ReplicationOutbox.Status.values()) {
+            counts.put(status, outboxRepository.countByStatus(status));
+        }
+        return counts;
+    }
+
+    public List<ReplicationOutbox> recent(ReplicationOutbox.Status status, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return status == null
+                ? outboxRepository.findAllByOrderByLastUpdatedDesc(page)
+                : outboxRepository.findByStatusOrderByLastUpdatedDesc(status, page);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void deliver(Long id) {
+        ReplicationOutbox entry = outboxRepository.findById(id).orElse(null);
+        if (entry == null) return;
+        entry.setAttempts(entry.getAttempts() + 1);
+        try {
+            send(entry);
+            entry.setStatus(ReplicationOutbox.Status.SENT);
+            entry.setSentAt(OffsetDateTime.now());
+            entry.setLastError(null);
+            sent.increment();
+        } catch (Exception e) {
+            entry.setLastError(truncate(e.getClass().getSimpleName() + ": " + e.getMessage()));
+            if (entry.getAttempts() >= maxAttempts || isPermanent(e)) {
+                entry.setStatus(ReplicationOutbox.Status.DEAD);
+                deadLettered.increment();
+                log.warn("Replication of product {} dead-lettered after {} attempts: {}",
+                        entry.getProductId(), entry.getAttempts(), e.getMessage());
+            } else {
+                entry.setStatus(ReplicationOutbox.Status.PENDING);
+                entry.setNextAttemptAt(OffsetDateTime.now().plus(Duration.ofMillis(backoffMs(entry.getAttempts()))));
+                failed.increment();
+                log.info("Replication of product {} failed (attempt {}), retrying at {}: {}",
+                        entry.getProductId(), entry.getAttempts(), entry.getNextAttemptAt(), e.getMessage());
+            }
+        }
+        outboxRepository.save(entry);
+    }
+
+    private void send(ReplicationOutbox entry) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", blobResource(entry.getBlobKey(), entry.getFileName()));
+        body.add("productId", entry.getProductId().toString());
+
+        // il file viene scritto nella richiesta direttamente dallo store (nessun buffer in heap)
+        ResponseEntity<String> response = restTemplate.exchange(
+                remoteUrl, HttpMethod.POST, new HttpEntity<>(body, headers), String.class);
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IOException("Remote service returned " + response.getStatusCode());
+        }
+    }
+
+    /** 4xx definitivi: ripetere l'invio non cambierebbe il risultato. */
+    private static boolean isPermanent(Exception e) {
+        if (e instanceof HttpClientErrorException http) {
+            int status = http.getStatusCode().value();
+            return status != HttpStatus.REQUEST_TIMEOUT.value() && status != HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return e instanceof NoSuchFileException;
+    }
+
+    private long backoffMs(int attempts) {
+        long exponential = initialBackoffMs << Math.min(attempts - 1, 30);
+        long capped = exponential <= 0 ? maxBackoffMs : Math.min(exponential, maxBackoffMs);
+        // jitter: tra metà e il valore pieno, per non far ripartire tutti insieme
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    /**
+     * Resource dal blob store: il file locale quando c'è, altrimenti uno stream
+     * monouso con la sua lunghezza.
+     */
+    private Resource blobResource(String blobKey, String fileName) throws IOException {
+        Optional<Path> local = blobStore.localPath(blobKey);
+        if (local.isPresent()) {
+            return new FileSystemResource(local.get()) {
+                @Override
+                public String getFilename() {
+                    return fileName;
+                }
+            };
+        }
+        long size = blobStore.size(blobKey);
+        return new InputStreamResource(blobStore.openStream(blobKey)) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+
+            @Override
+            public long contentLength() {
+                return size;
+            }
+        };
+    }
+
+    private static String truncate(String message) {
+        return message == null || message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+}
@@ -0,0 +1,396 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.CompressedTextConverter;
+import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.domain.FileUpload;
+import io.bootify.my_app.domain.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Indice full-text in memoria per contenuti, prodotti e file caricati, al posto
+ * delle ricerche {@code LOWER(col) LIKE '%term%'} che scorrono tutta la tabella a
+ * ogni tasto premuto.
+ * <ul>
+ *   <li>i testi passano da {@link TextAnalyzer} (italiano e inglese); per
+ *       contenuti e file caricati comprendono trascrizione e testo estratto dal
+ *       file ({@link TextExtractionService});</li>
+ *   <li>salvataggi ed eliminazioni arrivano da {@code SearchIndexListener} e
+ *       vengono applicati solo dopo il commit;</li>
+ *   <li>all'avvio l'indice viene ricostruito in background leggendo le tabelle a
+ *       lotti; nel frattempo {@link #search} restituisce vuoto e i chiamanti
+ *       restano sulla query SQL paginata (sulle stesse colonne). Se la
+ *       ricostruzione fallisce viene ritentata dopo
+ *       {@code search.index.rebuild-retry-ms}.</li>
+ * </ul>
+ * La ricerca restituisce solo gli id: {@link #page} carica dal database le
+ * entità della pagina richiesta.
+ */
+@Service
+public class SearchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    /** Oltre questo numero di risultati l'ordinamento non usa più {@code id IN (...)}. */
+    private static final int MAX_IN_IDS = 1000;
+
+    public enum Kind {
+        CONTENT("contents", true, "file_name", "description", "file_type", "category", "tags"),
+        PRODUCT("products", false, "name", "description", "category", "file_name"),
+        FILE_UPLOAD("file_uploads", true, "file_name", "description", "category", "uploaded_by", "trascrizione");
+
+        private final String table;
+        /** Se il testo estratto dal file ({@code extracted_texts}) fa parte del documento. */
+        private final boolean extractedText;
+        private final String[] columns;
+
+        Kind(String table, boolean extractedText, String... columns) {
+            this.table = table;
+            this.extractedText = extractedText;
+            this.columns = columns;
+        }
+
+        /** Colonne del documento più il testo estratto: stessa query per ricostruzione e aggiornamenti. */
+        private String select() {
+            StringBuilder sql = new StringBuilder("SELECT t.id");
+            for (String column : columns) sql.append(", t.").append(column);
+            if (extractedText) {
+                sql.append(", e.text FROM ").append(table)
+                        .append(" t LEFT JOIN extracted_texts e ON e.file_hash = t.file_hash");
+            } else {
+                sql.append(", NULL FROM ").append(table).append(" t");
+            }
+            return sql.toString();
+        }
+
+        public String table() {
+            return table;
+        }
+    }
+
+    /** Indice di un tipo: durante la ricostruzione le modifiche vengono anche annotate nel journal. */
+    private static final class Slot {
+        private volatile InvertedIndex index = new InvertedIndex();
+        private volatile boolean ready;
+        private List<Map.Entry<Long, Set<String>>> journal;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long retryDelayMs;
+    private final Map<Kind, Slot> slots = new EnumMap<>(Kind.class);
+
+    private final Timer queryTimer;
+    private final Counter fallbacks;
+
+    public SearchIndexService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                              @Value("${search.index.enabled:true}") boolean enabled,
+                              @Value("${search.index.rebuild-batch-size:1000}") int batchSize,
+                              @Value("${search.index.rebuild-retry-ms:60000}") long retryDelayMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.retryDelayMs = retryDelayMs;
+
+        for (Kind kind : Kind.values()) {
+            Slot slot = new Slot();
+            slots.put(kind, slot);
+            Gauge.builder("search.index.documents", slot, s -> s.index.documentCount())
+                    .description("Documenti nell'indice full-text")
+                    .tag("kind", kind.table)
+                    .register(meterRegistry);
+            Gauge.builder("search.index.terms", slot, s -> s.index.termCount())
+                    .description("Termini distinti nell'indice full-text")
+                    .tag("kind", kind.table)
+                    .register(meterRegistry);
+        }
+        this.queryTimer = Timer.builder("search.index.query")
+                .description("Tempo delle ricerche sull'indice full-text")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("search.index.fallback")
+                .description("Ricerche passate alla query SQL perché l'indice non era pronto")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Id crescenti dei documenti che contengono tutte le parole della query
+     * (l'ultima anche solo come prefisso). Vuoto se l'indice è disattivato o non
+     * ancora pronto, o se la query contiene solo parole vuote: il chiamante usa
+     * allora la query SQL.
+     */
+    public Optional<long[]> search(Kind kind, String text) {
+        Slot slot = slots.get(kind);
+        TextAnalyzer.Query query = TextAnalyzer.query(text);
+        if (!enabled || query.isEmpty()) {
+            return Optional.empty();
+        }
+        if (!slot.ready) {
+            fallbacks.increment();
+            return Optional.empty();
+        }
+        return Optional.of(queryTimer.record(() -> slot.index.search(query.terms(), query.prefix())));
+    }
+
+    public boolean isReady(Kind kind) {
+        return slots.get(kind).ready;
+    }
+
+    /**
+     * Pagina dei risultati: solo le entità della pagina vengono caricate. Se
+     * l'ordinamento richiesto è per id basta l'ordine dell'indice; altrimenti è il
+     * database a ordinare gli id ({@code sortedIds} riceve {@code null} quando i
+     * risultati sono troppi per una clausola IN e vanno filtrati qui).
+     */
+    public <T> Page<T> page(long[] ids, Pageable pageable,
+                            BiFunction<Collection<Long>, Sort, List<Long>> sortedIds,
+                            Function<List<Long>, List<T>> loader, Function<T, Long> idOf) {
+        Sort sort = pageable.getSort();
+        List<Long> ordered;
+        if (sort.isUnsorted() || isIdOnly(sort)) {
+            boolean descending = sort.isSorted() && sort.iterator().next().isDescending();
+            ordered = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                ordered.add(ids[descending ? ids.length - 1 - i : i]);
+            }
+        } else if (ids.length <= MAX_IN_IDS) {
+            ordered = sortedIds.apply(Arrays.stream(ids).boxed().toList(), sort);
+        } else {
+            ordered = new ArrayList<>(ids.length);
+            for (Long id : sortedIds.apply(null, sort)) {
+                if (Arrays.binarySearch(ids, id) >= 0) ordered.add(id);
+            }
+        }
+
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), ordered.size()) : 0;
+        int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), ordered.size()) : ordered.size();
+        List<Long> pageIds = ordered.subList(from, to);
+        if (pageIds.isEmpty()) return new PageImpl<>(List.of(), pageable, ids.length);
+
+        Map<Long, T> byId = new HashMap<>();
+        for (T entity : loader.apply(pageIds)) {
+            byId.put(idOf.apply(entity), entity);
+        }
+        List<T> content = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            T entity = byId.get(id);
+            if (entity != null) content.add(entity);
+        }
+        return new PageImpl<>(content, pageable, ids.length);
+    }
+
+    private static boolean isIdOnly(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        return orders.size() == 1 && "id".equals(orders.get(0).getProperty());
+    }
+
+    /**
+     * Reindicizza l'entità al commit della transazione corrente (subito se non ce
+     * n'è una), rileggendo la riga: così il documento comprende anche il testo già
+     * estratto per lo stesso file.
+     */
+    public void indexAfterCommit(Object entity) {
+        Kind kind = kindOf(entity);
+        Long id = idOf(entity);
+        if (kind == null || id == null || !enabled) return;
+        afterCommit(() -> reindex(kind, id));
+    }
+
+    public void reindex(Kind kind, long id) {
+        if (!enabled) return;
+        List<Set<String>> terms = jdbcTemplate.query(kind.select() + " WHERE t.id = ?",
+                (rs, rowNum) -> TextAnalyzer.terms(documentText(rs, kind)), id);
+        apply(kind, id, terms.isEmpty() ? null : terms.get(0));
+    }
+
+    /** Testo appena estratto per un file: vengono reindicizzate le righe che lo usano. */
+    public void reindexFileHash(String fileHash) {
+        if (!enabled || fileHash == null) return;
+        for (Kind kind : Kind.values()) {
+            if (!kind.extractedText) continue;
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM " + kind.table + " WHERE file_hash = ?", Long.class, fileHash);
+            ids.forEach(id -> reindex(kind, id));
+        }
+    }
+
+    public void removeAfterCommit(Kind kind, Collection<Long> ids) {
+        if (!enabled || ids == null || ids.isEmpty()) return;
+        List<Long> copy = List.copyOf(ids);
+        afterCommit(() -> copy.forEach(id -> apply(kind, id, null)));
+    }
+
+    public void removeAfterCommit(Object entity) {
+        Kind kind = kindOf(entity);
+        Long id = idOf(entity);
+        if (kind != null && id != null) removeAfterCommit(kind, List.of(id));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** {@code terms == null} elimina il documento. */
+    private void apply(Kind kind, long id, Set<String> terms) {
+        Slot slot = slots.get(kind);
+        synchronized (slot) {
+            if (terms == null) {
+                slot.index.remove(id);
+            } else {
+                slot.index.put(id, terms);
+            }
+            if (slot.journal != null) {
+                slot.journal.add(new AbstractMap.SimpleImmutableEntry<>(id, terms));
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!enabled) {
+            log.info("Full-text search index disabled, searches use SQL queries");
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            List<Kind> pending = new ArrayList<>(List.of(Kind.values()));
+            while (true) {
+                pending.removeIf(this::tryRebuild);
+                if (pending.isEmpty()) return;
+                // nel frattempo le ricerche di questi tipi restano sulle query SQL
+                try {
+                    Thread.sleep(retryDelayMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "search-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private boolean tryRebuild(Kind kind) {
+        try {
+            rebuild(kind);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Full-text index rebuild failed for {}, retrying in {} ms: {}", kind.table, retryDelayMs,
+                    e.getMessage());
+            synchronized (slots.get(kind)) {
+                slots.get(kind).journal = null;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Ricostruisce l'indice di un tipo in un'istanza nuova e la sostituisce a quella
+     * in uso; le modifiche arrivate nel frattempo vengono riapplicate dal journal.
+     */
+    public void rebuild(Kind kind) {
+        Slot slot = slots.get(kind);
+        synchronized (slot) {
+            slot.journal = new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        InvertedIndex.Builder builder = new InvertedIndex.Builder();
+        forEachDocument(kind, builder::add);
+
+        InvertedIndex rebuilt = builder.build();
+        synchronized (slot) {
+            for (Map.Entry<Long, Set<String>> change : slot.journal) {
+                if (change.getValue() == null) {
+                    rebuilt.remove(change.getKey());
+                } else {
+                    rebuilt.put(change.getKey(), change.getValue());
+                }
+            }
+            slot.journal = null;
+            slot.index = rebuilt;
+            slot.ready = true;
+        }
+        log.info("Full-text index for {} rebuilt: {} documents, {} terms in {} ms", kind.table,
+                rebuilt.documentCount(), rebuilt.termCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Termini di tutte le righe di un tipo, per id crescente, letti a lotti. */
+    private void forEachDocument(Kind kind, BiConsumer<Long, Set<String>> consumer) {
+        String sql = kind.select() + " WHERE t.id > ? ORDER BY t.id LIMIT ?";
+        long lastId = 0;
+        int rows;
+        do {
+            long[] last = {lastId};
+            int[] count = {0};
+            jdbcTemplate.query(sql, rs -> {
+                last[0] = rs.getLong(1);
+                count[0]++;
+                consumer.accept(last[0], TextAnalyzer.terms(documentText(rs, kind)));
+            }, lastId, batchSize);
+            lastId = last[0];
+            rows = count[0];
+        } while (rows == batchSize);
+    }
+
+    private static Kind kindOf(Object entity) {
+        if (entity instanceof Content) return Kind.CONTENT;
+        if (entity instanceof Product) return Kind.PRODUCT;
+        if (entity instanceof FileUpload) return Kind.FILE_UPLOAD;
+        return null;
+    }
+
+    private static Long idOf(Object entity) {
+        if (entity instanceof Content content) return content.getId();
+        if (entity instanceof Product product) return product.getId();
+        if (entity instanceof FileUpload upload) return upload.getId();
+        return null;
+    }
+
+    /** Colonne dopo l'id e testo estratto; trascrizioni e testi estratti possono essere compressi. */
+    private static String documentText(ResultSet rs, Kind kind) throws SQLException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 2; i <= kind.columns.length + 2; i++) {
+            String value = CompressedTextConverter.decode(rs.getString(i));
+            if (value != null) text.append(value).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package io.bootify.my_app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * File caricato dall'utente e già scritto su disco da {@link UploadSpool}, con
+ * dimensione e SHA-256 calcolati durante la ricezione. Chi lo consuma (di norma
+ * {@link BlobStore#putFile}) può spostare il file; {@link #close()} elimina
+ * quello che resta e libera la quota.
+ */
+public final class SpooledUpload implements AutoCloseable {
+
+    private final Path file;
+    private final String fileName;
+    private final String mimeType;
+    private final long size;
+    private final String sha256;
+    private final Runnable release;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    SpooledUpload(Path file, String fileName, String mimeType, long size, String sha256, Runnable release) {
+        this.file = file;
+        this.fileName = fileName;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.sha256 = sha256;
+        this.release = release;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // verrà rimosso dalla pulizia periodica dello spool
+        } finally {
+            release.run();
+        }
+    }
+}
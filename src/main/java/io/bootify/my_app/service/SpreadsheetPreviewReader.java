@@ -0,0 +1,338 @@
+package io.bootify.my_app.service;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Lettura in streaming delle prime righe del primo foglio di una cartella Excel,
+ * senza costruire il modello DOM di POI:
+ * <ul>
+ *   <li>XLSX: SAX sul foglio, interrotto appena la finestra di anteprima è piena;
+ *       le shared strings vengono lette dopo, solo fino all'indice più alto richiesto;</li>
+ *   <li>XLS: API a eventi HSSF, interrotta a fine finestra o a fine del primo foglio.</li>
+ * </ul>
+ * Come il vecchio rendering DOM, considera solo righe e celle presenti nel file.
+ */
+public final class SpreadsheetPreviewReader {
+
+    /** Oltre questo numero di colonne le celle di una riga vengono ignorate. */
+    private static final int MAX_COLUMNS = 50;
+
+    public record SheetPreview(String sheetName, List<List<String>> rows) {}
+
+    private SpreadsheetPreviewReader() {
+    }
+
+    public static SheetPreview readXlsx(Path file, int maxRows) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) return new SheetPreview("", List.of());
+
+            SheetWindowHandler window = new SheetWindowHandler(maxRows);
+            String sheetName;
+            try (InputStream sheet = sheets.next()) {
+                sheetName = sheets instanceof XSSFReader.SheetIterator it ? it.getSheetName() : "";
+                parse(sheet, window);
+            }
+
+            Map<Integer, String> strings = window.sharedIndexes.isEmpty()
+                    ? Map.of()
+                    : readSharedStrings(reader, window.sharedIndexes);
+            List<List<String>> rows = new ArrayList<>();
+            for (List<Object> row : window.rows) {
+                List<String> values = new ArrayList<>(row.size());
+                for (Object cell : row) {
+                    values.add(cell instanceof SharedRef ref ? strings.getOrDefault(ref.index(), "") : (String) cell);
+                }
+                rows.add(values);
+            }
+            return new SheetPreview(sheetName, rows);
+        }
+    }
+
+    public static SheetPreview readXls(Path file, int maxRows) throws Exception {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file.toFile(), true)) {
+            XlsWindowListener listener = new XlsWindowListener(maxRows);
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(listener);
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs);
+            List<List<String>> rows = new ArrayList<>();
+            listener.rows.values().forEach(cells -> rows.add(new ArrayList<>(cells.values())));
+            return new SheetPreview(listener.sheetName, rows);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // XLSX — SAX
+    // -------------------------------------------------------------------------
+
+    private static void parse(InputStream in, DefaultHandler handler) throws Exception {
+        XMLReader xmlReader = XMLHelper.newXMLReader();
+        xmlReader.setContentHandler(handler);
+        try {
+            xmlReader.parse(new InputSource(in));
+        } catch (StopParsing ignored) {
+            // finestra completa: il resto del file non viene letto
+        }
+    }
+
+    private static Map<Integer, String> readSharedStrings(XSSFReader reader, TreeSet<Integer> needed) throws Exception {
+        SharedStringsHandler handler = new SharedStringsHandler(needed);
+        try (InputStream in = reader.getSharedStringsData()) {
+            parse(in, handler);
+        }
+        return handler.found;
+    }
+
+    private record SharedRef(int index) {}
+
+    private static final class StopParsing extends SAXException {
+        private StopParsing() {
+            super("preview window filled");
+        }
+    }
+
+    private static final class SheetWindowHandler extends DefaultHandler {
+
+        private final int maxRows;
+        private final List<List<Object>> rows = new ArrayList<>();
+        private final TreeSet<Integer> sharedIndexes = new TreeSet<>();
+
+        private List<Object> currentRow;
+        private String cellType;
+        private final StringBuilder value = new StringBuilder();
+        private boolean capturing;
+
+        private SheetWindowHandler(int maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            switch (localName) {
+                case "row" -> {
+                    if (rows.size() >= maxRows) throw new StopParsing();
+                    currentRow = new ArrayList<>();
+                    rows.add(currentRow);
+                }
+                case "c" -> {
+                    cellType = attributes.getValue("t");
+                    value.setLength(0);
+                }
+                case "v" -> capturing = true;
+                case "t" -> capturing = "inlineStr".equals(cellType);
+                default -> { }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> capturing = false;
+                case "c" -> {
+                    if (currentRow != null && currentRow.size() < MAX_COLUMNS) {
+                        currentRow.add(cellValue());
+                    }
+                }
+                default -> { }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capturing) value.append(ch, start, length);
+        }
+
+        private Object cellValue() {
+            String raw = value.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                if (raw.isEmpty()) return "";
+                try {
+                    double v = Double.parseDouble(raw);
+                    return v == Math.floor(v) && !Double.isInfinite(v) ? String.valueOf((long) v) : String.valueOf(v);
+                } catch (NumberFormatException e) {
+                    return raw;
+                }
+            }
+            return switch (cellType) {
+                case "s" -> {
+                    try {
+                        int index = Integer.parseInt(raw.trim());
+                        sharedIndexes.add(index);
+                        yield new SharedRef(index);
+                    } catch (NumberFormatException e) {
+                        yield "";
+                    }
+                }
+                case "b" -> String.valueOf("1".equals(raw));
+                default -> raw; // inlineStr, str (formula), e (errore)
+            };
+        }
+    }
+
+    private static final class SharedStringsHandler extends DefaultHandler {
+
+        private final TreeSet<Integer> needed;
+        private final int lastNeeded;
+        private final Map<Integer, String> found = new HashMap<>();
+
+        private int index = -1;
+        private final StringBuilder text = new StringBuilder();
+        private boolean capturing;
+        private boolean inPhonetic;
+
+        private SharedStringsHandler(TreeSet<Integer> needed) {
+            this.needed = needed;
+            this.lastNeeded = needed.last();
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "si" -> {
+                    index++;
+                    text.setLength(0);
+                }
+                case "rPh" -> inPhonetic = true;
+                case "t" -> capturing = !inPhonetic && needed.contains(index);
+                default -> { }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "t" -> capturing = false;
+                case "rPh" -> inPhonetic = false;
+                case "si" -> {
+                    if (needed.contains(index)) found.put(index, text.toString());
+                    if (index >= lastNeeded) throw new StopParsing();
+                }
+                default -> { }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capturing) text.append(ch, start, length);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // XLS — eventi HSSF
+    // -------------------------------------------------------------------------
+
+    private static final class XlsWindowListener extends AbortableHSSFListener {
+
+        private static final short CONTINUE = 0;
+        private static final short ABORT = 1;
+
+        private final int maxRows;
+        private final TreeMap<Integer, TreeMap<Integer, String>> rows = new TreeMap<>();
+        private String sheetName = "";
+        private boolean firstBoundSheetSeen;
+        private int worksheetIndex = -1;
+        private SSTRecord sst;
+        private CellValueRecordInterface pendingStringFormula;
+
+        private XlsWindowListener(int maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public short abortableProcessRecord(Record record) {
+            if (record instanceof BoundSheetRecord bound) {
+                if (!firstBoundSheetSeen) {
+                    sheetName = bound.getSheetname();
+                    firstBoundSheetSeen = true;
+                }
+                return CONTINUE;
+            }
+            if (record instanceof SSTRecord sstRecord) {
+                sst = sstRecord;
+                return CONTINUE;
+            }
+            if (record instanceof BOFRecord bof) {
+                if (bof.getType() == BOFRecord.TYPE_WORKSHEET && ++worksheetIndex > 0) {
+                    return ABORT; // solo il primo foglio
+                }
+                return CONTINUE;
+            }
+            if (worksheetIndex != 0) return CONTINUE;
+            if (record instanceof EOFRecord) return ABORT;
+
+            if (record instanceof StringRecord string && pendingStringFormula != null) {
+                CellValueRecordInterface cell = pendingStringFormula;
+                pendingStringFormula = null;
+                return put(cell, string.getString());
+            }
+            if (record instanceof FormulaRecord formula) {
+                if (formula.hasCachedResultString()) {
+                    pendingStringFormula = formula;
+                    return CONTINUE;
+                }
+                return put(formula, number(formula.getValue()));
+            }
+            if (record instanceof NumberRecord number) return put(number, number(number.getValue()));
+            if (record instanceof LabelSSTRecord label) {
+                return put(label, sst != null ? sst.getString(label.getSSTIndex()).getString() : "");
+            }
+            if (record instanceof LabelRecord label) return put(label, label.getValue());
+            if (record instanceof BoolErrRecord boolErr) {
+                return put(boolErr, boolErr.isBoolean() ? String.valueOf(boolErr.getBooleanValue()) : "#ERR");
+            }
+            return CONTINUE;
+        }
+
+        private short put(CellValueRecordInterface cell, String value) {
+            int row = cell.getRow();
+            TreeMap<Integer, String> cells = rows.get(row);
+            if (cells == null) {
+                // i record delle celle arrivano in ordine di riga: finestra piena → stop
+                if (rows.size() >= maxRows) return ABORT;
+                cells = new TreeMap<>();
+                rows.put(row, cells);
+            }
+            if (cells.size() < MAX_COLUMNS) cells.put((int) cell.getColumn(), value);
+            return CONTINUE;
+        }
+
+        private static String number(double v) {
+            return v == Math.floor(v) && !Double.isInfinite(v) ? String.valueOf((long) v) : String.valueOf(v);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.bootify.my_app.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Analisi del testo per l'indice full-text, pensata per contenuti in italiano e
+ * inglese: minuscole, accenti rimossi ("perché" → "perche"), separazione su tutto
+ * ciò che non è lettera o cifra (quindi anche sugli apostrofi: "dell'archivio" →
+ * "archivio"), parole vuote delle due lingue scartate e uno stemming leggero che
+ * riconduce singolare e plurale alla stessa radice ("fattura", "fatture" →
+ * "fattur"; "reports" → "report").
+ * <p>
+ * Lo stesso trattamento vale per i documenti e per le query, così i termini si
+ * confrontano sempre nella stessa forma.
+ */
+public final class TextAnalyzer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final int MAX_TOKEN_LENGTH = 40;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            // italiano (anche le forme elise: l', dell', un', ...)
+            "il", "lo", "la", "i", "gli", "le", "l", "un", "uno", "una", "di", "a", "da", "in", "con", "su",
+            "per", "tra", "fra", "e", "ed", "o", "od", "che", "non", "del", "dello", "della", "dei", "degli",
+            "delle", "dell", "al", "allo", "alla", "ai", "agli", "alle", "all", "dal", "dallo", "dalla", "dai",
+            "dagli", "dalle", "dall", "nel", "nello", "nella", "nei", "negli", "nelle", "nell", "sul", "sullo",
+            "sulla", "sui", "sugli", "sulle", "sull", "col", "coi", "come", "anche", "ma", "se", "si", "ci",
+            "ne", "mi", "ti", "vi", "piu", "questo", "questa", "questi", "queste", "quello", "quella",
+            "quelli", "quelle", "sono", "era", "essere", "ha", "hanno", "c", "d", "s", "v", "qu",
+            // inglese
+            "the", "an", "and", "or", "of", "to", "on", "for", "with", "by", "at", "from", "as", "is", "are",
+            "was", "were", "be", "been", "it", "its", "this", "that", "these", "those", "not", "but", "into",
+            "than", "then", "there", "their", "has", "have", "had");
+
+    private TextAnalyzer() {
+    }
+
+    /** Termini da indicizzare per un testo, senza ripetizioni e nell'ordine in cui compaiono. */
+    public static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : tokenize(text)) {
+            terms.add(stem(token));
+        }
+        return terms;
+    }
+
+    /**
+     * Termini di una query. L'ultimo resta distinto perché viene cercato come
+     * prefisso (ricerca mentre si scrive): "fatt" trova "fattura".
+     */
+    public static Query query(String text) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) return new Query(List.of(), null);
+        List<String> exact = new ArrayList<>(tokens.size() - 1);
+        for (String token : tokens.subList(0, tokens.size() - 1)) {
+            exact.add(stem(token));
+        }
+        return new Query(exact, stem(tokens.get(tokens.size() - 1)));
+    }
+
+    public record Query(List<String> terms, String prefix) {
+
+        public boolean isEmpty() {
+            return terms.isEmpty() && prefix == null;
+        }
+    }
+
+    /** Minuscole e accenti rimossi: la forma su cui lavorano anche gli altri indici. */
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) return List.of();
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (token.isEmpty() || token.length() > MAX_TOKEN_LENGTH || STOPWORDS.contains(token)) continue;
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Stemming volutamente leggero: toglie le desinenze di numero e le forme verbali
+     * inglesi più comuni, senza dizionario. Le parole corte e i numeri restano intatti.
+     */
+    static String stem(String token) {
+        if (token.length() <= 4 || Character.isDigit(token.charAt(0))) return token;
+        String stem = token;
+        if (stem.endsWith("ies") && stem.length() > 5) {
+            stem = stem.substring(0, stem.length() - 3) + "y";
+        } else if (stem.endsWith("sses")) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("ing") && stem.length() > 6) {
+            stem = stem.substring(0, stem.length() - 3);
+        } else if (stem.endsWith("ed") && stem.length() > 5) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("s") && !stem.endsWith("ss")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        // vocale finale italiana (e inglese muta): documento/documenti, file/files
+        char last = stem.charAt(stem.length() - 1);
+        if (stem.length() > 4 && (last == 'a' || last == 'e' || last == 'i' || last == 'o')) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        return stem;
+    }
+}
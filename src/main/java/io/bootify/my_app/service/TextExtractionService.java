@@ -0,0 +1,311 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.domain.ExtractedText;
+import io.bootify.my_app.domain.FileUpload;
+import io.bootify.my_app.repos.ExtractedTextRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estrazione in background del testo dei file di contenuti e file caricati, per
+ * la ricerca full-text. Il lavoro è per {@code file_hash}: file identici vengono
+ * letti una volta sola e il risultato ({@link ExtractedText}, anche se vuoto o
+ * fallito) vale per tutte le righe che li usano.
+ * <ul>
+ *   <li>i salvataggi accodano l'hash dopo il commit; uno sweep periodico recupera
+ *       gli hash mai estratti (o estratti da una versione precedente);</li>
+ *   <li>i parser sono quelli delle anteprime e passano dallo stesso
+ *       {@link RenderBulkhead}: se è saturo, o il blob non è disponibile, il file
+ *       viene segnato {@link ExtractedText.Status#DEFERRED} e lo sweep lo riprende
+ *       solo dopo {@code retry-ms}, così non occupa ogni volta il suo lotto;</li>
+ *   <li>a estrazione completata le righe interessate vengono reindicizzate.</li>
+ * </ul>
+ * Metriche: {@code text.extraction.documents} (per formato ed esito),
+ * {@code text.extraction.latency} (per formato), {@code text.extraction.bytes}
+ * letti e {@code text.extraction.queue.depth}.
+ */
+@Service
+public class TextExtractionService {
+
+    private static final Logger log = LoggerFactory.getLogger(TextExtractionService.class);
+
+    /**
+     * Versione dell'estrattore: va incrementata quando cambia il testo prodotto,
+     * così lo sweep rielabora i file già estratti.
+     */
+    static final int EXTRACTOR_VERSION = 1;
+
+    private record Source(String fileName, String mimeType, String blobKey) {}
+
+    private final ExtractedTextRepository extractedTextRepository;
+    private final SearchIndexService searchIndexService;
+    private final BlobStore blobStore;
+    private final PdfDocumentPool pdfDocumentPool;
+    private final RenderBulkhead renderBulkhead;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxChars;
+    private final int sweepBatchSize;
+    private final Duration retryDelay;
+    private final ThreadPoolExecutor executor;
+
+    /** Hash in coda o in lavorazione: un file non viene accodato due volte. */
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    private final Counter bytesRead;
+    private final Counter rejected;
+
+    public TextExtractionService(ExtractedTextRepository extractedTextRepository,
+                                 SearchIndexService searchIndexService, BlobStore blobStore,
+                                 PdfDocumentPool pdfDocumentPool, RenderBulkhead renderBulkhead,
+                                 JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                 @Value("${text.extraction.enabled:true}") boolean enabled,
+                                 @Value("${text.extraction.workers:2}") int workers,
+                                 @Value("${text.extraction.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${text.extraction.max-chars:1000000}") int maxChars,
+                                 @Value("${text.extraction.sweep-batch-size:200}") int sweepBatchSize,
+                                 @Value("${text.extraction.retry-ms:600000}") long retryMs) {
+        this.extractedTextRepository = extractedTextRepository;
+        this.searchIndexService = searchIndexService;
+        this.blobStore = blobStore;
+        this.pdfDocumentPool = pdfDocumentPool;
+        this.renderBulkhead = renderBulkhead;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxChars = maxChars;
+        this.sweepBatchSize = sweepBatchSize;
+        this.retryDelay = Duration.ofMillis(retryMs);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "text-extraction-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+
+        Gauge.builder("text.extraction.queue.depth", executor, e -> e.getQueue().size())
+                .description("File in attesa di estrazione del testo")
+                .register(meterRegistry);
+        this.bytesRead = Counter.builder("text.extraction.bytes")
+                .description("Byte di file letti per l'estrazione del testo")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("text.extraction.rejected")
+                .description("Estrazioni rimandate (coda piena o bulkhead saturo)")
+                .register(meterRegistry);
+    }
+
+    /** Accoda l'estrazione per il file dell'entità, dopo il commit della transazione corrente. */
+    public void enqueueAfterCommit(Object entity) {
+        String fileHash = entity instanceof Content content ? content.getFileHash()
+                : entity instanceof FileUpload upload ? upload.getFileHash()
+                : null;
+        if (!enabled || fileHash == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(fileHash);
+                }
+            });
+        } else {
+            enqueue(fileHash);
+        }
+    }
+
+    public void enqueue(String fileHash) {
+        if (!queued.add(fileHash)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    extract(fileHash);
+                } catch (RuntimeException e) {
+                    log.warn("Text extraction job failed for {}: {}", fileHash, e.getMessage());
+                } finally {
+                    queued.remove(fileHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // coda piena: ci penserà lo sweep
+            queued.remove(fileHash);
+            rejected.increment();
+        }
+    }
+
+    /**
+     * Recupera gli hash senza testo estratto (o estratti da una versione precedente),
+     * esclusi quelli rimandati finché non scade il loro {@code retry_at}.
+     */
+    @Scheduled(initialDelayString = "${text.extraction.sweep-ms:60000}",
+               fixedDelayString = "${text.extraction.sweep-ms:60000}")
+    public void sweep() {
+        if (!enabled || executor.getQueue().remainingCapacity() == 0) return;
+        for (String table : List.of("contents", "file_uploads")) {
+            List<String> hashes = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT t.file_hash FROM " + table + " t"
+                            + " LEFT JOIN extracted_texts e ON e.file_hash = t.file_hash"
+                            + " WHERE t.file_hash IS NOT NULL AND t.blob_key IS NOT NULL"
+                            + " AND (e.file_hash IS NULL OR e.extractor_version < ? OR e.status = 'DEFERRED')"
+                            + " AND (e.retry_at IS NULL OR e.retry_at <= ?)"
+                            + " ORDER BY t.file_hash LIMIT ?",
+                    String.class, EXTRACTOR_VERSION, OffsetDateTime.now(), sweepBatchSize);
+            hashes.forEach(this::enqueue);
+        }
+    }
+
+    void extract(String fileHash) {
+        Optional<ExtractedText> existing = extractedTextRepository.findById(fileHash);
+        if (existing.isPresent() && existing.get().getExtractorVersion() >= EXTRACTOR_VERSION
+                && existing.get().getStatus() != ExtractedText.Status.DEFERRED) return;
+
+        Source source = findSource(fileHash);
+        if (source == null) return;
+        if (!blobStore.exists(source.blobKey())) {
+            defer(fileHash, existing, "Blob " + source.blobKey() + " not available");
+            return;
+        }
+
+        String format = DocumentTextReader.formatOf(source.fileName(), source.mimeType());
+        ExtractedText result = existing.orElseGet(() -> new ExtractedText(fileHash, format, EXTRACTOR_VERSION));
+        result.setFormat(format);
+        result.setExtractorVersion(EXTRACTOR_VERSION);
+        result.setError(null);
+        result.setText(null);
+        result.setRetryAt(null);
+
+        long start = System.nanoTime();
+        if (format == null) {
+            result.setStatus(ExtractedText.Status.UNSUPPORTED);
+        } else {
+            try {
+                String text = read(source, format);
+                result.setText(text.isBlank() ? null : text.strip());
+                result.setStatus(text.isBlank() ? ExtractedText.Status.EMPTY : ExtractedText.Status.OK);
+            } catch (RenderBulkhead.RejectedException e) {
+                rejected.increment();
+                defer(fileHash, existing, "Render bulkhead saturated");
+                return;
+            } catch (Exception e) {
+                log.warn("Text extraction failed for '{}' ({}): {}", source.fileName(), fileHash, e.getMessage());
+                result.setStatus(ExtractedText.Status.FAILED);
+                result.setError(truncate(e.getClass().getSimpleName() + ": " + e.getMessage()));
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        result.setDurationMs(TimeUnit.NANOSECONDS.toMillis(nanos));
+        String formatTag = format != null ? format : "none";
+        Timer.builder("text.extraction.latency")
+                .description("Tempo di estrazione del testo per formato")
+                .tag("format", formatTag)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("text.extraction.documents")
+                .description("File elaborati dall'estrazione del testo")
+                .tag("format", formatTag)
+                .tag("status", result.getStatus().name())
+                .register(meterRegistry)
+                .increment();
+
+        extractedTextRepository.save(result);
+        // anche una nuova versione senza testo va reindicizzata: toglie quello vecchio
+        if (result.getStatus() == ExtractedText.Status.OK || existing.isPresent()) {
+            searchIndexService.reindexFileHash(fileHash);
+        }
+    }
+
+    /**
+     * Rimanda l'estrazione di {@code retry-ms}. Un testo di una versione precedente
+     * resta com'è (e indicizzato) fino all'estrazione riuscita.
+     */
+    private void defer(String fileHash, Optional<ExtractedText> existing, String reason) {
+        ExtractedText deferred = existing.orElseGet(() -> {
+            ExtractedText created = new ExtractedText(fileHash, null, EXTRACTOR_VERSION);
+            created.setStatus(ExtractedText.Status.DEFERRED);
+            return created;
+        });
+        deferred.setRetryAt(OffsetDateTime.now().plus(retryDelay));
+        if (deferred.getStatus() == ExtractedText.Status.DEFERRED) deferred.setError(reason);
+        extractedTextRepository.save(deferred);
+        log.debug("Text extraction for {} deferred until {}: {}", fileHash, deferred.getRetryAt(), reason);
+    }
+
+    private String read(Source source, String format) throws Exception {
+        long size = blobStore.size(source.blobKey());
+        RenderBulkhead.Format bulkheadFormat = DocumentTextReader.bulkheadFormat(format);
+        // PDF con cache su file temporanei: l'heap non cresce con il documento
+        long heapBytes = bulkheadFormat == RenderBulkhead.Format.PDF
+                ? Math.min(size, pdfDocumentPool.getMaxMainMemoryBytes()) : size;
+        try (RenderBulkhead.Permit permit = bulkheadFormat != null
+                ? renderBulkhead.acquire(bulkheadFormat, heapBytes) : null) {
+            PdfDocumentPool.SourceFile file = sourceFile(source.blobKey());
+            try {
+                bytesRead.increment(size);
+                return DocumentTextReader.read(format, file.file(), maxChars);
+            } finally {
+                file.release();
+            }
+        }
+    }
+
+    /** File del blob: quello dello store caldo se c'è, altrimenti una copia di spool. */
+    private PdfDocumentPool.SourceFile sourceFile(String blobKey) throws IOException {
+        Optional<Path> local = blobStore.localPath(blobKey);
+        return local.isPresent()
+                ? new PdfDocumentPool.SourceFile(local.get(), false)
+                // letture di servizio: non contano per il tiering dei blob
+                : pdfDocumentPool.spool(blobStore.openStreamUntracked(blobKey));
+    }
+
+    private Source findSource(String fileHash) {
+        List<Source> sources = jdbcTemplate.query(
+                "SELECT file_name, mime_type, blob_key FROM contents"
+                        + " WHERE file_hash = ? AND blob_key IS NOT NULL LIMIT 1",
+                (rs, rowNum) -> new Source(rs.getString(1), rs.getString(2), rs.getString(3)), fileHash);
+        if (sources.isEmpty()) {
+            sources = jdbcTemplate.query(
+                    "SELECT file_name, file_type, blob_key FROM file_uploads"
+                            + " WHERE file_hash = ? AND blob_key IS NOT NULL LIMIT 1",
+                    (rs, rowNum) -> new Source(rs.getString(1), rs.getString(2), rs.getString(3)), fileHash);
+        }
+        return sources.isEmpty() ? null : sources.get(0);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,373 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * {@link BlobStore} a due livelli: i blob "caldi" stanno nel
+ * {@link LocalFileBlobStore} (un file per blob), quelli freddi nei pack file di
+ * {@link PackFileStore}, letti tramite mapping in memoria senza copie.
+ * <ul>
+ *   <li>le letture vengono contate e salvate periodicamente in {@code blob_refs}
+ *       ({@code read_count}, {@code last_read_at});</li>
+ *   <li>un blob freddo letto almeno {@code blob.tier.promote-reads} volte tra due
+ *       salvataggi torna nello store caldo;</li>
+ *   <li>il job notturno sposta nei pack i blob referenziati non scritti né letti
+ *       da {@code blob.tier.cold-after-ms} e compatta i pack con pochi dati vivi.</li>
+ * </ul>
+ * Chi usa {@link #localPath} ottiene un file solo per i blob caldi; per gli altri
+ * legge in streaming (es. {@link BlobStoreResource}).
+ * <p>
+ * Spostamenti, promozioni e compattazione girano su un thread dedicato, non su
+ * quello condiviso dei job {@code @Scheduled}. Scritture e spostamenti della
+ * stessa chiave si escludono: una copia viene eliminata solo se l'altra esiste.
+ */
+@Primary
+@Component
+public class TieredBlobStore implements BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredBlobStore.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    public record TierReport(int demoted, long demotedBytes, long compactedBytes, int coldBlobs, long coldBytes) {}
+
+    private final LocalFileBlobStore hot;
+    private final PackFileStore cold;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final long coldAfterMs;
+    private final int promoteReads;
+    private final long maxBlobBytes;
+    private final double compactBelowLiveRatio;
+
+    /** Letture non ancora salvate in blob_refs: numero e ultimo accesso. */
+    private final Map<String, LongAdder> pendingReads = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingLastRead = new ConcurrentHashMap<>();
+    /** Letture di blob freddi dall'ultimo salvataggio, per la promozione. */
+    private final Map<String, LongAdder> coldReads = new ConcurrentHashMap<>();
+    /** Lock per chiave (a strisce) tra riscritture e spostamenti dello stesso blob. */
+    private final Object[] keyLocks = new Object[LOCK_STRIPES];
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blob-tiering");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter coldReadCounter;
+    private final Counter promoted;
+    private final Counter demoted;
+
+    public TieredBlobStore(LocalFileBlobStore hot, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                           @Value("${blob.tier.directory:data/blob-packs}") String directory,
+                           @Value("${blob.tier.pack-max-bytes:1073741824}") long packMaxBytes,
+                           @Value("${blob.tier.enabled:true}") boolean enabled,
+                           @Value("${blob.tier.cold-after-ms:2592000000}") long coldAfterMs,
+                           @Value("${blob.tier.promote-reads:3}") int promoteReads,
+                           @Value("${blob.tier.max-blob-bytes:268435456}") long maxBlobBytes,
+                           @Value("${blob.tier.compact-below-live-ratio:0.5}") double compactBelowLiveRatio)
+            throws IOException {
+        this.hot = hot;
+        this.cold = new PackFileStore(Paths.get(directory), packMaxBytes);
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.coldAfterMs = coldAfterMs;
+        this.promoteReads = promoteReads;
+        this.maxBlobBytes = Math.min(maxBlobBytes, packMaxBytes);
+        this.compactBelowLiveRatio = compactBelowLiveRatio;
+        for (int i = 0; i < keyLocks.length; i++) keyLocks[i] = new Object();
+
+        this.coldReadCounter = Counter.builder("blob.tier.cold.reads")
+                .description("Letture servite dai pack file")
+                .register(meterRegistry);
+        this.promoted = Counter.builder("blob.tier.promoted")
+                .description("Blob riportati nello store caldo")
+                .register(meterRegistry);
+        this.demoted = Counter.builder("blob.tier.demoted")
+                .description("Blob spostati nei pack file")
+                .register(meterRegistry);
+        Gauge.builder("blob.tier.cold.bytes", cold, PackFileStore::liveBytes)
+                .description("Byte vivi nei pack file")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("blob.tier.cold.blobs", cold, PackFileStore::size)
+                .description("Blob nei pack file")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public StoredBlob put(InputStream in) throws IOException {
+        return written(hot.write(in));
+    }
+
+    @Override
+    public StoredBlob putFile(Path file, String sha256) throws IOException {
+        return written(hot.writeFile(file, sha256));
+    }
+
+    /**
+     * Dopo una scrittura nello store caldo: se il file è stato davvero scritto la
+     * copia calda è quella buona e quella fredda si elimina. Con la deduplica non
+     * si tocca niente: la copia calda può essere in corso di spostamento nei pack.
+     */
+    private StoredBlob written(LocalFileBlobStore.Write write) throws IOException {
+        String key = write.blob().key();
+        if (write.written()) {
+            synchronized (lockFor(key)) {
+                cold.remove(key);
+            }
+        }
+        return write.blob();
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        recordRead(key);
+        if (hot.exists(key)) {
+            try {
+                return hot.openStream(key);
+            } catch (NoSuchFileException movedToPack) {
+                // demozione in corso: si legge dal pack
+            }
+        }
+        return Channels.newInputStream(openCold(key));
+    }
+
+    @Override
+    public InputStream openStreamUntracked(String key) throws IOException {
+        if (hot.exists(key)) {
+            try {
+                return hot.openStream(key);
+            } catch (NoSuchFileException movedToPack) {
+                // demozione in corso: si legge dal pack
+            }
+        }
+        return Channels.newInputStream(cold.open(key));
+    }
+
+    @Override
+    public ReadableByteChannel openChannel(String key) throws IOException {
+        recordRead(key);
+        if (hot.exists(key)) {
+            try {
+                return hot.openChannel(key);
+            } catch (NoSuchFileException movedToPack) {
+                // demozione in corso: si legge dal pack
+            }
+        }
+        return openCold(key);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return hot.exists(key) || (key != null && cold.contains(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        if (hot.exists(key)) return hot.size(key);
+        return coldEntry(key).length();
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return hot.localPath(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        hot.delete(key);
+        cold.remove(key);
+    }
+
+    /**
+     * La copia fredda conta con la data di archiviazione, quella calda con la
+     * propria: un upload dello stesso contenuto ne rinfresca una delle due.
+     */
+    @Override
+    public boolean deleteIfOlderThan(String key, Instant cutoff) throws IOException {
+        synchronized (lockFor(key)) {
+            PackFileStore.Entry entry = cold.entry(key);
+            if (entry != null && !Instant.ofEpochMilli(entry.storedAt()).isBefore(cutoff)) return false;
+            boolean deleted = hot.deleteIfOlderThan(key, cutoff);
+            // copia calda scritta dopo cutoff
+            if (!deleted && hot.exists(key)) return false;
+            if (entry == null) return deleted;
+            cold.remove(key);
+            return true;
+        }
+    }
+
+    @Override
+    public Stream<String> keys() throws IOException {
+        return Stream.concat(hot.keys(), cold.keys().stream()).distinct();
+    }
+
+    @Override
+    public Instant lastModified(String key) throws IOException {
+        if (hot.exists(key)) return hot.lastModified(key);
+        return Instant.ofEpochMilli(coldEntry(key).storedAt());
+    }
+
+    /** Salva i contatori di lettura e accoda la promozione dei blob freddi letti spesso. */
+    @Scheduled(fixedDelayString = "${blob.tier.flush-ms:300000}")
+    public void flushReads() {
+        Map<String, Long> reads = new HashMap<>();
+        pendingReads.forEach((key, count) -> {
+            long n = count.sumThenReset();
+            if (n > 0) reads.put(key, n);
+        });
+        pendingReads.values().removeIf(count -> count.sum() == 0);
+        for (Map.Entry<String, Long> entry : reads.entrySet()) {
+            Long lastRead = pendingLastRead.remove(entry.getKey());
+            jdbcTemplate.update("UPDATE blob_refs SET read_count = COALESCE(read_count, 0) + ?, last_read_at = ? "
+                            + "WHERE blob_key = ?", entry.getValue(),
+                    lastRead != null ? Timestamp.from(Instant.ofEpochMilli(lastRead)) : Timestamp.from(Instant.now()),
+                    entry.getKey());
+        }
+
+        Map<String, Long> hotCandidates = new HashMap<>();
+        coldReads.forEach((key, count) -> hotCandidates.put(key, count.sumThenReset()));
+        coldReads.clear();
+        hotCandidates.forEach((key, count) -> {
+            // la copia (fino a blob.tier.max-blob-bytes) non gira sul thread dello scheduler
+            if (count >= promoteReads && cold.contains(key)) worker.execute(() -> promote(key));
+        });
+    }
+
+    @Scheduled(cron = "${blob.tier.cron:0 0 4 * * *}")
+    public void scheduledRun() {
+        if (!enabled) return;
+        worker.execute(() -> {
+            try {
+                run();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Blob tiering failed: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** Sposta nei pack i blob freddi e compatta i pack. */
+    public synchronized TierReport run() throws IOException {
+        flushReads();
+        Instant cutoff = Instant.now().minusMillis(coldAfterMs);
+
+        // ultimo utilizzo (lettura o cambio dei riferimenti) dei blob referenziati
+        Map<String, Instant> lastUse = new HashMap<>();
+        jdbcTemplate.query("SELECT blob_key, COALESCE(last_read_at, last_changed) FROM blob_refs WHERE ref_count > 0",
+                rs -> {
+                    Timestamp used = rs.getTimestamp(2);
+                    if (used != null) lastUse.put(rs.getString(1), used.toInstant());
+                });
+
+        List<String> hotKeys;
+        try (Stream<String> keys = hot.keys()) {
+            hotKeys = keys.toList();
+        }
+        int moved = 0;
+        long movedBytes = 0;
+        for (String key : hotKeys) {
+            Instant used = lastUse.get(key);
+            if (used == null || used.isAfter(cutoff) || pendingReads.containsKey(key)) continue;
+            try {
+                if (hot.lastModified(key).isAfter(cutoff)) continue;
+                long size = hot.size(key);
+                if (size > maxBlobBytes) continue;
+                PackFileStore.Entry packed;
+                try (ReadableByteChannel source = hot.openChannel(key)) {
+                    packed = cold.append(key, source, size);
+                }
+                synchronized (lockFor(key)) {
+                    // riscritto nel frattempo: la copia fredda è già stata tolta, resta quella calda
+                    if (!packed.equals(cold.entry(key))) continue;
+                    hot.delete(key);
+                }
+                demoted.increment();
+                moved++;
+                movedBytes += size;
+            } catch (NoSuchFileException e) {
+                // eliminato nel frattempo
+            }
+        }
+
+        long compacted = cold.compact(compactBelowLiveRatio);
+        TierReport report = new TierReport(moved, movedBytes, compacted, cold.size(), cold.liveBytes());
+        log.info("Blob tiering: {} blobs ({} bytes) moved to packs, {} bytes compacted, {} cold blobs ({} bytes)",
+                moved, movedBytes, compacted, report.coldBlobs(), report.coldBytes());
+        return report;
+    }
+
+    private void promote(String key) {
+        try {
+            if (!cold.contains(key)) return;
+            try (InputStream in = Channels.newInputStream(openCold(key))) {
+                hot.put(in);
+            }
+            synchronized (lockFor(key)) {
+                // la copia calda potrebbe essere stata appena eliminata da uno spostamento
+                if (!hot.exists(key)) return;
+                cold.remove(key);
+            }
+            promoted.increment();
+            log.debug("Blob {} promoted to hot storage", key);
+        } catch (IOException e) {
+            log.warn("Promotion of blob {} failed: {}", key, e.getMessage());
+        }
+    }
+
+    private Object lockFor(String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), keyLocks.length)];
+    }
+
+    private ReadableByteChannel openCold(String key) throws IOException {
+        ReadableByteChannel channel = cold.open(key);
+        coldReadCounter.increment();
+        coldReads.computeIfAbsent(key, k -> new LongAdder()).increment();
+        return channel;
+    }
+
+    private PackFileStore.Entry coldEntry(String key) throws NoSuchFileException {
+        PackFileStore.Entry entry = key != null ? cold.entry(key) : null;
+        if (entry == null) throw new NoSuchFileException("Blob not found: " + key);
+        return entry;
+    }
+
+    private void recordRead(String key) {
+        if (key == null) return;
+        pendingReads.computeIfAbsent(key, k -> new LongAdder()).increment();
+        pendingLastRead.put(key, System.currentTimeMillis());
+    }
+}
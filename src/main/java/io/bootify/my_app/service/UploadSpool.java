@@ -0,0 +1,199 @@
+package io.bootify.my_app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Ricezione degli upload su file temporaneo invece che in heap. Mentre i byte
+ * arrivano vengono calcolati dimensione e SHA-256, e ogni scrittura viene
+ * conteggiata sulle quote dei byte "in volo" (ricevuti ma non ancora passati al
+ * {@link BlobStore}): {@code upload.quota.per-user-bytes} per utente e
+ * {@code upload.quota.global-bytes} in totale. Oltre la quota l'upload fallisce.
+ * <p>
+ * Di default lo spool sta nella directory {@code incoming} del blob store, così
+ * {@link BlobStore#putFile} può spostare il file con un rename.
+ */
+@Component
+public class UploadSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSpool.class);
+
+    private static final String PREFIX = "upload-";
+    private static final long STALE_MS = 24 * 60 * 60 * 1000L;
+
+    /** Quota superata: è una IOException così l'Upload di Vaadin lo tratta come upload fallito. */
+    public static class QuotaExceededException extends IOException {
+        public QuotaExceededException(String message) {
+            super(message);
+        }
+    }
+
+    private final Path directory;
+    private final long perUserBytes;
+    private final long globalBytes;
+
+    private final Map<String, Long> inFlightByOwner = new HashMap<>();
+    private long inFlight = 0;
+
+    public UploadSpool(@Value("${upload.spool-directory:${blob.store.directory:data/blobs}/incoming}") String directory,
+                       @Value("${upload.quota.per-user-bytes:268435456}") long perUserBytes,
+                       @Value("${upload.quota.global-bytes:1073741824}") long globalBytes) {
+        this.directory = Paths.get(directory);
+        this.perUserBytes = perUserBytes;
+        this.globalBytes = globalBytes;
+    }
+
+    /**
+     * Apre un nuovo file di spool per {@code owner}. Dopo aver scritto e chiuso lo
+     * stream, {@link SpoolOutputStream#complete()} restituisce l'upload; in caso
+     * di errore {@link SpoolOutputStream#abort()} elimina il file e libera la quota.
+     */
+    public SpoolOutputStream begin(String owner, String fileName, String mimeType) throws IOException {
+        Files.createDirectories(directory);
+        Path file = Files.createTempFile(directory, PREFIX, ".tmp");
+        return new SpoolOutputStream(owner, file, fileName, mimeType);
+    }
+
+    public synchronized long getInFlightBytes() {
+        return inFlight;
+    }
+
+    private synchronized void reserve(String owner, long bytes) throws QuotaExceededException {
+        long ownerBytes = inFlightByOwner.getOrDefault(owner, 0L);
+        if (ownerBytes + bytes > perUserBytes) {
+            throw new QuotaExceededException("Upload quota exceeded for " + owner + " (" + perUserBytes + " bytes)");
+        }
+        if (inFlight + bytes > globalBytes) {
+            throw new QuotaExceededException("Server upload capacity exceeded (" + globalBytes + " bytes), retry later");
+        }
+        inFlightByOwner.put(owner, ownerBytes + bytes);
+        inFlight += bytes;
+    }
+
+    private synchronized void release(String owner, long bytes) {
+        if (bytes == 0) return;
+        long remaining = inFlightByOwner.getOrDefault(owner, 0L) - bytes;
+        if (remaining > 0) {
+            inFlightByOwner.put(owner, remaining);
+        } else {
+            inFlightByOwner.remove(owner);
+        }
+        inFlight -= bytes;
+    }
+
+    /** Rimuove i file di spool abbandonati (es. upload interrotti da un riavvio). */
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 60_000)
+    public void purgeStale() {
+        if (!Files.isDirectory(directory)) return;
+        long threshold = System.currentTimeMillis() - STALE_MS;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().startsWith(PREFIX)).forEach(p -> {
+                try {
+                    if (Files.getLastModifiedTime(p).toMillis() < threshold) Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    log.debug("Spool cleanup failed for {}: {}", p, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Spool cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    /** Stream verso il file di spool: conta, calcola l'hash e applica le quote. */
+    public final class SpoolOutputStream extends OutputStream {
+
+        private final String owner;
+        private final Path file;
+        private final String fileName;
+        private final String mimeType;
+        private final MessageDigest digest = sha256();
+        private final OutputStream out;
+        private long size = 0;
+        private boolean open = true;
+        private boolean settled = false;
+
+        private SpoolOutputStream(String owner, Path file, String fileName, String mimeType) throws IOException {
+            this.owner = owner;
+            this.file = file;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+            this.out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024), digest);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!open) throw new IOException("Spool stream closed");
+            try {
+                reserve(owner, len);
+            } catch (QuotaExceededException e) {
+                abort();
+                throw e;
+            }
+            size += len;
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!open) return;
+            open = false;
+            out.close();
+        }
+
+        /** Upload completo; da qui in poi quota e file appartengono allo {@link SpooledUpload}. */
+        public SpooledUpload complete() throws IOException {
+            if (settled) throw new IllegalStateException("Upload already completed or aborted");
+            close();
+            settled = true;
+            long reserved = size;
+            return new SpooledUpload(file, fileName, mimeType, size,
+                    HexFormat.of().formatHex(digest.digest()), () -> release(owner, reserved));
+        }
+
+        public void abort() {
+            if (settled) return;
+            settled = true;
+            try {
+                close();
+            } catch (IOException ignored) {
+                // il file viene comunque eliminato
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.debug("Spool delete failed for {}: {}", file, e.getMessage());
+            }
+            release(owner, size);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package io.bootify.my_app.util;
 
 import io.bootify.my_app.domain.FileUpload;
+import io.bootify.my_app.service.BlobStore;
 import io.bootify.my_app.service.FileUploadService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 
+import java.io.ByteArrayInputStream;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -21,15 +23,16 @@ import java.util.UUID;
 public class SampleDataGenerator {
 
     @Bean
-    CommandLineRunner generateSampleData(FileUploadService fileUploadService) {
+    CommandLineRunner generateSampleData(FileUploadService fileUploadService, BlobStore blobStore) {
         return args -> {
             System.out.println("🎲 Generazione dati di esempio...");
+            BlobStore.StoredBlob dummy = blobStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3})); // Dummy data
             
             // Sample 1: Video con trascrizione e traduzione
             FileUpload video = new FileUpload();
             video.setFileName("meeting_recording_2024.mp4");
             video.setFileType("video/mp4");
-            video.setFileSize(15728640L); // 15 MB
+            video.setFileSize(dummy.size()); // dimensione reale del blob allegato
             video.setUploadedBy("Mario Rossi");
             video.setUploadDate(LocalDateTime.now().minusDays(2));
             video.setCategory("Video");
@@ -37,7 +40,8 @@ public class SampleDataGenerator {
             video.setDescription("Registrazione della riunione mensile del team");
             video.setUniqueFileName(UUID.randomUUID().toString() + ".mp4");
             video.setEtag("e-" + UUID.randomUUID().toString().substring(0, 16));
-            video.setFileData(new byte[]{1, 2, 3}); // Dummy data
+            video.setBlobKey(dummy.key());
+            video.setFileHash(dummy.sha256());
             
             // Trascrizione lunga
             video.setTrascrizione(generateLongTranscription());
@@ -51,7 +55,7 @@ public class SampleDataGenerator {
             FileUpload audio = new FileUpload();
             audio.setFileName("interview_client_abc.mp3");
             audio.setFileType("audio/mp3");
-            audio.setFileSize(5242880L); // 5 MB
+            audio.setFileSize(dummy.size());
             audio.setUploadedBy("Giulia Bianchi");
             audio.setUploadDate(LocalDateTime.now().minusDays(5));
             audio.setCategory("Audio");
@@ -59,7 +63,8 @@ public class SampleDataGenerator {
             audio.setDescription("Intervista con il cliente ABC per il nuovo progetto");
             audio.setUniqueFileName(UUID.randomUUID().toString() + ".mp3");
             audio.setEtag("e-" + UUID.randomUUID().toString().substring(0, 16));
-            audio.setFileData(new byte[]{1, 2, 3}); // Dummy data
+            audio.setBlobKey(dummy.key());
+            audio.setFileHash(dummy.sha256());
             
             audio.setTrascrizione(generateMediumTranscription());
             // Nessuna traduzione per questo
@@ -70,7 +75,7 @@ public class SampleDataGenerator {
             FileUpload doc = new FileUpload();
             doc.setFileName("quarterly_report_Q4.pdf");
             doc.setFileType("application/pdf");
-            doc.setFileSize(2097152L); // 2 MB
+            doc.setFileSize(dummy.size());
             doc.setUploadedBy("Luca Verdi");
             doc.setUploadDate(LocalDateTime.now().minusDays(1));
             doc.setCategory("Report");
@@ -78,7 +83,8 @@ public class SampleDataGenerator {
             doc.setDescription("Report trimestrale Q4 2024");
             doc.setUniqueFileName(UUID.randomUUID().toString() + ".pdf");
             doc.setEtag("e-" + UUID.randomUUID().toString().substring(0, 16));
-            doc.setFileData(new byte[]{1, 2, 3}); // Dummy data
+            doc.setBlobKey(dummy.key());
+            doc.setFileHash(dummy.sha256());
             
             // Nessuna trascrizione o traduzione
             
@@ -88,7 +94,7 @@ public class SampleDataGenerator {
             FileUpload presentation = new FileUpload();
             presentation.setFileName("product_demo_2024.pptx");
             presentation.setFileType("application/vnd.openxmlformats-officedocument.presentationml.presentation");
-            presentation.setFileSize(8388608L); // 8 MB
+            presentation.setFileSize(dummy.size());
             presentation.setUploadedBy("Anna Neri");
             presentation.setUploadDate(LocalDateTime.now().minusHours(6));
             presentation.setCategory("Presentazioni");
@@ -96,7 +102,8 @@ public class SampleDataGenerator {
             presentation.setDescription("Demo del prodotto per il cliente internazionale");
             presentation.setUniqueFileName(UUID.randomUUID().toString() + ".pptx");
             presentation.setEtag("e-" + UUID.randomUUID().toString().substring(0, 16));
-            presentation.setFileData(new byte[]{1, 2, 3}); // Dummy data
+            presentation.setBlobKey(dummy.key());
+            presentation.setFileHash(dummy.sha256());
             
             presentation.setTrascrizione(generateShortTranscription());
             presentation.setTraduzione(generateShortTranslation());
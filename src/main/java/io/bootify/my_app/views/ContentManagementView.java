@@ -27,9 +27,13 @@ import com.vaadin.flow.data.binder.Binder;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import io.bootify.my_app.component.BulkDownloadLink;
 import io.bootify.my_app.component.GenericPaginatedGrid;
+import io.bootify.my_app.component.PreviewImage;
 import io.bootify.my_app.domain.Content;
+import io.bootify.my_app.service.BulkDownloadService;
 import io.bootify.my_app.service.ContentService;
+import io.bootify.my_app.service.FileDownloadService;
 import io.bootify.my_app.service.PreviewService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
@@ -45,6 +49,7 @@ public class ContentManagementView extends VerticalLayout {
     private final ContentService contentService;
     private final PreviewService previewService;
     private final GenericPaginatedGrid<Content> contentGrid = new GenericPaginatedGrid<>();
+    private final BulkDownloadLink downloadSelectedLink;
     private final ComboBox<String> fileTypeFilter = new ComboBox<>("Tipo File");
     private final TextField searchField = new TextField();
     private final Span totalLabel = new Span();
@@ -52,9 +57,11 @@ public class ContentManagementView extends VerticalLayout {
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public ContentManagementView(@Autowired ContentService contentService,
-                                  @Autowired PreviewService previewService) {
+                                  @Autowired PreviewService previewService,
+                                  @Autowired BulkDownloadService bulkDownloadService) {
         this.contentService = contentService;
         this.previewService = previewService;
+        this.downloadSelectedLink = new BulkDownloadLink(bulkDownloadService, FileDownloadService.Kind.CONTENTS, "contenuti");
 
         setSpacing(true);
         setPadding(true);
@@ -88,6 +95,11 @@ public class ContentManagementView extends VerticalLayout {
         // Configurazione colonne del grid
         configureGrid();
 
+        // Selezione multipla tra le pagine, per il download ZIP
+        contentGrid.enableMultiSelect();
+        contentGrid.setSelectionChangeListener(selected ->
+                downloadSelectedLink.setIds(selected.stream().map(Content::getId).toList()));
+
         // Configura DataProvider con paginazione e filtri
         contentGrid.setDataProvider((pageRequest, sortOrders, filterText) -> {
             String searchTerm = searchField.getValue() != null ? searchField.getValue() : "";
@@ -98,16 +110,9 @@ public class ContentManagementView extends VerticalLayout {
                     pageRequest.getPageSize(),
                     pageRequest.getSort());
 
-            org.springframework.data.domain.Page<Content> page;
-            if (!searchTerm.isEmpty() && !fileType.isEmpty()) {
-                page = contentService.searchByFileType(fileType, searchTerm, pageable);
-            } else if (!searchTerm.isEmpty()) {
-                page = contentService.search(searchTerm, pageable);
-            } else if (!fileType.isEmpty()) {
-                page = contentService.findByFileType(fileType, pageable);
-            } else {
-                page = contentService.findAll(pageable);
-            }
+            // Righe parziali: dettaglio e modifica ricaricano il contenuto completo
+            org.springframework.data.domain.Page<Content> page =
+                    contentService.findSummaries(searchTerm, fileType, pageable);
             
             // Cache il totale per evitare query duplicate
             cachedTotal = page.getTotalElements();
@@ -136,7 +141,7 @@ public class ContentManagementView extends VerticalLayout {
         Button refreshButton = new Button("Aggiorna", new Icon(VaadinIcon.REFRESH));
         refreshButton.addClickListener(e -> contentGrid.refresh());
         
-        HorizontalLayout toolbar = new HorizontalLayout(addButton, refreshButton);
+        HorizontalLayout toolbar = new HorizontalLayout(addButton, refreshButton, downloadSelectedLink);
         toolbar.setDefaultVerticalComponentAlignment(FlexComponent.Alignment.CENTER);
         toolbar.setSpacing(true);
         
@@ -169,7 +174,7 @@ public class ContentManagementView extends VerticalLayout {
         Button editButton = new Button(new Icon(VaadinIcon.EDIT));
         editButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY);
         editButton.setTooltipText("Modifica");
-        editButton.addClickListener(e -> openEditDialog(content));
+        editButton.addClickListener(e -> openEditDialog(loadFull(content)));
         
         Button deleteButton = new Button(new Icon(VaadinIcon.TRASH));
         deleteButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY, ButtonVariant.LUMO_ERROR);
@@ -462,7 +467,8 @@ public class ContentManagementView extends VerticalLayout {
         }
     }
     
-    private Component buildRowDetail(Content content) {
+    private Component buildRowDetail(Content listed) {
+        Content content = loadFull(listed);
         // --- Stepper orizzontale (larghezza piena, in cima) ---
         Div stepperWrapper = buildContentStepper(content);
         stepperWrapper.getStyle().set("padding", "var(--lumo-space-m) var(--lumo-space-m) 0");
@@ -478,7 +484,7 @@ public class ContentManagementView extends VerticalLayout {
         previewLabel.getStyle()
                 .set("font-size", "var(--lumo-font-size-xs)")
                 .set("color", "var(--lumo-secondary-text-color)");
-        Image img = new Image("/api/preview/" + content.getId(), "Anteprima");
+        Image img = new PreviewImage(content.getId(), 320);
         img.setMaxWidth("320px");
         img.setWidthFull();
         img.getStyle()
@@ -689,6 +695,11 @@ public class ContentManagementView extends VerticalLayout {
         totalLabel.setText(cachedTotal + " contenut" + (cachedTotal != 1 ? "i" : "o") + filterText);
     }
     
+    /** Le righe del grid sono parziali: dettaglio e modifica lavorano sul contenuto completo. */
+    private Content loadFull(Content content) {
+        return content.isSummary() ? contentService.findById(content.getId()).orElse(content) : content;
+    }
+
     private void confirmDelete(Content content) {
         ConfirmDialog dialog = new ConfirmDialog();
         dialog.setHeader("Conferma eliminazione");
@@ -23,21 +23,23 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
-import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.theme.lumo.LumoUtility;
+import io.bootify.my_app.component.BulkDownloadLink;
+import io.bootify.my_app.component.MediaPlayer;
+import io.bootify.my_app.component.SpoolingUploadReceiver;
 import io.bootify.my_app.domain.FileUpload;
+import io.bootify.my_app.service.BulkDownloadService;
 import io.bootify.my_app.service.FieldHelpService;
+import io.bootify.my_app.service.FileDownloadService;
 import io.bootify.my_app.service.FileUploadService;
+import io.bootify.my_app.service.UploadSpool;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
@@ -51,7 +53,9 @@ public class EnhancedFileManagementView extends VerticalLayout {
 
     private final FileUploadService fileUploadService;
     private final FieldHelpService fieldHelpService;
+    private final UploadSpool uploadSpool;
     private final Grid<FileUpload> grid;
+    private final BulkDownloadLink downloadSelectedLink;
     
     // Search filters
     private TextField searchField;
@@ -61,7 +65,7 @@ public class EnhancedFileManagementView extends VerticalLayout {
     
     // Upload components
     private Upload upload;
-    private MemoryBuffer buffer;
+    private SpoolingUploadReceiver receiver;
     private ComboBox<String> uploadCategoryCombo;
     private TextArea uploadDescriptionArea;
     private TextField uploadOwnerField;
@@ -81,9 +85,13 @@ public class EnhancedFileManagementView extends VerticalLayout {
 
     @Autowired
     public EnhancedFileManagementView(FileUploadService fileUploadService,
-                                      FieldHelpService fieldHelpService) {
+                                      FieldHelpService fieldHelpService,
+                                      UploadSpool uploadSpool,
+                                      BulkDownloadService bulkDownloadService) {
         this.fileUploadService = fileUploadService;
         this.fieldHelpService = fieldHelpService;
+        this.uploadSpool = uploadSpool;
+        this.downloadSelectedLink = new BulkDownloadLink(bulkDownloadService, FileDownloadService.Kind.UPLOADS, "file");
 
         // Configure the main layout
         setWidthFull();
@@ -173,8 +181,8 @@ public class EnhancedFileManagementView extends VerticalLayout {
         formLayout.add(fieldHelpService.wrapWithHelp(uploadDescriptionArea, VIEW_KEY, "descrizione"), 2);
 
         // File upload component
-        buffer = new MemoryBuffer();
-        upload = new Upload(buffer);
+        receiver = new SpoolingUploadReceiver(uploadSpool);
+        upload = new Upload(receiver);
         upload.setMaxFiles(1);
         upload.setMaxFileSize(10 * 1024 * 1024); // 10MB
         upload.setAcceptedFileTypes(
@@ -235,16 +243,10 @@ public class EnhancedFileManagementView extends VerticalLayout {
                 
                 System.out.println("📋 File: " + fileName + ", Tipo: " + mimeType);
 
-                InputStream inputStream = buffer.getInputStream();
-                byte[] fileData = inputStream.readAllBytes();
-                
-                System.out.println("📦 Dimensione file: " + fileData.length + " bytes");
-
                 FileUpload fileUpload = new FileUpload();
                 fileUpload.setFileName(fileName);
                 fileUpload.setFileType(mimeType);
-                fileUpload.setFileSize((long) fileData.length);
-                fileUpload.setFileData(fileData);
+                fileUploadService.attachData(fileUpload, receiver.takeUpload());
                 fileUpload.setUploadedBy(uploadOwnerField.getValue());
                 fileUpload.setCategory(uploadCategoryCombo.getValue());
                 fileUpload.setDescription(uploadDescriptionArea.getValue());
@@ -278,6 +280,7 @@ public class EnhancedFileManagementView extends VerticalLayout {
         });
 
         upload.addFailedListener(event -> {
+            receiver.discard();
             System.err.println("❌ Upload fallito: " + event.getReason().getMessage());
             event.getReason().printStackTrace();
             Notification.show("❌ Upload fallito: " + event.getReason().getMessage(), 5000, Notification.Position.MIDDLE)
@@ -370,7 +373,7 @@ public class EnhancedFileManagementView extends VerticalLayout {
         filterRow.setDefaultVerticalComponentAlignment(FlexComponent.Alignment.END);
         filterRow.getStyle().set("gap", "var(--lumo-space-s)");
         
-        HorizontalLayout buttonRow = new HorizontalLayout(clearFiltersButton, refreshButton);
+        HorizontalLayout buttonRow = new HorizontalLayout(clearFiltersButton, refreshButton, downloadSelectedLink);
         buttonRow.setSpacing(true);
         buttonRow.getStyle().set("margin-top", "var(--lumo-space-s)");
 
@@ -384,6 +387,11 @@ public class EnhancedFileManagementView extends VerticalLayout {
             GridVariant.LUMO_COMPACT,
             GridVariant.LUMO_WRAP_CELL_CONTENT
         );
+
+        // Selezione multipla per il download ZIP
+        grid.setSelectionMode(Grid.SelectionMode.MULTI);
+        grid.asMultiSelect().addSelectionListener(event -> downloadSelectedLink.setIds(
+                event.getAllSelectedItems().stream().map(FileUpload::getId).toList()));
         grid.setSizeFull();
 
         // File name column with icon
@@ -470,7 +478,7 @@ public class EnhancedFileManagementView extends VerticalLayout {
         // Create download anchor
         com.vaadin.flow.component.html.Anchor downloadLink = new com.vaadin.flow.component.html.Anchor();
         downloadLink.getElement().setAttribute("download", true);
-        downloadLink.setHref(createStreamResource(file));
+        downloadLink.setHref("/api/files/uploads/" + file.getId());
         downloadLink.getStyle().set("text-decoration", "none");
         downloadLink.add(downloadButton);
         
@@ -482,7 +490,7 @@ public class EnhancedFileManagementView extends VerticalLayout {
         Button editButton = new Button(new Icon(VaadinIcon.EDIT));
         editButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY);
         editButton.setTooltipText("Modifica");
-        editButton.addClickListener(e -> openEditDialog(file));
+        editButton.addClickListener(e -> openEditDialog(loadFull(file)));
 
         Button approveButton = new Button(new Icon(VaadinIcon.CHECK_CIRCLE));
         approveButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY, ButtonVariant.LUMO_SUCCESS);
@@ -491,10 +499,28 @@ public class EnhancedFileManagementView extends VerticalLayout {
         approveButton.setEnabled(!"APPROVED".equals(file.getStatus()));
 
         HorizontalLayout actions = new HorizontalLayout(downloadLink, deleteButton, editButton, approveButton);
+        if (MediaPlayer.isPlayable(file.getFileType())) {
+            Button playButton = new Button(new Icon(VaadinIcon.PLAY));
+            playButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY);
+            playButton.setTooltipText("Riproduci");
+            playButton.addClickListener(e -> openPlayerDialog(file));
+            actions.addComponentAsFirst(playButton);
+        }
         actions.setSpacing(false);
         return actions;
     }
 
+    private void openPlayerDialog(FileUpload file) {
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle(file.getFileName());
+        dialog.setWidth("min(90vw, 960px)");
+        dialog.add(new MediaPlayer("uploads", file.getId(), file.getFileType()));
+
+        Button closeButton = new Button("Chiudi", e -> dialog.close());
+        dialog.getFooter().add(closeButton);
+        dialog.open();
+    }
+
     private Icon getFileIcon(String mimeType) {
         if (mimeType == null) {
             return VaadinIcon.FILE_O.create();
@@ -607,8 +633,7 @@ public class EnhancedFileManagementView extends VerticalLayout {
     }
 
     private void approveFile(FileUpload file) {
-        file.setStatus("APPROVED");
-        fileUploadService.save(file);
+        fileUploadService.updateStatus(file.getId(), "APPROVED");
         refreshGrid();
         
         Notification.show("File approvato: " + file.getFileName(), 3000, Notification.Position.BOTTOM_START)
@@ -641,8 +666,13 @@ public class EnhancedFileManagementView extends VerticalLayout {
         dialog.open();
     }
 
+    /** Le righe del grid sono parziali: la modifica lavora sul file completo. */
+    private FileUpload loadFull(FileUpload file) {
+        return file.isSummary() ? fileUploadService.findById(file.getId()).orElse(file) : file;
+    }
+
     private void applyFilters() {
-        List<FileUpload> files = fileUploadService.findAll();
+        List<FileUpload> files = fileUploadService.findAllSummaries();
 
         String searchText = searchField.getValue();
         if (searchText != null && !searchText.trim().isEmpty()) {
@@ -683,19 +713,9 @@ public class EnhancedFileManagementView extends VerticalLayout {
         refreshGrid();
     }
 
-    private StreamResource createStreamResource(FileUpload file) {
-        return new StreamResource(file.getFileName(), () -> {
-            byte[] data = file.getFileData();
-            if (data == null) {
-                data = new byte[0];
-            }
-            return new ByteArrayInputStream(data);
-        });
-    }
-
     private void refreshGrid() {
         System.out.println("🔄 RefreshGrid chiamato");
-        List<FileUpload> files = fileUploadService.findAll();
+        List<FileUpload> files = fileUploadService.findAllSummaries();
         System.out.println("📊 Trovati " + files.size() + " file nel database");
         
         // Force grid refresh
@@ -19,6 +19,7 @@ import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.theme.lumo.LumoUtility;
+import io.bootify.my_app.component.MediaPlayer;
 import io.bootify.my_app.domain.FileUpload;
 import io.bootify.my_app.service.FileUploadService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -130,7 +131,9 @@ public class FileDetailView extends VerticalLayout {
         return fileGrid;
     }
     
-    private void showFileDetails(FileUpload file) {
+    private void showFileDetails(FileUpload row) {
+        // la riga del grid è parziale: trascrizione, traduzione e metadata si caricano qui
+        FileUpload file = row.isSummary() ? fileUploadService.findById(row.getId()).orElse(row) : row;
         detailsPanel.removeAll();
         detailsPanel.setVisible(true);
         
@@ -143,6 +146,15 @@ public class FileDetailView extends VerticalLayout {
         Details basicInfo = createBasicInfoDetails(file);
         basicInfo.setOpened(true);
         detailsPanel.add(basicInfo);
+
+        // Riproduzione in streaming per audio e video
+        if (MediaPlayer.isPlayable(file.getFileType()) && file.getBlobKey() != null) {
+            Details playerDetails = new Details("▶️ Riproduzione", new MediaPlayer("uploads", file.getId(), file.getFileType()));
+            playerDetails.addThemeVariants(DetailsVariant.FILLED);
+            playerDetails.setOpened(true);
+            playerDetails.setWidthFull();
+            detailsPanel.add(playerDetails);
+        }
         
         // Metadati Tecnici
         Details technicalInfo = createTechnicalInfoDetails(file);
@@ -455,7 +467,7 @@ public class FileDetailView extends VerticalLayout {
     }
     
     private void refreshGrid() {
-        List<FileUpload> files = fileUploadService.findAll();
+        List<FileUpload> files = fileUploadService.findAllSummaries();
         grid.setItems(files);
         
         Notification.show("✅ Lista aggiornata: " + files.size() + " file trovati", 
@@ -23,6 +23,7 @@ import com.vaadin.flow.router.Route;
 import com.vaadin.flow.theme.lumo.LumoUtility;
 import io.bootify.my_app.domain.FileUpload;
 import io.bootify.my_app.service.FileUploadService;
+import io.bootify.my_app.service.UploadSpool;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.time.format.DateTimeFormatter;
@@ -33,6 +34,7 @@ import java.util.List;
 public class FileManagementView extends VerticalLayout {
 
     private final FileUploadService fileUploadService;
+    private final UploadSpool uploadSpool;
     private final Grid<FileUpload> grid;
     private final TextField searchField;
     private final Span statsLabel;
@@ -40,8 +42,9 @@ public class FileManagementView extends VerticalLayout {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
     @Autowired
-    public FileManagementView(FileUploadService fileUploadService) {
+    public FileManagementView(FileUploadService fileUploadService, UploadSpool uploadSpool) {
         this.fileUploadService = fileUploadService;
+        this.uploadSpool = uploadSpool;
 
         setSizeFull();
         setPadding(true);
@@ -174,7 +177,7 @@ public class FileManagementView extends VerticalLayout {
 
         // Metadata indicator
         grid.addColumn(new ComponentRenderer<>(file -> {
-            if (file.getMetadata() != null && !file.getMetadata().isEmpty()) {
+            if (file.hasMetadata()) {
                 Icon icon = new Icon(VaadinIcon.INFO_CIRCLE);
                 icon.setColor("var(--lumo-primary-color)");
                 icon.setSize("20px");
@@ -236,7 +239,7 @@ public class FileManagementView extends VerticalLayout {
     }
 
     private void openUploadDialog() {
-        FileUploadDialog dialog = new FileUploadDialog(fileUploadService, file -> {
+        FileUploadDialog dialog = new FileUploadDialog(fileUploadService, uploadSpool, file -> {
             refreshGrid();
             Notification.show("File caricato: " + file.getFileName(), 3000, Notification.Position.BOTTOM_START)
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
@@ -245,7 +248,9 @@ public class FileManagementView extends VerticalLayout {
     }
 
     private void editFile(FileUpload file) {
-        FileEditDialog dialog = new FileEditDialog(file, fileUploadService, updatedFile -> {
+        // la riga del grid è parziale: il dialog modifica il file completo
+        FileUpload full = fileUploadService.findById(file.getId()).orElse(file);
+        FileEditDialog dialog = new FileEditDialog(full, fileUploadService, updatedFile -> {
             refreshGrid();
         });
         dialog.open();
@@ -253,7 +258,7 @@ public class FileManagementView extends VerticalLayout {
 
     private void downloadFile(FileUpload file) {
         // Use REST endpoint for download - more reliable than StreamResource
-        String downloadUrl = "/api/files/download/" + file.getId();
+        String downloadUrl = "/api/files/uploads/" + file.getId();
         
         getUI().ifPresent(ui -> {
             ui.getPage().executeJs(
@@ -304,13 +309,13 @@ public class FileManagementView extends VerticalLayout {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             refreshGrid();
         } else {
-            List<FileUpload> files = fileUploadService.searchByFileName(searchTerm);
+            List<FileUpload> files = fileUploadService.searchSummariesByFileName(searchTerm);
             grid.setItems(files);
         }
     }
 
     private void refreshGrid() {
-        List<FileUpload> files = fileUploadService.findAll();
+        List<FileUpload> files = fileUploadService.findAllSummaries();
         grid.setItems(files);
         updateStats();
         searchField.clear();
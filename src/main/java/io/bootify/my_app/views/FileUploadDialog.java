@@ -15,11 +15,12 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
+import io.bootify.my_app.component.SpoolingUploadReceiver;
 import io.bootify.my_app.domain.FileUpload;
 import io.bootify.my_app.service.FileUploadService;
+import io.bootify.my_app.service.SpooledUpload;
+import io.bootify.my_app.service.UploadSpool;
 
-import java.io.InputStream;
 import java.util.function.Consumer;
 
 public class FileUploadDialog extends Dialog {
@@ -29,17 +30,19 @@ public class FileUploadDialog extends Dialog {
 
     private final TextField uploaderField;
     private final TextArea descriptionField;
-    private final MemoryBuffer buffer;
+    private final SpoolingUploadReceiver receiver;
     private final Upload upload;
     private final Span uploadStatus;
     private Button saveButton;
 
-    private byte[] fileData;
+    // file ricevuto su disco: va nel BlobStore solo al salvataggio
+    private SpooledUpload pendingUpload;
     private String uploadedFileName;
     private String uploadedMimeType;
     private Long uploadedFileSize;
 
-    public FileUploadDialog(FileUploadService fileUploadService, Consumer<FileUpload> onSuccessCallback) {
+    public FileUploadDialog(FileUploadService fileUploadService, UploadSpool uploadSpool,
+                            Consumer<FileUpload> onSuccessCallback) {
         this.fileUploadService = fileUploadService;
         this.onSuccessCallback = onSuccessCallback;
 
@@ -53,8 +56,9 @@ public class FileUploadDialog extends Dialog {
         title.getStyle().set("margin", "0");
 
         // Upload component
-        buffer = new MemoryBuffer();
-        upload = new Upload(buffer);
+        // il file viene scritto su disco mentre arriva, non in memoria
+        receiver = new SpoolingUploadReceiver(uploadSpool);
+        upload = new Upload(receiver);
         upload.setMaxFiles(1);
         upload.setAcceptedFileTypes("image/*", "application/pdf", ".doc", ".docx", ".xls", ".xlsx", ".txt", ".csv");
         upload.setMaxFileSize(10 * 1024 * 1024); // 10 MB
@@ -67,11 +71,11 @@ public class FileUploadDialog extends Dialog {
         // Upload listeners
         upload.addSucceededListener(event -> {
             try {
-                InputStream inputStream = buffer.getInputStream();
-                fileData = inputStream.readAllBytes();
+                discardPendingUpload();
+                pendingUpload = receiver.takeUpload();
                 uploadedFileName = event.getFileName();
                 uploadedMimeType = event.getMIMEType();
-                uploadedFileSize = (long) fileData.length;
+                uploadedFileSize = pendingUpload.getSize();
 
                 uploadStatus.setText("✓ File caricato: " + uploadedFileName + 
                                    " (" + formatFileSize(uploadedFileSize) + ")");
@@ -83,6 +87,17 @@ public class FileUploadDialog extends Dialog {
             }
         });
 
+        // chiusura senza salvare (Annulla, Esc): il file ricevuto viene eliminato
+        addOpenedChangeListener(event -> {
+            if (!event.isOpened()) discardPendingUpload();
+        });
+
+        upload.addFailedListener(event -> {
+            receiver.discard();
+            Notification.show("Caricamento non riuscito: " + event.getReason().getMessage(), 5000, Notification.Position.MIDDLE)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+        });
+
         upload.addFileRejectedListener(event -> {
             Notification.show(event.getErrorMessage(), 3000, Notification.Position.MIDDLE)
                     .addThemeVariants(NotificationVariant.LUMO_ERROR);
@@ -133,7 +148,7 @@ public class FileUploadDialog extends Dialog {
     }
 
     private void save() {
-        if (fileData == null || fileData.length == 0) {
+        if (pendingUpload == null || uploadedFileSize == null || uploadedFileSize == 0) {
             Notification.show("Seleziona un file da caricare", 3000, Notification.Position.MIDDLE)
                     .addThemeVariants(NotificationVariant.LUMO_ERROR);
             return;
@@ -147,12 +162,12 @@ public class FileUploadDialog extends Dialog {
 
         try {
             FileUpload fileUpload = new FileUpload();
+            fileUploadService.attachData(fileUpload, pendingUpload);
+            pendingUpload = null;
             fileUpload.setFileName(uploadedFileName);
             fileUpload.setFileType(uploadedMimeType);
-            fileUpload.setFileSize(uploadedFileSize);
             fileUpload.setUploadedBy(uploaderField.getValue());
             fileUpload.setDescription(descriptionField.getValue());
-            fileUpload.setFileData(fileData);
 
             fileUploadService.save(fileUpload);
 
@@ -170,6 +185,13 @@ public class FileUploadDialog extends Dialog {
         }
     }
 
+    private void discardPendingUpload() {
+        if (pendingUpload != null) {
+            pendingUpload.close();
+            pendingUpload = null;
+        }
+    }
+
     private String formatFileSize(Long size) {
         if (size < 1024) {
             return size + " B";
@@ -190,7 +212,7 @@ public class FileUploadDialog extends Dialog {
         uploadStatus.setText("Nessun file selezionato");
         uploadStatus.getStyle().set("color", "var(--lumo-secondary-text-color)");
         saveButton.setEnabled(false);
-        fileData = null;
+        discardPendingUpload();
         uploadedFileName = null;
         uploadedMimeType = null;
         uploadedFileSize = null;
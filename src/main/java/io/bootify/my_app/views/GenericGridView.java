@@ -27,11 +27,14 @@ import com.vaadin.flow.data.binder.Binder;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import io.bootify.my_app.component.BulkDownloadLink;
 import io.bootify.my_app.component.GenericFormDialog;
 import io.bootify.my_app.component.GenericPaginatedGrid;
 import io.bootify.my_app.component.StructuredTree;
 import io.bootify.my_app.domain.Product;
 import io.bootify.my_app.model.TreeResponse;
+import io.bootify.my_app.service.BulkDownloadService;
+import io.bootify.my_app.service.FileDownloadService;
 import io.bootify.my_app.service.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,10 +65,13 @@ public class GenericGridView extends VerticalLayout {
     // Bulk action bar (multi-select)
     private final Span selectionLabel = new Span();
     private final HorizontalLayout bulkActionBar = new HorizontalLayout();
+    private final BulkDownloadLink downloadSelectedLink;
     private Registration pollRegistration;
 
-    public GenericGridView(@Autowired ProductService productService) {
+    public GenericGridView(@Autowired ProductService productService,
+                           @Autowired BulkDownloadService bulkDownloadService) {
         this.productService = productService;
+        this.downloadSelectedLink = new BulkDownloadLink(bulkDownloadService, FileDownloadService.Kind.PRODUCTS, "prodotti");
 
         setSpacing(true);
         setPadding(true);
@@ -161,6 +167,7 @@ public class GenericGridView extends VerticalLayout {
             int count = selected.size();
             selectionLabel.setText(count + (count == 1 ? " elemento selezionato" : " elementi selezionati"));
             bulkActionBar.setVisible(count > 0);
+            downloadSelectedLink.setIds(selected.stream().map(Product::getId).toList());
         });
 
         // Bulk action bar — visibile solo quando c'è almeno un elemento selezionato
@@ -183,7 +190,7 @@ public class GenericGridView extends VerticalLayout {
                 .set("padding", "8px 12px")
                 .set("background-color", "var(--lumo-error-color-10pct)")
                 .set("border-radius", "var(--lumo-border-radius-m)");
-        bulkActionBar.add(selectionLabel, deleteSelectedBtn, clearSelectionBtn);
+        bulkActionBar.add(selectionLabel, downloadSelectedLink, deleteSelectedBtn, clearSelectionBtn);
         bulkActionBar.setVisible(false);
 
         // Layout finale
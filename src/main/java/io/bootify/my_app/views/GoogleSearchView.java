@@ -23,19 +23,27 @@ import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.flowingcode.vaadin.addons.fontawesome.FontAwesome;
+import io.bootify.my_app.component.PreviewImage;
 import io.bootify.my_app.component.StructuredTree;
+import io.bootify.my_app.domain.Content;
 import io.bootify.my_app.service.AiStreamingService;
+import io.bootify.my_app.service.FacetSearchService;
+import io.bootify.my_app.service.FacetSearchService.Facet;
+import io.bootify.my_app.service.FacetSearchService.FacetValue;
 import io.bootify.my_app.service.MarkdownRenderer;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Route(value = "google-search", layout = MainLayout.class)
 @PageTitle("Google Search")
@@ -59,9 +67,12 @@ public class GoogleSearchView extends Div {
 
     private final AiStreamingService aiStreamingService;
     private final MarkdownRenderer markdownRenderer;
+    private final FacetSearchService facetSearchService;
 
     // Filter state
     private Set<String> selectedFileTypes = new HashSet<>();
+    private Set<String> selectedCategories = new HashSet<>();
+    private Set<String> selectedAuthors = new HashSet<>();
     private String selectedDateRange = "Qualsiasi data";
     private LocalDate customDateFrom = null;
     private LocalDate customDateTo = null;
@@ -70,15 +81,23 @@ public class GoogleSearchView extends Div {
     private Details filtersDetails;
     private StructuredTree structuredTree;
     private MultiSelectComboBox<String> fileTypeFilter;
+    private MultiSelectComboBox<String> categoryFilter;
+    private MultiSelectComboBox<String> authorFilter;
     private ComboBox<String> dateRangeFilter;
     private DatePicker dateFromPicker;
     private DatePicker dateToPicker;
     private HorizontalLayout customDateContainer;
     private HorizontalLayout activeFiltersBar;
 
-    public GoogleSearchView(AiStreamingService aiStreamingService, MarkdownRenderer markdownRenderer) {
+    // Conteggi delle faccette dell'ultima ricerca, mostrati accanto ai valori dei filtri
+    private final Map<Facet, Map<String, Long>> facetCounts = new EnumMap<>(Facet.class);
+    private long totalResults = 0;
+
+    public GoogleSearchView(AiStreamingService aiStreamingService, MarkdownRenderer markdownRenderer,
+                            FacetSearchService facetSearchService) {
         this.aiStreamingService = aiStreamingService;
         this.markdownRenderer = markdownRenderer;
+        this.facetSearchService = facetSearchService;
         addClassName("google-search-view");
         setSizeFull();
         getStyle()
@@ -338,7 +357,7 @@ public class GoogleSearchView extends Div {
         filtersDetails.setVisible(true);
         searchResultsContainer.setVisible(true);
         searchResultsContainer.removeAll();
-        addSimulatedResults(normalizedQuery, 1);
+        runSearch(normalizedQuery, 1);
     }
 
     private Details createFiltersBar() {
@@ -354,7 +373,10 @@ public class GoogleSearchView extends Div {
 
         // --- File Type Filter (più compatto) - Multiselezione ---
         fileTypeFilter = new MultiSelectComboBox<>("Tipo");
-        fileTypeFilter.setItems("PDF", "DOC/DOCX", "Video", "Audio", "Archivio (ZIP/RAR)");
+        fileTypeFilter.setItems(FacetSearchService.TYPE_PDF, FacetSearchService.TYPE_WORD,
+                FacetSearchService.TYPE_VIDEO, FacetSearchService.TYPE_AUDIO, FacetSearchService.TYPE_ARCHIVE,
+                FacetSearchService.TYPE_IMAGE, FacetSearchService.TYPE_OTHER);
+        fileTypeFilter.setItemLabelGenerator(value -> facetLabel(Facet.FILE_TYPE, value));
         fileTypeFilter.setWidth("200px");
         fileTypeFilter.setPlaceholder("Tutti i tipi");
         fileTypeFilter.getStyle()
@@ -366,11 +388,22 @@ public class GoogleSearchView extends Div {
             applyFilters();
         });
 
+        // --- Categoria e autore: i valori arrivano dalle faccette della ricerca ---
+        categoryFilter = createFacetFilter("Categoria", "Tutte", Facet.CATEGORY, values -> {
+            selectedCategories = values;
+            applyFilters();
+        });
+        authorFilter = createFacetFilter("Autore", "Tutti", Facet.AUTHOR, values -> {
+            selectedAuthors = values;
+            applyFilters();
+        });
+
         // --- Date Range Filter (più compatto) ---
         dateRangeFilter = new ComboBox<>("Data");
         dateRangeFilter.setItems("Qualsiasi data", "Ultimo giorno", "Ultima settimana", "Ultimo mese", "Ultimo anno", "Intervallo personalizzato");
         dateRangeFilter.setValue("Qualsiasi data");
-        dateRangeFilter.setWidth("180px");
+        dateRangeFilter.setItemLabelGenerator(value -> facetLabel(Facet.DATE, value));
+        dateRangeFilter.setWidth("200px");
         dateRangeFilter.setClearButtonVisible(true);
         dateRangeFilter.getStyle()
                 .set("--vaadin-combo-box-overlay-width", "200px")
@@ -426,6 +459,10 @@ public class GoogleSearchView extends Div {
                 .set("font-size", "12px");
         resetFiltersBtn.addClickListener(e -> {
             fileTypeFilter.clear();
+            categoryFilter.clear();
+            authorFilter.clear();
+            selectedCategories.clear();
+            selectedAuthors.clear();
             dateRangeFilter.setValue("Qualsiasi data");
             dateFromPicker.clear();
             dateToPicker.setValue(LocalDate.now());
@@ -437,7 +474,7 @@ public class GoogleSearchView extends Div {
             applyFilters();
         });
 
-        filtersRow.add(fileTypeFilter, dateRangeFilter, customDateContainer, resetFiltersBtn);
+        filtersRow.add(fileTypeFilter, dateRangeFilter, categoryFilter, authorFilter, customDateContainer, resetFiltersBtn);
 
         // Pannello sinistro: filtri standard
         VerticalLayout leftPanel = new VerticalLayout(filtersRow);
@@ -528,6 +565,24 @@ public class GoogleSearchView extends Div {
             }));
         }
 
+        if (!selectedCategories.isEmpty()) {
+            hasActiveFilter = true;
+            activeFiltersBar.add(createFilterChip("Categoria: " + String.join(", ", selectedCategories), () -> {
+                categoryFilter.clear();
+                selectedCategories.clear();
+                applyFilters();
+            }));
+        }
+
+        if (!selectedAuthors.isEmpty()) {
+            hasActiveFilter = true;
+            activeFiltersBar.add(createFilterChip("Autore: " + String.join(", ", selectedAuthors), () -> {
+                authorFilter.clear();
+                selectedAuthors.clear();
+                applyFilters();
+            }));
+        }
+
         if (!"Qualsiasi data".equals(selectedDateRange)) {
             hasActiveFilter = true;
             String dateLabel = "Data: " + selectedDateRange;
@@ -584,29 +639,27 @@ public class GoogleSearchView extends Div {
     private void applyFilters() {
         updateActiveFiltersBar();
         searchResultsContainer.removeAll();
-        addSimulatedResults(currentQuery, 1);
+        runSearch(currentQuery, 1);
     }
 
-    private void addSimulatedResults(String query, int page) {
+    private void runSearch(String query, int page) {
         currentQuery = query;
         currentPage = page;
 
-        List<SearchResult> allResults = generateSearchResults(query, page);
+        FacetSearchService.FacetedResult result = facetSearchService.search(buildFacetQuery(query), page, resultsPerPage);
+        totalResults = result.total();
+        updateFacets(result.facets());
 
-        // Apply file type filter
-        List<SearchResult> filteredResults = allResults.stream()
-                .filter(this::matchesFileTypeFilter)
-                .collect(Collectors.toList());
-
-        // Apply date filter
-        filteredResults = filteredResults.stream()
-                .filter(this::matchesDateFilter)
-                .collect(Collectors.toList());
+        List<SearchResult> pageResults = new ArrayList<>();
+        for (Content content : result.items()) {
+            pageResults.add(toSearchResult(content));
+        }
 
         // Results info
-        int totalEstimated = filteredResults.size() * 100;
-        Paragraph resultsInfo = new Paragraph(
-                "Circa " + String.format("%,d", totalEstimated) + " risultati (0,45 secondi)"
+        String info = result.ready()
+                ? String.format(Locale.ITALY, "%,d risultati (%.2f secondi)", result.total(), result.tookMs() / 1000.0)
+                : "Indice di ricerca in preparazione, riprova tra qualche secondo";
+        Paragraph resultsInfo = new Paragraph(info
                         + (!selectedFileTypes.isEmpty() ? " — Filtro tipo: " + String.join(", ", selectedFileTypes) : "")
                         + (!"Qualsiasi data".equals(selectedDateRange) ? " — Filtro data: " + selectedDateRange : "")
         );
@@ -617,7 +670,7 @@ public class GoogleSearchView extends Div {
                 .set("margin-top", "10px");
         searchResultsContainer.add(resultsInfo);
 
-        if (filteredResults.isEmpty()) {
+        if (pageResults.isEmpty()) {
             Div noResults = new Div();
             noResults.addClassName("google-search-empty-state");
             noResults.getStyle()
@@ -639,180 +692,96 @@ public class GoogleSearchView extends Div {
             noResults.add(sadIcon, noResultsTitle, suggestion);
             searchResultsContainer.add(noResults);
         } else {
-            for (SearchResult result : filteredResults) {
-                searchResultsContainer.add(createSearchResultCard(result));
+            for (SearchResult pageResult : pageResults) {
+                searchResultsContainer.add(createSearchResultCard(pageResult));
             }
             searchResultsContainer.add(createPaginationControls());
         }
     }
 
-    private boolean matchesFileTypeFilter(SearchResult result) {
-        if (selectedFileTypes.isEmpty()) {
-            return true;
-        }
-        
-        // Il risultato deve soddisfare almeno uno dei tipi selezionati
-        for (String selectedType : selectedFileTypes) {
-            switch (selectedType) {
-                case "PDF":
-                    if (result.files != null && result.files.stream().anyMatch(f -> "PDF".equalsIgnoreCase(f.type))) {
-                        return true;
-                    }
-                    break;
-                case "DOC/DOCX":
-                    if (result.files != null && result.files.stream()
-                            .anyMatch(f -> "DOC".equalsIgnoreCase(f.type) || "DOCX".equalsIgnoreCase(f.type))) {
-                        return true;
-                    }
-                    break;
-                case "Video":
-                    if (result.videoUrl != null || (result.files != null && result.files.stream()
-                            .anyMatch(f -> "MP4".equalsIgnoreCase(f.type) || "AVI".equalsIgnoreCase(f.type) || "MOV".equalsIgnoreCase(f.type)))) {
-                        return true;
-                    }
-                    break;
-                case "Audio":
-                    if (result.files != null && result.files.stream()
-                            .anyMatch(f -> "MP3".equalsIgnoreCase(f.type) || "WAV".equalsIgnoreCase(f.type))) {
-                        return true;
-                    }
-                    break;
-                case "Archivio (ZIP/RAR)":
-                    if (result.files != null && result.files.stream()
-                            .anyMatch(f -> "ZIP".equalsIgnoreCase(f.type) || "RAR".equalsIgnoreCase(f.type))) {
-                        return true;
-                    }
-                    break;
-            }
-        }
-        return false;
+    private FacetSearchService.FacetQuery buildFacetQuery(String query) {
+        FacetSearchService.DateBucket bucket = FacetSearchService.DateBucket.fromLabel(selectedDateRange).orElse(null);
+        boolean custom = "Intervallo personalizzato".equals(selectedDateRange);
+        return new FacetSearchService.FacetQuery(query, Set.copyOf(selectedFileTypes), bucket,
+                custom ? customDateFrom : null, custom ? customDateTo : null,
+                Set.copyOf(selectedCategories), Set.copyOf(selectedAuthors));
     }
 
-    private boolean matchesDateFilter(SearchResult result) {
-        if ("Qualsiasi data".equals(selectedDateRange)) {
-            return true;
-        }
-        if (result.lastUpdated == null) {
-            return true;
-        }
+    private SearchResult toSearchResult(Content content) {
+        String type = FacetSearchService.typeGroup(content.getFileName(), content.getFileType(),
+                content.getMimeType());
+        String extension = content.getFileName() != null && content.getFileName().contains(".")
+                ? content.getFileName().substring(content.getFileName().lastIndexOf('.') + 1).toUpperCase(Locale.ROOT)
+                : type;
+        SearchResult result = new SearchResult(
+                content.getFileName(),
+                "/api/files/contents/" + content.getId() + "?inline=true",
+                content.getDescription() != null ? content.getDescription() : "",
+                content.getUploadUser() != null ? content.getUploadUser() : content.getCategory(),
+                List.of(new FileAttachment(content.getFileName(), extension, formatFileSize(content.getFileSize()))),
+                FacetSearchService.TYPE_VIDEO.equals(type) ? "/api/media/contents/" + content.getId() : null,
+                content.getCreationDate() != null ? content.getCreationDate().toLocalDate() : null
+        );
+        result.contentId = content.getId();
+        return result;
+    }
 
-        LocalDate now = LocalDate.now();
-        LocalDate resultDate = result.lastUpdated;
-
-        switch (selectedDateRange) {
-            case "Ultimo giorno":
-                return !resultDate.isBefore(now.minusDays(1));
-            case "Ultima settimana":
-                return !resultDate.isBefore(now.minusWeeks(1));
-            case "Ultimo mese":
-                return !resultDate.isBefore(now.minusMonths(1));
-            case "Ultimo anno":
-                return !resultDate.isBefore(now.minusYears(1));
-            case "Intervallo personalizzato":
-                if (customDateFrom != null && customDateTo != null) {
-                    return !resultDate.isBefore(customDateFrom) && !resultDate.isAfter(customDateTo);
-                } else if (customDateFrom != null) {
-                    return !resultDate.isBefore(customDateFrom);
-                } else if (customDateTo != null) {
-                    return !resultDate.isAfter(customDateTo);
-                }
-                return true;
-            default:
-                return true;
+    private String formatFileSize(Long size) {
+        if (size == null) {
+            return "";
+        } else if (size < 1024) {
+            return size + " B";
+        } else if (size < 1024 * 1024) {
+            return String.format("%.2f KB", size / 1024.0);
+        } else {
+            return String.format("%.2f MB", size / (1024.0 * 1024.0));
         }
     }
 
-    private List<SearchResult> generateSearchResults(String query, int page) {
-        List<SearchResult> results = new ArrayList<>();
+    private MultiSelectComboBox<String> createFacetFilter(String label, String placeholder, Facet facet,
+                                                          java.util.function.Consumer<Set<String>> onChange) {
+        MultiSelectComboBox<String> filter = new MultiSelectComboBox<>(label);
+        filter.setWidth("200px");
+        filter.setPlaceholder(placeholder);
+        filter.setItemLabelGenerator(value -> facetLabel(facet, value));
+        filter.getStyle()
+                .set("--vaadin-combo-box-overlay-width", "240px")
+                .set("font-size", "13px");
+        filter.addValueChangeListener(e -> {
+            // i valori cambiano anche quando arrivano nuove faccette: conta solo l'utente
+            if (e.isFromClient()) onChange.accept(new HashSet<>(e.getValue()));
+        });
+        return filter;
+    }
 
-        int startIndex = (page - 1) * resultsPerPage;
-        LocalDate now = LocalDate.now();
+    /** Aggiorna conteggi e valori dei filtri senza perdere le selezioni correnti. */
+    private void updateFacets(Map<Facet, List<FacetValue>> facets) {
+        facetCounts.clear();
+        facets.forEach((facet, values) -> {
+            Map<String, Long> counts = new HashMap<>();
+            values.forEach(value -> counts.put(value.value(), value.count()));
+            facetCounts.put(facet, counts);
+        });
+        refreshFacetItems(categoryFilter, facets.get(Facet.CATEGORY), selectedCategories);
+        refreshFacetItems(authorFilter, facets.get(Facet.AUTHOR), selectedAuthors);
+        fileTypeFilter.getListDataView().refreshAll();
+        dateRangeFilter.getListDataView().refreshAll();
+    }
 
-        for (int i = 0; i < resultsPerPage; i++) {
-            int resultNumber = startIndex + i + 1;
+    private void refreshFacetItems(MultiSelectComboBox<String> filter, List<FacetValue> values, Set<String> selected) {
+        Set<String> items = new LinkedHashSet<>(selected);
+        if (values != null) values.forEach(value -> items.add(value.value()));
+        filter.setItems(items);
+        filter.setValue(selected);
+    }
 
-            if (i == 0) {
-                results.add(new SearchResult(
-                        "[Pagina " + page + ", Risultato " + resultNumber + "] Java Programming - Official Documentation",
-                        "https://docs.oracle.com/javase/tutorial/?page=" + page,
-                        "The Java™ Tutorials are practical guides for programmers who want to use the Java programming language to create applications. They include hundreds of complete, working examples... (Risultato #" + resultNumber + " della pagina " + page + ")",
-                        "Oracle",
-                        null,
-                        null,
-                        now.minusDays(1)
-                ));
-            } else if (i == 1) {
-                results.add(new SearchResult(
-                        "Learn " + query + " - Step by Step Guide (Risultato #" + resultNumber + ")",
-                        "https://www.example.com/guide?page=" + page,
-                        "Comprehensive guide to " + query + ". Start from basics and advance to expert level. Updated with latest features and best practices for 2025. (Pagina " + page + ", risultato " + resultNumber + ")",
-                        "Example Learning Platform",
-                        null,
-                        null,
-                        now.minusWeeks(2)
-                ));
-            } else if (i == 2) {
-                // File results with PDF + DOCX
-                List<FileAttachment> pdfFiles = new ArrayList<>();
-                pdfFiles.add(new FileAttachment("Introduction_to_" + query.replace(" ", "_") + ".pdf", "PDF", "2.4 MB"));
-                pdfFiles.add(new FileAttachment("Advanced_" + query.replace(" ", "_") + "_Guide.pdf", "PDF", "5.1 MB"));
-                pdfFiles.add(new FileAttachment(query.replace(" ", "_") + "_Best_Practices.docx", "DOCX", "1.8 MB"));
-                pdfFiles.add(new FileAttachment(query.replace(" ", "_") + "_Cheat_Sheet.pdf", "PDF", "850 KB"));
-
-                SearchResult pdfResult = new SearchResult(
-                        query + " - Documentation and Resources (#" + resultNumber + ")",
-                        "https://www.resources.com/" + query.replace(" ", "-"),
-                        "Comprehensive collection of documentation, tutorials, and reference materials for " + query + ". Download PDF guides, watch video tutorials, and access code examples. (Risultato " + resultNumber + ")",
-                        "Resources.com",
-                        pdfFiles,
-                        null,
-                        now.minusDays(3)
-                );
-                pdfResult.contentId = 1L; // In produzione viene dal RAG
-                results.add(pdfResult);
-            } else if (i == 3) {
-                // Video result
-                results.add(new SearchResult(
-                        query + " - Complete Video Tutorial (Risultato #" + resultNumber + ")",
-                        "https://www.example.com/video",
-                        "Watch this comprehensive video tutorial covering all aspects of " + query + ". Duration: 45:30. Perfect for visual learners. (Risultato " + resultNumber + " - Pagina " + page + ")",
-                        "Video Platform",
-                        null,
-                        "https://www.w3schools.com/html/movie.mp4",
-                        now.minusMonths(1)
-                ));
-            } else if (i == 4) {
-                results.add(new SearchResult(
-                        "Stack Overflow - " + query + " Questions (Risultato #" + resultNumber + ")",
-                        "https://stackoverflow.com/questions/tagged/" + query.replace(" ", "+"),
-                        "Browse thousands of questions and answers about " + query + ". Get help from the community and learn from real-world problems. (Risultato " + resultNumber + ", Pagina " + page + ")",
-                        "Stack Overflow",
-                        null,
-                        null,
-                        now.minusDays(5)
-                ));
-            } else {
-                // Additional generic results with varied dates
-                LocalDate resultDate;
-                if (page == 1) {
-                    resultDate = now.minusMonths(3 + i);
-                } else {
-                    resultDate = now.minusMonths(page + i);
-                }
-
-                results.add(new SearchResult(
-                        query + " - Resource #" + resultNumber + " (Page " + page + ")",
-                        "https://www.example" + i + ".com/" + query.replace(" ", "-"),
-                        "Additional resource for " + query + ". This is result number " + resultNumber + " on page " + page + ". Learn more about " + query + " with this comprehensive guide and examples.",
-                        "Example Resource " + i,
-                        null,
-                        null,
-                        resultDate
-                ));
-            }
+    /** Valore del filtro con il numero di risultati; "Qualsiasi data" e l'intervallo personalizzato restano senza. */
+    private String facetLabel(Facet facet, String value) {
+        Map<String, Long> counts = facetCounts.get(facet);
+        if (counts == null || (facet == Facet.DATE && !counts.containsKey(value))) {
+            return value;
         }
-
-        return results;
+        return value + " (" + String.format(Locale.ITALY, "%,d", counts.getOrDefault(value, 0L)) + ")";
     }
 
     private Component createSearchResultCard(SearchResult result) {
@@ -1054,7 +1023,7 @@ public class GoogleSearchView extends Div {
                 .set("gap", "6px");
 
         if (result.contentId != null) {
-            Image img = new Image("/api/preview/" + result.contentId, "Anteprima");
+            Image img = new PreviewImage(result.contentId, 130);
             img.getStyle()
                     .set("width", "130px")
                     .set("max-height", "184px")
@@ -1478,7 +1447,7 @@ public class GoogleSearchView extends Div {
         prevButton.addClickListener(e -> {
             if (currentPage > 1) {
                 searchResultsContainer.removeAll();
-                addSimulatedResults(currentQuery, currentPage - 1);
+                runSearch(currentQuery, currentPage - 1);
                 scrollToTop();
             }
         });
@@ -1488,7 +1457,8 @@ public class GoogleSearchView extends Div {
         pageNumbers.setSpacing(false);
 
         int startPage = Math.max(1, currentPage - 2);
-        int endPage = Math.min(10, currentPage + 2);
+        int lastPage = (int) Math.max(1, (totalResults + resultsPerPage - 1) / resultsPerPage);
+        int endPage = Math.min(lastPage, currentPage + 2);
 
         for (int i = startPage; i <= endPage; i++) {
             final int pageNum = i;
@@ -1506,7 +1476,7 @@ public class GoogleSearchView extends Div {
 
             pageButton.addClickListener(e -> {
                 searchResultsContainer.removeAll();
-                addSimulatedResults(currentQuery, pageNum);
+                runSearch(currentQuery, pageNum);
                 scrollToTop();
             });
 
@@ -1515,11 +1485,11 @@ public class GoogleSearchView extends Div {
 
         // Next button
         Button nextButton = new Button("Avanti");
-        nextButton.setEnabled(currentPage < 10);
+        nextButton.setEnabled(currentPage < lastPage);
         nextButton.addClickListener(e -> {
-            if (currentPage < 10) {
+            if (currentPage < lastPage) {
                 searchResultsContainer.removeAll();
-                addSimulatedResults(currentQuery, currentPage + 1);
+                runSearch(currentQuery, currentPage + 1);
                 scrollToTop();
             }
         });
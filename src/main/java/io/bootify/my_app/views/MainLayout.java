@@ -45,6 +45,7 @@ public class MainLayout extends AppLayout {
                 createNavItem("Gestione Utenti", UserManagementView.class, VaadinIcon.USERS),
                 createNavItem("Grafo Prodotti", GraphView.class, VaadinIcon.CLUSTER),
                 createNavItem("Gestione Prodotti", ProdottoManagementView.class, VaadinIcon.PACKAGE),
+                createNavItem("Stato Replica", ReplicationStatusView.class, VaadinIcon.CLOUD_UPLOAD),
                 createNavItem("Gestione File Avanzata", EnhancedFileManagementView.class, VaadinIcon.FOLDER_OPEN),
                 createNavItem("Dettaglio File", FileDetailView.class, VaadinIcon.FILE_TEXT_O),
                 createNavItem("Generic Grid", GenericGridView.class, VaadinIcon.TABLE),
@@ -19,11 +19,12 @@ import com.vaadin.flow.component.textfield.IntegerField;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
+import io.bootify.my_app.component.SpoolingUploadReceiver;
 import io.bootify.my_app.domain.Product;
 import io.bootify.my_app.service.ProductService;
+import io.bootify.my_app.service.SpooledUpload;
+import io.bootify.my_app.service.UploadSpool;
 
-import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.format.DateTimeFormatter;
 import java.util.function.Consumer;
@@ -40,18 +41,19 @@ public class ProdottoEditDialog extends Dialog {
     private final TextField categoryField;
     private final IntegerField quantityField;
     private final TextArea metadataField;
-    private final MemoryBuffer buffer;
+    private final SpoolingUploadReceiver receiver;
     private final Upload upload;
     private final Span uploadStatus;
 
-    private byte[] newFileData;
+    // nuovo file ricevuto su disco: va nel BlobStore solo al salvataggio
+    private SpooledUpload newAttachment;
     private String newFileName;
     private String newFileType;
     private Long newFileSize;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
-    public ProdottoEditDialog(Product product, ProductService productService, 
+    public ProdottoEditDialog(Product product, ProductService productService, UploadSpool uploadSpool,
                           Consumer<Product> onSuccessCallback) {
         this.product = product;
         this.productService = productService;
@@ -121,8 +123,8 @@ public class ProdottoEditDialog extends Dialog {
                 .set("font-size", "var(--lumo-font-size-s)");
 
         // Upload component for replacing file
-        buffer = new MemoryBuffer();
-        upload = new Upload(buffer);
+        receiver = new SpoolingUploadReceiver(uploadSpool);
+        upload = new Upload(receiver);
         upload.setMaxFiles(1);
         upload.setAcceptedFileTypes("image/*", "application/pdf", ".doc", ".docx", ".xls", ".xlsx", ".txt", ".csv");
         upload.setMaxFileSize(10 * 1024 * 1024);
@@ -130,11 +132,11 @@ public class ProdottoEditDialog extends Dialog {
 
         upload.addSucceededListener(event -> {
             try {
-                InputStream inputStream = buffer.getInputStream();
-                newFileData = inputStream.readAllBytes();
+                discardNewAttachment();
+                newAttachment = receiver.takeUpload();
                 newFileName = event.getFileName();
                 newFileType = event.getMIMEType();
-                newFileSize = (long) newFileData.length;
+                newFileSize = newAttachment.getSize();
 
                 uploadStatus.setText("✓ Nuovo file: " + newFileName + 
                                    " (" + formatFileSize(newFileSize) + ")");
@@ -145,16 +147,28 @@ public class ProdottoEditDialog extends Dialog {
             }
         });
 
+        // chiusura senza salvare (Annulla, Esc): il file ricevuto viene eliminato
+        addOpenedChangeListener(event -> {
+            if (!event.isOpened()) discardNewAttachment();
+        });
+
+        upload.addFailedListener(event -> {
+            receiver.discard();
+            Notification.show("Caricamento non riuscito: " + event.getReason().getMessage(), 5000, Notification.Position.MIDDLE)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+        });
+
         Button removeFileButton = new Button("Rimuovi File", new Icon(VaadinIcon.TRASH));
         removeFileButton.addThemeVariants(ButtonVariant.LUMO_ERROR, ButtonVariant.LUMO_SMALL);
         removeFileButton.setEnabled(product.hasFile());
         removeFileButton.addClickListener(e -> {
             if (confirmRemoveFile()) {
-                product.setFileData(null);
+                product.setBlobKey(null);
+                product.setFileHash(null);
                 product.setFileName(null);
                 product.setFileType(null);
                 product.setFileSize(null);
-                newFileData = null;
+                discardNewAttachment();
                 updateFileStatus();
                 removeFileButton.setEnabled(false);
             }
@@ -297,11 +311,11 @@ public class ProdottoEditDialog extends Dialog {
             product.setMetadata(metadataField.getValue().trim().isEmpty() ? null : metadataField.getValue());
 
             // Update file if new one uploaded
-            if (newFileData != null && newFileData.length > 0) {
+            if (newAttachment != null && newAttachment.getSize() > 0) {
+                productService.attachFile(product, newAttachment);
+                newAttachment = null;
                 product.setFileName(newFileName);
                 product.setFileType(newFileType);
-                product.setFileSize(newFileSize);
-                product.setFileData(newFileData);
             }
 
             productService.save(product);
@@ -320,6 +334,13 @@ public class ProdottoEditDialog extends Dialog {
         }
     }
 
+    private void discardNewAttachment() {
+        if (newAttachment != null) {
+            newAttachment.close();
+            newAttachment = null;
+        }
+    }
+
     private String formatFileSize(Long size) {
         if (size < 1024) {
             return size + " B";
@@ -24,10 +24,12 @@ import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.theme.lumo.LumoUtility;
+import io.bootify.my_app.component.SpoolingUploadReceiver;
 import io.bootify.my_app.domain.Product;
 import io.bootify.my_app.service.PriceFileWatcherService;
 import io.bootify.my_app.service.ProductService;
 import io.bootify.my_app.service.ProductFileUploadService;
+import io.bootify.my_app.service.UploadSpool;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.math.BigDecimal;
@@ -42,6 +44,7 @@ public class ProdottoManagementView extends VerticalLayout {
     private final ProductService productService;
     private final ProductFileUploadService uploadService;
     private final PriceFileWatcherService priceFileWatcherService;
+    private final UploadSpool uploadSpool;
     private final Grid<Product> grid;
     private final TextField searchField;
     private final Span statsLabel;
@@ -53,10 +56,12 @@ public class ProdottoManagementView extends VerticalLayout {
     @Autowired
     public ProdottoManagementView(ProductService productService,
                                   ProductFileUploadService uploadService,
-                                  PriceFileWatcherService priceFileWatcherService) {
+                                  PriceFileWatcherService priceFileWatcherService,
+                                  UploadSpool uploadSpool) {
         this.productService = productService;
         this.uploadService = uploadService;
         this.priceFileWatcherService = priceFileWatcherService;
+        this.uploadSpool = uploadSpool;
 
         setSizeFull();
         setPadding(true);
@@ -272,7 +277,7 @@ public class ProdottoManagementView extends VerticalLayout {
 
         // Metadata indicator
         grid.addColumn(new ComponentRenderer<>(product -> {
-            if (product.getMetadata() != null && !product.getMetadata().isEmpty()) {
+            if (product.hasMetadata()) {
                 Icon icon = new Icon(VaadinIcon.INFO_CIRCLE);
                 icon.setColor("var(--lumo-primary-color)");
                 icon.setSize("20px");
@@ -294,8 +299,8 @@ public class ProdottoManagementView extends VerticalLayout {
 
     private Component createActionsLayout(Product product) {
         // Create hidden upload component
-        com.vaadin.flow.component.upload.receivers.MemoryBuffer buffer = new com.vaadin.flow.component.upload.receivers.MemoryBuffer();
-        com.vaadin.flow.component.upload.Upload upload = new com.vaadin.flow.component.upload.Upload(buffer);
+        SpoolingUploadReceiver receiver = new SpoolingUploadReceiver(uploadSpool);
+        com.vaadin.flow.component.upload.Upload upload = new com.vaadin.flow.component.upload.Upload(receiver);
         upload.setMaxFiles(1);
         upload.setMaxFileSize(10 * 1024 * 1024); // 10MB
         upload.setAcceptedFileTypes(
@@ -373,13 +378,7 @@ public class ProdottoManagementView extends VerticalLayout {
             progressText.setText("Caricamento: 100%%");
             
             try {
-                java.io.InputStream inputStream = buffer.getInputStream();
-                String contentType = buffer.getFileData().getMimeType();
-                
-                byte[] fileBytes = inputStream.readAllBytes();
-                
-                uploadService.uploadFileForProduct(product.getId(), fileBytes, fileName, 
-                                                  contentType, "admin");
+                uploadService.uploadFileForProduct(product.getId(), receiver.takeUpload(), "admin");
                 
                 // Close progress notification
                 progressNotification.close();
@@ -405,6 +404,7 @@ public class ProdottoManagementView extends VerticalLayout {
         });
         
         upload.addFailedListener(event -> {
+            receiver.discard();
             progressNotification.close();
             Notification.show("Errore durante il caricamento: " + event.getReason().getMessage(),
                     5000, Notification.Position.MIDDLE)
@@ -448,7 +448,7 @@ public class ProdottoManagementView extends VerticalLayout {
     }
 
     private void openAddDialog() {
-        ProdottoUploadDialog dialog = new ProdottoUploadDialog(productService, product -> {
+        ProdottoUploadDialog dialog = new ProdottoUploadDialog(productService, uploadSpool, product -> {
             refreshGrid();
             Notification.show("Prodotto creato: " + product.getName(), 3000, Notification.Position.BOTTOM_START)
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
@@ -456,8 +456,14 @@ public class ProdottoManagementView extends VerticalLayout {
         dialog.open();
     }
 
-    private void editProduct(Product product) {
-        ProdottoEditDialog dialog = new ProdottoEditDialog(product, productService, updatedProduct -> {
+    private void editProduct(Product row) {
+        // la riga del grid è parziale: il dialog modifica il prodotto completo
+        Product product = row.isSummary() ? productService.findById(row.getId()) : row;
+        if (product == null) {
+            refreshGrid();
+            return;
+        }
+        ProdottoEditDialog dialog = new ProdottoEditDialog(product, productService, uploadSpool, updatedProduct -> {
             refreshGrid();
         });
         dialog.open();
@@ -471,7 +477,7 @@ public class ProdottoManagementView extends VerticalLayout {
         }
 
         // Use REST endpoint for download - more reliable than StreamResource
-        String downloadUrl = "/api/prodotti/download/" + product.getId();
+        String downloadUrl = "/api/files/products/" + product.getId();
         
         getUI().ifPresent(ui -> {
             ui.getPage().executeJs(
@@ -522,7 +528,7 @@ public class ProdottoManagementView extends VerticalLayout {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             refreshGrid();
         } else {
-            List<Product> products = productService.findAll().stream()
+            List<Product> products = productService.findAllSummaries().stream()
                     .filter(p -> p.getName().toLowerCase().contains(searchTerm.toLowerCase()) ||
                                (p.getCategory() != null && p.getCategory().toLowerCase().contains(searchTerm.toLowerCase())) ||
                                (p.getDescription() != null && p.getDescription().toLowerCase().contains(searchTerm.toLowerCase())))
@@ -532,7 +538,7 @@ public class ProdottoManagementView extends VerticalLayout {
     }
 
     private void refreshGrid() {
-        List<Product> products = productService.findAll();
+        List<Product> products = productService.findAllSummaries();
         grid.setItems(products);
         updateStats();
         searchField.clear();
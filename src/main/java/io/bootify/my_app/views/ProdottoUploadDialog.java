@@ -17,11 +17,12 @@ import com.vaadin.flow.component.textfield.IntegerField;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
+import io.bootify.my_app.component.SpoolingUploadReceiver;
 import io.bootify.my_app.domain.Product;
 import io.bootify.my_app.service.ProductService;
+import io.bootify.my_app.service.SpooledUpload;
+import io.bootify.my_app.service.UploadSpool;
 
-import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.function.Consumer;
 
@@ -36,17 +37,19 @@ public class ProdottoUploadDialog extends Dialog {
     private final TextField categoryField;
     private final IntegerField quantityField;
     private final TextField uploaderField;
-    private final MemoryBuffer buffer;
+    private final SpoolingUploadReceiver receiver;
     private final Upload upload;
     private final Span uploadStatus;
     private Button saveButton;
 
-    private byte[] fileData;
+    // file ricevuto su disco: va nel BlobStore solo al salvataggio
+    private SpooledUpload attachment;
     private String uploadedFileName;
     private String uploadedMimeType;
     private Long uploadedFileSize;
 
-    public ProdottoUploadDialog(ProductService productService, Consumer<Product> onSuccessCallback) {
+    public ProdottoUploadDialog(ProductService productService, UploadSpool uploadSpool,
+                                Consumer<Product> onSuccessCallback) {
         this.productService = productService;
         this.onSuccessCallback = onSuccessCallback;
 
@@ -88,8 +91,8 @@ public class ProdottoUploadDialog extends Dialog {
         uploaderField.setPlaceholder("Nome utente");
 
         // Upload component
-        buffer = new MemoryBuffer();
-        upload = new Upload(buffer);
+        receiver = new SpoolingUploadReceiver(uploadSpool);
+        upload = new Upload(receiver);
         upload.setMaxFiles(1);
         upload.setAcceptedFileTypes("image/*", "application/pdf", ".doc", ".docx", ".xls", ".xlsx", ".txt", ".csv");
         upload.setMaxFileSize(10 * 1024 * 1024); // 10 MB
@@ -102,11 +105,11 @@ public class ProdottoUploadDialog extends Dialog {
         // Upload listeners
         upload.addSucceededListener(event -> {
             try {
-                InputStream inputStream = buffer.getInputStream();
-                fileData = inputStream.readAllBytes();
+                discardAttachment();
+                attachment = receiver.takeUpload();
                 uploadedFileName = event.getFileName();
                 uploadedMimeType = event.getMIMEType();
-                uploadedFileSize = (long) fileData.length;
+                uploadedFileSize = attachment.getSize();
 
                 uploadStatus.setText("✓ File allegato: " + uploadedFileName + 
                                    " (" + formatFileSize(uploadedFileSize) + ")");
@@ -117,6 +120,17 @@ public class ProdottoUploadDialog extends Dialog {
             }
         });
 
+        // chiusura senza salvare (Annulla, Esc): il file ricevuto viene eliminato
+        addOpenedChangeListener(event -> {
+            if (!event.isOpened()) discardAttachment();
+        });
+
+        upload.addFailedListener(event -> {
+            receiver.discard();
+            Notification.show("Caricamento non riuscito: " + event.getReason().getMessage(), 5000, Notification.Position.MIDDLE)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+        });
+
         upload.addFileRejectedListener(event -> {
             Notification.show(event.getErrorMessage(), 3000, Notification.Position.MIDDLE)
                     .addThemeVariants(NotificationVariant.LUMO_ERROR);
@@ -200,11 +214,11 @@ public class ProdottoUploadDialog extends Dialog {
             product.setUploadedBy(uploaderField.getValue());
 
             // Add file if uploaded
-            if (fileData != null && fileData.length > 0) {
+            if (attachment != null && attachment.getSize() > 0) {
+                productService.attachFile(product, attachment);
+                attachment = null;
                 product.setFileName(uploadedFileName);
                 product.setFileType(uploadedMimeType);
-                product.setFileSize(uploadedFileSize);
-                product.setFileData(fileData);
             }
 
             productService.save(product);
@@ -223,6 +237,13 @@ public class ProdottoUploadDialog extends Dialog {
         }
     }
 
+    private void discardAttachment() {
+        if (attachment != null) {
+            attachment.close();
+            attachment = null;
+        }
+    }
+
     private String formatFileSize(Long size) {
         if (size < 1024) {
             return size + " B";
@@ -246,7 +267,7 @@ public class ProdottoUploadDialog extends Dialog {
         upload.clearFileList();
         uploadStatus.setText("Nessun file allegato (opzionale)");
         uploadStatus.getStyle().set("color", "var(--lumo-secondary-text-color)");
-        fileData = null;
+        discardAttachment();
         uploadedFileName = null;
         uploadedMimeType = null;
         uploadedFileSize = null;
@@ -0,0 +1,140 @@
+package io.bootify.my_app.views;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.grid.GridVariant;
+import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.FlexComponent;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.theme.lumo.LumoUtility;
+import io.bootify.my_app.domain.ReplicationOutbox;
+import io.bootify.my_app.service.ReplicationDispatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Stato della replica dei file dei prodotti verso il servizio remoto: conteggi per
+ * stato, ultime voci della outbox e rimessa in coda delle voci DEAD.
+ */
+@Route(value = "replica", layout = MainLayout.class)
+@PageTitle("Stato Replica")
+public class ReplicationStatusView extends VerticalLayout {
+
+    private static final int MAX_ROWS = 200;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private final ReplicationDispatcher replicationDispatcher;
+    private final Grid<ReplicationOutbox> grid;
+    private final ComboBox<ReplicationOutbox.Status> statusFilter;
+    private final Span statsLabel;
+
+    @Autowired
+    public ReplicationStatusView(ReplicationDispatcher replicationDispatcher) {
+        this.replicationDispatcher = replicationDispatcher;
+
+        setSizeFull();
+        setPadding(true);
+        setSpacing(true);
+
+        H1 title = new H1("Stato Replica");
+        title.addClassNames(LumoUtility.Margin.Bottom.MEDIUM);
+
+        statsLabel = new Span();
+        statsLabel.getStyle()
+                .set("color", "var(--lumo-secondary-text-color)")
+                .set("font-size", "var(--lumo-font-size-s)");
+
+        statusFilter = new ComboBox<>();
+        statusFilter.setPlaceholder("Tutti gli stati");
+        statusFilter.setItems(ReplicationOutbox.Status.values());
+        statusFilter.setClearButtonVisible(true);
+        statusFilter.addValueChangeListener(e -> refreshGrid());
+
+        Button dispatchButton = new Button("Invia ora", new Icon(VaadinIcon.PAPERPLANE));
+        dispatchButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        dispatchButton.addClickListener(e -> {
+            int started = replicationDispatcher.dispatchDue();
+            Notification.show("Invii avviati: " + started, 3000, Notification.Position.BOTTOM_START);
+            refreshGrid();
+        });
+
+        Button refreshButton = new Button("Aggiorna", new Icon(VaadinIcon.REFRESH));
+        refreshButton.addClickListener(e -> refreshGrid());
+
+        HorizontalLayout toolbar = new HorizontalLayout(statusFilter, dispatchButton, refreshButton);
+        toolbar.setAlignItems(FlexComponent.Alignment.CENTER);
+
+        grid = new Grid<>(ReplicationOutbox.class, false);
+        grid.addThemeVariants(GridVariant.LUMO_ROW_STRIPES, GridVariant.LUMO_COMPACT);
+        grid.setSizeFull();
+        grid.addColumn(ReplicationOutbox::getId).setHeader("ID").setAutoWidth(true).setFlexGrow(0);
+        grid.addColumn(ReplicationOutbox::getProductId).setHeader("Prodotto").setAutoWidth(true).setFlexGrow(0);
+        grid.addColumn(ReplicationOutbox::getFileName).setHeader("File").setFlexGrow(1);
+        grid.addColumn(new ComponentRenderer<>(this::createStatusBadge)).setHeader("Stato").setAutoWidth(true);
+        grid.addColumn(ReplicationOutbox::getAttempts).setHeader("Tentativi").setAutoWidth(true).setFlexGrow(0);
+        grid.addColumn(entry -> format(entry.getNextAttemptAt())).setHeader("Prossimo tentativo").setAutoWidth(true);
+        grid.addColumn(entry -> format(entry.getLastUpdated())).setHeader("Aggiornato").setAutoWidth(true);
+        grid.addColumn(ReplicationOutbox::getLastError).setHeader("Ultimo errore").setFlexGrow(2);
+        grid.addColumn(new ComponentRenderer<>(this::createActions)).setHeader("Azioni").setAutoWidth(true).setFlexGrow(0);
+
+        add(title, statsLabel, toolbar, grid);
+        refreshGrid();
+    }
+
+    private Component createStatusBadge(ReplicationOutbox entry) {
+        Span badge = new Span(entry.getStatus().name());
+        String theme = switch (entry.getStatus()) {
+            case SENT -> "badge success";
+            case DEAD -> "badge error";
+            case IN_PROGRESS -> "badge contrast";
+            default -> "badge";
+        };
+        badge.getElement().getThemeList().addAll(List.of(theme.split(" ")));
+        return badge;
+    }
+
+    private Component createActions(ReplicationOutbox entry) {
+        Button retryButton = new Button(new Icon(VaadinIcon.ROTATE_LEFT));
+        retryButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY);
+        retryButton.setTooltipText("Rimetti in coda");
+        retryButton.setEnabled(entry.getStatus() == ReplicationOutbox.Status.DEAD
+                || entry.getStatus() == ReplicationOutbox.Status.PENDING);
+        retryButton.addClickListener(e -> {
+            if (replicationDispatcher.retry(entry.getId())) {
+                Notification.show("Replica rimessa in coda", 3000, Notification.Position.BOTTOM_START)
+                        .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
+            }
+            refreshGrid();
+        });
+        return retryButton;
+    }
+
+    private void refreshGrid() {
+        grid.setItems(replicationDispatcher.recent(statusFilter.getValue(), MAX_ROWS));
+        Map<ReplicationOutbox.Status, Long> counts = replicationDispatcher.countsByStatus();
+        statsLabel.setText(counts.entrySet().stream()
+                .map(entry -> entry.getKey().name() + ": " + entry.getValue())
+                .collect(Collectors.joining("  ·  ")));
+    }
+
+    private static String format(OffsetDateTime dateTime) {
+        return dateTime != null ? dateTime.format(DATE_FORMATTER) : "";
+    }
+}
@@ -21,10 +21,14 @@ import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import io.bootify.my_app.component.StructuredTree;
+import io.bootify.my_app.domain.Content;
 import io.bootify.my_app.dto.DocumentSearchFilterDTO;
+import io.bootify.my_app.service.DocumentSearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 @Route(value = "ricerca-file", layout = MainLayout.class)
@@ -32,6 +36,10 @@ import java.util.List;
 public class SearchView extends VerticalLayout {
 
     private static final Logger log = LoggerFactory.getLogger(SearchView.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int PAGE_SIZE = 50;
+
+    private final DocumentSearchService documentSearchService;
 
     // ---------------- FILTRI ----------------
     private final TextField nomeFile = new TextField("Nome File");
@@ -59,8 +67,15 @@ public class SearchView extends VerticalLayout {
     private final Button modifyFiltersButton = new Button("Modifica Filtri", new Icon(VaadinIcon.EDIT));
     private final Button filterButton = new Button("Cerca Documenti", new Icon(VaadinIcon.SEARCH));
     private final Button resetButton = new Button("Pulisci Filtri", new Icon(VaadinIcon.ERASER));
+    private final Button loadMoreButton = new Button("Carica altri", new Icon(VaadinIcon.ANGLE_DOWN));
+
+    // Paginazione keyset: filtro dell'ultima ricerca e id da cui riprendere
+    private final List<FileResultDTO> results = new ArrayList<>();
+    private DocumentSearchFilterDTO currentFilter;
+    private Long nextCursor;
 
-    public SearchView() {
+    public SearchView(DocumentSearchService documentSearchService) {
+        this.documentSearchService = documentSearchService;
         setSizeFull();
         setPadding(true);
         setSpacing(true);
@@ -97,7 +112,11 @@ public class SearchView extends VerticalLayout {
 
         buildResultsGrid();
 
-        add(filtersSummary, modifyFiltersButton, resultsGrid);
+        loadMoreButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+        loadMoreButton.addClickListener(e -> loadNextPage());
+        loadMoreButton.setVisible(false);
+
+        add(filtersSummary, modifyFiltersButton, resultsGrid, loadMoreButton);
     }
 
     private void buildFiltersSection() {
@@ -276,16 +295,8 @@ public class SearchView extends VerticalLayout {
         // Costruisce l'oggetto DTO con tutti i filtri
         DocumentSearchFilterDTO searchFilter = buildSearchFilter();
         
-        // Log dell'oggetto per il test (in produzione sarà passato al service)
-        log.info("=== RICERCA DOCUMENTI ===");
-        log.info("Filtri di ricerca: {}", searchFilter);
-        log.info("========================");
-        
-        // TODO: In produzione chiamare il service
-        // List<FileResultDTO> results = documentService.searchDocuments(searchFilter);
-        
-        // 
-        
+        log.info("Ricerca documenti: {}", searchFilter);
+
         // Mostra riepilogo filtri come badge
         filtersSummary.removeAll();
         addFilterBadge("Nome", nomeFile.getValue());
@@ -326,28 +337,52 @@ public class SearchView extends VerticalLayout {
         filterButton.setVisible(false);
         resetButton.setVisible(false);
 
-        // Mostra grid con loading
         resultsGrid.setVisible(true);
 
-        // Simula ricerca con feedback
-        Notification.show("Ricerca in corso...", 1000, Notification.Position.BOTTOM_CENTER);
-        
-        // MOCK risultati
-        resultsGrid.setItems(List.of(
-                new FileResultDTO("report_sicurezza.pdf","Analisi difesa 2025","2024-03-10","CLASSIFICATO","1.2 MB"),
-                new FileResultDTO("cyber-threats.docx","Minacce attuali","2024-02-01","NON CLASSIFICATO","530 KB"),
-                new FileResultDTO("innovazione2024.pdf","Progetto nuove tecnologie","2024-01-15","CLASSIFICATO","2.5 MB"),
-                new FileResultDTO("budget-2025.xlsx","Piano finanziario annuale","2024-02-15","CLASSIFICATO","850 KB"),
-                new FileResultDTO("meeting-notes.docx","Verbale riunione","2024-03-01","NON CLASSIFICATO","120 KB")
-        ));
-        
+        currentFilter = searchFilter;
+        nextCursor = null;
+        results.clear();
+        resultsGrid.setItems(results);
+        loadNextPage();
+
         Notification notification = Notification.show(
-            "Trovati " + resultsGrid.getListDataView().getItemCount() + " documenti",
+            "Trovati " + results.size() + (nextCursor != null ? "+" : "") + " documenti",
             3000,
             Notification.Position.BOTTOM_END
         );
         notification.addThemeVariants(NotificationVariant.LUMO_SUCCESS);
     }
+
+    private void loadNextPage() {
+        DocumentSearchService.DocumentSearchPage page =
+                documentSearchService.searchDocuments(currentFilter, nextCursor, PAGE_SIZE);
+        log.debug("Piano di ricerca: {} ({} righe esaminate)", page.plan(), page.examinedRows());
+        page.items().forEach(content -> results.add(toResult(content)));
+        nextCursor = page.nextCursor();
+        resultsGrid.getDataProvider().refreshAll();
+        loadMoreButton.setVisible(nextCursor != null);
+    }
+
+    private FileResultDTO toResult(Content content) {
+        return new FileResultDTO(
+                content.getFileName(),
+                content.getDescription(),
+                content.getCreationDate() != null ? content.getCreationDate().format(DATE_FORMATTER) : "",
+                documentSearchService.tipologiaOf(content),
+                formatFileSize(content.getFileSize()));
+    }
+
+    private String formatFileSize(Long size) {
+        if (size == null) {
+            return "";
+        } else if (size < 1024) {
+            return size + " B";
+        } else if (size < 1024 * 1024) {
+            return String.format("%.2f KB", size / 1024.0);
+        } else {
+            return String.format("%.2f MB", size / (1024.0 * 1024.0));
+        }
+    }
     
     private DocumentSearchFilterDTO buildSearchFilter() {
         DocumentSearchFilterDTO filter = new DocumentSearchFilterDTO();
@@ -404,6 +439,7 @@ public class SearchView extends VerticalLayout {
         filterButton.setVisible(true);
         resetButton.setVisible(true);
         resultsGrid.setVisible(false);
+        loadMoreButton.setVisible(false);
     }
     
     private void resetFilters() {
@@ -0,0 +1,165 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * GC su un {@link LocalFileBlobStore} reale; i riferimenti delle tabelle e la
+ * outbox di replica sono simulati sul {@link JdbcTemplate}.
+ */
+class BlobGarbageCollectorTest {
+
+    private static final Duration GRACE = Duration.ofDays(1);
+
+    @TempDir
+    Path tempDir;
+
+    /** Riferimenti visti dalla query aggregata all'inizio del job. */
+    private final Map<String, Integer> references = new HashMap<>();
+    /** Riferimenti visti dal controllo subito prima dell'eliminazione. */
+    private final Map<String, Integer> referencesAtDelete = new HashMap<>();
+    private final List<String> pendingReplication = new ArrayList<>();
+
+    private LocalFileBlobStore blobStore;
+    private BlobGarbageCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            // blob_refs è vuota: solo la query dei riferimenti restituisce righe
+            if (sql.contains("UNION ALL")) {
+                for (Map.Entry<String, Integer> reference : references.entrySet()) {
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getString(1)).thenReturn(reference.getKey());
+                    when(rs.getInt(2)).thenReturn(reference.getValue());
+                    handler.processRow(rs);
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenAnswer(invocation -> pendingReplication);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any(), any(), any()))
+                .thenAnswer(invocation -> referencesAtDelete.getOrDefault(invocation.<String>getArgument(2), 0));
+
+        blobStore = new LocalFileBlobStore(tempDir.toString(), false, 4096,
+                new CompressionStats(new SimpleMeterRegistry()));
+        collector = new BlobGarbageCollector(blobStore, jdbcTemplate, new SimpleMeterRegistry(), GRACE.toMillis());
+    }
+
+    @Test
+    void oldUnreferencedBlobIsDeleted() throws IOException {
+        String orphan = put("orfano", Duration.ofDays(2));
+        String referenced = put("referenziato", Duration.ofDays(2));
+        references.put(referenced, 1);
+
+        BlobGarbageCollector.BlobGcReport report = collector.run();
+
+        assertThat(blobStore.exists(orphan)).isFalse();
+        assertThat(blobStore.exists(referenced)).isTrue();
+        assertThat(report.deleted()).isEqualTo(1);
+        assertThat(report.reclaimedBytes()).isEqualTo("orfano".length());
+        assertThat(collector.getLastReport()).isEqualTo(report);
+    }
+
+    @Test
+    void unreferencedBlobWithinGracePeriodIsKept() throws IOException {
+        String fresh = put("appena caricato", Duration.ofHours(1));
+
+        assertThat(collector.run().deleted()).isZero();
+        assertThat(blobStore.exists(fresh)).isTrue();
+    }
+
+    @Test
+    void reuploadRestartsGracePeriodOfOrphan() throws IOException {
+        String orphan = put("ricaricato", Duration.ofDays(2));
+
+        // stesso contenuto caricato di nuovo, l'entità non è ancora salvata
+        blobStore.put(new ByteArrayInputStream("ricaricato".getBytes()));
+
+        assertThat(collector.run().deleted()).isZero();
+        assertThat(blobStore.exists(orphan)).isTrue();
+    }
+
+    @Test
+    void blobAwaitingReplicationIsKept() throws IOException {
+        String key = put("da replicare", Duration.ofDays(2));
+        pendingReplication.add(key);
+
+        assertThat(collector.run().deleted()).isZero();
+        assertThat(blobStore.exists(key)).isTrue();
+    }
+
+    @Test
+    void blobReferencedDuringRunIsKept() throws IOException {
+        String key = put("referenziato durante il job", Duration.ofDays(2));
+        referencesAtDelete.put(key, 1);
+
+        assertThat(collector.run().deleted()).isZero();
+        assertThat(blobStore.exists(key)).isTrue();
+    }
+
+    @Test
+    void blobReuploadedDuringRunIsKept() throws IOException {
+        String key = put("ricaricato durante il job", Duration.ofDays(2));
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    // upload deduplicato tra il primo controllo della data e l'eliminazione
+                    blobStore.put(new ByteArrayInputStream("ricaricato durante il job".getBytes()));
+                    return 0;
+                });
+        collector = new BlobGarbageCollector(blobStore, jdbcTemplate, new SimpleMeterRegistry(), GRACE.toMillis());
+
+        assertThat(collector.run().deleted()).isZero();
+        assertThat(blobStore.exists(key)).isTrue();
+    }
+
+    @Test
+    void reportCountsSpaceSavedByDeduplication() throws IOException {
+        String shared = put("0123456789", Duration.ZERO);
+        references.put(shared, 3);
+
+        BlobGarbageCollector.BlobGcReport report = collector.run();
+
+        assertThat(report.blobs()).isEqualTo(1);
+        assertThat(report.physicalBytes()).isEqualTo(10);
+        assertThat(report.logicalBytes()).isEqualTo(30);
+        assertThat(report.dedupSavedBytes()).isEqualTo(20);
+    }
+
+    /** Blob scritto {@code age} fa. */
+    private String put(String content, Duration age) throws IOException {
+        String key = blobStore.put(new ByteArrayInputStream(content.getBytes())).key();
+        Files.setLastModifiedTime(blobStore.localPath(key).orElseThrow(), FileTime.from(Instant.now().minus(age)));
+        return key;
+    }
+}
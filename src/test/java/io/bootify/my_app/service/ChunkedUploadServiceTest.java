@@ -0,0 +1,275 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Product;
+import io.bootify.my_app.model.UploadSessionRequest;
+import io.bootify.my_app.util.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sessioni di upload a blocchi su un {@link LocalFileBlobStore} reale; il
+ * {@link ProductService} è simulato e salva il file nello store come farebbe
+ * quello vero.
+ */
+class ChunkedUploadServiceTest {
+
+    private static final long PRODUCT_ID = 7L;
+    private static final int CHUNK = 256 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private final byte[] data = randomBytes(CHUNK * 5 / 2);
+    private BlobStore blobStore;
+    private ProductService productService;
+    private ChunkedUploadService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blobStore = new LocalFileBlobStore(tempDir.resolve("blobs").toString(), false, 4096,
+                new CompressionStats(new SimpleMeterRegistry()));
+        productService = mock(ProductService.class);
+        when(productService.findById(PRODUCT_ID)).thenAnswer(invocation -> new Product());
+        when(productService.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        doAnswer(invocation -> {
+            Product product = invocation.getArgument(0);
+            SpooledUpload upload = invocation.getArgument(1);
+            product.setBlobKey(blobStore.putFile(upload.getFile(), upload.getSha256()).key());
+            return null;
+        }).when(productService).attachFile(any(Product.class), any(SpooledUpload.class));
+        service = newService();
+    }
+
+    private ChunkedUploadService newService() {
+        return new ChunkedUploadService(productService, blobStore, tempDir.resolve("sessions").toString(),
+                10L * 1024 * 1024, 86_400_000);
+    }
+
+    @Test
+    void chunksInAnyOrderSurviveRestartAndComplete() throws Exception {
+        String id = service.create(request(sha256(data))).sessionId();
+
+        ChunkedUploadService.SessionStatus status = sendChunk(service, id, 2);
+        assertThat(status.receivedRanges()).containsExactly(
+                new ChunkedUploadService.ByteRange(2L * CHUNK, data.length - 1));
+        sendChunk(service, id, 0);
+
+        // riavvio: la sessione viene riletta dal disco
+        ChunkedUploadService restarted = newService();
+        status = restarted.status(id);
+        assertThat(status.chunkCount()).isEqualTo(3);
+        assertThat(status.receivedBytes()).isEqualTo(data.length - CHUNK);
+        assertThat(status.complete()).isFalse();
+
+        assertThat(sendChunk(restarted, id, 1).complete()).isTrue();
+        Product product = restarted.complete(id);
+
+        assertThat(product.getBlobKey()).isEqualTo(sha256(data));
+        try (InputStream in = blobStore.openStream(product.getBlobKey())) {
+            assertThat(in.readAllBytes()).isEqualTo(data);
+        }
+        assertThatThrownBy(() -> restarted.status(id)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void corruptedChunkIsNotMarkedReceived() throws Exception {
+        String id = service.create(request(null)).sessionId();
+        byte[] chunk = chunk(0);
+
+        assertStatus(() -> service.writeChunk(id, 0, sha256(new byte[1]), new ByteArrayInputStream(chunk)),
+                HttpStatus.BAD_REQUEST);
+        assertStatus(() -> service.writeChunk(id, 0, sha256(chunk), new ByteArrayInputStream(chunk, 0, 10)),
+                HttpStatus.BAD_REQUEST);
+
+        assertThat(service.status(id).receivedBytes()).isZero();
+        assertStatus(() -> service.complete(id), HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void concurrentCorruptedChunkDoesNotOverwriteVerifiedData() throws Exception {
+        String id = service.create(request(null)).sessionId();
+        byte[] junk = new byte[CHUNK];
+        Arrays.fill(junk, (byte) 0x5a);
+        CountDownLatch halfSent = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slowJunk = new SequenceInputStream(new ByteArrayInputStream(junk, 0, CHUNK / 2),
+                new InputStream() {
+                    private final InputStream rest = new ByteArrayInputStream(junk, CHUNK / 2, CHUNK / 2);
+                    private boolean waited;
+
+                    @Override
+                    public int read() throws IOException {
+                        byte[] one = new byte[1];
+                        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        if (!waited) {
+                            waited = true;
+                            halfSent.countDown();
+                            try {
+                                release.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return rest.read(b, off, len);
+                    }
+                });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // stesso blocco inviato due volte: la richiesta corrotta finisce dopo quella buona
+            Future<?> corrupted = executor.submit(() -> service.writeChunk(id, 0, sha256(chunk(0)), slowJunk));
+            assertThat(halfSent.await(5, TimeUnit.SECONDS)).isTrue();
+            sendChunk(service, id, 0);
+            release.countDown();
+            assertThatThrownBy(() -> corrupted.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(ResponseStatusException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+        sendChunk(service, id, 1);
+        sendChunk(service, id, 2);
+
+        Product product = service.complete(id);
+
+        assertThat(product.getBlobKey()).isEqualTo(sha256(data));
+        try (InputStream in = blobStore.openStream(product.getBlobKey())) {
+            assertThat(in.readAllBytes()).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void resendingReceivedChunkHasNoEffect() throws Exception {
+        String id = service.create(request(null)).sessionId();
+        sendChunk(service, id, 0);
+
+        ChunkedUploadService.SessionStatus status = service.writeChunk(id, 0, "ignored",
+                new ByteArrayInputStream(new byte[0]));
+
+        assertThat(status.receivedBytes()).isEqualTo(CHUNK);
+    }
+
+    @Test
+    void wrongDeclaredChecksumDiscardsUpload() throws Exception {
+        String id = service.create(request(sha256(new byte[] {1}))).sessionId();
+        for (int i = 0; i < 3; i++) sendChunk(service, id, i);
+
+        assertStatus(() -> service.complete(id), HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThatThrownBy(() -> service.status(id)).isInstanceOf(NotFoundException.class);
+        assertThat(blobStore.exists(sha256(data))).isFalse();
+    }
+
+    @Test
+    void storedContentIsAttachedWithProofOfPossession() throws Exception {
+        String sha256 = blobStore.put(new ByteArrayInputStream(data)).key();
+        Product attached = new Product();
+        when(productService.attachStoredFile(eq(PRODUCT_ID), eq(sha256), eq((long) data.length), anyString(), any(),
+                any())).thenReturn(attached);
+
+        ChunkedUploadService.SessionStatus status = service.create(request(sha256));
+        ChunkedUploadService.ProofChallenge challenge = status.proofChallenge();
+        assertThat(challenge).isNotNull();
+
+        assertThat(service.prove(status.sessionId(), proof(challenge))).isSameAs(attached);
+        assertThatThrownBy(() -> service.status(status.sessionId())).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void wrongProofIsRejectedAndChallengeConsumed() throws Exception {
+        String sha256 = blobStore.put(new ByteArrayInputStream(data)).key();
+        ChunkedUploadService.SessionStatus status = service.create(request(sha256));
+
+        assertStatus(() -> service.prove(status.sessionId(), sha256), HttpStatus.FORBIDDEN);
+        // un solo tentativo: anche la prova giusta ora non vale, si inviano i blocchi
+        assertStatus(() -> service.prove(status.sessionId(), proof(status.proofChallenge())), HttpStatus.CONFLICT);
+        verify(productService, never()).attachStoredFile(any(), anyString(), anyLong(), any(), any(), any());
+        assertThat(service.status(status.sessionId()).proofChallenge()).isNull();
+    }
+
+    @Test
+    void declaredSizeMustMatchStoredContent() throws Exception {
+        String sha256 = blobStore.put(new ByteArrayInputStream(data)).key();
+        UploadSessionRequest request = request(sha256);
+        request.setSize((long) data.length + 1);
+
+        assertStatus(() -> service.create(request), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    private UploadSessionRequest request(String sha256) {
+        UploadSessionRequest request = new UploadSessionRequest();
+        request.setProductId(PRODUCT_ID);
+        request.setFileName("catalogo.bin");
+        request.setContentType("application/octet-stream");
+        request.setSize((long) data.length);
+        request.setChunkSize(CHUNK);
+        request.setSha256(sha256);
+        return request;
+    }
+
+    private ChunkedUploadService.SessionStatus sendChunk(ChunkedUploadService target, String id, int index)
+            throws Exception {
+        byte[] chunk = chunk(index);
+        return target.writeChunk(id, index, sha256(chunk), new ByteArrayInputStream(chunk));
+    }
+
+    private byte[] chunk(int index) {
+        int from = index * CHUNK;
+        return Arrays.copyOfRange(data, from, Math.min(from + CHUNK, data.length));
+    }
+
+    private String proof(ChunkedUploadService.ProofChallenge challenge) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(HexFormat.of().parseHex(challenge.nonce()));
+        digest.update(data, (int) challenge.offset(), challenge.length());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void assertStatus(ThrowingCallable call, HttpStatus status) {
+        assertThatThrownBy(call).isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(status));
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,124 @@
+package io.bootify.my_app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Confronto con un {@link TreeSet} su blocchi radi (array) e densi (bitmap). */
+class CompressedBitmapTest {
+
+    private static final long BLOCK = 65536;
+
+    @Test
+    void blockSwitchesRepresentationBothWays() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (long id = 0; id < 5000; id++) bitmap.add(id * 2);
+
+        assertThat(bitmap.cardinality()).isEqualTo(5000);
+        assertThat(bitmap.contains(9998)).isTrue();
+        assertThat(bitmap.contains(9999)).isFalse();
+
+        for (long id = 0; id < 4000; id++) bitmap.remove(id * 2);
+        assertThat(bitmap.cardinality()).isEqualTo(1000);
+        assertThat(bitmap.contains(8000)).isTrue();
+        assertThat(bitmap.contains(7998)).isFalse();
+    }
+
+    @Test
+    void emptiedBlocksAreDropped() {
+        CompressedBitmap bitmap = CompressedBitmap.of(new long[] {5, BLOCK + 5, 3 * BLOCK});
+
+        bitmap.remove(BLOCK + 5);
+        bitmap.remove(BLOCK + 6);
+
+        assertThat(bitmap.cardinality()).isEqualTo(2);
+        assertThat(bitmap.descending(0, 10)).containsExactly(3 * BLOCK, 5);
+        bitmap.remove(5);
+        bitmap.remove(3 * BLOCK);
+        assertThat(bitmap.isEmpty()).isTrue();
+    }
+
+    @Test
+    void setOperationsMatchReferenceModel() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            NavigableSet<Long> a = randomSet(random);
+            NavigableSet<Long> b = randomSet(random);
+            CompressedBitmap bitmapA = toBitmap(a);
+            CompressedBitmap bitmapB = toBitmap(b);
+
+            NavigableSet<Long> intersection = new TreeSet<>(a);
+            intersection.retainAll(b);
+            NavigableSet<Long> union = new TreeSet<>(a);
+            union.addAll(b);
+
+            assertThat(bitmapA.andCardinality(bitmapB)).isEqualTo(intersection.size());
+            assertThat(descending(bitmapA.and(bitmapB))).containsExactly(toDescendingArray(intersection));
+            assertThat(descending(bitmapA.or(bitmapB))).containsExactly(toDescendingArray(union));
+            assertThat(descending(CompressedBitmap.union(List.of(bitmapA, bitmapB)))).containsExactly(
+                    toDescendingArray(union));
+            assertThat(bitmapA.cardinality()).isEqualTo(a.size());
+        }
+    }
+
+    @Test
+    void resultsDoNotShareBlocksWithOperands() {
+        CompressedBitmap a = CompressedBitmap.of(new long[] {1, 2, 3});
+        CompressedBitmap b = CompressedBitmap.of(new long[] {2, 3, 4});
+
+        CompressedBitmap union = a.or(b);
+        CompressedBitmap merged = CompressedBitmap.union(List.of(a));
+        union.add(10);
+        merged.remove(1);
+
+        assertThat(a.descending(0, 10)).containsExactly(3, 2, 1);
+        assertThat(b.descending(0, 10)).containsExactly(4, 3, 2);
+    }
+
+    @Test
+    void descendingPagesAcrossBlocks() {
+        NavigableSet<Long> ids = randomSet(new Random(3));
+        CompressedBitmap bitmap = toBitmap(ids);
+        long[] all = toDescendingArray(ids);
+
+        for (int skip : new int[] {0, 1, 4000, 5000, all.length - 3, all.length}) {
+            long[] expected = Arrays.copyOfRange(all, Math.min(skip, all.length),
+                    Math.min(skip + 50, all.length));
+            assertThat(bitmap.descending(skip, 50)).containsExactly(expected);
+        }
+    }
+
+    /** Un blocco denso, uno rado e uno a metà, con sovrapposizioni parziali fra un insieme e l'altro. */
+    private static NavigableSet<Long> randomSet(Random random) {
+        NavigableSet<Long> ids = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) ids.add((long) random.nextInt(30000));
+        for (int i = 0; i < 200; i++) ids.add(BLOCK + random.nextInt(65536));
+        for (int i = 0; i < 4200; i++) ids.add(5 * BLOCK + random.nextInt(9000));
+        return ids;
+    }
+
+    private static CompressedBitmap toBitmap(NavigableSet<Long> ids) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        // ordine casuale: gli inserimenti non arrivano per forza ordinati
+        List<Long> shuffled = new ArrayList<>(ids);
+        Collections.shuffle(shuffled, new Random(ids.size()));
+        shuffled.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static long[] descending(CompressedBitmap bitmap) {
+        return bitmap.descending(0, (int) bitmap.cardinality());
+    }
+
+    private static long[] toDescendingArray(NavigableSet<Long> ids) {
+        return ids.descendingSet().stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,107 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.service.FacetSearchService.Facet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class FacetIndexTest {
+
+    private static final FacetIndex.Filter NO_FILTER = new FacetIndex.Filter(Map.of(), null, null);
+
+    private final FacetIndex index = new FacetIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.put(1, new FacetIndex.Doc("pdf", "manuali", "anna", 100));
+        index.put(2, new FacetIndex.Doc("pdf", "report", "marco", 105));
+        index.put(3, new FacetIndex.Doc("docx", "manuali", "anna", 108));
+        index.put(4, new FacetIndex.Doc("png", null, "marco", 110));
+    }
+
+    @Test
+    void unfilteredSearchCountsEveryValue() {
+        FacetIndex.Result result = index.search(null, NO_FILTER, List.of(), 0, 10);
+
+        assertThat(result.ids()).containsExactly(4, 3, 2, 1);
+        assertThat(result.total()).isEqualTo(4);
+        // per conteggio decrescente, a parità per valore
+        assertThat(result.counts().get(Facet.FILE_TYPE)).containsExactly(
+                entry("pdf", 2L), entry("docx", 1L), entry("png", 1L));
+        assertThat(result.counts().get(Facet.CATEGORY)).containsExactly(entry("manuali", 2L), entry("report", 1L));
+    }
+
+    @Test
+    void facetIsCountedWithoutItsOwnFilter() {
+        FacetIndex.Filter pdfOnly = new FacetIndex.Filter(Map.of(Facet.FILE_TYPE, Set.of("pdf")), null, null);
+
+        FacetIndex.Result result = index.search(null, pdfOnly, List.of(), 0, 10);
+
+        assertThat(result.ids()).containsExactly(2, 1);
+        assertThat(result.counts().get(Facet.FILE_TYPE)).containsExactly(
+                entry("pdf", 2L), entry("docx", 1L), entry("png", 1L));
+        assertThat(result.counts().get(Facet.AUTHOR)).containsExactly(entry("anna", 1L), entry("marco", 1L));
+    }
+
+    @Test
+    void valuesOfOneFacetAreAlternatives() {
+        FacetIndex.Filter filter = new FacetIndex.Filter(Map.of(
+                Facet.FILE_TYPE, Set.of("pdf", "png"),
+                Facet.AUTHOR, Set.of("marco")), null, null);
+
+        FacetIndex.Result result = index.search(null, filter, List.of(), 0, 10);
+
+        assertThat(result.ids()).containsExactly(4, 2);
+        assertThat(result.counts().get(Facet.AUTHOR)).containsExactly(entry("marco", 2L), entry("anna", 1L));
+    }
+
+    @Test
+    void dateRangeAndRelativeBuckets() {
+        FacetIndex.Filter range = new FacetIndex.Filter(Map.of(), 105L, 108L);
+
+        FacetIndex.Result result = index.search(null, range, List.of(100L, 108L), 0, 10);
+
+        assertThat(result.ids()).containsExactly(3, 2);
+        // l'intervallo non restringe i conteggi della sua stessa faccetta
+        assertThat(result.counts().get(Facet.DATE)).containsExactly(entry("108", 2L), entry("100", 4L));
+        assertThat(index.search(null, new FacetIndex.Filter(Map.of(), 109L, 101L), List.of(), 0, 10).ids())
+                .isEmpty();
+    }
+
+    @Test
+    void textMatchRestrictsResultsAndCounts() {
+        CompressedBitmap match = CompressedBitmap.of(new long[] {1, 3, 99});
+
+        FacetIndex.Result result = index.search(match, NO_FILTER, List.of(), 0, 10);
+
+        assertThat(result.ids()).containsExactly(3, 1);
+        assertThat(result.counts().get(Facet.AUTHOR)).containsExactly(entry("anna", 2L));
+    }
+
+    @Test
+    void pagingSkipsNewestResults() {
+        FacetIndex.Result result = index.search(null, NO_FILTER, List.of(), 1, 2);
+
+        assertThat(result.ids()).containsExactly(3, 2);
+        assertThat(result.total()).isEqualTo(4);
+    }
+
+    @Test
+    void updatesReplaceAndRemoveValues() {
+        index.put(4, new FacetIndex.Doc("pdf", "report", "marco", 110));
+        index.remove(1);
+
+        FacetIndex.Result result = index.search(null, NO_FILTER, List.of(110L), 0, 10);
+
+        assertThat(index.documentCount()).isEqualTo(3);
+        assertThat(result.counts().get(Facet.FILE_TYPE)).containsExactly(entry("pdf", 2L), entry("docx", 1L));
+        assertThat(result.counts().get(Facet.AUTHOR)).containsExactly(entry("marco", 2L), entry("anna", 1L));
+        assertThat(result.counts().get(Facet.DATE)).containsExactly(entry("110", 1L));
+    }
+}
@@ -0,0 +1,91 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.repos.ContentRepository;
+import io.bootify.my_app.service.FacetSearchService.Facet;
+import io.bootify.my_app.service.FacetSearchService.FacetValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static io.bootify.my_app.service.FacetSearchService.typeGroup;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Faccetta tipo su righe come quelle di {@code ContentDataInitializer}:
+ * {@code file_type} contiene PDF, DOCUMENT, IMAGE, VIDEO, AUDIO o ARCHIVE, non una MIME.
+ */
+class FacetSearchServiceTest {
+
+    /** file_name, file_type, mime_type. */
+    private static final List<String[]> ROWS = List.of(
+            new String[] {"test.docx", "DOCUMENT",
+                    "application/vnd.openxmlformats-officedocument.wordprocessingml.document"},
+            new String[] {"test.pdf", "PDF", "application/pdf"},
+            new String[] {"test.pptx", "DOCUMENT", null},
+            new String[] {"test.xlsx", "DOCUMENT", null},
+            new String[] {"logo-aziendale.png", "IMAGE", "image/png"},
+            new String[] {"foto-evento.jpg", null, null},
+            new String[] {"video-tutorial-prodotto.mp4", "VIDEO", "video/mp4"},
+            new String[] {"database-backup-12-12-2024.zip", "ARCHIVE", "application/zip"},
+            new String[] {"jingle-aziendale", "AUDIO", null});
+
+    @Test
+    void typeFacetUsesStoredTypeMimeAndExtension() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            if (invocation.<Long>getArgument(2) > 0) return null;
+            long id = 0;
+            for (String[] row : ROWS) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(++id);
+                when(rs.getString(2)).thenReturn(row[0]);
+                when(rs.getString(3)).thenReturn(row[1]);
+                when(rs.getString(4)).thenReturn("Documenti");
+                when(rs.getString(5)).thenReturn("admin");
+                when(rs.getTimestamp(6)).thenReturn(Timestamp.valueOf(LocalDateTime.now()));
+                when(rs.getString(7)).thenReturn(row[2]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+        ContentRepository contentRepository = mock(ContentRepository.class);
+        when(contentRepository.findAllById(any())).thenReturn(List.of());
+        FacetSearchService service = new FacetSearchService(contentRepository, mock(SearchIndexService.class),
+                jdbcTemplate, new SimpleMeterRegistry(), true, 1000, 10);
+
+        service.rebuild();
+        FacetSearchService.FacetedResult result = service.search(
+                new FacetSearchService.FacetQuery(null, Set.of(), null, null, null, Set.of(), Set.of()), 1, 20);
+
+        assertThat(result.total()).isEqualTo(ROWS.size());
+        assertThat(result.facets().get(Facet.FILE_TYPE)).containsExactlyInAnyOrder(
+                new FacetValue(FacetSearchService.TYPE_WORD, 1),
+                new FacetValue(FacetSearchService.TYPE_PDF, 1),
+                new FacetValue(FacetSearchService.TYPE_OTHER, 2),
+                new FacetValue(FacetSearchService.TYPE_IMAGE, 2),
+                new FacetValue(FacetSearchService.TYPE_VIDEO, 1),
+                new FacetValue(FacetSearchService.TYPE_ARCHIVE, 1),
+                new FacetValue(FacetSearchService.TYPE_AUDIO, 1));
+    }
+
+    @Test
+    void storedDocumentTypeAloneIsNotWord() {
+        assertThat(typeGroup("test.docx", "DOCUMENT", null)).isEqualTo(FacetSearchService.TYPE_WORD);
+        assertThat(typeGroup("test.xlsx", "DOCUMENT", null)).isEqualTo(FacetSearchService.TYPE_OTHER);
+        assertThat(typeGroup("scansione.TIFF", null, null)).isEqualTo(FacetSearchService.TYPE_IMAGE);
+        assertThat(typeGroup("senza-estensione", "PDF", null)).isEqualTo(FacetSearchService.TYPE_PDF);
+    }
+}
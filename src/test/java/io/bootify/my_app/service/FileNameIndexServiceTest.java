@@ -0,0 +1,124 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Content;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Indice a trigrammi ricostruito da una tabella simulata (paginata per id come quella vera). */
+class FileNameIndexServiceTest {
+
+    private final Map<Long, String> contents = new TreeMap<>();
+    private FileNameIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        contents.put(1L, "Relazione_Annuale.pdf");
+        contents.put(2L, "report-2024.PDF");
+        contents.put(3L, "Passport.png");
+        contents.put(4L, null);
+        contents.put(5L, "cabxbca.txt");
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            long afterId = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            if (!sql.contains("FROM contents")) return null;
+            int rows = 0;
+            for (Map.Entry<Long, String> row : contents.entrySet()) {
+                if (row.getKey() <= afterId || rows == limit) continue;
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(row.getKey());
+                when(rs.getString(2)).thenReturn(row.getValue());
+                handler.processRow(rs);
+                rows++;
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+
+        // batch di 2 righe: la ricostruzione deve proseguire pagina per pagina
+        service = new FileNameIndexService(jdbcTemplate, new SimpleMeterRegistry(), true, 2);
+    }
+
+    @Test
+    void indexNotReadyFallsBackToLike() {
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "report")).isEmpty();
+    }
+
+    @Test
+    void fragmentMatchesIgnoringCase() {
+        service.rebuild(FileNameIndexService.Kind.CONTENT);
+
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "PORT")).hasValueSatisfying(
+                ids -> assertThat(ids).containsExactly(2, 3));
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, " ort-2 ")).hasValueSatisfying(
+                ids -> assertThat(ids).containsExactly(2));
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "assente")).hasValueSatisfying(
+                ids -> assertThat(ids).isEmpty());
+    }
+
+    @Test
+    void trigramsInDifferentOrderAreNotAMatch() {
+        service.rebuild(FileNameIndexService.Kind.CONTENT);
+
+        // "bca" e "cab" ci sono entrambi in "cabxbca.txt", "bcab" no
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "bcab")).hasValueSatisfying(
+                ids -> assertThat(ids).isEmpty());
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "xbca")).hasValueSatisfying(
+                ids -> assertThat(ids).containsExactly(5));
+    }
+
+    @Test
+    void shortFragmentFallsBackToLike() {
+        service.rebuild(FileNameIndexService.Kind.CONTENT);
+
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "pd")).isEmpty();
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, null)).isEmpty();
+        // l'altro tipo non è stato ricostruito
+        assertThat(service.containing(FileNameIndexService.Kind.FILE_UPLOAD, "report")).isEmpty();
+    }
+
+    @Test
+    void changesOutsideTransactionApplyImmediately() {
+        service.rebuild(FileNameIndexService.Kind.CONTENT);
+        Content content = new Content();
+        content.setId(9L);
+        content.setFileName("Nuovo Report.txt");
+
+        service.indexAfterCommit(content);
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "report")).hasValueSatisfying(
+                ids -> assertThat(ids).containsExactly(2, 9));
+
+        service.removeAfterCommit(content);
+        assertThat(service.containing(FileNameIndexService.Kind.CONTENT, "report")).hasValueSatisfying(
+                ids -> assertThat(ids).containsExactly(2));
+    }
+
+    @Test
+    void likePatternEscapesWildcards() {
+        assertThat(FileNameIndexService.likePattern("50%_A\\b")).isEqualTo("%50\\%\\_a\\\\b%");
+        assertThat(FileNameIndexService.likePattern(null)).isEqualTo("%");
+        assertThat(FileNameIndexService.escapeLike("docx_1")).isEqualTo("docx\\_1");
+    }
+
+    @Test
+    void likePatternUsesSameFragmentAsIndex() {
+        assertThat(FileNameIndexService.likePattern(" Ort-2 ")).isEqualTo("%ort-2%");
+        assertThat(FileNameIndexService.needle(" Ort-2 ")).isEqualTo("ort-2");
+    }
+}
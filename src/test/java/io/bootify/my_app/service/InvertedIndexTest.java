@@ -0,0 +1,143 @@
+package io.bootify.my_app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvertedIndexTest {
+
+    @Test
+    void searchIntersectsAllTerms() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, List.of("manuale", "pompa"));
+        index.put(2, List.of("manuale", "valvola"));
+        index.put(3, List.of("manuale", "pompa", "valvola"));
+
+        assertThat(index.search(List.of("manuale"), null)).containsExactly(1, 2, 3);
+        assertThat(index.search(List.of("pompa", "valvola"), null)).containsExactly(3);
+        assertThat(index.search(List.of("pompa", "assente"), null)).isEmpty();
+        assertThat(index.search(List.of(), null)).isEmpty();
+    }
+
+    @Test
+    void prefixMatchesAnyTermStartingWithIt() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, List.of("manuale", "pompa"));
+        index.put(2, List.of("pompaggio"));
+        index.put(3, List.of("manuale", "pompe"));
+
+        assertThat(index.search(List.of(), "pomp")).containsExactly(1, 2, 3);
+        assertThat(index.search(List.of("manuale"), "pomp")).containsExactly(1, 3);
+        assertThat(index.search(List.of(), "pompa")).containsExactly(1, 2);
+        assertThat(index.search(List.of(), "x")).isEmpty();
+    }
+
+    @Test
+    void putReplacesPreviousTerms() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, List.of("vecchio", "comune"));
+        index.put(1, List.of("nuovo", "comune"));
+
+        assertThat(index.search(List.of("vecchio"), null)).isEmpty();
+        assertThat(index.search(List.of("nuovo"), null)).containsExactly(1);
+        assertThat(index.termCount()).isEqualTo(2);
+        assertThat(index.documentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void removeDropsEmptyPostingLists() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, List.of("a", "b"));
+        index.put(2, List.of("b"));
+
+        index.remove(1);
+        index.remove(42);
+
+        assertThat(index.search(List.of("b"), null)).containsExactly(2);
+        assertThat(index.termCount()).isEqualTo(1);
+        assertThat(index.documentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void outOfOrderIdsKeepPostingsSorted() {
+        InvertedIndex index = new InvertedIndex();
+        for (long id : new long[] {50, 10, 30, 70, 20, 60, 40}) {
+            index.put(id, List.of("t"));
+        }
+        index.remove(30);
+
+        assertThat(index.search(List.of("t"), null)).containsExactly(10, 20, 40, 50, 60, 70);
+    }
+
+    @Test
+    void intersectMergesSortedArrays() {
+        assertThat(InvertedIndex.intersect(new long[] {1, 3, 5, 7}, new long[] {2, 3, 4, 7, 9})).containsExactly(3, 7);
+        assertThat(InvertedIndex.intersect(new long[] {}, new long[] {1})).isEmpty();
+    }
+
+    @Test
+    void builderMatchesIncrementalIndex() {
+        InvertedIndex.Builder builder = new InvertedIndex.Builder();
+        InvertedIndex incremental = new InvertedIndex();
+        for (long id : new long[] {5, 1, 3}) {
+            List<String> terms = id == 3 ? List.of("x") : List.of("x", "y");
+            builder.add(id, terms);
+            incremental.put(id, terms);
+        }
+        InvertedIndex built = builder.build();
+
+        assertThat(built.search(List.of("x"), null)).containsExactly(incremental.search(List.of("x"), null));
+        assertThat(built.search(List.of("y"), null)).containsExactly(1, 5);
+        // l'indice costruito resta aggiornabile
+        built.put(2, List.of("y"));
+        built.remove(5);
+        assertThat(built.search(List.of("y"), null)).containsExactly(1, 2);
+    }
+
+    @Test
+    void randomUpdatesMatchReferenceModel() {
+        Random random = new Random(7);
+        InvertedIndex index = new InvertedIndex();
+        Map<Long, Set<String>> model = new HashMap<>();
+        String[] vocabulary = {"alfa", "alto", "beta", "bello", "gamma", "delta"};
+
+        for (int step = 0; step < 5000; step++) {
+            long id = random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                model.remove(id);
+            } else {
+                Set<String> terms = new TreeSet<>();
+                int count = random.nextInt(4);
+                for (int i = 0; i < count; i++) terms.add(vocabulary[random.nextInt(vocabulary.length)]);
+                index.put(id, terms);
+                if (terms.isEmpty()) model.remove(id);
+                else model.put(id, terms);
+            }
+        }
+
+        for (String term : vocabulary) {
+            assertThat(index.search(List.of(term), null)).containsExactly(expected(model, term, null));
+            assertThat(index.search(List.of(term), "b")).containsExactly(expected(model, term, "b"));
+        }
+        assertThat(index.documentCount()).isEqualTo(model.size());
+    }
+
+    private static long[] expected(Map<Long, Set<String>> model, String term, String prefix) {
+        List<Long> ids = new ArrayList<>();
+        model.forEach((id, terms) -> {
+            if (terms.contains(term) && (prefix == null || terms.stream().anyMatch(t -> t.startsWith(prefix)))) {
+                ids.add(id);
+            }
+        });
+        return ids.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+}
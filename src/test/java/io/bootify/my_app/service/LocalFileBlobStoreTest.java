@@ -0,0 +1,160 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalFileBlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path directory;
+    private LocalFileBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        directory = tempDir.resolve("blobs");
+        store = new LocalFileBlobStore(directory.toString(), true, 4096,
+                new CompressionStats(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void contentIsAddressedBySha256() throws Exception {
+        byte[] data = binary(1000);
+
+        BlobStore.StoredBlob blob = store.put(new ByteArrayInputStream(data));
+
+        assertThat(blob.key()).isEqualTo(sha256(data)).isEqualTo(blob.sha256());
+        assertThat(blob.size()).isEqualTo(1000);
+        assertThat(store.localPath(blob.key())).contains(
+                directory.resolve(blob.key().substring(0, 2)).resolve(blob.key().substring(2, 4)).resolve(blob.key()));
+        assertThat(read(blob.key())).isEqualTo(data);
+    }
+
+    @Test
+    void identicalContentIsStoredOnceAndRefreshed() throws Exception {
+        byte[] data = binary(1000);
+        String key = store.put(new ByteArrayInputStream(data)).key();
+        Path file = store.localPath(key).orElseThrow();
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        LocalFileBlobStore.Write second = store.write(new ByteArrayInputStream(data));
+
+        assertThat(second.written()).isFalse();
+        assertThat(second.blob().key()).isEqualTo(key);
+        assertThat(store.lastModified(key)).isAfter(Instant.now().minus(Duration.ofMinutes(1)));
+        try (Stream<String> keys = store.keys()) {
+            assertThat(keys).containsExactly(key);
+        }
+    }
+
+    @Test
+    void textBlobIsCompressedTransparently() throws Exception {
+        byte[] text = "riga di testo ripetuta\n".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+        BlobStore.StoredBlob blob = store.put(new ByteArrayInputStream(text));
+
+        assertThat(blob.key()).isEqualTo(sha256(text));
+        assertThat(store.localPath(blob.key())).isEmpty();
+        assertThat(store.exists(blob.key())).isTrue();
+        assertThat(store.size(blob.key())).isEqualTo(text.length);
+        assertThat(read(blob.key())).isEqualTo(text);
+        try (Stream<String> keys = store.keys()) {
+            assertThat(keys).containsExactly(blob.key());
+        }
+    }
+
+    @Test
+    void binaryAndSmallBlobsStayUncompressed() throws Exception {
+        BlobStore.StoredBlob binary = store.put(new ByteArrayInputStream(binary(10_000)));
+        BlobStore.StoredBlob small = store.put(new ByteArrayInputStream("breve".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(store.localPath(binary.key())).isPresent();
+        assertThat(store.localPath(small.key())).isPresent();
+    }
+
+    @Test
+    void putFileMovesSpooledFileIntoStore() throws Exception {
+        byte[] data = binary(2000);
+        Path spooled = Files.write(tempDir.resolve("upload.part"), data);
+
+        BlobStore.StoredBlob blob = store.putFile(spooled, sha256(data));
+
+        assertThat(spooled).doesNotExist();
+        assertThat(blob.size()).isEqualTo(2000);
+        assertThat(read(blob.key())).isEqualTo(data);
+    }
+
+    @Test
+    void deletedBlobCannotBeRead() throws Exception {
+        String key = store.put(new ByteArrayInputStream(binary(100))).key();
+
+        store.delete(key);
+
+        assertThat(store.exists(key)).isFalse();
+        assertThatThrownBy(() -> store.openStream(key)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void deleteIfOlderThanSparesRecentlyRefreshedBlob() throws Exception {
+        byte[] data = binary(100);
+        String key = store.put(new ByteArrayInputStream(data)).key();
+        Instant cutoff = Instant.now().minus(Duration.ofDays(1));
+        Files.setLastModifiedTime(store.localPath(key).orElseThrow(),
+                FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        store.put(new ByteArrayInputStream(data));
+
+        assertThat(store.deleteIfOlderThan(key, cutoff)).isFalse();
+        assertThat(store.exists(key)).isTrue();
+
+        Files.setLastModifiedTime(store.localPath(key).orElseThrow(),
+                FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        assertThat(store.deleteIfOlderThan(key, cutoff)).isTrue();
+        assertThat(store.exists(key)).isFalse();
+        assertThat(store.deleteIfOlderThan(key, cutoff)).isFalse();
+    }
+
+    @Test
+    void invalidKeyIsRejected() {
+        assertThatThrownBy(() -> store.openStream("../../etc/passwd"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.exists(null)).isFalse();
+    }
+
+    private byte[] read(String key) throws IOException {
+        try (InputStream in = store.openStream(key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] binary(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
@@ -0,0 +1,46 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Content;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalOriginFilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Content content(String originalPath, String fileName) {
+        Content content = new Content();
+        content.setOriginalPath(originalPath);
+        content.setFileName(fileName);
+        return content;
+    }
+
+    @Test
+    void resolvesFilesAndFoldersInsideRoot() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("originals"));
+        Path file = Files.writeString(Files.createDirectories(root.resolve("docs")).resolve("Manuale.pdf"), "pdf");
+        LocalOriginFiles files = new LocalOriginFiles(root.toString());
+
+        assertThat(files.resolve(content("docs/Manuale.pdf", "Manuale.pdf"))).isEqualTo(file);
+        assertThat(files.resolve(content("docs", "manuale.PDF"))).isEqualTo(file);
+        assertThat(files.resolve(content(file.toString(), "Manuale.pdf"))).isEqualTo(file);
+    }
+
+    @Test
+    void pathsLeavingRootAreIgnored() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("originals"));
+        Path secret = Files.writeString(tempDir.resolve("secret.txt"), "secret");
+        LocalOriginFiles files = new LocalOriginFiles(root.toString());
+
+        assertThat(files.resolve(content("../secret.txt", "secret.txt"))).isNull();
+        assertThat(files.resolve(content(secret.toString(), "secret.txt"))).isNull();
+        assertThat(files.resolve(content(".", "../secret.txt"))).isNull();
+    }
+}
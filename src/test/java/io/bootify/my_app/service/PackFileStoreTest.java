@@ -0,0 +1,143 @@
+package io.bootify.my_app.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PackFileStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedBlobIsReadFromMapping() throws IOException {
+        PackFileStore store = new PackFileStore(directory, 1024);
+
+        store.append("aaaa", channel("primo"), 5);
+        store.append("bbbb", channel("secondo"), 7);
+
+        assertThat(read(store, "aaaa")).isEqualTo("primo");
+        assertThat(read(store, "bbbb")).isEqualTo("secondo");
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.liveBytes()).isEqualTo(12);
+    }
+
+    @Test
+    void fullPackRollsOverToNextOne() throws IOException {
+        PackFileStore store = new PackFileStore(directory, 10);
+
+        store.append("aaaa", channel("123456"), 6);
+        store.append("bbbb", channel("789012"), 6);
+
+        assertThat(store.entry("aaaa").pack()).isEqualTo(1);
+        assertThat(store.entry("bbbb").pack()).isEqualTo(2);
+        assertThatThrownBy(() -> store.append("cccc", channel("x".repeat(11)), 11))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void indexIsReloadedWithRemovals() throws IOException {
+        PackFileStore store = new PackFileStore(directory, 1024);
+        store.append("aaaa", channel("primo"), 5);
+        store.append("bbbb", channel("secondo"), 7);
+        store.remove("aaaa");
+
+        PackFileStore reloaded = new PackFileStore(directory, 1024);
+
+        assertThat(reloaded.keys()).containsExactly("bbbb");
+        assertThat(reloaded.liveBytes()).isEqualTo(7);
+        assertThat(read(reloaded, "bbbb")).isEqualTo("secondo");
+        assertThatThrownBy(() -> reloaded.open("aaaa")).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void interruptedAppendIsIgnoredOnReload() throws IOException {
+        PackFileStore store = new PackFileStore(directory, 1024);
+        store.append("aaaa", channel("primo"), 5);
+        // riga d'indice scritta per dati mai arrivati nel pack
+        Files.writeString(directory.resolve("pack-00001.idx"), "A bbbb 5 100 0\n", StandardOpenOption.APPEND);
+
+        PackFileStore reloaded = new PackFileStore(directory, 1024);
+
+        assertThat(reloaded.keys()).containsExactly("aaaa");
+    }
+
+    @Test
+    void compactionRewritesLiveBlobsOfSparsePacks() throws IOException {
+        PackFileStore store = new PackFileStore(directory, 100);
+        store.append("aaaa", channel("a".repeat(60)), 60);
+        store.append("bbbb", channel("b".repeat(30)), 30);
+        store.append("cccc", channel("c".repeat(30)), 30);
+        store.remove("aaaa");
+
+        long reclaimed = store.compact(0.5);
+
+        assertThat(reclaimed).isEqualTo(60);
+        assertThat(directory.resolve("pack-00001.pack")).doesNotExist();
+        assertThat(directory.resolve("pack-00001.idx")).doesNotExist();
+        assertThat(store.entry("bbbb").pack()).isEqualTo(2);
+        assertThat(read(store, "bbbb")).isEqualTo("b".repeat(30));
+        assertThat(store.liveBytes()).isEqualTo(60);
+
+        PackFileStore reloaded = new PackFileStore(directory, 100);
+        assertThat(reloaded.keys()).containsExactlyInAnyOrder("bbbb", "cccc");
+        assertThat(read(reloaded, "bbbb")).isEqualTo("b".repeat(30));
+    }
+
+    @Test
+    void compactedPackStaysOnDiskUntilReadersClose() throws IOException {
+        PackFileStore store = new PackFileStore(directory, 100);
+        store.append("aaaa", channel("a".repeat(60)), 60);
+        store.append("bbbb", channel("b".repeat(30)), 30);
+        store.append("cccc", channel("c".repeat(30)), 30);
+        store.remove("aaaa");
+        ReadableByteChannel reader = store.open("bbbb");
+
+        store.compact(0.5);
+
+        // l'indice punta già al pack nuovo, il vecchio resta finché il lettore è aperto
+        assertThat(store.entry("bbbb").pack()).isEqualTo(2);
+        assertThat(directory.resolve("pack-00001.idx")).doesNotExist();
+        assertThat(directory.resolve("pack-00001.pack")).exists();
+        try (InputStream in = Channels.newInputStream(reader)) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo("b".repeat(30));
+        }
+        assertThat(directory.resolve("pack-00001.pack")).doesNotExist();
+        assertThat(read(store, "bbbb")).isEqualTo("b".repeat(30));
+    }
+
+    @Test
+    void densePacksAreNotCompacted() throws IOException {
+        PackFileStore store = new PackFileStore(directory, 100);
+        store.append("aaaa", channel("a".repeat(60)), 60);
+        store.append("bbbb", channel("b".repeat(30)), 30);
+        store.append("cccc", channel("c".repeat(30)), 30);
+        store.remove("bbbb");
+
+        assertThat(store.compact(0.5)).isZero();
+        assertThat(store.entry("aaaa").pack()).isEqualTo(1);
+    }
+
+    private static ReadableByteChannel channel(String data) {
+        return new PackFileStore.ByteBufferChannel(ByteBuffer.wrap(data.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String read(PackFileStore store, String key) throws IOException {
+        try (InputStream in = Channels.newInputStream(store.open(key))) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+}
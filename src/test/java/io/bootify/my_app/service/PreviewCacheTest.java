@@ -0,0 +1,130 @@
+package io.bootify.my_app.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreviewCacheTest {
+
+    private static final String A = "aa01";
+    private static final String B = "bb02";
+    private static final String C = "cc03";
+
+    @TempDir
+    Path tempDir;
+
+    private final List<PreviewCache> caches = new ArrayList<>();
+
+    private PreviewCache cache(long memoryMaxBytes, long diskMaxBytes) {
+        PreviewCache cache = new PreviewCache(tempDir.toString(), memoryMaxBytes, diskMaxBytes);
+        caches.add(cache);
+        return cache;
+    }
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(PreviewCache::shutdown);
+    }
+
+    @Test
+    void memoryTierServesWithoutDisk() throws IOException {
+        PreviewCache cache = cache(1024, 1024);
+        cache.put(A, bytes(10));
+
+        Files.delete(file(A));
+
+        assertThat(cache.get(A)).hasSize(10);
+        assertThat(cache.contains(A)).isTrue();
+    }
+
+    @Test
+    void memoryTierEvictsLeastRecentlyUsedByBytes() throws IOException {
+        PreviewCache cache = cache(10, 1024);
+        cache.put(A, bytes(6));
+        cache.put(B, bytes(6));
+
+        Files.delete(file(A));
+        Files.delete(file(B));
+
+        assertThat(cache.get(A)).isNull();
+        assertThat(cache.get(B)).hasSize(6);
+    }
+
+    @Test
+    void diskTierSurvivesRestart() {
+        cache(1024, 1024).put(A, bytes(10));
+
+        PreviewCache restarted = cache(1024, 1024);
+
+        assertThat(restarted.contains(A)).isTrue();
+        assertThat(restarted.get(A)).hasSize(10);
+    }
+
+    @Test
+    void writeOverDiskLimitEvictsDownToLowWatermark() throws Exception {
+        PreviewCache cache = cache(0, 100);
+        cache.put(A, bytes(40));
+        cache.put(B, bytes(40));
+        cache.put(C, bytes(40));
+
+        waitFor(() -> cache.diskBytes() == 80);
+        assertThat(imageFiles()).hasSize(2);
+    }
+
+    @Test
+    void startupScanEvictsLeastRecentlyReadFiles() throws Exception {
+        PreviewCache writer = cache(0, 1024);
+        writer.put(A, bytes(40));
+        writer.put(B, bytes(40));
+        writer.put(C, bytes(40));
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(file(A), FileTime.fromMillis(now - TimeUnit.HOURS.toMillis(3)));
+        Files.setLastModifiedTime(file(B), FileTime.fromMillis(now - TimeUnit.HOURS.toMillis(2)));
+        Files.setLastModifiedTime(file(C), FileTime.fromMillis(now - TimeUnit.HOURS.toMillis(1)));
+        // una lettura da disco rende A il più recente
+        assertThat(writer.get(A)).hasSize(40);
+
+        PreviewCache restarted = cache(0, 100);
+
+        waitFor(() -> restarted.diskBytes() == 80);
+        assertThat(Files.exists(file(A))).isTrue();
+        assertThat(Files.exists(file(B))).isFalse();
+        assertThat(Files.exists(file(C))).isTrue();
+    }
+
+    private Path file(String key) {
+        return tempDir.resolve(key.substring(0, 2)).resolve(key + ".img");
+    }
+
+    private List<Path> imageFiles() throws IOException {
+        try (Stream<Path> walk = Files.walk(tempDir)) {
+            return walk.filter(p -> p.getFileName().toString().endsWith(".img")).toList();
+        }
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        data[0] = 1;
+        return data;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.bootify.my_app.service;
+
+import io.bootify.my_app.domain.Product;
+import io.bootify.my_app.domain.ReplicationOutbox;
+import io.bootify.my_app.repos.ProductRepository;
+import io.bootify.my_app.repos.ReplicationOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Accodamento della replica al salvataggio: il file conta come cambiato solo se
+ * blob_key differisce da quello salvato nel database.
+ */
+class ProductServiceTest {
+
+    private static final String OLD_KEY = "a".repeat(64);
+    private static final String NEW_KEY = "b".repeat(64);
+
+    private ProductRepository productRepository;
+    private ReplicationOutboxRepository outboxRepository;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        outboxRepository = mock(ReplicationOutboxRepository.class);
+        when(productRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        productService = new ProductService(productRepository, mock(BlobStore.class),
+                mock(SearchIndexService.class), outboxRepository, mock(ReplicationDispatcher.class));
+    }
+
+    private Product detached(String blobKey, String loadedBlobKey) {
+        Product product = new Product();
+        product.setId(1L);
+        product.setBlobKey(blobKey);
+        product.setLoadedBlobKey(loadedBlobKey);
+        return product;
+    }
+
+    @Test
+    void replacedFileIsQueued() {
+        when(productRepository.findPersistedBlobKey(1L)).thenReturn(Optional.of(OLD_KEY));
+
+        productService.save(detached(NEW_KEY, OLD_KEY));
+
+        verify(outboxRepository, times(1)).save(any(ReplicationOutbox.class));
+    }
+
+    @Test
+    void savingDetachedInstanceAgainDoesNotQueueTwice() {
+        // istanza della vista: loadedBlobKey è ancora quello letto prima della sostituzione
+        Product product = detached(NEW_KEY, OLD_KEY);
+        when(productRepository.findPersistedBlobKey(1L))
+                .thenReturn(Optional.of(OLD_KEY), Optional.of(NEW_KEY));
+
+        productService.save(product);
+        productService.save(product);
+
+        verify(outboxRepository, times(1)).save(any(ReplicationOutbox.class));
+    }
+
+    @Test
+    void unchangedFileIsNotQueued() {
+        when(productRepository.findPersistedBlobKey(1L)).thenReturn(Optional.of(NEW_KEY));
+
+        productService.save(detached(NEW_KEY, null));
+
+        verify(outboxRepository, never()).save(any(ReplicationOutbox.class));
+    }
+}
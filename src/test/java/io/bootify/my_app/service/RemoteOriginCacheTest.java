@@ -0,0 +1,181 @@
+package io.bootify.my_app.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Download e rivalidazione verso un server locale (HttpServer del JDK). Con
+ * {@code fresh-ms = 0} ogni fetch successivo al primo rivalida.
+ */
+class RemoteOriginCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger forcedStatus = new AtomicInteger();
+    private final AtomicReference<String> ifNoneMatch = new AtomicReference<>();
+    private volatile String body = "remote-content";
+
+    private String url;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file.pdf", exchange -> {
+            requests.incrementAndGet();
+            ifNoneMatch.set(exchange.getRequestHeaders().getFirst("If-None-Match"));
+            int status = forcedStatus.get();
+            if (status != 0) {
+                exchange.sendResponseHeaders(status, -1);
+            } else if (ETAG.equals(ifNoneMatch.get())) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/file.pdf";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private RemoteOriginCache cache(long freshMs, long maxDownloadBytes) {
+        return cache(1024 * 1024, freshMs, maxDownloadBytes);
+    }
+
+    private RemoteOriginCache cache(long maxSizeBytes, long freshMs, long maxDownloadBytes) {
+        return new RemoteOriginCache(tempDir.toString(), maxSizeBytes, maxDownloadBytes, freshMs, 5000, 5000);
+    }
+
+    @Test
+    void freshCopyIsServedWithoutContactingServer() throws IOException {
+        RemoteOriginCache cache = cache(60_000, 1024);
+
+        assertThat(cache.fetchBytes(url)).asString(StandardCharsets.UTF_8).isEqualTo("remote-content");
+        assertThat(cache.fetchBytes(url)).asString(StandardCharsets.UTF_8).isEqualTo("remote-content");
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void revalidationSendsEtagAndKeepsCopyOnNotModified() throws IOException {
+        RemoteOriginCache cache = cache(0, 1024);
+        Path first;
+        try (RemoteOriginCache.Lease lease = cache.open(url)) {
+            first = lease.path();
+        }
+
+        body = "changed-but-not-sent";
+        try (RemoteOriginCache.Lease lease = cache.open(url)) {
+            assertThat(requests).hasValue(2);
+            assertThat(ifNoneMatch.get()).isEqualTo(ETAG);
+            assertThat(lease.path()).isEqualTo(first);
+            assertThat(Files.readString(lease.path())).isEqualTo("remote-content");
+        }
+    }
+
+    @Test
+    void serverErrorOnRevalidationServesStaleCopy() throws IOException {
+        RemoteOriginCache cache = cache(0, 1024);
+        cache.fetchBytes(url);
+
+        forcedStatus.set(503);
+        assertThat(cache.fetchBytes(url)).asString(StandardCharsets.UTF_8).isEqualTo("remote-content");
+
+        forcedStatus.set(404);
+        assertThat(cache.fetchBytes(url)).asString(StandardCharsets.UTF_8).isEqualTo("remote-content");
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    void serverErrorWithoutCachedCopyFails() {
+        RemoteOriginCache cache = cache(0, 1024);
+        forcedStatus.set(500);
+
+        assertThatThrownBy(() -> cache.open(url))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("HTTP 500");
+    }
+
+    @Test
+    void oversizedDownloadIsRejected() {
+        RemoteOriginCache cache = cache(0, 4);
+
+        assertThatThrownBy(() -> cache.open(url))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("too large");
+    }
+
+    @Test
+    void cachedCopySurvivesRestart() throws IOException {
+        cache(0, 1024).fetchBytes(url);
+
+        forcedStatus.set(502);
+        assertThat(cache(0, 1024).fetchBytes(url)).asString(StandardCharsets.UTF_8).isEqualTo("remote-content");
+    }
+
+    @Test
+    void validatorFollowsEtagOrContent() throws IOException {
+        RemoteOriginCache cache = cache(0, 1024);
+        assertThat(cache.validator(url)).isEqualTo("etag:" + ETAG);
+
+        // senza ETag né Last-Modified la versione è l'hash dei byte scaricati
+        String plain = url.replace("/file.pdf", "/plain.pdf");
+        server.createContext("/plain.pdf", exchange -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        String first = cache.validator(plain);
+        assertThat(first).startsWith("sha256:");
+        assertThat(cache.validator(plain)).isEqualTo(first);
+        body = "changed";
+        assertThat(cache.validator(plain)).isNotEqualTo(first);
+    }
+
+    @Test
+    void openedCopyIsNotEvictedUntilClosed() throws IOException {
+        // spazio per un solo file: il secondo download eliminerebbe il primo
+        RemoteOriginCache cache = cache(20, 60_000, 1024);
+        String other = url.replace("/file.pdf", "/other.pdf");
+        server.createContext("/other.pdf", exchange -> {
+            byte[] bytes = "other-content".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+
+        try (RemoteOriginCache.Lease lease = cache.open(url)) {
+            assertThat(cache.fetchBytes(other)).asString(StandardCharsets.UTF_8).isEqualTo("other-content");
+            assertThat(Files.readString(lease.path())).isEqualTo("remote-content");
+        }
+        // oltre il limite resta solo la voce che era in uso
+        assertThat(cache.fetchBytes(url)).asString(StandardCharsets.UTF_8).isEqualTo("remote-content");
+        assertThat(requests).hasValue(1);
+    }
+}
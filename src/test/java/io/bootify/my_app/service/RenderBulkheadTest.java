@@ -0,0 +1,107 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RenderBulkheadTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /** Un render concorrente per formato, budget di 20 MB, attesa di 50 ms. */
+    private RenderBulkhead bulkhead(int maxWaiting) {
+        return new RenderBulkhead(meterRegistry, 1, 1, 1, 1, 20 * MB, maxWaiting, 50);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("preview.bulkhead.rejected").tag("reason", reason).counter().count();
+    }
+
+    private double reservedBytes() {
+        return meterRegistry.get("preview.bulkhead.heap.reserved").gauge().value();
+    }
+
+    @Test
+    void documentLargerThanBudgetIsRejectedUpFront() {
+        RenderBulkhead bulkhead = bulkhead(4);
+
+        // 8 MB di quota fissa + 3 MB * 6
+        assertThatThrownBy(() -> bulkhead.acquire(RenderBulkhead.Format.PDF, 3 * MB))
+                .isInstanceOf(RenderBulkhead.RejectedException.class)
+                .hasMessageContaining("too_large");
+        assertThat(rejected("too_large")).isEqualTo(1);
+    }
+
+    @Test
+    void outputReservationCountsTowardsBudget() {
+        RenderBulkhead bulkhead = bulkhead(4);
+
+        assertThatThrownBy(() -> bulkhead.acquire(RenderBulkhead.Format.PDF, 0, 13 * MB))
+                .isInstanceOf(RenderBulkhead.RejectedException.class)
+                .hasMessageContaining("too_large");
+        try (RenderBulkhead.Permit permit = bulkhead.acquire(RenderBulkhead.Format.PDF, 0, 4 * MB)) {
+            assertThat(reservedBytes()).isEqualTo(12.0 * MB);
+        }
+    }
+
+    @Test
+    void concurrencyLimitIsPerFormat() {
+        RenderBulkhead bulkhead = bulkhead(4);
+
+        try (RenderBulkhead.Permit pdf = bulkhead.acquire(RenderBulkhead.Format.PDF, 0)) {
+            assertThatThrownBy(() -> bulkhead.acquire(RenderBulkhead.Format.PDF, 0))
+                    .isInstanceOf(RenderBulkhead.RejectedException.class)
+                    .hasMessageContaining("concurrency");
+            // un altro formato ha i suoi permessi
+            bulkhead.acquire(RenderBulkhead.Format.SHEET, 0).close();
+        }
+        bulkhead.acquire(RenderBulkhead.Format.PDF, 0).close();
+        assertThat(rejected("concurrency")).isEqualTo(1);
+    }
+
+    @Test
+    void sharedHeapBudgetLimitsDifferentFormats() {
+        RenderBulkhead bulkhead = bulkhead(4);
+
+        try (RenderBulkhead.Permit pdf = bulkhead.acquire(RenderBulkhead.Format.PDF, MB)) {
+            assertThat(reservedBytes()).isEqualTo(14.0 * MB);
+            assertThatThrownBy(() -> bulkhead.acquire(RenderBulkhead.Format.WORD, MB))
+                    .isInstanceOf(RenderBulkhead.RejectedException.class)
+                    .hasMessageContaining("heap_budget");
+            // il permesso di concorrenza del formato rifiutato è stato restituito
+            assertThat(meterRegistry.get("preview.bulkhead.active").tag("format", "WORD").gauge().value())
+                    .isZero();
+        }
+        assertThat(reservedBytes()).isZero();
+        bulkhead.acquire(RenderBulkhead.Format.WORD, MB).close();
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() {
+        RenderBulkhead bulkhead = bulkhead(0);
+
+        assertThatThrownBy(() -> bulkhead.acquire(RenderBulkhead.Format.PDF, 0))
+                .isInstanceOf(RenderBulkhead.RejectedException.class)
+                .hasMessageContaining("queue_full");
+        assertThat(meterRegistry.get("preview.bulkhead.waiting").gauge().value()).isZero();
+    }
+
+    @Test
+    void closingPermitTwiceReleasesOnce() {
+        RenderBulkhead bulkhead = bulkhead(4);
+
+        RenderBulkhead.Permit permit = bulkhead.acquire(RenderBulkhead.Format.PDF, 0);
+        permit.close();
+        permit.close();
+
+        assertThat(reservedBytes()).isZero();
+        try (RenderBulkhead.Permit first = bulkhead.acquire(RenderBulkhead.Format.PDF, 0)) {
+            assertThatThrownBy(() -> bulkhead.acquire(RenderBulkhead.Format.PDF, 0))
+                    .isInstanceOf(RenderBulkhead.RejectedException.class);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package io.bootify.my_app.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.bootify.my_app.domain.ReplicationOutbox;
+import io.bootify.my_app.repos.ReplicationOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Invio della outbox verso un endpoint locale (HttpServer del JDK) al posto del
+ * servizio remoto.
+ */
+class ReplicationDispatcherTest {
+
+    private static final String BLOB_KEY = "a".repeat(64);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger responseStatus = new AtomicInteger(200);
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    private volatile CountDownLatch release;
+
+    private ReplicationOutboxRepository outboxRepository;
+    private ReplicationDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/upload", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            exchange.getRequestBody().transferTo(body);
+            receivedBody.set(body.toString(StandardCharsets.ISO_8859_1));
+            CountDownLatch latch = release;
+            if (latch != null) {
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(responseStatus.get(), -1);
+            exchange.close();
+        });
+        server.start();
+
+        Path blob = Files.writeString(tempDir.resolve("blob"), "replicated-content");
+        BlobStore blobStore = mock(BlobStore.class);
+        when(blobStore.localPath(BLOB_KEY)).thenReturn(Optional.of(blob));
+
+        outboxRepository = mock(ReplicationOutboxRepository.class);
+        ReplicationOutbox entry = new ReplicationOutbox(42L, BLOB_KEY, "manuale.pdf", "application/pdf");
+        entry.setId(1L);
+        entry.setStatus(ReplicationOutbox.Status.IN_PROGRESS);
+        when(outboxRepository.findById(1L)).thenReturn(Optional.of(entry));
+        when(outboxRepository.findDueIds(any(), any())).thenReturn(List.of(1L), List.of());
+        when(outboxRepository.claim(eq(1L), any())).thenReturn(1);
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/upload";
+        dispatcher = new ReplicationDispatcher(outboxRepository, blobStore, new RestTemplate(),
+                new SimpleMeterRegistry(), url, 2, 3, 1000, 60000, 120000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (release != null) release.countDown();
+        dispatcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void successfulDeliveryMarksEntrySent() {
+        assertThat(dispatcher.dispatchDue()).isEqualTo(1);
+
+        ReplicationOutbox saved = awaitSaved();
+        assertThat(saved.getStatus()).isEqualTo(ReplicationOutbox.Status.SENT);
+        assertThat(saved.getAttempts()).isEqualTo(1);
+        assertThat(saved.getSentAt()).isNotNull();
+        assertThat(receivedBody.get())
+                .contains("replicated-content")
+                .contains("manuale.pdf")
+                .contains("42");
+    }
+
+    @Test
+    void serverErrorSchedulesRetryWithBackoff() {
+        responseStatus.set(500);
+        OffsetDateTime before = OffsetDateTime.now();
+
+        dispatcher.dispatchDue();
+
+        ReplicationOutbox saved = awaitSaved();
+        assertThat(saved.getStatus()).isEqualTo(ReplicationOutbox.Status.PENDING);
+        assertThat(saved.getAttempts()).isEqualTo(1);
+        assertThat(saved.getNextAttemptAt()).isAfter(before);
+        assertThat(saved.getLastError()).isNotBlank();
+    }
+
+    @Test
+    void permanentClientErrorDeadLettersImmediately() {
+        responseStatus.set(400);
+
+        dispatcher.dispatchDue();
+
+        ReplicationOutbox saved = awaitSaved();
+        assertThat(saved.getStatus()).isEqualTo(ReplicationOutbox.Status.DEAD);
+        assertThat(saved.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void inFlightDeliveryKeepsItsLeaseAlive() throws Exception {
+        release = new CountDownLatch(1);
+        dispatcher.dispatchDue();
+        waitFor(() -> receivedBody.get() != null);
+
+        // un giro di polling durante l'invio rinnova il lease invece di rimettere in coda
+        dispatcher.dispatchDue();
+        verify(outboxRepository).heartbeat(argThat(ids -> ids.contains(1L)), any());
+
+        release.countDown();
+        assertThat(awaitSaved().getStatus()).isEqualTo(ReplicationOutbox.Status.SENT);
+    }
+
+    private ReplicationOutbox awaitSaved() {
+        ArgumentCaptor<ReplicationOutbox> captor = ArgumentCaptor.forClass(ReplicationOutbox.class);
+        verify(outboxRepository, timeout(5000)).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package io.bootify.my_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Spostamento nei pack, letture e promozione. {@code blob_refs} è simulata: per
+ * ogni chiave l'ultimo utilizzo restituito dalla query del job.
+ */
+class TieredBlobStoreTest {
+
+    private static final Duration COLD_AFTER = Duration.ofDays(1);
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, Instant> lastUse = new ConcurrentHashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LocalFileBlobStore hot;
+    private TieredBlobStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<String, Instant> use : lastUse.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(use.getKey());
+                when(rs.getTimestamp(2)).thenReturn(Timestamp.from(use.getValue()));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        hot = new LocalFileBlobStore(tempDir.resolve("blobs").toString(), false, 4096,
+                new CompressionStats(new SimpleMeterRegistry()));
+        store = new TieredBlobStore(hot, jdbcTemplate, meterRegistry,
+                tempDir.resolve("packs").toString(), 1024 * 1024, true, COLD_AFTER.toMillis(), 3,
+                1024 * 1024, 0.5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void coldBlobIsMovedToPackAndStillReadable() throws Exception {
+        String key = putOld("contenuto freddo");
+
+        TieredBlobStore.TierReport report = store.run();
+
+        assertThat(report.demoted()).isEqualTo(1);
+        assertThat(report.coldBlobs()).isEqualTo(1);
+        assertThat(store.localPath(key)).isEmpty();
+        assertThat(store.exists(key)).isTrue();
+        assertThat(store.size(key)).isEqualTo("contenuto freddo".length());
+        assertThat(read(key)).isEqualTo("contenuto freddo");
+        try (Stream<String> keys = store.keys()) {
+            assertThat(keys).containsExactly(key);
+        }
+    }
+
+    @Test
+    void recentlyUsedOrUnreferencedBlobsStayHot() throws Exception {
+        String used = putOld("usato da poco");
+        lastUse.put(used, Instant.now());
+        String unreferenced = putOld("senza riferimenti");
+        lastUse.remove(unreferenced);
+
+        assertThat(store.run().demoted()).isZero();
+        assertThat(store.localPath(used)).isPresent();
+        assertThat(store.localPath(unreferenced)).isPresent();
+    }
+
+    @Test
+    void frequentlyReadColdBlobIsPromoted() throws Exception {
+        String key = putOld("letto spesso");
+        store.run();
+
+        for (int i = 0; i < 3; i++) read(key);
+        store.flushReads();
+
+        waitFor(() -> meterRegistry.get("blob.tier.promoted").counter().count() == 1);
+        assertThat(store.localPath(key)).isPresent();
+        assertThat(read(key)).isEqualTo("letto spesso");
+        assertThat(store.run().coldBlobs()).isZero();
+    }
+
+    @Test
+    void rewritingColdBlobDropsPackedCopy() throws Exception {
+        String key = putOld("riscritto");
+        store.run();
+
+        store.put(new ByteArrayInputStream("riscritto".getBytes()));
+
+        assertThat(store.localPath(key)).isPresent();
+        try (Stream<String> keys = store.keys()) {
+            assertThat(keys).containsExactly(key);
+        }
+        assertThat(store.run().coldBlobs()).isZero();
+    }
+
+    @Test
+    void deleteRemovesBothCopies() throws Exception {
+        String key = putOld("da eliminare");
+        store.run();
+
+        store.delete(key);
+
+        assertThat(store.exists(key)).isFalse();
+    }
+
+    /** Blob referenziato, scritto e usato l'ultima volta due giorni fa. */
+    private String putOld(String content) throws IOException {
+        String key = store.put(new ByteArrayInputStream(content.getBytes())).key();
+        Instant old = Instant.now().minus(COLD_AFTER.multipliedBy(2));
+        Files.setLastModifiedTime(hot.localPath(key).orElseThrow(), FileTime.from(old));
+        lastUse.put(key, old);
+        return key;
+    }
+
+    private String read(String key) throws IOException {
+        try (InputStream in = store.openStream(key)) {
+            return new String(in.readAllBytes());
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.bootify.my_app.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsForSameKeyShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> flights.execute("key", () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "value";
+            })));
+        }
+        waitFor(() -> flights.getCoalescedCount() == 3);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(flights.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void failureIsPropagatedToWaitingCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flights.execute("key", () -> {
+            await(release);
+            throw new IllegalStateException("boom");
+        }));
+        waitFor(() -> flights.getInFlightCount() == 1);
+        Future<String> follower = executor.submit(() -> flights.execute("key", () -> "unused"));
+        waitFor(() -> flights.getCoalescedCount() == 1);
+        release.countDown();
+
+        for (Future<String> result : List.of(leader, follower)) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class)
+                    .hasRootCauseMessage("boom");
+        }
+    }
+
+    @Test
+    void keyIsReleasedOnceLoadCompletes() {
+        AtomicInteger loads = new AtomicInteger();
+
+        flights.execute("key", () -> "v" + loads.incrementAndGet());
+        String second = flights.execute("key", () -> "v" + loads.incrementAndGet());
+
+        // non è una cache: la seconda chiamata, non concorrente, ricarica
+        assertThat(second).isEqualTo("v2");
+        assertThat(flights.getCoalescedCount()).isZero();
+        assertThat(flights.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void differentKeysLoadIndependently() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> a = executor.submit(() -> flights.execute("a", () -> {
+            await(release);
+            return "A";
+        }));
+        waitFor(() -> flights.getInFlightCount() == 1);
+
+        assertThat(flights.execute("b", () -> "B")).isEqualTo("B");
+        release.countDown();
+        assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo("A");
+        assertThat(flights.getCoalescedCount()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}